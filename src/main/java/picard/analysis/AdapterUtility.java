@@ -31,6 +31,7 @@ import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
 import picard.util.IlluminaUtil;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -48,9 +49,24 @@ public class AdapterUtility {
     // The maximum number of mismatches a read can have and still be considered as matching an adapter
     private static final int MAX_ADAPTER_ERRORS = 1;
 
+    // 2-bit codes of A, C, G and T in either case, and -1 for any other base
+    private static final byte[] BASE_CODES = new byte[256];
+    static {
+        Arrays.fill(BASE_CODES, (byte) -1);
+        final String bases = "ACGT";
+        for (byte code = 0; code < bases.length(); ++code) {
+            BASE_CODES[bases.charAt(code)] = code;
+            BASE_CODES[Character.toLowerCase(bases.charAt(code))] = code;
+        }
+    }
+
     // byte arrays in both fwd and rc for the adapter sequences
     final byte [][] adapterKmers;
 
+    // 2-bit codes of every sequence of A, C, G and T that matches one of the adapterKmers with at most
+    // MAX_ADAPTER_ERRORS mismatches
+    private final KmerCodeSet matchingKmerCodes;
+
     public static List<String> DEFAULT_ADAPTER_SEQUENCE = CollectionUtil.makeList(
             IlluminaUtil.IlluminaAdapterPair.SINGLE_END.get5PrimeAdapter(),
             IlluminaUtil.IlluminaAdapterPair.SINGLE_END.get3PrimeAdapter(),
@@ -63,6 +79,47 @@ public class AdapterUtility {
 
     public AdapterUtility(final List<String> adapterSequence) {
         adapterKmers = prepareAdapterSequences(adapterSequence);
+        matchingKmerCodes = prepareMatchingKmerCodes(adapterKmers);
+    }
+
+    /**
+     * Encodes every sequence of A, C, G and T that is within MAX_ADAPTER_ERRORS (one) mismatch of an adapter kmer, so
+     * that a read whose first bases are all A, C, G or T can be matched against all adapters with a single lookup.
+     * An adapter kmer made of A, C, G and T contributes itself and all its single substitutions.  A kmer with one other
+     * base, e.g. an N, never equals a read base there, so it contributes the four kmers with any of A, C, G or T at
+     * that position and its other bases unchanged.  A kmer with more than one other base cannot match such a read.
+     */
+    private static KmerCodeSet prepareMatchingKmerCodes(final byte[][] adapterKmers) {
+        final KmerCodeSet codes = new KmerCodeSet(adapterKmers.length * (3 * ADAPTER_MATCH_LENGTH + 1));
+        for (final byte[] kmer : adapterKmers) {
+            long code = 0;
+            int otherBase = -1;
+            int numOtherBases = 0;
+            for (int i = 0; i < kmer.length; ++i) {
+                final byte baseCode = BASE_CODES[kmer[i] & 0xFF];
+                if (baseCode < 0) {
+                    otherBase = i;
+                    ++numOtherBases;
+                }
+                code = (code << 2) | (baseCode < 0 ? 0 : baseCode);
+            }
+
+            if (numOtherBases == 0) {
+                codes.add(code);
+                for (int i = 0; i < kmer.length; ++i) addAllSubstitutions(codes, code, kmer.length - i - 1);
+            } else if (numOtherBases == 1) {
+                addAllSubstitutions(codes, code, kmer.length - otherBase - 1);
+            }
+        }
+        return codes;
+    }
+
+    /** Adds the code with each of the four bases at the base that is shift bases from the end of the kmer. */
+    private static void addAllSubstitutions(final KmerCodeSet codes, final long code, final int shift) {
+        final long mask = 3L << (2 * shift);
+        for (long baseCode = 0; baseCode < 4; ++baseCode) {
+            codes.add((code & ~mask) | (baseCode << (2 * shift)));
+        }
     }
 
     /** Converts the supplied adapter sequences to byte arrays in both fwd and rc */
@@ -128,6 +185,18 @@ public class AdapterUtility {
     public boolean isAdapterSequence(final byte[] read, boolean revCompRead) {
         if (read.length < ADAPTER_MATCH_LENGTH) return false;
 
+        long code = 0;
+        for (int i = 0; i < ADAPTER_MATCH_LENGTH; ++i) {
+            final byte baseCode = BASE_CODES[(revCompRead ? read[read.length - i - 1] : read[i]) & 0xFF];
+            // Reads with other bases, e.g. no-calls, are compared to each adapter kmer base by base.
+            if (baseCode < 0) return matchesAdapterKmer(read, revCompRead);
+            // The 2-bit code of the complement of a base is 3 minus its code.
+            code = (code << 2) | (revCompRead ? 3 - baseCode : baseCode);
+        }
+        return matchingKmerCodes.contains(code);
+    }
+
+    private boolean matchesAdapterKmer(final byte[] read, boolean revCompRead) {
         for (final byte[] adapter : adapterKmers) {
             int errors = 0;
 
@@ -156,4 +225,42 @@ public class AdapterUtility {
     public boolean isAdapterSequence(final byte[] read) {
         return isAdapterSequence(read, false);
     }
+
+    /** An open addressing hash set of non-negative kmer codes. */
+    private static final class KmerCodeSet {
+        private static final long EMPTY = -1;
+
+        private final long[] slots;
+        private final int shift;
+
+        KmerCodeSet(final int expectedSize) {
+            // Keep the table at most half full.
+            int bits = 4;
+            while ((1 << bits) < 2 * expectedSize) ++bits;
+            slots = new long[1 << bits];
+            Arrays.fill(slots, EMPTY);
+            shift = 64 - bits;
+        }
+
+        private int slot(final long code) {
+            return (int) ((code * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        void add(final long code) {
+            for (int i = slot(code); ; i = (i + 1) & (slots.length - 1)) {
+                if (slots[i] == code) return;
+                if (slots[i] == EMPTY) {
+                    slots[i] = code;
+                    return;
+                }
+            }
+        }
+
+        boolean contains(final long code) {
+            for (int i = slot(code); ; i = (i + 1) & (slots.length - 1)) {
+                if (slots[i] == code) return true;
+                if (slots[i] == EMPTY) return false;
+            }
+        }
+    }
 }
@@ -139,6 +139,14 @@ public class CollectGcBiasMetrics extends SinglePassSamProgram {
             "allows to gain two plots per level at the same time: one is the usual one and the other excludes duplicates.")
     public boolean ALSO_IGNORE_DUPLICATES = false;
 
+    @Argument(doc = "If true, use a table of the GC of every reference window that is computed once, stored next to the " +
+            "reference (or at GC_WINDOW_TABLE) and memory-mapped by later runs with the same reference and SCAN_WINDOW_SIZE.")
+    public boolean USE_GC_WINDOW_TABLE = false;
+
+    @Argument(doc = "Where to store the GC window table when USE_GC_WINDOW_TABLE is true. Defaults to the reference path " +
+            "with the window size and '" + GcWindowTable.FILE_EXTENSION + "' appended.", optional = true)
+    public File GC_WINDOW_TABLE;
+
     // Calculates GcBiasMetrics for all METRIC_ACCUMULATION_LEVELs provided
     private GcBiasMetricsCollector multiCollector;
 
@@ -157,6 +165,13 @@ public class CollectGcBiasMetrics extends SinglePassSamProgram {
         IOUtil.assertFileIsWritable(SUMMARY_OUTPUT);
         IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 
+        if (USE_GC_WINDOW_TABLE) {
+            final File tableFile = GC_WINDOW_TABLE != null ? GC_WINDOW_TABLE : GcWindowTable.getDefaultTableFile(REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE);
+            final GcWindowTable gcWindowTable = GcWindowTable.loadOrCreate(REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE, tableFile);
+            multiCollector = new GcBiasMetricsCollector(METRIC_ACCUMULATION_LEVEL, gcWindowTable, header.getReadGroups(), IS_BISULFITE_SEQUENCED, ALSO_IGNORE_DUPLICATES);
+            return;
+        }
+
         //Calculate windowsByGc for the reference sequence
         final int[] windowsByGc = GcBiasUtils.calculateRefWindowsByGc(BINS, REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE);
 
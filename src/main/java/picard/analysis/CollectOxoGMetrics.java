@@ -96,7 +96,7 @@ public class CollectOxoGMetrics extends CommandLineProgram {
             optional = true)
     public File INTERVALS;
 
-    @Argument(doc = "VCF format dbSNP file, used to exclude regions around known polymorphisms from analysis.",
+    @Argument(doc = "VCF format dbSNP file, or a bit set file created from it by CompileDbSnpBitSets, used to exclude regions around known polymorphisms from analysis.",
             optional = true)
     public File DB_SNP;
 
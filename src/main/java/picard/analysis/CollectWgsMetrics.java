@@ -57,6 +57,7 @@ import picard.filter.CountingDuplicateFilter;
 import picard.filter.CountingFilter;
 import picard.filter.CountingMapQFilter;
 import picard.filter.CountingPairedFilter;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -139,6 +140,14 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
     @Argument(doc="Allele fraction for which to calculate theoretical sensitivity.", optional = true)
     public List<Double> ALLELE_FRACTION = new ArrayList<>(Arrays.asList(0.001, 0.005, 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5));
 
+    @Argument(doc="If true, the theoretical sensitivity written to THEORETICAL_SENSITIVITY_OUTPUT is calculated exactly, from " +
+            "the distribution of sums of base qualities, rather than by SAMPLE_SIZE simulations at each depth.", optional = true)
+    public boolean EXACT_THEORETICAL_SENSITIVITY = false;
+
+    @Argument(doc = "The number of threads used to calculate the theoretical sensitivity written to THEORETICAL_SENSITIVITY_OUTPUT. " +
+            "The output is the same for any number. " + ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC, optional = true)
+    public int NUM_PROCESSORS = 1;
+
     @Argument(doc = "If true, fast algorithm is used.")
     public boolean USE_FAST_ALGORITHM = false;
 
@@ -238,7 +247,7 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
             // Write out theoretical sensitivity results.
             final MetricsFile<TheoreticalSensitivityMetrics, ?> theoreticalSensitivityMetrics = getMetricsFile();
             log.info("Calculating theoretical sentitivity at " + ALLELE_FRACTION.size() + " allele fractions.");
-            List<TheoreticalSensitivityMetrics> tsm = TheoreticalSensitivity.calculateSensitivities(SAMPLE_SIZE, collector.getUnfilteredDepthHistogram(), collector.getUnfilteredBaseQHistogram(), ALLELE_FRACTION);
+            List<TheoreticalSensitivityMetrics> tsm = TheoreticalSensitivity.calculateSensitivities(SAMPLE_SIZE, collector.getUnfilteredDepthHistogram(), collector.getUnfilteredBaseQHistogram(), ALLELE_FRACTION, EXACT_THEORETICAL_SENSITIVITY, ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS));
             theoreticalSensitivityMetrics.addAllMetrics(tsm);
             theoreticalSensitivityMetrics.write(THEORETICAL_SENSITIVITY_OUTPUT);
         }
@@ -32,15 +32,14 @@ import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.QualityUtil;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
+import picard.PicardException;
 import picard.metrics.GcBiasMetrics;
 import picard.metrics.MultiLevelCollector;
 import picard.metrics.PerUnitMetricCollector;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.HashMap;
 
 /** Calculates GC Bias Metrics on multiple levels
  *  Created by kbergin on 3/23/15.
@@ -59,6 +58,9 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     private byte [] gc = null;
     private int referenceIndex = -1;
     private byte [] refBases = null;
+    //precomputed gc of every reference window, used instead of gc when provided
+    private final GcWindowTable gcWindowTable;
+    private int gcWindowTableContig = -1;
     private static final Log log = Log.getInstance(GcBiasMetricsCollector.class);
 
     public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
@@ -70,9 +72,27 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
                                   final List<SAMReadGroupRecord> samRgRecords, final int scanWindowSize,
                                   final boolean bisulfite, final boolean ignoreDuplicates) {
+        this(accumulationLevels, windowsByGc, null, samRgRecords, scanWindowSize, bisulfite, ignoreDuplicates);
+    }
+
+    /**
+     * Uses a precomputed GC window table, shared by every unit collector, to look up the GC of each read's window
+     * rather than computing the GC of every window of each contig as reads reach it.
+     */
+    public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final GcWindowTable gcWindowTable,
+                                  final List<SAMReadGroupRecord> samRgRecords, final boolean bisulfite,
+                                  final boolean ignoreDuplicates) {
+        this(accumulationLevels, gcWindowTable.getWindowsByGc(), gcWindowTable, samRgRecords, gcWindowTable.getWindowSize(),
+                bisulfite, ignoreDuplicates);
+    }
+
+    private GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
+                                   final GcWindowTable gcWindowTable, final List<SAMReadGroupRecord> samRgRecords,
+                                   final int scanWindowSize, final boolean bisulfite, final boolean ignoreDuplicates) {
         this.scanWindowSize = scanWindowSize;
         this.bisulfite = bisulfite;
         this.windowsByGc = windowsByGc;
+        this.gcWindowTable = gcWindowTable;
         this.ignoreDuplicates = ignoreDuplicates;
         setup(accumulationLevels, samRgRecords);
     }
@@ -82,7 +102,11 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     /////////////////////////////////////////////////////////////////////////////
     @Override
     protected GcBiasCollectorArgs makeArg(final SAMRecord rec, final ReferenceSequence ref) {
-        return new GcBiasCollectorArgs(rec, ref);
+        // Reads without bases are omitted and unmapped reads are not added to the GC bins, so neither needs the window GC
+        if (rec.getReadUnmappedFlag() || rec.getReadBases().length == 0) {
+            return new GcBiasCollectorArgs(rec, ref, -1, 0);
+        }
+        return computeWindowGc(rec, ref);
     }
 
     /////////////////////////////////////////////////////////////////////////////
@@ -98,12 +122,15 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     //or SAMPLE/LIBRARY/READ_GROUP (depending on aggregation levels)
     /////////////////////////////////////////////////////////////////////////////
     public class PerUnitGcBiasMetricsCollector implements PerUnitMetricCollector<GcBiasMetrics, Integer, GcBiasCollectorArgs> {
-        private final Map<String, GcObject> gcData;
+        private final GcObject gcData;
         // Additional object to store data without duplicates (null if option ALSO_IGNORE_DUPLICATES is not specified)
-        private Map<String, GcObject> gcDataNonDups;
+        private GcObject gcDataNonDups;
         private final String sample;
         private final String library;
         private final String readGroup;
+        // The sample, library or read group name of this unit, and its accumulation level
+        private final String type;
+        private final String group;
         private static final String allReads = "All_Reads";
         final static String ACCUMULATION_LEVEL_ALL_READS = "All Reads";
         final static String ACCUMULATION_LEVEL_LIBRARY = "Library";
@@ -121,9 +148,22 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
             this.sample = sample;
             this.library = library;
             this.readGroup = readGroup;
-            this.gcData = prepareGcData();
+            if (this.readGroup != null) {
+                type = this.readGroup;
+                group = ACCUMULATION_LEVEL_READ_GROUP;
+            } else if (this.library != null) {
+                type = this.library;
+                group = ACCUMULATION_LEVEL_LIBRARY;
+            } else if (this.sample != null) {
+                type = this.sample;
+                group = ACCUMULATION_LEVEL_SAMPLE;
+            } else {
+                type = allReads;
+                group = ACCUMULATION_LEVEL_ALL_READS;
+            }
+            this.gcData = new GcObject();
             if (ignoreDuplicates) {
-                this.gcDataNonDups = prepareGcData();
+                this.gcDataNonDups = new GcObject();
             }
         }
 
@@ -134,27 +174,19 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
         @Override
         public void acceptRecord(final GcBiasCollectorArgs args) {
             final SAMRecord rec = args.getRec();
-            if (logCounter < 100 && rec.getReadBases().length == 0) {
-                log.warn("Omitting read " + rec.getReadName() + " with '*' in SEQ field.");
-                if (++logCounter == 100) {
-                    log.warn("There are more than 100 reads with '*' in SEQ field in file.");
+            if (rec.getReadBases().length == 0) {
+                if (logCounter < 100) {
+                    log.warn("Omitting read " + rec.getReadName() + " with '*' in SEQ field.");
+                    if (++logCounter == 100) {
+                        log.warn("There are more than 100 reads with '*' in SEQ field in file.");
+                    }
                 }
                 return;
             }
             if (!rec.getReadUnmappedFlag()) {
-                if (referenceIndex != rec.getReferenceIndex() || gc == null) {
-                    final ReferenceSequence ref = args.getRef();
-                    refBases = ref.getBases();
-                    StringUtil.toUpperCase(refBases);
-                    final int refLength = refBases.length;
-                    final int lastWindowStart = refLength - scanWindowSize;
-                    gc = GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, scanWindowSize);
-                    referenceIndex = rec.getReferenceIndex();
-                }
-
-                addReadToGcData(rec, this.gcData);
+                addRead(this.gcData, args, group);
                 if (ignoreDuplicates && !rec.getDuplicateReadFlag()) {
-                    addReadToGcData(rec, this.gcDataNonDups);
+                    addRead(this.gcDataNonDups, args, group);
                 }
             } else {
                 updateTotalClusters(rec, this.gcData);
@@ -179,46 +211,8 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
             }
         }
 
-        private void updateTotalClusters(final SAMRecord rec, final Map<String, GcObject> gcData) {
-            for (final Map.Entry<String, GcObject> entry : gcData.entrySet()) {
-                final GcObject gcCur = entry.getValue();
-                if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++gcCur.totalClusters;
-            }
-        }
-
-        private Map<String, GcObject> prepareGcData() {
-            final String prefix;
-            final Map<String, GcObject> gcData = new HashMap<>();
-            if (this.readGroup != null) {
-                prefix = this.readGroup;
-            } else if (this.library != null) {
-                prefix = this.library;
-            } else if (this.sample != null) {
-                prefix = this.sample;
-            } else {
-                prefix = allReads;
-            }
-            gcData.put(prefix, new GcObject());
-            return gcData;
-        }
-
-        private void addReadToGcData(final SAMRecord rec, final Map<String, GcObject> gcData) {
-            final String type;
-            String group;
-            if (this.readGroup != null) {
-                type = this.readGroup;
-                group = ACCUMULATION_LEVEL_READ_GROUP;
-            } else if (this.library != null) {
-                type = this.library;
-                group = ACCUMULATION_LEVEL_LIBRARY;
-            } else if (this.sample != null) {
-                type = this.sample;
-                group = ACCUMULATION_LEVEL_SAMPLE;
-            } else {
-                type = allReads;
-                group = ACCUMULATION_LEVEL_ALL_READS;
-            }
-            addRead(gcData.get(type), rec, group, gc, refBases);
+        private void updateTotalClusters(final SAMRecord rec, final GcObject gcCur) {
+            if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++gcCur.totalClusters;
         }
 
         /////////////////////////////////////////////////////////////////////////////
@@ -234,75 +228,72 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
             return total;
         }
 
-        private void addGcDataToFile(final MetricsFile<GcBiasMetrics, Integer> file, final Map<String, GcObject> gcData,
+        private void addGcDataToFile(final MetricsFile<GcBiasMetrics, Integer> file, final GcObject gcCur,
                                      final boolean includeDuplicates) {
-            for (final Map.Entry<String, GcObject> entry : gcData.entrySet()) {
-                final GcObject gcCur = entry.getValue();
-                final String gcType = entry.getKey();
-
-                final int[] readsByGc = gcCur.readsByGc;
-                final long[] errorsByGc = gcCur.errorsByGc;
-                final long[] basesByGc = gcCur.basesByGc;
-                final long totalClusters = gcCur.totalClusters;
-                final long totalAlignedReads = gcCur.totalAlignedReads;
-                final String group = gcCur.group;
-
-                final GcBiasMetrics metrics = new GcBiasMetrics();
-
-                final double totalWindows = sum(windowsByGc);
-                final double totalReads = sum(readsByGc);
-                final double meanReadsPerWindow = totalReads / totalWindows;
-
-                if (totalAlignedReads > 0) {
-                    for (int i = 0; i < windowsByGc.length; ++i) {
-                        final GcBiasDetailMetrics detail = new GcBiasDetailMetrics();
-                        detail.GC = i;
-                        detail.WINDOWS = windowsByGc[i];
-                        detail.READ_STARTS = readsByGc[i];
-                        if (errorsByGc[i] > 0) {
-                            detail.MEAN_BASE_QUALITY = QualityUtil.getPhredScoreFromObsAndErrors(basesByGc[i], errorsByGc[i]);
-                        }
-                        if (windowsByGc[i] != 0) {
-                            detail.NORMALIZED_COVERAGE = (detail.READ_STARTS / (double) detail.WINDOWS) / meanReadsPerWindow;
-                            detail.ERROR_BAR_WIDTH = (Math.sqrt(detail.READ_STARTS) / (double) detail.WINDOWS) / meanReadsPerWindow;
-                        } else {
-                            detail.NORMALIZED_COVERAGE = 0;
-                            detail.ERROR_BAR_WIDTH = 0;
-                        }
-                        detail.ACCUMULATION_LEVEL = group;
-                        if (group.equals(ACCUMULATION_LEVEL_READ_GROUP)) {detail.READ_GROUP = gcType;}
-                        else if (group.equals(ACCUMULATION_LEVEL_SAMPLE)) {detail.SAMPLE = gcType;}
-                        else if (group.equals(ACCUMULATION_LEVEL_LIBRARY)) {detail.LIBRARY = gcType;}
-
-                        detail.READS_USED = includeDuplicates ? READS_USED_ALL : READS_USED_UNIQUE;
-
-                        metrics.DETAILS.addMetric(detail);
+            final String gcType = type;
+
+            final int[] readsByGc = gcCur.readsByGc;
+            final long[] errorsByGc = gcCur.errorsByGc;
+            final long[] basesByGc = gcCur.basesByGc;
+            final long totalClusters = gcCur.totalClusters;
+            final long totalAlignedReads = gcCur.totalAlignedReads;
+            final String group = gcCur.group;
+
+            final GcBiasMetrics metrics = new GcBiasMetrics();
+
+            final double totalWindows = sum(windowsByGc);
+            final double totalReads = sum(readsByGc);
+            final double meanReadsPerWindow = totalReads / totalWindows;
+
+            if (totalAlignedReads > 0) {
+                for (int i = 0; i < windowsByGc.length; ++i) {
+                    final GcBiasDetailMetrics detail = new GcBiasDetailMetrics();
+                    detail.GC = i;
+                    detail.WINDOWS = windowsByGc[i];
+                    detail.READ_STARTS = readsByGc[i];
+                    if (errorsByGc[i] > 0) {
+                        detail.MEAN_BASE_QUALITY = QualityUtil.getPhredScoreFromObsAndErrors(basesByGc[i], errorsByGc[i]);
+                    }
+                    if (windowsByGc[i] != 0) {
+                        detail.NORMALIZED_COVERAGE = (detail.READ_STARTS / (double) detail.WINDOWS) / meanReadsPerWindow;
+                        detail.ERROR_BAR_WIDTH = (Math.sqrt(detail.READ_STARTS) / (double) detail.WINDOWS) / meanReadsPerWindow;
+                    } else {
+                        detail.NORMALIZED_COVERAGE = 0;
+                        detail.ERROR_BAR_WIDTH = 0;
                     }
+                    detail.ACCUMULATION_LEVEL = group;
+                    if (group.equals(ACCUMULATION_LEVEL_READ_GROUP)) {detail.READ_GROUP = gcType;}
+                    else if (group.equals(ACCUMULATION_LEVEL_SAMPLE)) {detail.SAMPLE = gcType;}
+                    else if (group.equals(ACCUMULATION_LEVEL_LIBRARY)) {detail.LIBRARY = gcType;}
 
-                    // Synthesize the high level summary metrics
-                    final GcBiasSummaryMetrics summary = new GcBiasSummaryMetrics();
-                    if (group.equals(ACCUMULATION_LEVEL_READ_GROUP)) {summary.READ_GROUP = gcType;}
-                    else if (group.equals(ACCUMULATION_LEVEL_SAMPLE)) {summary.SAMPLE = gcType;}
-                    else if (group.equals(ACCUMULATION_LEVEL_LIBRARY)) {summary.LIBRARY = gcType;}
+                    detail.READS_USED = includeDuplicates ? READS_USED_ALL : READS_USED_UNIQUE;
 
-                    summary.READS_USED = includeDuplicates ? READS_USED_ALL : READS_USED_UNIQUE;
+                    metrics.DETAILS.addMetric(detail);
+                }
 
-                    summary.ACCUMULATION_LEVEL = group;
-                    summary.WINDOW_SIZE = scanWindowSize;
-                    summary.TOTAL_CLUSTERS = totalClusters;
-                    summary.ALIGNED_READS = totalAlignedReads;
-                    summary.GC_NC_0_19 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 0, 19);
-                    summary.GC_NC_20_39 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 20, 39);
-                    summary.GC_NC_40_59 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 40, 59);
-                    summary.GC_NC_60_79 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 60, 79);
-                    summary.GC_NC_80_100 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 80, 100);
+                // Synthesize the high level summary metrics
+                final GcBiasSummaryMetrics summary = new GcBiasSummaryMetrics();
+                if (group.equals(ACCUMULATION_LEVEL_READ_GROUP)) {summary.READ_GROUP = gcType;}
+                else if (group.equals(ACCUMULATION_LEVEL_SAMPLE)) {summary.SAMPLE = gcType;}
+                else if (group.equals(ACCUMULATION_LEVEL_LIBRARY)) {summary.LIBRARY = gcType;}
 
-                    calculateDropoutMetrics(metrics.DETAILS.getMetrics(), summary);
+                summary.READS_USED = includeDuplicates ? READS_USED_ALL : READS_USED_UNIQUE;
 
-                    metrics.SUMMARY = summary;
+                summary.ACCUMULATION_LEVEL = group;
+                summary.WINDOW_SIZE = scanWindowSize;
+                summary.TOTAL_CLUSTERS = totalClusters;
+                summary.ALIGNED_READS = totalAlignedReads;
+                summary.GC_NC_0_19 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 0, 19);
+                summary.GC_NC_20_39 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 20, 39);
+                summary.GC_NC_40_59 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 40, 59);
+                summary.GC_NC_60_79 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 60, 79);
+                summary.GC_NC_80_100 = calculateGcNormCoverage(meanReadsPerWindow, readsByGc, 80, 100);
 
-                    file.addMetric(metrics);
-                }
+                calculateDropoutMetrics(metrics.DETAILS.getMetrics(), summary);
+
+                metrics.SUMMARY = summary;
+
+                file.addMetric(metrics);
             }
         }
     }
@@ -376,24 +367,53 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     //Adds each read to the appropriate gcObj which is determined in acceptRecord above
     //Also calculates values for calculating GC Bias at each level
     /////////////////////////////////////////////////////////////////////////////
-     private void addRead(final GcObject gcObj, final SAMRecord rec, final String group, final byte[] gc, final byte[] refBases) {
+    private void addRead(final GcObject gcObj, final GcBiasCollectorArgs args, final String group) {
+        final SAMRecord rec = args.getRec();
         if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++gcObj.totalClusters;
-        final int pos = rec.getReadNegativeStrandFlag() ? rec.getAlignmentEnd() - scanWindowSize : rec.getAlignmentStart();
         ++gcObj.totalAlignedReads;
-        if (pos > 0) {
-            final int windowGc = gc[pos];
-            if (windowGc >= 0) {
-                ++gcObj.readsByGc[windowGc];
-                gcObj.basesByGc[windowGc] += rec.getReadLength();
-                gcObj.errorsByGc[windowGc] +=
-                        SequenceUtil.countMismatches(rec, refBases, bisulfite) +
-                                SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
-            }
+        final int windowGc = args.getWindowGc();
+        if (windowGc >= 0) {
+            ++gcObj.readsByGc[windowGc];
+            gcObj.basesByGc[windowGc] += rec.getReadLength();
+            gcObj.errorsByGc[windowGc] += args.getErrors();
         }
         if (gcObj.group == null) {
             gcObj.group = group;
         }
     }
+
+    /////////////////////////////////////////////////////////////////////////////
+    //Looks up the GC of the read's window and counts its errors once per read;
+    //the result is shared by every unit collector the read is passed to
+    /////////////////////////////////////////////////////////////////////////////
+    private GcBiasCollectorArgs computeWindowGc(final SAMRecord rec, final ReferenceSequence ref) {
+        if (referenceIndex != rec.getReferenceIndex() || refBases == null) {
+            refBases = ref.getBases();
+            StringUtil.toUpperCase(refBases);
+            if (gcWindowTable != null) {
+                gcWindowTableContig = gcWindowTable.getContigIndex(rec.getReferenceName());
+                if (gcWindowTableContig == -1) {
+                    throw new PicardException("Contig " + rec.getReferenceName() + " is not in the GC window table.");
+                }
+            } else {
+                final int lastWindowStart = refBases.length - scanWindowSize;
+                gc = GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, scanWindowSize);
+            }
+            referenceIndex = rec.getReferenceIndex();
+        }
+
+        final int pos = rec.getReadNegativeStrandFlag() ? rec.getAlignmentEnd() - scanWindowSize : rec.getAlignmentStart();
+        int windowGc = -1;
+        long errors = 0;
+        if (pos > 0) {
+            windowGc = gcWindowTable != null ? gcWindowTable.getGc(gcWindowTableContig, pos) : gc[pos];
+            if (windowGc >= 0) {
+                errors = SequenceUtil.countMismatches(rec, refBases, bisulfite) +
+                        SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
+            }
+        }
+        return new GcBiasCollectorArgs(rec, ref, windowGc, errors);
+    }
 }
 
 /////////////////////////////////////////////////////////////////////////////
@@ -403,10 +423,17 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
 class GcBiasCollectorArgs {
     private final SAMRecord rec;
     private final ReferenceSequence ref;
+    // The GC of the read's window (-1 if it has none) and its error count
+    private final int windowGc;
+    private final long errors;
     public SAMRecord getRec() {return rec;}
     public ReferenceSequence getRef() {return ref;}
-    public GcBiasCollectorArgs(final SAMRecord rec, final ReferenceSequence ref) {
+    public int getWindowGc() {return windowGc;}
+    public long getErrors() {return errors;}
+    public GcBiasCollectorArgs(final SAMRecord rec, final ReferenceSequence ref, final int windowGc, final long errors) {
         this.rec = rec;
         this.ref = ref;
+        this.windowGc = windowGc;
+        this.errors = errors;
     }
 }
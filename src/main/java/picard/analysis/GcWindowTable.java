@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.analysis;
+
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.StringUtil;
+import picard.PicardException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The GC content of every scanning window of a reference, as computed by GcBiasUtils.calculateAllGcs(), together with
+ * the genome-wide count of windows at each GC (GcBiasUtils.calculateRefWindowsByGc()).  The table only depends on the
+ * reference and the window size, so it can be written once next to the FASTA and memory-mapped by every later run
+ * instead of being recomputed from the reference bases.
+ * <p/>
+ * The file holds one byte per reference position for each contig, followed by a directory of the contigs and the
+ * windows-by-GC histogram.  The size and modification time of the FASTA are recorded so that a table built from a
+ * different version of the reference is rebuilt rather than used.
+ */
+public class GcWindowTable {
+    private static final Log log = Log.getInstance(GcWindowTable.class);
+
+    /** Extension appended to the reference path, after the window size, to name the default table file. */
+    public static final String FILE_EXTENSION = ".gcwindows";
+
+    private static final int MAGIC = 0x50474357; // "PGCW"
+    private static final int VERSION = 1;
+    private static final int BINS = 101;
+    // magic, version, window size, reference length and reference modification time
+    private static final long HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+
+    private final int windowSize;
+    private final int[] windowsByGc;
+    private final String[] contigNames;
+    private final ByteBuffer[] gcByContig;
+    private final Map<String, Integer> contigIndices = new HashMap<>();
+
+    private GcWindowTable(final int windowSize, final int[] windowsByGc, final List<String> contigNames, final List<ByteBuffer> gcByContig) {
+        this.windowSize = windowSize;
+        this.windowsByGc = windowsByGc;
+        this.contigNames = contigNames.toArray(new String[0]);
+        this.gcByContig = gcByContig.toArray(new ByteBuffer[0]);
+        for (int i = 0; i < this.contigNames.length; ++i) {
+            contigIndices.put(this.contigNames[i], i);
+        }
+    }
+
+    /** The default location of the table for the given reference and window size: next to the reference. */
+    public static File getDefaultTableFile(final File referenceSequence, final int windowSize) {
+        return new File(referenceSequence.getAbsolutePath() + ".gc" + windowSize + FILE_EXTENSION);
+    }
+
+    /**
+     * Memory-maps the table at tableFile if it exists and was built from referenceSequence with the same window size.
+     * Otherwise the table is computed and written to tableFile so later runs can share it; if that is not possible it
+     * is kept in memory for this run only.
+     */
+    public static GcWindowTable loadOrCreate(final File referenceSequence, final int windowSize, final File tableFile) {
+        if (tableFile.exists()) {
+            final GcWindowTable table = load(tableFile, referenceSequence, windowSize);
+            if (table != null) return table;
+            log.info("GC window table " + tableFile + " does not match " + referenceSequence + " with window size " + windowSize + "; rebuilding it.");
+        }
+
+        final File dir = tableFile.getAbsoluteFile().getParentFile();
+        if (dir == null || !dir.canWrite()) {
+            log.warn("Cannot write GC window table to " + tableFile + "; it will be kept in memory for this run only.");
+            return compute(referenceSequence, windowSize);
+        }
+
+        log.info("Writing GC window table for " + referenceSequence + " to " + tableFile);
+        File tmp = null;
+        try {
+            // Write to a temporary file first so that concurrent runs never see a partial table.
+            tmp = File.createTempFile(tableFile.getName(), ".tmp", dir);
+            write(referenceSequence, windowSize, tmp);
+            try {
+                Files.move(tmp.toPath(), tableFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                Files.move(tmp.toPath(), tableFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing GC window table " + tableFile, e);
+        } finally {
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                log.warn("Could not delete temporary file " + tmp);
+            }
+        }
+
+        final GcWindowTable table = load(tableFile, referenceSequence, windowSize);
+        if (table == null) throw new PicardException("GC window table " + tableFile + " could not be read back after writing it.");
+        return table;
+    }
+
+    /** Computes the table for the given reference and window size in memory. */
+    public static GcWindowTable compute(final File referenceSequence, final int windowSize) {
+        final int[] windowsByGc = new int[BINS];
+        final List<String> names = new ArrayList<>();
+        final List<ByteBuffer> gcs = new ArrayList<>();
+        final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(referenceSequence);
+        try {
+            ReferenceSequence ref;
+            while ((ref = refFile.nextSequence()) != null) {
+                names.add(ref.getName());
+                gcs.add(ByteBuffer.wrap(calculateGcs(ref, windowSize, windowsByGc)));
+            }
+        } finally {
+            CloserUtil.close(refFile);
+        }
+        return new GcWindowTable(windowSize, windowsByGc, names, gcs);
+    }
+
+    /** Computes the table for the given reference and window size and writes it to tableFile. */
+    public static void write(final File referenceSequence, final int windowSize, final File tableFile) throws IOException {
+        final int[] windowsByGc = new int[BINS];
+        final List<String> names = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+
+        final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(referenceSequence);
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tableFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(windowSize);
+            out.writeLong(referenceSequence.length());
+            out.writeLong(referenceSequence.lastModified());
+
+            ReferenceSequence ref;
+            while ((ref = refFile.nextSequence()) != null) {
+                final byte[] gc = calculateGcs(ref, windowSize, windowsByGc);
+                names.add(ref.getName());
+                lengths.add(gc.length);
+                out.write(gc);
+            }
+
+            // DataOutputStream.size() saturates at Integer.MAX_VALUE, so offsets are accumulated from the lengths.
+            long offset = HEADER_SIZE;
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); ++i) {
+                out.writeUTF(names.get(i));
+                out.writeInt(lengths.get(i));
+                out.writeLong(offset);
+                offset += lengths.get(i);
+            }
+            for (final int windows : windowsByGc) {
+                out.writeInt(windows);
+            }
+            out.writeLong(offset);
+        } finally {
+            CloserUtil.close(refFile);
+        }
+    }
+
+    /**
+     * Memory-maps a table file.
+     *
+     * @return the table, or null if it was built from a different reference or window size.
+     */
+    static GcWindowTable load(final File tableFile, final File referenceSequence, final int windowSize) {
+        try (final RandomAccessFile raf = new RandomAccessFile(tableFile, "r");
+             final FileChannel channel = raf.getChannel()) {
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new PicardException(tableFile + " is not a GC window table.");
+            }
+            if (raf.readInt() != windowSize ||
+                    raf.readLong() != referenceSequence.length() ||
+                    raf.readLong() != referenceSequence.lastModified()) {
+                return null;
+            }
+
+            raf.seek(raf.length() - Long.BYTES);
+            channel.position(raf.readLong());
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            final int numContigs = in.readInt();
+            final List<String> names = new ArrayList<>(numContigs);
+            final List<ByteBuffer> gcs = new ArrayList<>(numContigs);
+            for (int i = 0; i < numContigs; ++i) {
+                names.add(in.readUTF());
+                final int length = in.readInt();
+                final long offset = in.readLong();
+                // The mapping stays valid after the channel is closed.
+                gcs.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+            }
+            final int[] windowsByGc = new int[BINS];
+            for (int i = 0; i < BINS; ++i) {
+                windowsByGc[i] = in.readInt();
+            }
+            return new GcWindowTable(windowSize, windowsByGc, names, gcs);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading GC window table " + tableFile, e);
+        }
+    }
+
+    /** Calculates the per-position GC of one contig and adds its windows to windowsByGc. */
+    private static byte[] calculateGcs(final ReferenceSequence ref, final int windowSize, final int[] windowsByGc) {
+        final byte[] refBases = ref.getBases();
+        StringUtil.toUpperCase(refBases);
+        final int lastWindowStart = refBases.length - windowSize;
+        final byte[] gc = GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, windowSize);
+        for (int i = 1; i < lastWindowStart; ++i) {
+            if (gc[i] != -1) windowsByGc[gc[i]]++;
+        }
+        return gc;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /** Returns a copy of the number of windows in the reference at each GC from 0 to 100. */
+    public int[] getWindowsByGc() {
+        return Arrays.copyOf(windowsByGc, windowsByGc.length);
+    }
+
+    public int getNumContigs() {
+        return contigNames.length;
+    }
+
+    /** Returns the index of the named contig in the table, or -1 if the reference has no such contig. */
+    public int getContigIndex(final String contigName) {
+        final Integer index = contigIndices.get(contigName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the GC (0-100) of the window starting at the 1-based position on the given contig, or -1 if the window
+     * contains too many no-calls.  Positions in the last window of a contig have a GC of 0, as in
+     * GcBiasUtils.calculateAllGcs().
+     */
+    public int getGc(final int contigIndex, final int position) {
+        return gcByContig[contigIndex].get(position);
+    }
+}
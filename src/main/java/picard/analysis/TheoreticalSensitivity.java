@@ -31,8 +31,14 @@ import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 import picard.PicardException;
 import picard.util.MathUtil;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -79,23 +85,23 @@ public class TheoreticalSensitivity {
 
         //qualitySums[m] is a random sample of sums of m quality scores, for m = 0, 1, N - 1
         if (withLogging) log.info("Calculating quality sums from quality sampler");
-        final List<ArrayList<Integer>> qualitySums = qualitySampler.sampleCumulativeSums(N, sampleSize, withLogging);
+        final int[][] qualitySums = qualitySampler.sampleCumulativeSumArrays(N, sampleSize, withLogging);
 
         //if a quality sum of m qualities exceeds the quality sum threshold for n total reads, a SNP is called
-        final ArrayList<Double> qualitySumThresholds = new ArrayList<>(N);
+        final double[] qualitySumThresholds = new double[N];
         final double LOG_10 = Math.log10(2);
 
-        for (int n = 0; n < N; n++) qualitySumThresholds.add(10 * (n * LOG_10 + logOddsThreshold));
+        for (int n = 0; n < N; n++) qualitySumThresholds[n] = 10 * (n * LOG_10 + logOddsThreshold);
 
         //probabilityToExceedThreshold[m][n] is the probability that the sum of m quality score
         //exceeds the nth quality sum threshold
         if (withLogging) log.info("Calculating theoretical het sensitivity");
-        final List<ArrayList<Double>> probabilityToExceedThreshold = proportionsAboveThresholds(qualitySums, qualitySumThresholds);
-        final List<ArrayList<Double>> altDepthDistribution = hetAltDepthDistribution(N);
+        final double[][] probabilityToExceedThreshold = proportionsAboveThresholds(qualitySums, qualitySumThresholds);
+        final double[][] altDepthDistribution = hetAltDepthDistributionArray(N);
         double result = 0.0;
         for (int n = 0; n < N; n++) {
             for (int m = 0; m <= n; m++) {
-                result += depthDistribution[n] * altDepthDistribution.get(n).get(m) * probabilityToExceedThreshold.get(m).get(n);
+                result += depthDistribution[n] * altDepthDistribution[n][m] * probabilityToExceedThreshold[m][n];
             }
         }
         return result;
@@ -103,18 +109,33 @@ public class TheoreticalSensitivity {
 
     //given L lists of lists and N thresholds, count the proportion of each list above each threshold
     public static List<ArrayList<Double>> proportionsAboveThresholds(final List<ArrayList<Integer>> lists, final List<Double> thresholds) {
-        final ArrayList<ArrayList<Double>> result = new ArrayList<>();
+        final int[][] samples = lists.stream().map(list -> list.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+        final double[][] proportions = proportionsAboveThresholds(samples, thresholds.stream().mapToDouble(Double::doubleValue).toArray());
+
+        final List<ArrayList<Double>> result = new ArrayList<>(proportions.length);
+        for (int i = 0; i < proportions.length; i++) {
+            // The lists are sorted in place, as the samples are.
+            for (int j = 0; j < samples[i].length; j++) lists.get(i).set(j, samples[i][j]);
+            result.add(Arrays.stream(proportions[i]).boxed().collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return result;
+    }
 
-        for (final ArrayList<Integer> list : lists) {
-            final ArrayList<Double> newRow = new ArrayList<>(Collections.nCopies(thresholds.size(), 0.0));
-            Collections.sort(list);
+    //given L samples and N thresholds, count the proportion of each sample above each threshold.
+    //The samples are sorted in place.
+    static double[][] proportionsAboveThresholds(final int[][] samples, final double[] thresholds) {
+        final double[][] result = new double[samples.length][];
+        for (int i = 0; i < samples.length; i++) {
+            final int[] sample = samples[i];
+            final double[] newRow = new double[thresholds.length];
+            Arrays.sort(sample);
             int n = 0;
             int j = 0;  //index within the ordered sample
-            while (n < thresholds.size() && j < list.size()) {
-                if (thresholds.get(n) > list.get(j)) j++;
-                else newRow.set(n++, (double) (list.size() - j) / list.size());
+            while (n < thresholds.length && j < sample.length) {
+                if (thresholds[n] > sample[j]) j++;
+                else newRow[n++] = (double) (sample.length - j) / sample.length;
             }
-            result.add(newRow);
+            result[i] = newRow;
         }
         return result;
     }
@@ -122,17 +143,23 @@ public class TheoreticalSensitivity {
     //Utility function for making table of binomial distribution probabilities nCm * (0.5)^n
     //for n = 0, 1 . . . N - 1 and m = 0, 1. . . n
     public static List<ArrayList<Double>> hetAltDepthDistribution(final int N) {
-        final List<ArrayList<Double>> table = new ArrayList<>();
+        return Arrays.stream(hetAltDepthDistributionArray(N))
+                .map(row -> Arrays.stream(row).boxed().collect(Collectors.toCollection(ArrayList::new)))
+                .collect(Collectors.toList());
+    }
+
+    static double[][] hetAltDepthDistributionArray(final int N) {
+        final double[][] table = new double[N][];
         for (int n = 0; n < N; n++) {
-            final ArrayList<Double> nthRow = new ArrayList<>();
+            final double[] nthRow = new double[n + 1];
 
             //add the 0th element, then elements 1 through n - 1, then the nth.
             //Note that nCm = (n-1)C(m-1) * (n/m)
-            nthRow.add(Math.pow(0.5, n));
-            for (int m = 1; m < n; m++) nthRow.add((n * 0.5 / m) * table.get(n - 1).get(m - 1));
-            if (n > 0) nthRow.add(nthRow.get(0));
+            nthRow[0] = Math.pow(0.5, n);
+            for (int m = 1; m < n; m++) nthRow[m] = (n * 0.5 / m) * table[n - 1][m - 1];
+            if (n > 0) nthRow[n] = nthRow[0];
 
-            table.add(nthRow);
+            table[n] = nthRow;
         }
         return table;
     }
@@ -144,24 +171,28 @@ public class TheoreticalSensitivity {
     which works well when the ratio of maximum weight to average weight is not large.
      */
     public static class RouletteWheel {
-        final private List<Double> probabilities;
+        final private double[] probabilities;
         final private int N;
         private int count = 0;
         private Random rng;
 
         RouletteWheel(final double[] weights) {
-            rng = new Random(RANDOM_SEED);
+            this(weights, RANDOM_SEED);
+        }
+
+        RouletteWheel(final double[] weights, final long randomSeed) {
+            rng = new Random(randomSeed);
             N = weights.length;
 
-            probabilities = new ArrayList<>();
             final double wMax = MathUtil.max(weights);
 
             if (wMax == 0) {
                 throw new PicardException("Quality score distribution is empty.");
             }
 
-            for (final double w : weights) {
-                probabilities.add(w / wMax);
+            probabilities = new double[N];
+            for (int i = 0; i < N; i++) {
+                probabilities[i] = weights[i] / wMax;
             }
         }
 
@@ -169,7 +200,7 @@ public class TheoreticalSensitivity {
             while (true) {
                 final int n = (int) (N * rng.nextDouble());
                 count++;
-                if (rng.nextDouble() < probabilities.get(n)) {
+                if (rng.nextDouble() < probabilities[n]) {
                     count = 0;
                     return n;
                 } else if (count >= SAMPLING_MAX) {
@@ -181,13 +212,19 @@ public class TheoreticalSensitivity {
 
         //get samples of sums of 0, 1, 2,. . .  N - 1 draws
         public List<ArrayList<Integer>> sampleCumulativeSums(final int maxNumberOfSummands, final int sampleSize, final boolean withLogging) {
-            final List<ArrayList<Integer>> result = new ArrayList<>();
-            for (int m = 0; m < maxNumberOfSummands; m++) result.add(new ArrayList<>());
+            return Arrays.stream(sampleCumulativeSumArrays(maxNumberOfSummands, sampleSize, withLogging))
+                    .map(sums -> Arrays.stream(sums).boxed().collect(Collectors.toCollection(ArrayList::new)))
+                    .collect(Collectors.toList());
+        }
+
+        //get samples of sums of 0, 1, 2,. . .  N - 1 draws; result[m][i] is the ith sample of the sum of m draws
+        int[][] sampleCumulativeSumArrays(final int maxNumberOfSummands, final int sampleSize, final boolean withLogging) {
+            final int[][] result = new int[maxNumberOfSummands][sampleSize];
 
             for (int iteration = 0; iteration < sampleSize; iteration++) {
                 int cumulativeSum = 0;
                 for (int m = 0; m < maxNumberOfSummands; m++) {
-                    result.get(m).add(cumulativeSum);
+                    result[m][iteration] = cumulativeSum;
                     cumulativeSum += draw();
                 }
                 if (withLogging && iteration % 1000 == 0) {
@@ -244,20 +281,28 @@ public class TheoreticalSensitivity {
      * @return Theoretical sensitivity for the given arguments at a constant depth.
      */
     public static double sensitivityAtConstantDepth(final int depth, final Histogram<Integer> qualityHistogram, final double logOddsThreshold, final int sampleSize, final double alleleFraction, final long randomSeed) {
+        return sensitivityAtConstantDepth(depth, trimDistribution(normalizeHistogram(qualityHistogram)), qualityHistogram.getMean(),
+                qualityHistogram.getStandardDeviation(), logOddsThreshold, sampleSize, alleleFraction, randomSeed);
+    }
+
+    /**
+     * Calculates the theoretical sensitivity at a constant depth from a quality distribution that has already been
+     * normalized and trimmed, so that it can be shared by the simulations at many depths.  Each call draws from its
+     * own random number generators, seeded by randomSeed, so calls can run concurrently and still be reproducible.
+     */
+    private static double sensitivityAtConstantDepth(final int depth, final double[] qualityDistribution, final double averageQuality,
+                                                     final double standardDeviationQuality, final double logOddsThreshold,
+                                                     final int sampleSize, final double alleleFraction, final long randomSeed) {
         // If the depth is 0 at a particular locus, the sensitivity is trivially 0.0.
         if (depth == 0) {
             return 0.0;
         }
 
-        final RouletteWheel qualityRW = new RouletteWheel(trimDistribution(normalizeHistogram(qualityHistogram)));
+        final RouletteWheel qualityRW = new RouletteWheel(qualityDistribution, randomSeed);
         final Random randomNumberGenerator = new Random(randomSeed);
         final RandomGenerator rg = new Well19937c(randomSeed);
         final BinomialDistribution bd = new BinomialDistribution(rg, depth, alleleFraction);
 
-        // Calculate mean and deviation of quality score distribution to enable Gaussian sampling below
-        final double averageQuality = qualityHistogram.getMean();
-        final double standardDeviationQuality = qualityHistogram.getStandardDeviation();
-
         int calledVariants = 0;
         // Sample simulated variants, and count the number that would get called.  The ratio
         // of the number called to the total sampleSize is the sensitivity.
@@ -296,17 +341,70 @@ public class TheoreticalSensitivity {
     }
 
     /**
-     * Calculates the theoretical sensitivity with a given Phred-scaled quality score distribution at a constant
-     * depth.
+     * Calculates the theoretical sensitivity at a constant depth exactly, rather than by simulation.  The probability
+     * that a variant is called is summed over the binomial distribution of alt depths, using the exact distribution of
+     * the sum of the alt base qualities.
      * @param depth Depth to compute sensitivity at
      * @param qualityHistogram Phred-scaled quality score histogram
      * @param logOddsThreshold Log odds threshold necessary for variant to be called
-     * @param sampleSize the total number of simulations to run
      * @param alleleFraction the allele fraction to evaluate sensitivity at
      * @return Theoretical sensitivity for the given arguments at a constant depth.
      */
-    private static double sensitivityAtConstantDepth(final int depth, final Histogram<Integer> qualityHistogram, final double logOddsThreshold, final int sampleSize, final double alleleFraction) {
-        return sensitivityAtConstantDepth(depth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction, RANDOM_SEED);
+    public static double exactSensitivityAtConstantDepth(final int depth, final Histogram<Integer> qualityHistogram, final double logOddsThreshold, final double alleleFraction) {
+        return exactSensitivities(new int[]{depth}, trimDistribution(normalizeHistogram(qualityHistogram)), logOddsThreshold, alleleFraction)[0];
+    }
+
+    /**
+     * Calculates the exact sensitivity at each of the given depths.  The distribution of the sum of m base qualities is
+     * the m-fold convolution of the quality distribution; it is built up one convolution at a time, and the
+     * probability that it exceeds the calling threshold is added to the sensitivity at every depth, weighted by the
+     * probability of m alt reads at that depth.
+     */
+    static double[] exactSensitivities(final int[] depths, final double[] qualityDistribution, final double logOddsThreshold, final double alleleFraction) {
+        final double[] sensitivities = new double[depths.length];
+        final int maxDepth = Arrays.stream(depths).max().orElse(0);
+        if (maxDepth == 0 || qualityDistribution.length == 0) {
+            return sensitivities;
+        }
+
+        final BinomialDistribution[] altDepthDistributions = new BinomialDistribution[depths.length];
+        for (int i = 0; i < depths.length; i++) {
+            altDepthDistributions[i] = new BinomialDistribution(null, depths[i], alleleFraction);
+        }
+
+        // qualitySumDistribution[s] is the probability that the sum of altDepth base qualities is s.
+        double[] qualitySumDistribution = {1.0};
+        for (int altDepth = 1; altDepth <= maxDepth; altDepth++) {
+            qualitySumDistribution = convolve(qualitySumDistribution, qualityDistribution);
+
+            // probabilityAbove[s] is the probability that the sum of qualities is at least s.
+            final double[] probabilityAbove = new double[qualitySumDistribution.length + 1];
+            for (int s = qualitySumDistribution.length - 1; s >= 0; s--) {
+                probabilityAbove[s] = probabilityAbove[s + 1] + qualitySumDistribution[s];
+            }
+
+            for (int i = 0; i < depths.length; i++) {
+                if (altDepth > depths[i]) continue;
+                final double threshold = 10.0 * (altDepth * -Math.log10(alleleFraction) + (depths[i] - altDepth) * -Math.log10(1.0 - alleleFraction) + logOddsThreshold);
+                // isCalled() requires the sum to be strictly above the threshold.
+                final int minimumCalledSum = threshold < 0 ? 0 : (int) Math.floor(threshold) + 1;
+                if (minimumCalledSum < probabilityAbove.length) {
+                    sensitivities[i] += altDepthDistributions[i].probability(altDepth) * Math.min(1.0, probabilityAbove[minimumCalledSum]);
+                }
+            }
+        }
+        return sensitivities;
+    }
+
+    private static double[] convolve(final double[] a, final double[] b) {
+        final double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += a[i] * b[j];
+            }
+        }
+        return result;
     }
 
     /**
@@ -321,35 +419,105 @@ public class TheoreticalSensitivity {
      */
     public static double theoreticalSensitivity(final Histogram<Integer> depthHistogram, final Histogram<Integer> qualityHistogram,
                                                 final int sampleSize, final double logOddsThreshold, final double alleleFraction) {
+        return submitTheoreticalSensitivity(depthHistogram, qualityHistogram, sampleSize, logOddsThreshold, alleleFraction, Runnable::run).get();
+    }
+
+    /**
+     * Submits the simulation at each bin depth of the depth histogram to the executor, and returns a supplier of the
+     * sensitivity integrated over the depth distribution, which waits for the simulations.  Each simulation is seeded
+     * from its depth, so the result does not depend on how many threads run them or in which order.
+     */
+    private static Supplier<Double> submitTheoreticalSensitivity(final Histogram<Integer> depthHistogram, final Histogram<Integer> qualityHistogram,
+                                                                 final int sampleSize, final double logOddsThreshold,
+                                                                 final double alleleFraction, final Executor executor) {
+        if (alleleFraction > 1.0 || alleleFraction < 0.0) {
+            throw new IllegalArgumentException("Allele fractions must be between 0 and 1.");
+        }
+
+        final DepthBins depthBins = new DepthBins(normalizeHistogram(depthHistogram));
+        final double[] qualityDistribution = trimDistribution(normalizeHistogram(qualityHistogram));
+        final double averageQuality = qualityHistogram.getMean();
+        final double standardDeviationQuality = qualityHistogram.getStandardDeviation();
+        final List<CompletableFuture<Double>> sensitivities = Arrays.stream(depthBins.depths)
+                .mapToObj(depth -> CompletableFuture.supplyAsync(() -> sensitivityAtConstantDepth(depth, qualityDistribution,
+                        averageQuality, standardDeviationQuality, logOddsThreshold, sampleSize, alleleFraction, seedForDepth(depth)), executor))
+                .collect(Collectors.toList());
+        return () -> depthBins.integrate(sensitivities.stream()
+                .mapToDouble(sensitivity -> ThreadPoolExecutorUtil.getResult(sensitivity, "simulating theoretical sensitivity"))
+                .toArray());
+    }
+
+    /**
+     * The seed of the simulation at a depth.  Seeds are scrambled so that the random streams of neighbouring depths
+     * are not correlated.
+     */
+    static long seedForDepth(final int depth) {
+        return new SplittableRandom(RANDOM_SEED + depth).nextLong();
+    }
+
+    /**
+     * Calculates the theoretical sensitivity with a given Phred-scaled quality score distribution and depth
+     * distribution exactly, rather than by simulation, using exactSensitivityAtConstantDepth() at each depth.
+     * @param depthHistogram Depth histogram to compute theoretical sensitivity over
+     * @param qualityHistogram Phred-scaled quality score histogram
+     * @param logOddsThreshold Log odds threshold necessary for variant to be called
+     * @param alleleFraction the allele fraction to evaluate sensitivity at
+     * @return Theoretical sensitivity for the given arguments over a particular depth distribution.
+     */
+    public static double exactTheoreticalSensitivity(final Histogram<Integer> depthHistogram, final Histogram<Integer> qualityHistogram,
+                                                     final double logOddsThreshold, final double alleleFraction) {
         if (alleleFraction > 1.0 || alleleFraction < 0.0) {
             throw new IllegalArgumentException("Allele fractions must be between 0 and 1.");
         }
 
-        final double[] depthDistribution = normalizeHistogram(depthHistogram);
-
-        // Integrate sensitivity over depth distribution
-        double sensitivity = 0.0;
-        int currentDepth = 0;
-        double right = 0;
-        while (currentDepth < depthDistribution.length) {
-            double deltaDepthProbability = 0.0;
-            // Accumulate a portion of the depth distribution to compute theoretical sensitivity over.
-            // This helps prevent us from spending lots of compute over coverages
-            // that occur with low probability and don't contribute much to sensitivity anyway, but
-            // it complicates things a bit by having a variable deltaDepthProbability which
-            // amount of the depth distribution to use with the trapezoid rule integration step.
-            while (deltaDepthProbability == 0 && currentDepth < depthDistribution.length ||
-                    deltaDepthProbability < DEPTH_BIN_WIDTH && currentDepth < depthDistribution.length &&
-                    depthDistribution[currentDepth] < DEPTH_BIN_WIDTH / 2.0) {
-                deltaDepthProbability += depthDistribution[currentDepth];
-                currentDepth++;
+        final DepthBins depthBins = new DepthBins(normalizeHistogram(depthHistogram));
+        final double[] qualityDistribution = trimDistribution(normalizeHistogram(qualityHistogram));
+        return depthBins.integrate(exactSensitivities(depthBins.depths, qualityDistribution, logOddsThreshold, alleleFraction));
+    }
+
+    /**
+     * The depths at which sensitivity is evaluated when integrating it over a depth distribution, and the probability
+     * of the depths in each bin.
+     */
+    private static class DepthBins {
+        final int[] depths;
+        final double[] deltaDepthProbabilities;
+
+        DepthBins(final double[] depthDistribution) {
+            final List<Integer> binDepths = new ArrayList<>();
+            final List<Double> binProbabilities = new ArrayList<>();
+            int currentDepth = 0;
+            while (currentDepth < depthDistribution.length) {
+                double deltaDepthProbability = 0.0;
+                // Accumulate a portion of the depth distribution to compute theoretical sensitivity over.
+                // This helps prevent us from spending lots of compute over coverages
+                // that occur with low probability and don't contribute much to sensitivity anyway, but
+                // it complicates things a bit by having a variable deltaDepthProbability which
+                // amount of the depth distribution to use with the trapezoid rule integration step.
+                while (deltaDepthProbability == 0 && currentDepth < depthDistribution.length ||
+                        deltaDepthProbability < DEPTH_BIN_WIDTH && currentDepth < depthDistribution.length &&
+                        depthDistribution[currentDepth] < DEPTH_BIN_WIDTH / 2.0) {
+                    deltaDepthProbability += depthDistribution[currentDepth];
+                    currentDepth++;
+                }
+                binDepths.add(currentDepth);
+                binProbabilities.add(deltaDepthProbability);
+            }
+            depths = binDepths.stream().mapToInt(Integer::intValue).toArray();
+            deltaDepthProbabilities = binProbabilities.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        /** Integrates the sensitivities at the bin depths over the depth distribution, using the trapezoid rule. */
+        double integrate(final double[] sensitivities) {
+            double sensitivity = 0.0;
+            double right = 0;
+            for (int i = 0; i < depths.length; i++) {
+                final double left = right;
+                right = sensitivities[i];
+                sensitivity += deltaDepthProbabilities[i] * (left + right) / 2.0;
             }
-            // Calculate sensitivity for a particular depth, and use trapezoid rule to integrate sensitivity.
-            final double left = right;
-            right = sensitivityAtConstantDepth(currentDepth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction);
-            sensitivity += deltaDepthProbability * (left + right) / 2.0;
+            return sensitivity;
         }
-        return sensitivity;
     }
 
     /**
@@ -387,22 +555,74 @@ public class TheoreticalSensitivity {
      */
     public static List<TheoreticalSensitivityMetrics> calculateSensitivities(final int simulationSize,
                                               final Histogram<Integer> depthHistogram, final Histogram<Integer> baseQHistogram, final List<Double> alleleFractions) {
+        return calculateSensitivities(simulationSize, depthHistogram, baseQHistogram, alleleFractions, false);
+    }
+
+    /**
+     * This is a utility function to calculate the metrics specific to running
+     * theoretical sensitivity over several different allele fractions.
+     * @param simulationSize Number of simulations to run at each depth; not used if exact is true.
+     * @param depthHistogram Histogram of depth distribution.
+     * @param baseQHistogram Histogram of Phred-scaled quality scores.
+     * @param alleleFractions List of allele fractions to measure theoretical sensitivity over.
+     * @param exact true to calculate sensitivity exactly rather than by simulation.
+     */
+    public static List<TheoreticalSensitivityMetrics> calculateSensitivities(final int simulationSize,
+                                              final Histogram<Integer> depthHistogram, final Histogram<Integer> baseQHistogram,
+                                              final List<Double> alleleFractions, final boolean exact) {
+        return calculateSensitivities(simulationSize, depthHistogram, baseQHistogram, alleleFractions, exact, 1);
+    }
+
+    /**
+     * This is a utility function to calculate the metrics specific to running
+     * theoretical sensitivity over several different allele fractions.
+     * @param simulationSize Number of simulations to run at each depth; not used if exact is true.
+     * @param depthHistogram Histogram of depth distribution.
+     * @param baseQHistogram Histogram of Phred-scaled quality scores.
+     * @param alleleFractions List of allele fractions to measure theoretical sensitivity over.
+     * @param exact true to calculate sensitivity exactly rather than by simulation.
+     * @param numThreads Number of threads to run the simulations at each depth and allele fraction on, or the exact
+     *                   calculations at each allele fraction.  The results are the same for any number.
+     */
+    public static List<TheoreticalSensitivityMetrics> calculateSensitivities(final int simulationSize,
+                                              final Histogram<Integer> depthHistogram, final Histogram<Integer> baseQHistogram,
+                                              final List<Double> alleleFractions, final boolean exact, final int numThreads) {
 
-        final List<TheoreticalSensitivityMetrics> metricsOverVariousAlleleFractions = new ArrayList<>();
         final double logOddsThreshold = 6.2; // This threshold is used because it is the value used for MuTect2.
 
-        // For each allele fraction in alleleFractions calculate theoretical sensitivity and add the results
-        // to the histogram sensitivityHistogram.
-        for (final double alleleFraction : alleleFractions) {
-            final TheoreticalSensitivityMetrics theoreticalSensitivityMetrics = new TheoreticalSensitivityMetrics();
-            theoreticalSensitivityMetrics.ALLELE_FRACTION = alleleFraction;
-            theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY = TheoreticalSensitivity.theoreticalSensitivity(depthHistogram, baseQHistogram, simulationSize, logOddsThreshold, alleleFraction);
-            theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY_Q = QualityUtil.getPhredScoreFromErrorProbability((1 - theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY));
-            theoreticalSensitivityMetrics.SAMPLE_SIZE = simulationSize;
-            theoreticalSensitivityMetrics.LOG_ODDS_THRESHOLD = logOddsThreshold;
-            metricsOverVariousAlleleFractions.add(theoreticalSensitivityMetrics);
-        }
+        final ExecutorService executor = numThreads > 1 ? ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "TheoreticalSensitivity") : null;
+        try {
+            // All the calculations are submitted before any is waited for, so that the threads are kept busy.
+            final List<Supplier<Double>> sensitivities = new ArrayList<>(alleleFractions.size());
+            for (final double alleleFraction : alleleFractions) {
+                if (exact) {
+                    final CompletableFuture<Double> sensitivity = CompletableFuture.supplyAsync(() ->
+                            exactTheoreticalSensitivity(depthHistogram, baseQHistogram, logOddsThreshold, alleleFraction),
+                            executor != null ? executor : Runnable::run);
+                    sensitivities.add(() -> ThreadPoolExecutorUtil.getResult(sensitivity, "calculating theoretical sensitivity"));
+                } else {
+                    sensitivities.add(submitTheoreticalSensitivity(depthHistogram, baseQHistogram, simulationSize, logOddsThreshold,
+                            alleleFraction, executor != null ? executor : Runnable::run));
+                }
+            }
 
-        return metricsOverVariousAlleleFractions;
+            // For each allele fraction in alleleFractions calculate theoretical sensitivity and add the results
+            // to the histogram sensitivityHistogram.
+            final List<TheoreticalSensitivityMetrics> metrics = new ArrayList<>(alleleFractions.size());
+            for (int i = 0; i < alleleFractions.size(); i++) {
+                final TheoreticalSensitivityMetrics theoreticalSensitivityMetrics = new TheoreticalSensitivityMetrics();
+                theoreticalSensitivityMetrics.ALLELE_FRACTION = alleleFractions.get(i);
+                theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY = sensitivities.get(i).get();
+                theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY_Q = QualityUtil.getPhredScoreFromErrorProbability((1 - theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY));
+                theoreticalSensitivityMetrics.SAMPLE_SIZE = exact ? 0 : simulationSize;
+                theoreticalSensitivityMetrics.LOG_ODDS_THRESHOLD = logOddsThreshold;
+                metrics.add(theoreticalSensitivityMetrics);
+            }
+            return metrics;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
     }
 }
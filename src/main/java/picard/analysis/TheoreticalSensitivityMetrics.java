@@ -44,6 +44,7 @@ public class TheoreticalSensitivityMetrics extends MetricBase {
     public int THEORETICAL_SENSITIVITY_Q;
     /** Log-likelihood ratio is used as a threshold to distinguish a positive site with a given allele fraction from HOM_REF. */
     public double LOG_ODDS_THRESHOLD;
-    /** Number of samples drawn at each depth in the depth distribution.  Larger values allow for increased precision at the cost of compute time. */
+    /** Number of samples drawn at each depth in the depth distribution.  Larger values allow for increased precision at the cost of compute time.
+     * 0 if the sensitivity was calculated exactly rather than by sampling. */
     public int SAMPLE_SIZE;
 }
@@ -92,7 +92,7 @@ static final String USAGE_DETAILS = "<p>This tool examines two sources of sequen
     @Argument(doc = "An optional list of intervals to restrict analysis to.", optional = true)
     public File INTERVALS;
 
-    @Argument(doc = "VCF format dbSNP file, used to exclude regions around known polymorphisms from analysis.", optional = true)
+    @Argument(doc = "VCF format dbSNP file, or a bit set file created from it by CompileDbSnpBitSets, used to exclude regions around known polymorphisms from analysis.", optional = true)
     public File DB_SNP;
 
     @Argument(shortName = "Q", doc = "The minimum base quality score for a base to be included in analysis.")
@@ -14,6 +14,7 @@ import picard.analysis.MetricAccumulationLevel;
 import picard.analysis.RnaSeqMetrics;
 import picard.annotation.Gene;
 import picard.annotation.LocusFunction;
+import picard.annotation.LocusFunctionMap;
 import picard.metrics.PerUnitMetricCollector;
 import picard.metrics.SAMRecordMultiLevelCollector;
 import picard.util.MathUtil;
@@ -38,6 +39,7 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
     final private Set<Integer> ignoredSequenceIndices;
 
     private final OverlapDetector<Gene> geneOverlapDetector;
+    private final LocusFunctionMap locusFunctionMap;
     private final OverlapDetector<Interval> ribosomalSequenceOverlapDetector;
     private final boolean collectCoverageStatistics;
 
@@ -48,6 +50,7 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
         this.ribosomalInitialValue  = ribosomalBasesInitialValue;
         this.ignoredSequenceIndices = ignoredSequenceIndices;
         this.geneOverlapDetector    = geneOverlapDetector;
+        this.locusFunctionMap       = new LocusFunctionMap(geneOverlapDetector.getAll());
         this.ribosomalSequenceOverlapDetector = ribosomalSequenceOverlapDetector;
         this.minimumLength          = minimumLength;
         this.strandSpecificity      = strandSpecificity;
@@ -101,6 +104,9 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
 
         private final Map<Gene.Transcript, int[]> coverageByTranscript = new HashMap<Gene.Transcript, int[]>();
 
+        private final LocusFunctionMap.Cursor locusFunctionCursor = locusFunctionMap.newCursor();
+        private final long[] basesByFunction = new long[LocusFunction.values().length];
+
         /**
          * Derived classes that need to capture some additional metrics can use this ctor to supply a metrics instance
          * that is a subclass of RnaSeqMetrics.
@@ -175,22 +181,19 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
 
             final Collection<Gene> overlappingGenes                  = geneOverlapDetector.getOverlaps(readInterval);
             final List<AlignmentBlock> alignmentBlocks               = rec.getAlignmentBlocks();
-            boolean overlapsExon = false;
 
+            // Get the functional class of each position in the alignment blocks.  By default, if a base does not
+            // overlap with rRNA or gene, it is intergenic.
+            Arrays.fill(basesByFunction, 0);
             for (final AlignmentBlock alignmentBlock : alignmentBlocks) {
-                // Get functional class for each position in the alignment block.
-                final LocusFunction[] locusFunctions = new LocusFunction[alignmentBlock.getLength()];
-
-                // By default, if base does not overlap with rRNA or gene, it is intergenic.
-                Arrays.fill(locusFunctions, 0, locusFunctions.length, LocusFunction.INTERGENIC);
-
-                for (final Gene gene : overlappingGenes) {
-                    for (final Gene.Transcript transcript : gene) {
-                        transcript.assignLocusFunctionForRange(alignmentBlock.getReferenceStart(), locusFunctions);
-                        // if you want to gather coverage statistics, this variable should be true.
-                        // added for cases with many units [samples/read groups] which overwhelm memory.                
-                        // Add coverage to our coverage counter for this transcript
-                        if (collectCoverageStatistics) {
+                locusFunctionCursor.countBases(rec.getReferenceName(), alignmentBlock.getReferenceStart(), alignmentBlock.getLength(), basesByFunction);
+
+                // if you want to gather coverage statistics, this variable should be true.
+                // added for cases with many units [samples/read groups] which overwhelm memory.
+                if (collectCoverageStatistics) {
+                    for (final Gene gene : overlappingGenes) {
+                        for (final Gene.Transcript transcript : gene) {
+                            // Add coverage to our coverage counter for this transcript
                             int[] coverage = this.coverageByTranscript.get(transcript);
                             if (coverage == null) {
                                 coverage = new int[transcript.length()];
@@ -200,35 +203,18 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
                                     CoordMath.getEnd(alignmentBlock.getReferenceStart(), alignmentBlock.getLength()),
                                     coverage);
                         }
-
-                    }
-                }
-
-                // Tally the function of each base in the alignment block.
-                for (final LocusFunction locusFunction : locusFunctions) {
-                    ++metrics.PF_ALIGNED_BASES;
-                    switch (locusFunction) {
-                        case INTERGENIC:
-                            ++metrics.INTERGENIC_BASES;
-                            break;
-                        case INTRONIC:
-                            ++metrics.INTRONIC_BASES;
-                            break;
-                        case UTR:
-                            ++metrics.UTR_BASES;
-                            overlapsExon = true;
-                            break;
-                        case CODING:
-                            ++metrics.CODING_BASES;
-                            overlapsExon = true;
-                            break;
-                        case RIBOSOMAL:
-                            ++metrics.RIBOSOMAL_BASES;
-                            break;
                     }
                 }
             }
 
+            // Tally the functions of the bases in the alignment blocks.
+            metrics.PF_ALIGNED_BASES += getNumAlignedBases(rec);
+            metrics.INTERGENIC_BASES += basesByFunction[LocusFunction.INTERGENIC.ordinal()];
+            metrics.INTRONIC_BASES   += basesByFunction[LocusFunction.INTRONIC.ordinal()];
+            metrics.UTR_BASES        += basesByFunction[LocusFunction.UTR.ordinal()];
+            metrics.CODING_BASES     += basesByFunction[LocusFunction.CODING.ordinal()];
+            final boolean overlapsExon = basesByFunction[LocusFunction.UTR.ordinal()] > 0 || basesByFunction[LocusFunction.CODING.ordinal()] > 0;
+
             // Strand-specificity is tallied on read basis rather than base at a time.  A read that aligns to more than one
             // gene is not counted.
             if (!rec.getSupplementaryAlignmentFlag() && overlapsExon && overlappingGenes.size() == 1) {
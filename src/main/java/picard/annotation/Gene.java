@@ -165,15 +165,22 @@ public class Gene extends Interval implements Iterable<Gene.Transcript>  {
         }
 
         /**
-         *
+         * Adds one to the coverage of each transcript position that corresponds to a genome position from genomeStart
+         * up to, but not including, genomeEnd.  The exons are walked once rather than once per position.
          * @param genomeStart
          * @param genomeEnd
          * @param coverage
          */
         public void addCoverageCounts(final int genomeStart, final int genomeEnd, final int[] coverage) {
-            for (int i=genomeStart; i<genomeEnd; ++i) {
-                final int txBase = getTranscriptCoordinate(i);
-                if (txBase > 0) coverage[txBase-1]++;
+            int exonOffset = 0;
+            for (final Exon e : exons) {
+                if (e.start >= genomeEnd) break;
+                final int from = Math.max(genomeStart, e.start);
+                final int to = Math.min(genomeEnd - 1, e.end);
+                for (int i = from; i <= to; ++i) {
+                    coverage[i - e.start + exonOffset]++;
+                }
+                exonOffset += CoordMath.getLength(e.start, e.end);
             }
         }
 
@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.annotation;
+
+import htsjdk.samtools.util.CoordMath;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The function of every locus of the genome relative to a set of genes, as run-length encoded runs of the same
+ * LocusFunction per contig.  A locus gets the strongest function it has in any transcript that covers it, exactly as
+ * if Gene.Transcript.assignLocusFunctionForRange() had been called for every transcript; loci outside of all
+ * transcripts are INTERGENIC.  The map is built once, after which the functions of a range of loci are counted run by
+ * run with a Cursor rather than base by base and transcript by transcript.
+ * <p/>
+ * The map never assigns RIBOSOMAL; ribosomal loci are decided per fragment by the callers.
+ */
+public class LocusFunctionMap {
+    private static final byte INTERGENIC = (byte) LocusFunction.INTERGENIC.ordinal();
+
+    /** Run i covers the loci from starts[i] up to starts[i+1]-1; the last run extends to the end of the contig. */
+    private static class Runs {
+        final int[] starts;
+        final byte[] functions;
+
+        Runs(final int[] starts, final byte[] functions) {
+            this.starts = starts;
+            this.functions = functions;
+        }
+    }
+
+    private final Map<String, Runs> runsByContig = new HashMap<>();
+
+    public LocusFunctionMap(final Iterable<Gene> genes) {
+        // Each transcript contributes segments of a single function; a segment is a start and an end event.
+        final Map<String, long[]> eventsByContig = new HashMap<>();
+        final Map<String, Integer> numEventsByContig = new HashMap<>();
+        for (final Gene gene : genes) {
+            long[] events = eventsByContig.get(gene.getContig());
+            int numEvents = numEventsByContig.getOrDefault(gene.getContig(), 0);
+            if (events == null) events = new long[64];
+            for (final Gene.Transcript transcript : gene) {
+                final int txStart = transcript.transcriptionStart;
+                final int txEnd = transcript.transcriptionEnd;
+                if (txStart > txEnd) continue;
+                // Six events for each exon (UTR, CODING, UTR) plus two for the intronic span of the transcript.
+                final int needed = numEvents + 2 + 6 * transcript.exons.length;
+                if (needed > events.length) events = Arrays.copyOf(events, Math.max(needed, 2 * events.length));
+
+                numEvents = addSegment(events, numEvents, txStart, txEnd, LocusFunction.INTRONIC);
+                for (final Gene.Transcript.Exon exon : transcript.exons) {
+                    final int start = Math.max(exon.start, txStart);
+                    final int end = Math.min(exon.end, txEnd);
+                    numEvents = addSegment(events, numEvents, start, Math.min(end, transcript.codingStart - 1), LocusFunction.UTR);
+                    numEvents = addSegment(events, numEvents, Math.max(start, transcript.codingStart), Math.min(end, transcript.codingEnd), LocusFunction.CODING);
+                    numEvents = addSegment(events, numEvents, Math.max(start, transcript.codingEnd + 1), end, LocusFunction.UTR);
+                }
+            }
+            eventsByContig.put(gene.getContig(), events);
+            numEventsByContig.put(gene.getContig(), numEvents);
+        }
+
+        for (final Map.Entry<String, long[]> entry : eventsByContig.entrySet()) {
+            runsByContig.put(entry.getKey(), makeRuns(entry.getValue(), numEventsByContig.get(entry.getKey())));
+        }
+    }
+
+    /** Events sort by position; the low bits hold the function and whether the segment starts or ends there. */
+    private static int addSegment(final long[] events, int numEvents, final int start, final int end, final LocusFunction function) {
+        if (start > end) return numEvents;
+        events[numEvents++] = encodeEvent(start, function, true);
+        events[numEvents++] = encodeEvent(end + 1, function, false);
+        return numEvents;
+    }
+
+    private static long encodeEvent(final int position, final LocusFunction function, final boolean segmentStart) {
+        return ((long) position << 4) | (function.ordinal() << 1) | (segmentStart ? 1 : 0);
+    }
+
+    /** Sweeps the sorted events, keeping the number of open segments of each function, and emits a run at every change. */
+    private static Runs makeRuns(final long[] events, final int numEvents) {
+        Arrays.sort(events, 0, numEvents);
+        final int[] openSegments = new int[LocusFunction.values().length];
+        final int[] starts = new int[numEvents + 1];
+        final byte[] functions = new byte[numEvents + 1];
+        starts[0] = Integer.MIN_VALUE;
+        functions[0] = INTERGENIC;
+        int numRuns = 1;
+
+        int i = 0;
+        while (i < numEvents) {
+            final int position = (int) (events[i] >> 4);
+            for (; i < numEvents && (int) (events[i] >> 4) == position; ++i) {
+                openSegments[(int) (events[i] >> 1) & 0x7] += ((events[i] & 1) == 1) ? 1 : -1;
+            }
+            byte function = INTERGENIC;
+            for (int f = openSegments.length - 1; f > INTERGENIC; --f) {
+                if (openSegments[f] > 0) {
+                    function = (byte) f;
+                    break;
+                }
+            }
+            if (function != functions[numRuns - 1]) {
+                starts[numRuns] = position;
+                functions[numRuns] = function;
+                ++numRuns;
+            }
+        }
+        return new Runs(Arrays.copyOf(starts, numRuns), Arrays.copyOf(functions, numRuns));
+    }
+
+    /** Returns the function of a single locus. */
+    public LocusFunction getLocusFunction(final String contig, final int position) {
+        final Runs runs = runsByContig.get(contig);
+        if (runs == null) return LocusFunction.INTERGENIC;
+        return LocusFunction.values()[runs.functions[findRun(runs, 0, position)]];
+    }
+
+    private static int findRun(final Runs runs, final int fromRun, final int position) {
+        final int i = Arrays.binarySearch(runs.starts, fromRun, runs.starts.length, position);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Counts the functions of ranges of loci.  The cursor remembers the run it last stopped in, so ranges visited in
+     * coordinate order, as the alignment blocks of coordinate sorted reads are, usually cost a step or two per range.
+     * A cursor must not be shared between threads.
+     */
+    public class Cursor {
+        // Number of runs to step forward before falling back to a binary search.
+        private static final int MAX_STEPS = 8;
+
+        private String contig;
+        private Runs runs;
+        private int run;
+
+        private Cursor() { }
+
+        /**
+         * Adds the number of loci of each function in the given range to basesByFunction, which is indexed by
+         * LocusFunction ordinal.
+         *
+         * @param start 1-based first locus of the range.
+         * @param length number of loci in the range.
+         */
+        public void countBases(final String contig, final int start, final int length, final long[] basesByFunction) {
+            if (length <= 0) return;
+            if (!contig.equals(this.contig)) {
+                this.contig = contig;
+                this.runs = runsByContig.get(contig);
+                this.run = 0;
+            }
+            if (runs == null) {
+                basesByFunction[INTERGENIC] += length;
+                return;
+            }
+
+            seek(start);
+            final int end = CoordMath.getEnd(start, length);
+            int position = start;
+            while (true) {
+                final int runEnd = (run + 1 < runs.starts.length) ? runs.starts[run + 1] - 1 : Integer.MAX_VALUE;
+                if (runEnd >= end) {
+                    basesByFunction[runs.functions[run]] += end - position + 1;
+                    return;
+                }
+                basesByFunction[runs.functions[run]] += runEnd - position + 1;
+                position = runEnd + 1;
+                ++run;
+            }
+        }
+
+        private void seek(final int position) {
+            final int[] starts = runs.starts;
+            if (position < starts[run]) {
+                run = findRun(runs, 0, position);
+                return;
+            }
+            for (int steps = 0; run + 1 < starts.length && starts[run + 1] <= position; ++steps) {
+                if (steps == MAX_STEPS) {
+                    run = findRun(runs, run, position);
+                    return;
+                }
+                ++run;
+            }
+        }
+    }
+}
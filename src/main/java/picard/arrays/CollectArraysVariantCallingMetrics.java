@@ -57,7 +57,7 @@ public class CollectArraysVariantCallingMetrics extends CommandLineProgram {
     @Argument(doc = "The Call Rate Threshold for an autocall pass (if the observed call rate is > this value, the sample is considered to be passing)", optional = true)
     public static Double CALL_RATE_PF_THRESHOLD = 0.98;
 
-    @Argument(doc = "Reference dbSNP file in dbSNP or VCF format.")
+    @Argument(doc = "Reference dbSNP file in dbSNP or VCF format, or a bit set file created from it by CompileDbSnpBitSets.")
     public File DBSNP;
 
     @Argument(shortName = StandardOptionDefinitions.SEQUENCE_DICTIONARY_SHORT_NAME, optional = true,
@@ -41,13 +41,11 @@ import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
-import htsjdk.samtools.util.SortingCollection;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
-import htsjdk.variant.variantcontext.VariantContextComparator;
 import htsjdk.variant.variantcontext.VariantContextUtils;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
@@ -59,7 +57,6 @@ import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLine;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import htsjdk.variant.vcf.VCFInfoHeaderLine;
-import htsjdk.variant.vcf.VCFRecordCodec;
 import htsjdk.variant.vcf.VCFStandardHeaderLines;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
@@ -68,16 +65,20 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
+import picard.util.TabbedTextFileWithHeaderParser;
+import picard.util.ThreadPoolExecutorUtil;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -85,6 +86,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 /**
  * Class to convert a GTC file and a BPM file to a VCF file.
@@ -114,18 +116,23 @@ public class GtcToVcf extends CommandLineProgram {
                     "      CLUSTER_FILE=chip_name.egt \\<br />" +
                     "      ILLUMINA_NORMALIZATION_MANIFEST=chip_name.bpm.csv \\<br />" +
                     "      SAMPLE_ALIAS=my_sample_alias \\<br />" +
-                    "</pre>";
+                    "</pre>" +
+                    "To convert many GTC files against the same manifest and cluster file, list them in a BATCH_FILE " +
+                    "instead of giving INPUT, OUTPUT and SAMPLE_ALIAS; the manifest and cluster file are then loaded once " +
+                    "and the samples are converted NUM_PROCESSORS at a time.";
 
     private final static Log log = Log.getInstance(GtcToVcf.class);
 
-    @Argument(shortName = StandardOptionDefinitions.INPUT_SHORT_NAME, doc = "GTC file to be converted")
+    @Argument(shortName = StandardOptionDefinitions.INPUT_SHORT_NAME, doc = "GTC file to be converted",
+            mutex = {"BATCH_FILE"})
     public File INPUT;
 
-    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The output VCF file to write.")
+    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The output VCF file to write.",
+            mutex = {"BATCH_FILE"})
     public File OUTPUT;
 
     @Argument(shortName = "MANIFEST", doc = "An Extended Illumina Manifest file (csv).  This is an extended version of the Illumina manifest" +
-            " it contains additional reference-specific fields")
+            " it contains additional reference-specific fields.  It may also be given in the binary form written by CompileIlluminaManifest.")
     public File EXTENDED_ILLUMINA_MANIFEST;
 
     @Argument(shortName = "CF", doc = "An Illumina cluster file (egt)")
@@ -134,45 +141,86 @@ public class GtcToVcf extends CommandLineProgram {
     @Argument(shortName = "NORM_MANIFEST", doc = "An Illumina bead pool manifest (a manifest containing the Illumina normalization ids) (bpm.csv)")
     public File ILLUMINA_NORMALIZATION_MANIFEST;
 
-    @Argument(shortName = "E_GENDER", doc = "The expected gender for this sample.", optional = true)
+    @Argument(shortName = "E_GENDER", doc = "The expected gender for this sample.", optional = true,
+            mutex = {"BATCH_FILE"})
     public String EXPECTED_GENDER;
 
-    @Argument(doc = "The sample alias")
+    @Argument(doc = "The sample alias", mutex = {"BATCH_FILE"})
     public String SAMPLE_ALIAS;
 
     @Argument(doc = "The analysis version of the data used to generate this VCF", optional = true)
     public Integer ANALYSIS_VERSION_NUMBER;
 
-    @Argument(shortName = "G_GTC", doc = "An optional GTC file that was generated by calling the chip using a cluster file designed to optimize gender calling.", optional = true)
+    @Argument(shortName = "G_GTC", doc = "An optional GTC file that was generated by calling the chip using a cluster file designed to optimize gender calling.", optional = true,
+            mutex = {"BATCH_FILE"})
     public File GENDER_GTC;
 
-    @Argument(shortName = "FP_VCF", doc = "The fingerprint VCF for this sample", optional = true)
+    @Argument(shortName = "FP_VCF", doc = "The fingerprint VCF for this sample", optional = true,
+            mutex = {"BATCH_FILE"})
     public File FINGERPRINT_GENOTYPES_VCF_FILE;
 
     @Argument(doc = "Causes the program to fail if it finds a case where there is a call on an assay that is flagged as 'zeroed-out' in the Illumina cluster file.", optional = true)
     public boolean DO_NOT_ALLOW_CALLS_ON_ZEROED_OUT_ASSAYS = false;
 
-    static final List<Allele> NO_CALL_ALLELES = Collections.unmodifiableList(Arrays.asList(Allele.NO_CALL, Allele.NO_CALL));
-
-    // This file gets initialized during customCommandLineValidation.
-    // It is a static member so we don't have to parse the file twice.
-    private static InfiniumGTCFile infiniumGTCFile;
-
-    private static InfiniumEGTFile infiniumEGTFile;
+    @Argument(doc = "Tab-separated file, with a header line, of GTC files to convert with a single load of the manifest and " +
+            "cluster file.  The columns are " + BATCH_INPUT_COLUMN + ", " + BATCH_OUTPUT_COLUMN + " and " + BATCH_SAMPLE_ALIAS_COLUMN +
+            ", and optionally " + BATCH_EXPECTED_GENDER_COLUMN + ", " + BATCH_GENDER_GTC_COLUMN + " and " + BATCH_FINGERPRINT_GENOTYPES_VCF_FILE_COLUMN +
+            ", which take the place of the arguments of the same names for each sample.",
+            mutex = {"INPUT", "OUTPUT", "SAMPLE_ALIAS", "EXPECTED_GENDER", "GENDER_GTC", "FINGERPRINT_GENOTYPES_VCF_FILE"})
+    public File BATCH_FILE;
+
+    @Argument(doc = "The number of samples in BATCH_FILE to convert in parallel.  If NUM_PROCESSORS = 0, number of cores is automatically set to " +
+            "the number of cores available on the machine. If NUM_PROCESSORS < 0 then the number of cores used will be " +
+            "the number available on the machine less NUM_PROCESSORS.")
+    public int NUM_PROCESSORS = 1;
+
+    static final String BATCH_INPUT_COLUMN = "INPUT";
+    static final String BATCH_OUTPUT_COLUMN = "OUTPUT";
+    static final String BATCH_SAMPLE_ALIAS_COLUMN = "SAMPLE_ALIAS";
+    static final String BATCH_EXPECTED_GENDER_COLUMN = "EXPECTED_GENDER";
+    static final String BATCH_GENDER_GTC_COLUMN = "GENDER_GTC";
+    static final String BATCH_FINGERPRINT_GENOTYPES_VCF_FILE_COLUMN = "FINGERPRINT_GENOTYPES_VCF_FILE";
 
-    private static String gtcGender = null;
+    static final List<Allele> NO_CALL_ALLELES = Collections.unmodifiableList(Arrays.asList(Allele.NO_CALL, Allele.NO_CALL));
 
-    private static Sex fingerprintGender;
+    // The samples to convert; set up during customCommandLineValidation.
+    private List<GtcSample> samples;
 
-    private static ReferenceSequenceFile refSeq;
+    private ReferenceSequenceFile refSeq;
 
-    private static final DecimalFormat df = new DecimalFormat();
+    // DecimalFormat is not thread-safe, and samples may be converted in parallel.
+    private static final ThreadLocal<DecimalFormat> df = ThreadLocal.withInitial(() -> {
+        final DecimalFormat format = new DecimalFormat();
+        format.setMaximumFractionDigits(3);
+        format.setGroupingSize(0);
+        return format;
+    });
 
     private static final String DOT = ".";
 
-    static {
-        df.setMaximumFractionDigits(3);
-        df.setGroupingSize(0);
+    /** The per-sample inputs and outputs of a conversion. */
+    static class GtcSample {
+        final File input;
+        final File output;
+        final String sampleAlias;
+        final String expectedGender;
+        final File genderGtc;
+        final File fingerprintGenotypesVcfFile;
+
+        GtcSample(final File input, final File output, final String sampleAlias, final String expectedGender,
+                  final File genderGtc, final File fingerprintGenotypesVcfFile) {
+            this.input = input;
+            this.output = output;
+            this.sampleAlias = sampleAlias;
+            this.expectedGender = expectedGender;
+            this.genderGtc = genderGtc;
+            this.fingerprintGenotypesVcfFile = fingerprintGenotypesVcfFile;
+        }
+
+        /** The sample name in the VCF, which is the GTC file name without its extension. */
+        String getChipWellBarcode() {
+            return FilenameUtils.removeExtension(input.getName());
+        }
     }
 
     @Override
@@ -182,25 +230,46 @@ public class GtcToVcf extends CommandLineProgram {
 
     @Override
     protected int doWork() {
-        final Build37ExtendedIlluminaManifest manifest = setupAndGetManifest();
-
-        final VCFHeader vcfHeader = createVCFHeader(manifest, infiniumGTCFile, gtcGender, CLUSTER_FILE,
-                REFERENCE_SEQUENCE, refSeq.getSequenceDictionary());
-
-        // Setup a collection that will sort contexts properly
-        // Necessary because input GTC file is not sorted
-        final SortingCollection<VariantContext> contexts =
-                SortingCollection.newInstance(
-                        VariantContext.class,
-                        new VCFRecordCodec(vcfHeader),
-                        new VariantContextComparator(refSeq.getSequenceDictionary()),
-                        MAX_RECORDS_IN_RAM,
-                        TMP_DIR.stream().map(File::toPath).toArray(Path[]::new));
+        final InfiniumNormalizationManifest infiniumNormalizationManifest = new InfiniumNormalizationManifest(ILLUMINA_NORMALIZATION_MANIFEST);
+        final InfiniumEGTFile infiniumEGTFile;
+        final Build37ExtendedIlluminaManifest manifest;
+        try {
+            infiniumEGTFile = new InfiniumEGTFile(CLUSTER_FILE);
+            manifest = new Build37ExtendedIlluminaManifest(EXTENDED_ILLUMINA_MANIFEST);
+        } catch (IOException e) {
+            throw new PicardException("Error during setup", e);
+        }
 
-        // fill the sorting collection
-        fillContexts(contexts, infiniumGTCFile, manifest, infiniumEGTFile);
+        // The records to write and their order are found once, since every sample is written in the same order.
+        final SAMSequenceDictionary sequenceDictionary = refSeq.getSequenceDictionary();
+        final ManifestRecords records = getGoodManifestRecords(manifest);
+        final int[] outputOrder = getCoordinateOrder(records, sequenceDictionary);
+
+        final int numProcessors;
+        if (NUM_PROCESSORS == 0) {
+            numProcessors = Runtime.getRuntime().availableProcessors();
+        } else if (NUM_PROCESSORS < 0) {
+            numProcessors = Runtime.getRuntime().availableProcessors() + NUM_PROCESSORS;
+        } else {
+            numProcessors = NUM_PROCESSORS;
+        }
 
-        writeVcf(contexts, OUTPUT, refSeq.getSequenceDictionary(), vcfHeader);
+        if (samples.size() == 1 || numProcessors <= 1) {
+            for (final GtcSample sample : samples) {
+                convertSample(sample, manifest, records, outputOrder, infiniumNormalizationManifest, infiniumEGTFile, sequenceDictionary);
+            }
+        } else {
+            log.info("Converting " + samples.size() + " samples with " + numProcessors + " threads.");
+            final ThreadPoolExecutorWithExceptions pool = new ThreadPoolExecutorWithExceptions(numProcessors);
+            for (final GtcSample sample : samples) {
+                pool.submit(() -> convertSample(sample, manifest, records, outputOrder, infiniumNormalizationManifest, infiniumEGTFile, sequenceDictionary));
+            }
+            pool.shutdown();
+            ThreadPoolExecutorUtil.awaitThreadPoolTermination("GtcToVcf executor", pool, Duration.ofMinutes(5));
+            if (pool.hasError()) {
+                throw new PicardException("Exceptions in conversion threads; see log for details.");
+            }
+        }
 
         return 0;
     }
@@ -208,9 +277,23 @@ public class GtcToVcf extends CommandLineProgram {
     @Override
     protected String[] customCommandLineValidation() {
 
-        IOUtil.assertFileIsReadable(INPUT);
+        if (BATCH_FILE != null) {
+            IOUtil.assertFileIsReadable(BATCH_FILE);
+            samples = readBatchFile(BATCH_FILE);
+        } else {
+            samples = Collections.singletonList(new GtcSample(INPUT, OUTPUT, SAMPLE_ALIAS, EXPECTED_GENDER, GENDER_GTC, FINGERPRINT_GENOTYPES_VCF_FILE));
+        }
+        for (final GtcSample sample : samples) {
+            IOUtil.assertFileIsReadable(sample.input);
+            IOUtil.assertFileIsWritable(sample.output);
+            if (sample.fingerprintGenotypesVcfFile != null) {
+                IOUtil.assertFileIsReadable(sample.fingerprintGenotypesVcfFile);
+            }
+            if (sample.genderGtc != null) {
+                IOUtil.assertFileIsReadable(sample.genderGtc);
+            }
+        }
         IOUtil.assertFileIsReadable(EXTENDED_ILLUMINA_MANIFEST);
-        IOUtil.assertFileIsWritable(OUTPUT);
         refSeq = ReferenceSequenceFileFactory.getReferenceSequenceFile(REFERENCE_SEQUENCE);
         final SAMSequenceDictionary sequenceDictionary = refSeq.getSequenceDictionary();
         final String assembly = sequenceDictionary.getSequence(0).getAssembly();
@@ -218,47 +301,161 @@ public class GtcToVcf extends CommandLineProgram {
             return new String[]{"The selected reference sequence ('" + assembly + "') is not supported.  This tool is currently only implemented to support NCBI Build 37 / HG19 Reference Sequence."};
         }
 
-        if (FINGERPRINT_GENOTYPES_VCF_FILE != null) {
-            IOUtil.assertFileIsReadable(FINGERPRINT_GENOTYPES_VCF_FILE);
+        return super.customCommandLineValidation();
+    }
+
+    static List<GtcSample> readBatchFile(final File batchFile) {
+        final List<GtcSample> samples = new ArrayList<>();
+        try (final TabbedTextFileWithHeaderParser parser = new TabbedTextFileWithHeaderParser(batchFile)) {
+            for (final String column : new String[]{BATCH_INPUT_COLUMN, BATCH_OUTPUT_COLUMN, BATCH_SAMPLE_ALIAS_COLUMN}) {
+                if (!parser.hasColumn(column)) {
+                    throw new PicardException("BATCH_FILE " + batchFile + " does not have a " + column + " column.");
+                }
+            }
+            for (final TabbedTextFileWithHeaderParser.Row row : parser) {
+                samples.add(new GtcSample(
+                        new File(row.getField(BATCH_INPUT_COLUMN)),
+                        new File(row.getField(BATCH_OUTPUT_COLUMN)),
+                        row.getField(BATCH_SAMPLE_ALIAS_COLUMN),
+                        getOptionalField(parser, row, BATCH_EXPECTED_GENDER_COLUMN),
+                        toFile(getOptionalField(parser, row, BATCH_GENDER_GTC_COLUMN)),
+                        toFile(getOptionalField(parser, row, BATCH_FINGERPRINT_GENOTYPES_VCF_FILE_COLUMN))));
+            }
         }
-        if (GENDER_GTC != null) {
-            IOUtil.assertFileIsReadable(GENDER_GTC);
+        if (samples.isEmpty()) {
+            throw new PicardException("BATCH_FILE " + batchFile + " does not list any samples.");
         }
-
-        return super.customCommandLineValidation();
+        return samples;
     }
 
-    private Build37ExtendedIlluminaManifest setupAndGetManifest() {
-        fingerprintGender = getFingerprintSex(FINGERPRINT_GENOTYPES_VCF_FILE);
-        final InfiniumNormalizationManifest infiniumNormalizationManifest = new InfiniumNormalizationManifest(ILLUMINA_NORMALIZATION_MANIFEST);
-        try (final DataInputStream gtcInputStream = new DataInputStream(new FileInputStream(INPUT))) {
+    private static String getOptionalField(final TabbedTextFileWithHeaderParser parser, final TabbedTextFileWithHeaderParser.Row row, final String column) {
+        if (!parser.hasColumn(column)) return null;
+        final String value = row.getField(column);
+        return StringUtils.isEmpty(value) ? null : value;
+    }
 
-            infiniumEGTFile = new InfiniumEGTFile(CLUSTER_FILE);
-            infiniumGTCFile = new InfiniumGTCFile(gtcInputStream, infiniumNormalizationManifest);
-            final Build37ExtendedIlluminaManifest manifest = new Build37ExtendedIlluminaManifest(EXTENDED_ILLUMINA_MANIFEST);
+    private static File toFile(final String path) {
+        return path == null ? null : new File(path);
+    }
 
-            if (GENDER_GTC != null) {
-                try (DataInputStream genderGtcStream = new DataInputStream(new FileInputStream(GENDER_GTC))) {
-                    gtcGender = new InfiniumGTCFile(genderGtcStream, infiniumNormalizationManifest).getGender();
+    /**
+     * The manifest records that are written to the VCF, in manifest order.  Records of a binary manifest are only
+     * referred to by index: they are selected, and put in coordinate order, from their flag, contig and position
+     * columns, and each is built as its variant is written.  Records of a CSV manifest can only be read in order,
+     * so they are kept.
+     */
+    static class ManifestRecords {
+        private final Build37ExtendedIlluminaManifest manifest;
+        private final int[] binaryIndices;
+        private final List<Build37ExtendedIlluminaManifestRecord> records;
+
+        ManifestRecords(final Build37ExtendedIlluminaManifest manifest) {
+            this.manifest = manifest;
+            if (manifest.getBinaryManifest() != null) {
+                final int numRecords = manifest.getBinaryManifest().getNumRecords();
+                binaryIndices = IntStream.range(0, Math.min(manifest.getNumAssays(), numRecords))
+                        .filter(i -> !manifest.isBadRecord(i))
+                        .toArray();
+                records = null;
+            } else {
+                binaryIndices = null;
+                records = new ArrayList<>();
+                final Iterator<Build37ExtendedIlluminaManifestRecord> iterator = manifest.extendedIterator();
+                while (iterator.hasNext()) {
+                    final Build37ExtendedIlluminaManifestRecord record = iterator.next();
+                    if (!record.isBad()) {
+                        records.add(record);
+                    }
                 }
             }
+        }
+
+        int size() {
+            return binaryIndices != null ? binaryIndices.length : records.size();
+        }
+
+        Build37ExtendedIlluminaManifestRecord get(final int i) {
+            return binaryIndices != null ? manifest.getExtendedRecord(binaryIndices[i]) : records.get(i);
+        }
+
+        String getB37Chr(final int i) {
+            return binaryIndices != null ? manifest.getB37Chr(binaryIndices[i]) : records.get(i).getB37Chr();
+        }
+
+        int getB37Pos(final int i) {
+            return binaryIndices != null ? manifest.getB37Pos(binaryIndices[i]) : records.get(i).getB37Pos();
+        }
+    }
 
-            final String gtcManifestName = FilenameUtils.removeExtension(infiniumGTCFile.getSnpManifest());
-            final String illuminaManifestName = FilenameUtils.removeExtension(manifest.getDescriptorFileName());
+    /** Returns the manifest records that are written to the VCF, in manifest order. */
+    static ManifestRecords getGoodManifestRecords(final Build37ExtendedIlluminaManifest manifest) {
+        return new ManifestRecords(manifest);
+    }
 
-            if (!gtcManifestName.equalsIgnoreCase(illuminaManifestName)) {
-                throw new PicardException("The GTC's manifest name " + gtcManifestName +
-                        " does not match the Illumina manifest name " + illuminaManifestName);
+    /**
+     * Returns the indices of the records in the order their variants are written, as a VariantContextComparator
+     * sorts them: by contig, then position.  Records at the same position stay in manifest order.
+     */
+    static int[] getCoordinateOrder(final ManifestRecords records, final SAMSequenceDictionary dictionary) {
+        final int[] contigIndices = new int[records.size()];
+        final int[] positions = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            final String contig = records.getB37Chr(i);
+            contigIndices[i] = dictionary.getSequenceIndex(contig);
+            if (contigIndices[i] == -1) {
+                throw new PicardException("Contig " + contig + " of manifest entry '" + records.get(i).getName() + "' is not in the reference sequence dictionary.");
             }
+            positions[i] = records.getB37Pos(i);
+        }
+        return IntStream.range(0, records.size()).boxed()
+                .sorted(Comparator.<Integer>comparingInt(i -> contigIndices[i]).thenComparingInt(i -> positions[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
 
-            if (infiniumGTCFile.getNumberOfSnps() != manifest.getNumAssays()) {
-                log.warn("The number of Assays in the GTC file: " + infiniumGTCFile.getNumberOfSnps() +
-                        " does not equal the number of Assays in the Illumina manifest file: " + manifest.getNumAssays());
+    private void convertSample(final GtcSample sample,
+                               final Build37ExtendedIlluminaManifest manifest,
+                               final ManifestRecords records,
+                               final int[] outputOrder,
+                               final InfiniumNormalizationManifest infiniumNormalizationManifest,
+                               final InfiniumEGTFile infiniumEGTFile,
+                               final SAMSequenceDictionary sequenceDictionary) {
+        final Sex fingerprintGender = getFingerprintSex(sample.fingerprintGenotypesVcfFile);
+        final InfiniumGTCFile infiniumGTCFile;
+        String gtcGender = null;
+        try (final DataInputStream gtcInputStream = new DataInputStream(new FileInputStream(sample.input))) {
+            infiniumGTCFile = new InfiniumGTCFile(gtcInputStream, infiniumNormalizationManifest);
+
+            if (sample.genderGtc != null) {
+                try (DataInputStream genderGtcStream = new DataInputStream(new FileInputStream(sample.genderGtc))) {
+                    gtcGender = new InfiniumGTCFile(genderGtcStream, infiniumNormalizationManifest).getGender();
+                }
             }
-            return manifest;
         } catch (IOException e) {
             throw new PicardException("Error during setup", e);
         }
+
+        final String gtcManifestName = FilenameUtils.removeExtension(infiniumGTCFile.getSnpManifest());
+        final String illuminaManifestName = FilenameUtils.removeExtension(manifest.getDescriptorFileName());
+
+        if (!gtcManifestName.equalsIgnoreCase(illuminaManifestName)) {
+            throw new PicardException("The GTC's manifest name " + gtcManifestName +
+                    " does not match the Illumina manifest name " + illuminaManifestName);
+        }
+
+        if (infiniumGTCFile.getNumberOfSnps() != manifest.getNumAssays()) {
+            log.warn("The number of Assays in the GTC file: " + infiniumGTCFile.getNumberOfSnps() +
+                    " does not equal the number of Assays in the Illumina manifest file: " + manifest.getNumAssays());
+        }
+
+        final VCFHeader vcfHeader = createVCFHeader(sample, manifest, infiniumGTCFile, gtcGender, fingerprintGender, CLUSTER_FILE,
+                REFERENCE_SEQUENCE, sequenceDictionary);
+
+        writeVcf(sample, records, outputOrder, infiniumGTCFile, infiniumEGTFile, sample.output, sequenceDictionary, vcfHeader);
+
+        log.info(records.size() + " Variants were written to " + sample.output);
+        log.info(infiniumGTCFile.getNumberOfSnps() + " SNPs in the GTC file");
+        log.info(manifest.getNumAssays() + " Variants on the " + manifest.getDescriptorFileName() + " genotyping array manifest file");
     }
 
     static Sex getFingerprintSex(final File file) {
@@ -274,33 +471,7 @@ public class GtcToVcf extends CommandLineProgram {
         return Sex.Unknown;
     }
 
-    private void fillContexts(final SortingCollection<VariantContext> contexts, final InfiniumGTCFile gtcFile,
-                              final Build37ExtendedIlluminaManifest manifest, final InfiniumEGTFile egtFile) {
-        final ProgressLogger progressLogger = new ProgressLogger(log, 100000, "sorted");
-
-        final Iterator<Build37ExtendedIlluminaManifestRecord> iterator = manifest.extendedIterator();
-        int gtcIndex = 0;
-
-        int numVariantsWritten = 0;
-
-        while (iterator.hasNext()) {
-            final Build37ExtendedIlluminaManifestRecord record = iterator.next();
-
-            if (!record.isBad()) {
-                InfiniumGTCRecord gtcRecord = gtcFile.getRecord(gtcIndex);
-                VariantContext context = makeVariantContext(record, gtcRecord, egtFile, progressLogger);
-                numVariantsWritten++;
-                contexts.add(context);
-            }
-            gtcIndex++;
-        }
-
-        log.info(numVariantsWritten + " Variants were written to file");
-        log.info(gtcFile.getNumberOfSnps() + " SNPs in the GTC file");
-        log.info(manifest.getNumAssays() + " Variants on the " + manifest.getDescriptorFileName() + " genotyping array manifest file");
-    }
-
-    private VariantContext makeVariantContext(Build37ExtendedIlluminaManifestRecord record, final InfiniumGTCRecord gtcRecord,
+    private VariantContext makeVariantContext(final String sampleName, Build37ExtendedIlluminaManifestRecord record, final InfiniumGTCRecord gtcRecord,
                                               final InfiniumEGTFile egtFile, final ProgressLogger progressLogger) {
         // If the record is not flagged as errant in the manifest we include it in the VCF
         Allele A = record.getAlleleA();
@@ -333,7 +504,6 @@ public class GtcToVcf extends CommandLineProgram {
             assayAlleles.add(B);
         }
 
-        final String sampleName = FilenameUtils.removeExtension(INPUT.getName());
         final Genotype genotype = getGenotype(sampleName, gtcRecord, record, A, B);
 
         final VariantContextBuilder builder = new VariantContextBuilder();
@@ -481,17 +651,23 @@ public class GtcToVcf extends CommandLineProgram {
         if (Float.isNaN(value)) {
             return DOT;
         }
-        return df.format(value);
+        return df.get().format(value);
     }
 
     /**
-     * Writes out the VariantContext objects in the order presented to the supplied output file
-     * in VCF format.
+     * Writes out a VariantContext for each manifest record, in the order given by outputOrder, to the supplied
+     * output file in VCF format.
      */
-    private void writeVcf(final SortingCollection<VariantContext> variants,
+    private void writeVcf(final GtcSample sample,
+                          final ManifestRecords records,
+                          final int[] outputOrder,
+                          final InfiniumGTCFile gtcFile,
+                          final InfiniumEGTFile egtFile,
                           final File output,
                           final SAMSequenceDictionary dict,
                           final VCFHeader vcfHeader) {
+        final ProgressLogger progressLogger = new ProgressLogger(log, 100000, "converted");
+        final String sampleName = sample.getChipWellBarcode();
 
         try (final VariantContextWriter writer = new VariantContextWriterBuilder()
                 .setOutputFile(output)
@@ -501,7 +677,10 @@ public class GtcToVcf extends CommandLineProgram {
 
             writer.writeHeader(vcfHeader);
 
-            for (final VariantContext variant : variants) {
+            for (final int recordIndex : outputOrder) {
+                final Build37ExtendedIlluminaManifestRecord record = records.get(recordIndex);
+                final InfiniumGTCRecord gtcRecord = gtcFile.getRecord(record.getIndex());
+                final VariantContext variant = makeVariantContext(sampleName, record, gtcRecord, egtFile, progressLogger);
                 if (variant.getAlternateAlleles().size() > 1) {
                     variant.getCommonInfo().addFilter(InfiniumVcfFields.TRIALLELIC);
                 }
@@ -511,14 +690,15 @@ public class GtcToVcf extends CommandLineProgram {
         }
     }
 
-    private VCFHeader createVCFHeader(final Build37ExtendedIlluminaManifest manifest,
+    private VCFHeader createVCFHeader(final GtcSample sample,
+                                      final Build37ExtendedIlluminaManifest manifest,
                                       final InfiniumGTCFile gtcFile,
                                       final String gtcGender,
+                                      final Sex fingerprintGender,
                                       final File clusterFile,
                                       final File reference,
                                       final SAMSequenceDictionary dict) {
-        final String inputName = INPUT.getName();
-        final String chipWellBarcode = inputName.substring(0, inputName.lastIndexOf('.'));
+        final String chipWellBarcode = sample.getChipWellBarcode();
 
         final Set<VCFHeaderLine> lines = new LinkedHashSet<>();
         lines.add(new VCFHeaderLine("fileDate", new Date().toString()));
@@ -532,9 +712,9 @@ public class GtcToVcf extends CommandLineProgram {
         if (ANALYSIS_VERSION_NUMBER != null) {
             lines.add(new VCFHeaderLine(InfiniumVcfFields.ANALYSIS_VERSION_NUMBER, ANALYSIS_VERSION_NUMBER.toString()));
         }
-        lines.add(new VCFHeaderLine(InfiniumVcfFields.SAMPLE_ALIAS, SAMPLE_ALIAS));
-        if (EXPECTED_GENDER != null) {
-            lines.add(new VCFHeaderLine(InfiniumVcfFields.EXPECTED_GENDER, EXPECTED_GENDER));
+        lines.add(new VCFHeaderLine(InfiniumVcfFields.SAMPLE_ALIAS, sample.sampleAlias));
+        if (sample.expectedGender != null) {
+            lines.add(new VCFHeaderLine(InfiniumVcfFields.EXPECTED_GENDER, sample.expectedGender));
         }
         //add control codes
         final int measurementCount = gtcFile.getRawControlXIntensities().length / ArraysControlInfo.CONTROL_INFO.length;
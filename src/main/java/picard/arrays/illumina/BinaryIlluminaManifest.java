@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.arrays.illumina;
+
+import htsjdk.samtools.util.RuntimeIOException;
+import picard.PicardException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory-mapped, columnar form of an Illumina manifest (standard or extended).
+ * <p/>
+ * Every value of every [Assay] record is stored as a fixed-width reference into a pool of the distinct strings of the
+ * manifest, with the records of one column stored together.  Values such as chromosomes, strands, alleles and flags
+ * repeat across millions of records and are stored once.  The values of any record can be read directly, by record
+ * index and column, without parsing the CSV or building a record object; IlluminaManifest and
+ * Build37ExtendedIlluminaManifest also accept this file in place of the CSV.
+ * <p/>
+ * The file holds the header rows and assay column names of the manifest, followed by the string pool offsets, the
+ * string pool and the columns.  The offsets of those sections are stored in a directory at the end of the file.
+ */
+public class BinaryIlluminaManifest {
+    /** Extension conventionally used for binary manifest files. */
+    public static final String FILE_EXTENSION = ".bin_manifest";
+
+    private static final int MAGIC = 0x50494d42; // "PIMB"
+    private static final int VERSION = 1;
+    // string pool offsets, string pool, string pool length, columns and number of records
+    private static final int DIRECTORY_SIZE = 4 * Long.BYTES + Integer.BYTES;
+    // The pool id of null (empty) values
+    private static final int NULL_ID = -1;
+
+    private final List<String[]> headerContents;
+    private final String[] columnNames;
+    private final Map<String, Integer> columnNameToIndex = new HashMap<>();
+    private final int numRecords;
+    private final ByteBuffer poolOffsets;
+    private final ByteBuffer pool;
+    private final ByteBuffer[] columns;
+
+    private BinaryIlluminaManifest(final List<String[]> headerContents, final String[] columnNames, final int numRecords,
+                                   final ByteBuffer poolOffsets, final ByteBuffer pool, final ByteBuffer[] columns) {
+        this.headerContents = headerContents;
+        this.columnNames = columnNames;
+        this.numRecords = numRecords;
+        this.poolOffsets = poolOffsets;
+        this.pool = pool;
+        this.columns = columns;
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNameToIndex.put(columnNames[i], i);
+        }
+    }
+
+    /** Returns true if the file starts with the magic number of a binary manifest. */
+    public static boolean isBinaryManifest(final File file) {
+        if (!file.isFile() || file.length() < Integer.BYTES) return false;
+        try (final DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading " + file, e);
+        }
+    }
+
+    /**
+     * Writes the header and [Assay] records of the given manifest in binary form.  The records are read through the
+     * manifest's iterator, so the manifest should not have been iterated over before.
+     */
+    public static void write(final IlluminaManifest manifest, final File output) {
+        final String[] columnNames = manifest.getAssayHeaderNames();
+
+        // The pool is built, and each column encoded, in memory; the pool ids take 4 bytes per value.
+        final Map<String, Integer> poolIds = new HashMap<>();
+        final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        final List<Integer> poolEnds = new ArrayList<>();
+        final IntColumn[] columnValues = new IntColumn[columnNames.length];
+        for (int i = 0; i < columnValues.length; i++) {
+            columnValues[i] = new IntColumn();
+        }
+
+        int numRecords = 0;
+        final Iterator<IlluminaManifestRecord> iterator = manifest.iterator();
+        while (iterator.hasNext()) {
+            final String[] line = iterator.next().getOriginalLine();
+            for (int column = 0; column < columnNames.length; column++) {
+                final String value = line[column];
+                if (value == null) {
+                    // Empty fields are parsed as null, which is kept distinct from the empty string.
+                    columnValues[column].add(NULL_ID);
+                    continue;
+                }
+                Integer id = poolIds.get(value);
+                if (id == null) {
+                    id = poolIds.size();
+                    poolIds.put(value, id);
+                    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    poolBytes.write(bytes, 0, bytes.length);
+                    poolEnds.add(poolBytes.size());
+                }
+                columnValues[column].add(id);
+            }
+            numRecords++;
+        }
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(manifest.getHeaderContents().size());
+            for (final String[] row : manifest.getHeaderContents()) {
+                out.writeInt(row.length);
+                for (final String field : row) {
+                    out.writeBoolean(field != null);
+                    if (field != null) out.writeUTF(field);
+                }
+            }
+            out.writeInt(columnNames.length);
+            for (final String columnName : columnNames) {
+                out.writeUTF(columnName);
+            }
+
+            // Everything from here on has a known size, so the section offsets follow from the header length.
+            final long poolOffsetsOffset = out.size();
+            out.writeInt(0);
+            for (final int end : poolEnds) {
+                out.writeInt(end);
+            }
+            final long poolOffset = poolOffsetsOffset + (long) (poolEnds.size() + 1) * Integer.BYTES;
+            poolBytes.writeTo(out);
+            final long columnsOffset = poolOffset + poolBytes.size();
+            for (final IntColumn column : columnValues) {
+                for (int i = 0; i < column.size; i++) {
+                    out.writeInt(column.values[i]);
+                }
+            }
+
+            out.writeLong(poolOffsetsOffset);
+            out.writeLong(poolOffset);
+            out.writeLong(poolBytes.size());
+            out.writeLong(columnsOffset);
+            out.writeInt(numRecords);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing binary manifest " + output, e);
+        }
+    }
+
+    /** Memory-maps a binary manifest file. */
+    public static BinaryIlluminaManifest open(final File file) {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+             final FileChannel channel = raf.getChannel()) {
+            if (raf.readInt() != MAGIC) {
+                throw new PicardException(file + " is not a binary Illumina manifest.");
+            }
+            final int version = raf.readInt();
+            if (version != VERSION) {
+                throw new PicardException("Binary Illumina manifest " + file + " has version " + version + " but only version " + VERSION + " is supported.");
+            }
+
+            raf.seek(raf.length() - DIRECTORY_SIZE);
+            final long poolOffsetsOffset = raf.readLong();
+            final long poolOffset = raf.readLong();
+            final long poolLength = raf.readLong();
+            final long columnsOffset = raf.readLong();
+            final int numRecords = raf.readInt();
+
+            // The header rows and column names are small, so they are read into memory.
+            final byte[] headerBytes = new byte[(int) poolOffsetsOffset - 2 * Integer.BYTES];
+            raf.seek(2 * Integer.BYTES);
+            raf.readFully(headerBytes);
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(headerBytes));
+            final int numHeaderRows = in.readInt();
+            final List<String[]> headerContents = new ArrayList<>(numHeaderRows);
+            for (int i = 0; i < numHeaderRows; i++) {
+                final String[] row = new String[in.readInt()];
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = in.readBoolean() ? in.readUTF() : null;
+                }
+                headerContents.add(row);
+            }
+            final String[] columnNames = new String[in.readInt()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = in.readUTF();
+            }
+
+            // The mappings stay valid after the channel is closed.
+            final ByteBuffer poolOffsets = channel.map(FileChannel.MapMode.READ_ONLY, poolOffsetsOffset, poolOffset - poolOffsetsOffset);
+            final ByteBuffer pool = channel.map(FileChannel.MapMode.READ_ONLY, poolOffset, poolLength);
+            final ByteBuffer[] columns = new ByteBuffer[columnNames.length];
+            final long columnLength = (long) numRecords * Integer.BYTES;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, columnsOffset + i * columnLength, columnLength);
+            }
+            return new BinaryIlluminaManifest(headerContents, columnNames, numRecords, poolOffsets, pool, columns);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading binary manifest " + file, e);
+        }
+    }
+
+    /** The rows of the manifest header, as in IlluminaManifest.getHeaderContents(). */
+    public List<String[]> getHeaderContents() {
+        return headerContents;
+    }
+
+    /** The names of the [Assay] columns, in manifest order. */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public int getNumColumns() {
+        return columnNames.length;
+    }
+
+    /** Returns the index of the named column, or -1 if the manifest does not have it. */
+    public int getColumnIndex(final String columnName) {
+        final Integer index = columnNameToIndex.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Returns the id of the value of a record in the string pool, or -1 if the value is empty.  Records have equal
+     * values in a column exactly when their ids are equal, so values can be compared or counted without decoding them.
+     */
+    public int getValueId(final int recordIndex, final int column) {
+        return columns[column].getInt(recordIndex * Integer.BYTES);
+    }
+
+    /** Returns the value of a record in the given column, or null if it is empty. */
+    public String getString(final int recordIndex, final int column) {
+        final int id = getValueId(recordIndex, column);
+        if (id == NULL_ID) return null;
+        final int start = poolOffsets.getInt(id * Integer.BYTES);
+        final int end = poolOffsets.getInt((id + 1) * Integer.BYTES);
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer value = pool.duplicate();
+        value.position(start);
+        value.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the value of a record in the given column parsed as an integer, without decoding it to a String.
+     *
+     * @throws NumberFormatException if the value is not an integer.
+     */
+    public int getInt(final int recordIndex, final int column) {
+        final int id = getValueId(recordIndex, column);
+        if (id == NULL_ID) {
+            throw new NumberFormatException("Empty value in column " + columnNames[column] + " of record " + recordIndex);
+        }
+        int i = poolOffsets.getInt(id * Integer.BYTES);
+        final int end = poolOffsets.getInt((id + 1) * Integer.BYTES);
+        if (i == end) {
+            throw new NumberFormatException("Empty value in column " + columnNames[column] + " of record " + recordIndex);
+        }
+        final boolean negative = pool.get(i) == '-';
+        if (negative) i++;
+        // accumulate negatively so that Integer.MIN_VALUE can be parsed
+        final long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = pool.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw notAnInteger(recordIndex, column);
+            }
+            value = value * 10 - digit;
+            if (value < limit) {
+                throw notAnInteger(recordIndex, column);
+            }
+        }
+        if (negative && poolOffsets.getInt(id * Integer.BYTES) + 1 == end) {
+            // a sign without digits
+            throw notAnInteger(recordIndex, column);
+        }
+        return (int) (negative ? value : -value);
+    }
+
+    private NumberFormatException notAnInteger(final int recordIndex, final int column) {
+        return new NumberFormatException("Value of column " + columnNames[column] + " of record " + recordIndex + " is not an integer: " + getString(recordIndex, column));
+    }
+
+    /** Returns all the values of a record, as they appeared on its line of the CSV manifest. */
+    public String[] getLine(final int recordIndex) {
+        final String[] line = new String[columnNames.length];
+        for (int column = 0; column < line.length; column++) {
+            line[column] = getString(recordIndex, column);
+        }
+        return line;
+    }
+
+    /** A growable int array, to avoid boxing the pool ids of millions of values. */
+    private static class IntColumn {
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        void add(final int value) {
+            if (size == values.length) {
+                final int[] grown = new int[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.commons.lang.ArrayUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * A class to represent an 'Extended' Illumina Manifest file.
@@ -46,7 +47,8 @@ import java.util.Iterator;
  *
  * Like the class IlluminaManifest which this class extends, this class reads the extended manifest header, stores the contents,
  * and then provides an iterator to allow access to the ExtendedIlluminaManifestRecords
- * (currently this only supports iterating over the assay records).
+ * (currently this only supports iterating over the assay records).  Binary manifests written by
+ * BinaryIlluminaManifest can also be accessed by record index.
  */
 public class Build37ExtendedIlluminaManifest extends IlluminaManifest {
 
@@ -68,6 +70,11 @@ public class Build37ExtendedIlluminaManifest extends IlluminaManifest {
             BUILD37_FLAG_HEADER_NAME
     };
 
+    // The extended columns are read from the end of each line, as Build37ExtendedIlluminaManifestRecord does.
+    private static final int CHR_OFFSET = 7;
+    private static final int POS_OFFSET = 6;
+    private static final int FLAG_OFFSET = 1;
+
     static final String EXTENDED_MANIFEST_VERSION_HEADER_NAME = "CreateExtendedIlluminaManifest.version";
     static final String EXTENDED_MANIFEST_TARGET_BUILD_HEADER_NAME = "Target Build";
     static final String EXTENDED_MANIFEST_TARGET_REFERENCE_HEADER_NAME = "Target Reference File";
@@ -87,6 +94,21 @@ public class Build37ExtendedIlluminaManifest extends IlluminaManifest {
     }
 
     public Iterator<Build37ExtendedIlluminaManifestRecord> extendedIterator() {
+        if (getBinaryManifest() != null) {
+            return new Iterator<Build37ExtendedIlluminaManifestRecord>() {
+                private int assayCount = 0;
+                private final int numRecords = getNumBinaryRecords();
+
+                public boolean hasNext() {
+                    return assayCount < numRecords;
+                }
+
+                public Build37ExtendedIlluminaManifestRecord next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return getExtendedRecord(assayCount++);
+                }
+            };
+        }
 
         return new Iterator<Build37ExtendedIlluminaManifestRecord>() {
             private int assayCount = 0;
@@ -107,6 +129,43 @@ public class Build37ExtendedIlluminaManifest extends IlluminaManifest {
         };
     }
 
+    /**
+     * Returns the extended assay record at the given index.  Only supported for binary manifests, which can be
+     * accessed randomly; use extendedIterator() for CSV manifests.
+     */
+    public Build37ExtendedIlluminaManifestRecord getExtendedRecord(final int index) {
+        return new Build37ExtendedIlluminaManifestRecord(getAssayHeaderNameToIndex(), getBinaryRecordLine(index), index);
+    }
+
+    /**
+     * Returns whether the assay record at the given index is flagged as bad, reading only its flag column.  Only
+     * supported for binary manifests.
+     */
+    public boolean isBadRecord(final int index) {
+        return Build37ExtendedIlluminaManifestRecord.isBad(Build37ExtendedIlluminaManifestRecord.Flag.valueOf(getExtendedColumn(index, FLAG_OFFSET)));
+    }
+
+    /** Returns the build 37 contig of the assay record at the given index.  Only supported for binary manifests. */
+    public String getB37Chr(final int index) {
+        return getExtendedColumn(index, CHR_OFFSET);
+    }
+
+    /**
+     * Returns the build 37 position of the assay record at the given index, without decoding it to a String.  Only
+     * supported for binary manifests.
+     */
+    public int getB37Pos(final int index) {
+        checkBinaryRecordIndex(index);
+        final BinaryIlluminaManifest binary = getBinaryManifest();
+        return binary.getInt(index, binary.getNumColumns() - POS_OFFSET);
+    }
+
+    private String getExtendedColumn(final int index, final int offset) {
+        checkBinaryRecordIndex(index);
+        final BinaryIlluminaManifest binary = getBinaryManifest();
+        return binary.getString(index, binary.getNumColumns() - offset);
+    }
+
     public String getExtendedManifestVersion() {
         String version = "?";
         for (String[] headerLine: getHeaderContents()) {
@@ -149,6 +149,10 @@ public class Build37ExtendedIlluminaManifestRecord extends IlluminaManifestRecor
     public String getRsId() { return rsId; }
 
     public Boolean isBad() {
+        return isBad(flag);
+    }
+
+    static boolean isBad(final Flag flag) {
         return flag != Flag.DUPE && flag != Flag.PASS;
     }
 
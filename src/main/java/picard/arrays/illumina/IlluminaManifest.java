@@ -42,6 +42,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -49,6 +50,9 @@ import java.util.Set;
  *
  * Reads the header, stores the contents, and then provides an iterator to allow
  * access to the IlluminaManifestRecords (currently this only supports iterating over the assay records).
+ *
+ * The manifest may also be given in the binary form written by BinaryIlluminaManifest, in which case it is
+ * memory-mapped rather than parsed, and its records can also be accessed by index.
  */
 public class IlluminaManifest  {
     public static final String HG17 = "HG17";
@@ -124,6 +128,7 @@ public class IlluminaManifest  {
     private final File manifestFile;
     private final List<String[]> headerContents = new ArrayList<>();
     protected CsvInputParser manifestFileParser;
+    private BinaryIlluminaManifest binaryManifest;
 
     private String descriptorFileName;
     private String assayFormat;
@@ -149,17 +154,36 @@ public class IlluminaManifest  {
     public IlluminaManifest(final File manifestFile) throws IOException {
         IOUtil.assertFileIsReadable(manifestFile);
         this.manifestFile = manifestFile;
-        readHeader();
-        setNumAssays(lociCount);
-        init();
+        if (BinaryIlluminaManifest.isBinaryManifest(manifestFile)) {
+            openBinaryManifest();
+            setNumAssays(lociCount);
+        } else {
+            readHeader();
+            setNumAssays(lociCount);
+            init();
+        }
     }
 
     public IlluminaManifest(final File manifestFile, final int numAssays) throws IOException {
         IOUtil.assertFileIsReadable(manifestFile);
         this.manifestFile = manifestFile;
-        readHeader();
-        setNumAssays(numAssays);
-        init();
+        if (BinaryIlluminaManifest.isBinaryManifest(manifestFile)) {
+            openBinaryManifest();
+            setNumAssays(numAssays);
+        } else {
+            readHeader();
+            setNumAssays(numAssays);
+            init();
+        }
+    }
+
+    private void openBinaryManifest() {
+        binaryManifest = BinaryIlluminaManifest.open(manifestFile);
+        for (final String[] row : binaryManifest.getHeaderContents()) {
+            headerContents.add(row);
+            parseHeaderRow(row);
+        }
+        validateManifestRecordHeader(String.join(",", binaryManifest.getColumnNames()));
     }
 
     private void init() throws IOException {
@@ -176,6 +200,21 @@ public class IlluminaManifest  {
     }
 
     public Iterator<IlluminaManifestRecord> iterator() {
+        if (binaryManifest != null) {
+            return new Iterator<IlluminaManifestRecord>() {
+                private int assayCount = 0;
+                private final int numRecords = getNumBinaryRecords();
+
+                public boolean hasNext() {
+                    return assayCount < numRecords;
+                }
+
+                public IlluminaManifestRecord next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return getRecord(assayCount++);
+                }
+            };
+        }
 
         return new Iterator<IlluminaManifestRecord>() {
             private int assayCount = 0;
@@ -206,34 +245,41 @@ public class IlluminaManifest  {
         // Now that the inputStream is advanced to the line just beyond the sectionName, create a CsvInputParser for that section
         this.manifestFileParser = new CsvInputParser(false, fileInputStream);
 
-        boolean inHeader = true;
         while (manifestFileParser.hasNext()) {
             final String[] row = manifestFileParser.next();
             headerContents.add(row);
-            final String tagName = row[0].trim();         // Remove trailing whitespace.
-            switch (tagName) {
-                case "Descriptor File Name":
-                    setDescriptorFileName(row[1]);
-                    break;
-                case "Assay Format":
-                    setAssayFormat(row[1]);
-                    break;
-                case "Date Manufactured":
-                    setDateManufactured(row[1]);
-                    break;
-                case "Loci Count":
-                    setLociCount(new Integer(row[1]));
-                    inHeader = false;           // Need to end the header now or parser will blow up on next line
-                                                // Note that this means that the header ends at this field
-                    break;
-            }
-            if (!inHeader) {
+            if (!parseHeaderRow(row)) {
                 break;
             }
         }
         fileInputStream.close();
     }
 
+    /**
+     * Sets the manifest fields described by a header row.
+     *
+     * @return false if the row is the last one in the header.
+     */
+    private boolean parseHeaderRow(final String[] row) {
+        final String tagName = row[0].trim();         // Remove trailing whitespace.
+        switch (tagName) {
+            case "Descriptor File Name":
+                setDescriptorFileName(row[1]);
+                break;
+            case "Assay Format":
+                setAssayFormat(row[1]);
+                break;
+            case "Date Manufactured":
+                setDateManufactured(row[1]);
+                break;
+            case "Loci Count":
+                setLociCount(new Integer(row[1]));
+                return false;               // Need to end the header now or parser will blow up on next line
+                                            // Note that this means that the header ends at this field
+        }
+        return true;
+    }
+
     private void validateManifestRecordHeader(final String line) throws PicardException {
         final String[] columns = line.trim().split(",");
         Map<String, Integer> columnNameToIndex = new HashMap<>();
@@ -301,6 +347,45 @@ public class IlluminaManifest  {
 
 
 
+    /** Returns the binary form of the manifest, or null if the manifest was read from a CSV file. */
+    public BinaryIlluminaManifest getBinaryManifest() {
+        return binaryManifest;
+    }
+
+    /** The number of records that can be read from the binary manifest. */
+    protected int getNumBinaryRecords() {
+        return Math.min(getNumAssays(), binaryManifest.getNumRecords());
+    }
+
+    /**
+     * Returns the values of the assay record at the given index in the binary manifest.  Records are built from the
+     * whole line, as they are for CSV manifests, because they keep it for getLine() and parse every standard column
+     * up front; code that needs only a few columns of each record should read them from getBinaryManifest() by
+     * column index instead of building records.
+     */
+    protected String[] getBinaryRecordLine(final int index) {
+        checkBinaryRecordIndex(index);
+        return binaryManifest.getLine(index);
+    }
+
+    /** Checks that the manifest is binary and that a record with the given index can be read from it. */
+    protected void checkBinaryRecordIndex(final int index) {
+        if (binaryManifest == null) {
+            throw new PicardException("Records of manifest " + manifestFile + " can only be accessed by index in its binary form.");
+        }
+        if (index < 0 || index >= getNumBinaryRecords()) {
+            throw new PicardException("Record index " + index + " is out of range for manifest " + manifestFile);
+        }
+    }
+
+    /**
+     * Returns the assay record at the given index.  Only supported for binary manifests, which can be accessed
+     * randomly; use iterator() for CSV manifests.
+     */
+    public IlluminaManifestRecord getRecord(final int index) {
+        return new IlluminaManifestRecord(assayHeaderNameToIndex, getBinaryRecordLine(index), index);
+    }
+
     public File getManifestFile() {
         return manifestFile;
     }
@@ -228,6 +228,11 @@ public class IlluminaManifestRecord {
         return StringUtils.join(originalLine, ",");
     }
 
+    /** The values of the record as they appeared on its line of the manifest. */
+    String[] getOriginalLine() {
+        return originalLine;
+    }
+
     public String getIlmnId() {
         return ilmnId;
     }
@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.cmdline;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Annotation processor that writes the registry of command line programs read by PicardCommandLine, so that the
+ * launcher can load the class of the requested program directly instead of scanning the classpath for all of them.
+ * <p/>
+ * Every concrete class annotated with CommandLineProgramProperties that extends CommandLineProgram and is not omitted
+ * from the command line is written to the resource REGISTRY_RESOURCE as a line with its simple name and its binary
+ * class name, separated by a tab.  Two programs with the same simple name are a compilation error.
+ * <p/>
+ * The processor only depends on the JDK so that the build can compile it ahead of the classes it processes.  It is
+ * not registered as a service and must be requested explicitly, e.g. with javac -processor.
+ */
+@SupportedAnnotationTypes(CommandLineProgramRegistryProcessor.PROPERTIES_ANNOTATION)
+public class CommandLineProgramRegistryProcessor extends AbstractProcessor {
+    /** The classpath resource that holds the registry. */
+    public static final String REGISTRY_RESOURCE = "META-INF/picard/command-line-programs.txt";
+
+    static final String PROPERTIES_ANNOTATION = "org.broadinstitute.barclay.argparser.CommandLineProgramProperties";
+    private static final String COMMAND_LINE_PROGRAM = "picard.cmdline.CommandLineProgram";
+    private static final String OMIT_FROM_COMMAND_LINE = "omitFromCommandLine";
+
+    /** Binary class names of the programs found so far, by simple name. */
+    private final Map<String, String> programs = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!programs.isEmpty()) writeRegistry();
+            return false;
+        }
+
+        final TypeElement properties = processingEnv.getElementUtils().getTypeElement(PROPERTIES_ANNOTATION);
+        final TypeElement commandLineProgram = processingEnv.getElementUtils().getTypeElement(COMMAND_LINE_PROGRAM);
+        if (properties == null || commandLineProgram == null) return false;
+
+        final Types types = processingEnv.getTypeUtils();
+        final TypeMirror commandLineProgramType = types.erasure(commandLineProgram.asType());
+        for (final Element element : roundEnv.getElementsAnnotatedWith(properties)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) continue;
+            final TypeElement type = (TypeElement) element;
+            if (!types.isSubtype(types.erasure(type.asType()), commandLineProgramType) || isOmittedFromCommandLine(type, properties)) {
+                continue;
+            }
+
+            final String simpleName = type.getSimpleName().toString();
+            final String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            final String previous = programs.put(simpleName, className);
+            if (previous != null && !previous.equals(className)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Simple class name collision: " + simpleName + " (" + previous + " and " + className + ")", type);
+            }
+        }
+        // Leave the annotation to any other processor.
+        return false;
+    }
+
+    private boolean isOmittedFromCommandLine(final TypeElement type, final TypeElement properties) {
+        for (final AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (!annotation.getAnnotationType().asElement().equals(properties)) continue;
+            final Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                    processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(OMIT_FROM_COMMAND_LINE)) {
+                    return Boolean.TRUE.equals(entry.getValue().getValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeRegistry() {
+        try (final PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY_RESOURCE).openWriter())) {
+            for (final Map.Entry<String, String> entry : programs.entrySet()) {
+                writer.println(entry.getKey() + "\t" + entry.getValue());
+            }
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + REGISTRY_RESOURCE + ": " + e.getMessage());
+        }
+    }
+}
@@ -7,11 +7,17 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramGroup;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.argparser.ExperimentalFeature;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -115,6 +121,19 @@ public class PicardCommandLine {
 
     /** Returns the command line program specified, or prints the usage and exits with exit code 1 **/
     private static CommandLineProgram extractCommandLineProgram(final String[] args, final List<String> packageList, final String commandLineName) {
+        // Load only the requested program if the registry written at build time knows it, and fall back to scanning
+        // the classpath for programs that are not registered, e.g. those of plugins.
+        if (args.length > 0) {
+            final Class<?> registeredClass = loadRegisteredProgram(args[0], packageList);
+            if (registeredClass != null) {
+                try {
+                    return (CommandLineProgram) registeredClass.newInstance();
+                } catch (final InstantiationException | IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
         final Map<String, Class<?>> simpleNameToClass = new HashMap<>();
         final List<String> missingAnnotationClasses = new ArrayList<>();
         processAllCommandLinePrograms(
@@ -186,6 +205,55 @@ public class PicardCommandLine {
         }
     }
 
+    /**
+     * Reads the registries of command line programs written by CommandLineProgramRegistryProcessor that are on the
+     * classpath of the given class loader.
+     *
+     * @param packageList only programs in these packages or their sub-packages are returned
+     * @return the binary class names of the registered programs by simple name.  A simple name that is registered for
+     * more than one class is left out, so that looking it up falls back to scanning the classpath.
+     */
+    public static Map<String, String> getRegisteredPrograms(final List<String> packageList, final ClassLoader classLoader) {
+        final Map<String, String> programs = new HashMap<>();
+        final Set<String> collisions = new HashSet<>();
+        try {
+            final Enumeration<URL> registries = classLoader.getResources(CommandLineProgramRegistryProcessor.REGISTRY_RESOURCE);
+            while (registries.hasMoreElements()) {
+                final URL registry = registries.nextElement();
+                try (final BufferedReader reader = new BufferedReader(new InputStreamReader(registry.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final String[] fields = line.split("\t");
+                        if (fields.length != 2 || packageList.stream().noneMatch(pkg -> fields[1].startsWith(pkg + "."))) continue;
+                        final String previous = programs.put(fields[0], fields[1]);
+                        if (previous != null && !previous.equals(fields[1])) collisions.add(fields[0]);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            log.warn(e, "Could not read the registry of command line programs; scanning the classpath instead.");
+            return Collections.emptyMap();
+        }
+        programs.keySet().removeAll(collisions);
+        return programs;
+    }
+
+    /** Returns the class of the named program if it is registered and can be loaded, otherwise null. */
+    private static Class<?> loadRegisteredProgram(final String simpleName, final List<String> packageList) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final String className = getRegisteredPrograms(packageList, classLoader).get(simpleName);
+        if (className == null) return null;
+        try {
+            final Class<?> clazz = Class.forName(className, true, classLoader);
+            // A registry that is out of date with the classes falls back to scanning, which reports any problem.
+            if (!CommandLineProgram.class.isAssignableFrom(clazz) || getProgramProperty(clazz) == null) return null;
+            return clazz;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            log.debug("Registered command line program " + className + " could not be loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
     public static CommandLineProgramProperties getProgramProperty(Class clazz) {
         return (CommandLineProgramProperties)clazz.getAnnotation(CommandLineProgramProperties.class);
     }
@@ -0,0 +1,474 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.illumina;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the converted clusters of one tile for every barcode at once.  Records are buffered in a single array
+ * shared by all barcodes; when it fills, the buffer is grouped by barcode, each group is sorted, and the whole
+ * buffer is appended to one spill segment file as a run of records per barcode.  A tile therefore produces a
+ * handful of segment files no matter how many barcodes the lane has, unlike a SortingCollection per barcode.
+ * As with a SortingCollection, the records still buffered when reading finishes are kept in memory rather than
+ * spilled.
+ * <p/>
+ * Once reading is complete, iterator(barcode) merges that barcode's runs across the tile's segments using buffers
+ * from a SpillBufferPool shared by the whole conversion, so the read buffers in use are bounded by the pool budget
+ * and the open files by the number of merges in flight times the number of segments in a tile.
+ * <p/>
+ * Adding records is not thread-safe; iterating different barcodes concurrently is.
+ *
+ * @param <T> The type of the records being demultiplexed.
+ */
+class BarcodePartitionedSpill<T> {
+    private final String tileName;
+    private final Map<String, Integer> barcodeIndices;
+    private final SortingCollection.Codec<T> codecPrototype;
+    private final Comparator<T> comparator;
+    private final File[] tmpDirs;
+    private final SpillBufferPool bufferPool;
+    private final int maxRecordsInRam;
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    // The in-memory buffer of records not yet spilled, with the index of each record's barcode.  Allocated by the
+    // first add() so that tiles queued for processing hold no buffer, and released by doneAdding().
+    private Object[] records;
+    private int[] recordBarcodes;
+    private int numRecords = 0;
+    private boolean doneAdding = false;
+
+    // The buffer as rearranged by groupAndSortBuffer().
+    private Object[] sortedBuffer;
+
+    // The records left in the buffer by doneAdding(), grouped by barcode and sorted, and the start of each group.
+    private Object[] tailRecords;
+    private int[] tailStarts;
+
+    /**
+     * @param tileName        Used to name the segment files.
+     * @param barcodeIndices  Maps every expected barcode (possibly null) to a distinct index in [0, size).
+     * @param maxRecordsInRam The number of records buffered before a segment is spilled.
+     * @param codecPrototype  Cloned to encode and decode records.
+     * @param comparator      The order of the records within each barcode.
+     * @param tmpDirs         Where to write segment files.
+     * @param bufferPool      Supplies the read buffers used when merging segments.
+     */
+    BarcodePartitionedSpill(final String tileName,
+                            final Map<String, Integer> barcodeIndices,
+                            final int maxRecordsInRam,
+                            final SortingCollection.Codec<T> codecPrototype,
+                            final Comparator<T> comparator,
+                            final List<File> tmpDirs,
+                            final SpillBufferPool bufferPool) {
+        if (maxRecordsInRam <= 0) throw new IllegalArgumentException("maxRecordsInRam must be positive.");
+        this.tileName = tileName;
+        this.barcodeIndices = barcodeIndices;
+        this.codecPrototype = codecPrototype;
+        this.comparator = comparator;
+        this.tmpDirs = tmpDirs.toArray(new File[tmpDirs.size()]);
+        this.bufferPool = bufferPool;
+        this.maxRecordsInRam = maxRecordsInRam;
+    }
+
+    /** Adds a record for the given barcode, spilling the buffer first if it is full. */
+    void add(final String barcode, final T record) {
+        if (doneAdding) throw new IllegalStateException("Cannot add records after doneAdding() has been called.");
+        final Integer barcodeIndex = barcodeIndices.get(barcode);
+        if (barcodeIndex == null) throw new IllegalArgumentException("Unexpected barcode " + barcode);
+        if (records == null) {
+            records = new Object[maxRecordsInRam];
+            recordBarcodes = new int[maxRecordsInRam];
+        } else if (numRecords == records.length) {
+            spill();
+        }
+        records[numRecords] = record;
+        recordBarcodes[numRecords] = barcodeIndex;
+        ++numRecords;
+    }
+
+    /** Sorts the records still buffered and keeps them in memory.  No records may be added afterwards. */
+    void doneAdding() {
+        if (doneAdding) return;
+        tailStarts = groupAndSortBuffer();
+        tailRecords = sortedBuffer;
+        sortedBuffer = null;
+        records = null;
+        recordBarcodes = null;
+        doneAdding = true;
+    }
+
+    /** Returns the number of segment files written for this tile. */
+    int getNumSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the records for the given barcode in comparator order.  The iterator holds pooled buffers and open
+     * files until it is exhausted or closed.
+     */
+    CloseableIterator<T> iterator(final String barcode) {
+        if (!doneAdding) throw new IllegalStateException("Cannot iterate before doneAdding() has been called.");
+        final Integer barcodeIndex = barcodeIndices.get(barcode);
+        final List<Run> runs = new ArrayList<>();
+        if (barcodeIndex != null) {
+            for (final Segment segment : segments) {
+                final Run run = segment.findRun(barcodeIndex);
+                if (run != null) runs.add(run);
+            }
+        }
+        final int tailFrom = barcodeIndex == null ? 0 : tailStarts[barcodeIndex];
+        final int tailTo = barcodeIndex == null ? 0 : tailStarts[barcodeIndex + 1];
+        return new MergingIterator(runs, tailFrom, tailTo);
+    }
+
+    /** Deletes all segment files and drops the in-memory records.  The spill may not be iterated afterwards. */
+    void cleanup() {
+        for (final Segment segment : segments) {
+            IOUtil.deleteFiles(segment.file);
+        }
+        segments.clear();
+        tailRecords = null;
+    }
+
+    /**
+     * Groups the buffered records by barcode with a counting sort into sortedBuffer, sorts each group and empties
+     * the buffer.
+     *
+     * @return The start of each barcode's group in sortedBuffer, followed by the number of records.
+     */
+    @SuppressWarnings("unchecked")
+    private int[] groupAndSortBuffer() {
+        final int numBarcodes = barcodeIndices.size();
+        final int[] starts = new int[numBarcodes + 1];
+        for (int i = 0; i < numRecords; ++i) {
+            starts[recordBarcodes[i] + 1]++;
+        }
+        for (int b = 0; b < numBarcodes; ++b) {
+            starts[b + 1] += starts[b];
+        }
+
+        final Object[] grouped = new Object[numRecords];
+        final int[] next = Arrays.copyOf(starts, numBarcodes);
+        for (int i = 0; i < numRecords; ++i) {
+            grouped[next[recordBarcodes[i]]++] = records[i];
+            records[i] = null;
+        }
+        for (int b = 0; b < numBarcodes; ++b) {
+            Arrays.sort(grouped, starts[b], starts[b + 1], (Comparator<Object>) (Comparator<?>) comparator);
+        }
+        numRecords = 0;
+        sortedBuffer = grouped;
+        return starts;
+    }
+
+    /** Sorts the buffered records and appends them to a new segment file as one run per barcode. */
+    @SuppressWarnings("unchecked")
+    private void spill() {
+        final int numBarcodes = barcodeIndices.size();
+        final int[] starts = groupAndSortBuffer();
+        final Object[] grouped = sortedBuffer;
+        sortedBuffer = null;
+
+        final File file;
+        try {
+            file = IOUtil.newTempFile(tileName + ".", ".spill", tmpDirs);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error creating spill segment for " + tileName, e);
+        }
+        final Segment segment = new Segment(file);
+        try (final CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), SpillBufferPool.DEFAULT_BUFFER_SIZE))) {
+            final SortingCollection.Codec<T> codec = codecPrototype.clone();
+            codec.setOutputStream(out);
+            for (int b = 0; b < numBarcodes; ++b) {
+                final int from = starts[b];
+                final int to = starts[b + 1];
+                if (from == to) continue;
+                final long offset = out.getCount();
+                for (int i = from; i < to; ++i) {
+                    codec.encode((T) grouped[i]);
+                    grouped[i] = null;
+                }
+                segment.addRun(b, offset, out.getCount() - offset, to - from);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing spill segment " + file, e);
+        }
+        segments.add(segment);
+    }
+
+    /** An append-only segment file holding one contiguous run of records per barcode present in it. */
+    private static class Segment {
+        private final File file;
+        private int numRuns = 0;
+        private int[] runBarcodes = new int[16];
+        private long[] runOffsets = new long[16];
+        private long[] runLengths = new long[16];
+        private int[] runCounts = new int[16];
+
+        Segment(final File file) {
+            this.file = file;
+        }
+
+        /** Runs are added in increasing barcode order, which findRun() relies on. */
+        void addRun(final int barcode, final long offset, final long length, final int count) {
+            if (numRuns == runBarcodes.length) {
+                final int newSize = numRuns * 2;
+                runBarcodes = Arrays.copyOf(runBarcodes, newSize);
+                runOffsets = Arrays.copyOf(runOffsets, newSize);
+                runLengths = Arrays.copyOf(runLengths, newSize);
+                runCounts = Arrays.copyOf(runCounts, newSize);
+            }
+            runBarcodes[numRuns] = barcode;
+            runOffsets[numRuns] = offset;
+            runLengths[numRuns] = length;
+            runCounts[numRuns] = count;
+            ++numRuns;
+        }
+
+        Run findRun(final int barcode) {
+            final int i = Arrays.binarySearch(runBarcodes, 0, numRuns, barcode);
+            return i < 0 ? null : new Run(file, runOffsets[i], runLengths[i], runCounts[i]);
+        }
+    }
+
+    /** The location of one barcode's records within a segment file. */
+    private static class Run {
+        private final File file;
+        private final long offset;
+        private final long length;
+        private final int count;
+
+        Run(final File file, final long offset, final long length, final int count) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+    }
+
+    /** Decodes the records of a single run through a pooled buffer, or reads them from the in-memory tail. */
+    private class RunReader {
+        private final FileChannel channel; // null when reading the in-memory tail
+        private final SortingCollection.Codec<T> codec;
+        private final int index;
+        private int remaining;
+        private int nextTailRecord;
+        private T current;
+
+        RunReader(final Run run, final byte[] buffer, final int index) throws IOException {
+            this.channel = FileChannel.open(run.file.toPath(), StandardOpenOption.READ);
+            this.codec = codecPrototype.clone();
+            this.codec.setInputStream(new ChannelRangeInputStream(channel, run.offset, run.length, buffer));
+            this.index = index;
+            this.remaining = run.count;
+            advance();
+        }
+
+        RunReader(final int tailFrom, final int tailTo, final int index) {
+            this.channel = null;
+            this.codec = null;
+            this.index = index;
+            this.nextTailRecord = tailFrom;
+            this.remaining = tailTo - tailFrom;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        void advance() {
+            if (remaining == 0) {
+                current = null;
+                return;
+            }
+            if (channel == null) {
+                current = (T) tailRecords[nextTailRecord++];
+            } else {
+                current = codec.decode();
+                if (current == null) throw new IllegalStateException("Spill segment ended before all records were read.");
+            }
+            --remaining;
+        }
+    }
+
+    /**
+     * Merges the runs of one barcode, preferring earlier segments and then the in-memory tail on ties so that
+     * input order is kept.
+     */
+    private class MergingIterator implements CloseableIterator<T> {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> queue;
+        private final byte[][] buffers;
+        private boolean closed = false;
+
+        MergingIterator(final List<Run> runs, final int tailFrom, final int tailTo) {
+            this.queue = new PriorityQueue<>(runs.size() + 1, (r1, r2) -> {
+                final int cmp = comparator.compare(r1.current, r2.current);
+                return cmp != 0 ? cmp : Integer.compare(r1.index, r2.index);
+            });
+            this.buffers = runs.isEmpty() ? new byte[0][] : bufferPool.acquire(runs.size());
+            try {
+                for (int i = 0; i < runs.size(); ++i) {
+                    final RunReader reader = new RunReader(runs.get(i), buffers[i], i);
+                    readers.add(reader);
+                    if (reader.current != null) queue.add(reader);
+                }
+            } catch (final IOException e) {
+                close();
+                throw new RuntimeIOException("Error opening spill segment for " + tileName, e);
+            }
+            if (tailTo > tailFrom) {
+                final RunReader reader = new RunReader(tailFrom, tailTo, runs.size());
+                readers.add(reader);
+                queue.add(reader);
+            }
+            if (queue.isEmpty()) close();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            final RunReader reader = queue.poll();
+            if (reader == null) throw new NoSuchElementException();
+            final T ret = reader.current;
+            reader.advance();
+            if (reader.current != null) queue.add(reader);
+            else if (queue.isEmpty()) close();
+            return ret;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            for (final RunReader reader : readers) {
+                CloserUtil.close(reader.channel);
+            }
+            readers.clear();
+            if (buffers.length > 0) bufferPool.release(buffers);
+        }
+    }
+
+    /** Reads a byte range of a file with positional reads, so that no stream position is shared. */
+    private static class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+        private long remaining;
+
+        ChannelRangeInputStream(final FileChannel channel, final long offset, final long length, final byte[] buffer) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.wrap(buffer);
+            this.buffer.limit(0);
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) return true;
+            if (remaining == 0) return false;
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            while (buffer.hasRemaining()) {
+                final int n = channel.read(buffer, position);
+                if (n < 0) throw new IOException("Unexpected end of spill segment.");
+                position += n;
+                remaining -= n;
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /** Tracks the number of bytes written so that the extent of each run is known. */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -23,6 +23,7 @@
  */
 package picard.illumina;
 
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.PeekIterator;
 import htsjdk.samtools.util.SortingCollection;
@@ -97,6 +98,10 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
     // ends, but for unit testing it is desirable to stop the task when done with this instance.
     private final TimerTask gcTimerTask;
 
+    // If spill segment demultiplexing is enabled, these are non-null.
+    private SpillBufferPool spillBufferPool = null;
+    private Map<String, Integer> barcodeIndices = null;
+
     /**
      * @param basecallsDir             Where to read basecalls from.
      * @param lane                     What lane to process.
@@ -214,6 +219,22 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
     }
 
 
+    /**
+     * Instead of keeping a SortingCollection per barcode per tile, write each tile's records into spill segments
+     * partitioned by barcode, and merge them per barcode in tile order through a buffer pool of the given size
+     * shared by all writers.  Memory and open files then no longer grow with the number of barcodes.
+     * Must be called before doTileProcessing.
+     *
+     * @param mergeBufferBytes The total size of the read buffers shared by all concurrent segment merges.
+     */
+    void setSpillSegmentDemultiplexing(final long mergeBufferBytes) {
+        this.spillBufferPool = new SpillBufferPool(mergeBufferBytes);
+        this.barcodeIndices = new HashMap<>();
+        for (final String barcode : barcodeRecordWriterMap.keySet()) {
+            barcodeIndices.put(barcode, barcodeIndices.size());
+        }
+    }
+
     /**
      * Do the work, i.e. create a bunch of threads to read, sort and write.
      * setConverter() must be called before calling this method.
@@ -314,7 +335,9 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
 
 
     /**
-     * Represents the state of a tile's processing and encapsulates the data collected from that tile.
+     * Represents the state of a tile's processing and encapsulates the data collected from that tile.  The records
+     * are held either in a SortingCollection per barcode or, if spill segment demultiplexing is enabled, in a single
+     * BarcodePartitionedSpill for the tile.
      * <p/>
      * TileProcessingRecords are accessed from each worker thread to assess the progress of the run, so its methods
      * are synchronized.
@@ -323,9 +346,20 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
         final private Map<String, SortingCollection<CLUSTER_OUTPUT_RECORD>> barcodeToRecordCollection =
                 new HashMap<>();
         final private Map<String, TileBarcodeProcessingState> barcodeToProcessingState = new HashMap<>();
+        final private BarcodePartitionedSpill<CLUSTER_OUTPUT_RECORD> spill;
         private TileProcessingState state = TileProcessingState.NOT_DONE_READING;
         private long recordCount = 0;
 
+        TileProcessingRecord(final Tile tile) {
+            if (spillBufferPool == null) {
+                this.spill = null;
+            } else {
+                this.spill = new BarcodePartitionedSpill<>("tile" + tile.getNumber(), barcodeIndices,
+                        Math.max(1, maxReadsInRamPerTile), codecPrototype, outputRecordComparator, tmpDirs,
+                        spillBufferPool);
+            }
+        }
+
         /**
          * Returns the state of this tile's processing.
          */
@@ -346,6 +380,18 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
         public synchronized void addRecord(final String barcode, final CLUSTER_OUTPUT_RECORD record) {
             this.recordCount += 1;
 
+            if (this.spill != null) {
+                if (!barcodeRecordWriterMap.containsKey(barcode)) {
+                    if (ignoreUnexpectedBarcodes) {
+                        return;
+                    }
+                    throw new PicardException(String.format("Read records with barcode %s, but this barcode was not expected.  (Is it referenced in the parameters file?)", barcode));
+                }
+                this.barcodeToProcessingState.putIfAbsent(barcode, null);
+                this.spill.add(barcode, record);
+                return;
+            }
+
             // Grab the existing collection, or initialize it if it doesn't yet exist
             SortingCollection<CLUSTER_OUTPUT_RECORD> recordCollection = this.barcodeToRecordCollection.get(barcode);
             if (recordCollection == null) {
@@ -377,11 +423,46 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
                     tmpDirs);
         }
 
+        /**
+         * Signals that all of this tile's records have been added.
+         */
+        public synchronized void doneAdding() {
+            if (this.spill != null) {
+                this.spill.doneAdding();
+            } else {
+                this.barcodeToRecordCollection.values().forEach(SortingCollection::doneAdding);
+            }
+        }
+
+        /**
+         * Returns the records read for the provided barcode, in output order.  A spill is iterated without this
+         * record's lock: it supports iterating barcodes concurrently, and opening its iterator may wait for merge
+         * buffers, which must not block the other threads working on this tile.
+         */
+        public CloseableIterator<CLUSTER_OUTPUT_RECORD> iterator(final String barcode) {
+            if (this.spill != null) {
+                return this.spill.iterator(barcode);
+            }
+            synchronized (this) {
+                return this.barcodeToRecordCollection.get(barcode).iterator();
+            }
+        }
+
+        /**
+         * Removes any spill segments once every barcode of this tile has been written.
+         */
+        public synchronized void cleanupIfWritten() {
+            if (this.spill != null && this.barcodeToProcessingState.values().stream()
+                    .allMatch(state -> state == TileBarcodeProcessingState.WRITTEN)) {
+                this.spill.cleanup();
+            }
+        }
+
         /**
          * Returns the number of unique barcodes read.
          */
         public synchronized long getBarcodeCount() {
-            return this.barcodeToRecordCollection.size();
+            return this.barcodeToProcessingState.size();
         }
 
         /**
@@ -391,13 +472,6 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
             return recordCount;
         }
 
-        /**
-         * Returns the mapping of barcodes to records associated with them.
-         */
-        public synchronized Map<String, SortingCollection<CLUSTER_OUTPUT_RECORD>> getBarcodeRecords() {
-            return barcodeToRecordCollection;
-        }
-
         /**
          * Gets the state of the provided barcode's data's processing progress.  Only invoke this query if this tile
          * is in a DONE_READING state.
@@ -436,7 +510,7 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
          * @return The distinct set of barcodes for this record.
          */
         public synchronized Set<String> getBarcodes() {
-            return this.getBarcodeRecords().keySet();
+            return this.barcodeToProcessingState.keySet();
         }
     }
 
@@ -526,7 +600,7 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
          */
         public TileReadAggregator(final Collection<Tile> tiles) {
             for (final Tile t : tiles) {
-                tileRecords.put(t, new TileProcessingRecord());
+                tileRecords.put(t, new TileProcessingRecord(t));
             }
         }
 
@@ -588,8 +662,8 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
             // Update all of the barcodes and the tile to be marked as read
             for (final String barcode : tileRecord.getBarcodes()) {
                 tileRecord.setBarcodeState(barcode, TileBarcodeProcessingState.READ);
-                tileRecord.barcodeToRecordCollection.get(barcode).doneAdding();
             }
+            tileRecord.doneAdding();
             tileRecord.setState(TileProcessingState.DONE_READING);
 
             log.debug(String.format("Completed reading tile %s; collected %s reads spanning %s barcodes.",
@@ -696,43 +770,48 @@ public class IlluminaBasecallsConverter<CLUSTER_OUTPUT_RECORD> extends Basecalls
                 @Override
                 public void run() {
                     try {
-                        final SortingCollection<CLUSTER_OUTPUT_RECORD> records = tileRecord.getBarcodeRecords().get(barcode);
-                        final ConvertedClusterDataWriter<CLUSTER_OUTPUT_RECORD> writer = barcodeRecordWriterMap.get(barcode);
+                        final CloseableIterator<CLUSTER_OUTPUT_RECORD> records = tileRecord.iterator(barcode);
+                        try {
+                            final ConvertedClusterDataWriter<CLUSTER_OUTPUT_RECORD> writer = barcodeRecordWriterMap.get(barcode);
 
-                        log.debug(String.format("Writing records from tile %s with barcode %s ...", tile.getNumber(), barcode));
+                            log.debug(String.format("Writing records from tile %s with barcode %s ...", tile.getNumber(), barcode));
 
-                        final PeekIterator<CLUSTER_OUTPUT_RECORD> it = new PeekIterator<>(records.iterator());
-                        while (it.hasNext()) {
-                            final CLUSTER_OUTPUT_RECORD rec = it.next();
+                            final PeekIterator<CLUSTER_OUTPUT_RECORD> it = new PeekIterator<>(records);
+                            while (it.hasNext()) {
+                                final CLUSTER_OUTPUT_RECORD rec = it.next();
 
-                            /*
-                             * PIC-330 Sometimes there are two reads with the same cluster coordinates, and thus
-                             * the same read name.  Discard both of them.  This code assumes that the two first of pairs
-                             * will come before the two second of pairs, so it isn't necessary to look ahead a different
-                             * distance for paired end.  It also assumes that for paired ends there will be duplicates
-                             * for both ends, so there is no need to be PE-aware.
-                             */
-                            if (it.hasNext()) {
-                                final CLUSTER_OUTPUT_RECORD lookAhead = it.peek();
+                                /*
+                                 * PIC-330 Sometimes there are two reads with the same cluster coordinates, and thus
+                                 * the same read name.  Discard both of them.  This code assumes that the two first of pairs
+                                 * will come before the two second of pairs, so it isn't necessary to look ahead a different
+                                 * distance for paired end.  It also assumes that for paired ends there will be duplicates
+                                 * for both ends, so there is no need to be PE-aware.
+                                 */
+                                if (it.hasNext()) {
+                                    final CLUSTER_OUTPUT_RECORD lookAhead = it.peek();
 
 /* TODO: Put this in SAMFileWriter wrapper
-                                if (!rec.getReadUnmappedFlag() || !lookAhead.getReadUnmappedFlag()) {
-                                    throw new IllegalStateException("Should not have mapped reads.");
-                                }
+                                    if (!rec.getReadUnmappedFlag() || !lookAhead.getReadUnmappedFlag()) {
+                                        throw new IllegalStateException("Should not have mapped reads.");
+                                    }
 */
 
-                                if (outputRecordComparator.compare(rec, lookAhead) == 0) {
-                                    it.next();
-                                    log.info("Skipping reads with identical read names: " + rec.toString());
-                                    continue;
+                                    if (outputRecordComparator.compare(rec, lookAhead) == 0) {
+                                        it.next();
+                                        log.info("Skipping reads with identical read names: " + rec.toString());
+                                        continue;
+                                    }
                                 }
-                            }
 
-                            writer.write(rec);
-                            writeProgressLogger.record(null, 0);
+                                writer.write(rec);
+                                writeProgressLogger.record(null, 0);
+                            }
+                        } finally {
+                            records.close();
                         }
 
                         tileRecord.setBarcodeState(barcode, TileBarcodeProcessingState.WRITTEN);
+                        tileRecord.cleanupIfWritten();
                         findAndEnqueueWorkOrSignalCompletion();
 
                     } catch (final RuntimeException | Error e) {
@@ -238,6 +238,15 @@ public class IlluminaBasecallsToSam extends CommandLineProgram {
             " run, each SortingCollection gets this value/number of indices.")
     public int MAX_READS_IN_RAM_PER_TILE = 1200000;
 
+    @Argument(doc = "If true, write each tile's reads to spill segments partitioned by barcode and merge them per barcode " +
+            "through a shared buffer pool, instead of keeping a SortingCollection per barcode per tile.  Memory use and open " +
+            "files then no longer grow with the number of barcodes.  Not used for CBCL basecalls.")
+    public boolean SPILL_SEGMENT_DEMULTIPLEXING = false;
+
+    @Argument(doc = "The total number of bytes of read buffers shared by all spill segment merges when " +
+            "SPILL_SEGMENT_DEMULTIPLEXING is true.")
+    public long SPILL_MERGE_BUFFER_BYTES = 64L * 1024 * 1024;
+
     @Argument(doc = "The minimum quality (after transforming 0s to 1s) expected from reads.  If qualities are lower than this value, an error is thrown." +
             "The default of 2 is what the Illumina's spec describes as the minimum, but in practice the value has been observed lower.")
     public int MINIMUM_QUALITY = BclQualityEvaluationStrategy.ILLUMINA_ALLEGED_MINIMUM_QUALITY;
@@ -315,10 +324,14 @@ public class IlluminaBasecallsToSam extends CommandLineProgram {
                     new Codec(numOutputRecords),
                     SAMRecordsForCluster.class, bclQualityEvaluationStrategy, IGNORE_UNEXPECTED_BARCODES);
         } else {
-            basecallsConverter = new IlluminaBasecallsConverter<>(BASECALLS_DIR, BARCODES_DIR, LANE, readStructure,
+            final IlluminaBasecallsConverter<SAMRecordsForCluster> illuminaBasecallsConverter = new IlluminaBasecallsConverter<>(BASECALLS_DIR, BARCODES_DIR, LANE, readStructure,
                     barcodeSamWriterMap, demultiplex, MAX_READS_IN_RAM_PER_TILE / numOutputRecords, TMP_DIR, NUM_PROCESSORS, FORCE_GC,
                     FIRST_TILE, TILE_LIMIT, new QueryNameComparator(), new Codec(numOutputRecords), SAMRecordsForCluster.class,
                     bclQualityEvaluationStrategy, APPLY_EAMSS_FILTER, INCLUDE_NON_PF_READS, IGNORE_UNEXPECTED_BARCODES);
+            if (SPILL_SEGMENT_DEMULTIPLEXING) {
+                illuminaBasecallsConverter.setSpillSegmentDemultiplexing(SPILL_MERGE_BUFFER_BYTES);
+            }
+            basecallsConverter = illuminaBasecallsConverter;
         }
         /*
          * Be sure to pass the outputReadStructure to ClusterDataToSamConverter, which reflects the structure of the output cluster
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.illumina;
+
+import picard.PicardException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A fixed byte budget of read buffers shared by every spill segment merge in a run.  Callers acquire all of the
+ * buffers they need for one merge at once, so that merges can never deadlock each other by holding a partial set,
+ * and block until enough of the budget has been released by other merges.
+ * <p/>
+ * A merge that needs more buffers than the whole budget can hold waits until the pool is idle and is then given
+ * smaller, unpooled buffers that together never exceed the budget.
+ */
+class SpillBufferPool {
+    /** The size of each pooled buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final long budgetBytes;
+    private final int bufferSize;
+    private final int capacity;
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+    private int outstanding = 0;
+
+    /**
+     * @param budgetBytes The total number of bytes of buffers that may be handed out at any one time.
+     * @param bufferSize  The size of each pooled buffer.
+     */
+    SpillBufferPool(final long budgetBytes, final int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        if (budgetBytes < bufferSize) {
+            throw new IllegalArgumentException("The buffer budget of " + budgetBytes +
+                    " bytes must hold at least one buffer of " + bufferSize + " bytes.");
+        }
+        this.budgetBytes = budgetBytes;
+        this.bufferSize = bufferSize;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, budgetBytes / bufferSize);
+    }
+
+    SpillBufferPool(final long budgetBytes) {
+        this(budgetBytes, DEFAULT_BUFFER_SIZE);
+    }
+
+    /** Returns the number of pooled buffers the budget holds. */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Acquires numBuffers buffers, blocking until they are available.  The buffers must be returned together
+     * via release().
+     */
+    synchronized byte[][] acquire(final int numBuffers) {
+        if (numBuffers <= 0) throw new IllegalArgumentException("numBuffers must be positive: " + numBuffers);
+        final int reserved = reservation(numBuffers);
+        try {
+            while (capacity - outstanding < reserved) {
+                wait();
+            }
+        } catch (final InterruptedException ie) {
+            throw new PicardException("Interrupted while waiting for spill merge buffers.", ie);
+        }
+        outstanding += reserved;
+
+        final byte[][] buffers = new byte[numBuffers][];
+        if (numBuffers <= capacity) {
+            for (int i = 0; i < numBuffers; ++i) {
+                final byte[] buffer = freeBuffers.pollFirst();
+                buffers[i] = buffer != null ? buffer : new byte[bufferSize];
+            }
+        } else {
+            final int size = (int) Math.max(1, budgetBytes / numBuffers);
+            for (int i = 0; i < numBuffers; ++i) {
+                buffers[i] = new byte[size];
+            }
+        }
+        return buffers;
+    }
+
+    /** Returns buffers previously obtained from acquire() to the pool and wakes any waiting merges. */
+    synchronized void release(final byte[][] buffers) {
+        for (final byte[] buffer : buffers) {
+            if (buffer.length == bufferSize) freeBuffers.addFirst(buffer);
+        }
+        outstanding -= reservation(buffers.length);
+        notifyAll();
+    }
+
+    /** A request larger than the pool reserves the entire pool. */
+    private int reservation(final int numBuffers) {
+        return Math.min(numBuffers, capacity);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.reference;
+
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import picard.PicardException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads ranges of bases from an uncompressed FASTA file with a .fai index, without loading whole contigs.  The file
+ * offsets of a range are computed from the line layout in the index, and the bytes are read in chunks of at most
+ * {@link #CHUNK_SIZE} with the line terminators removed, so memory use does not depend on the length of a contig.
+ * <p/>
+ * Reads are positional on a single shared channel, so one reader can be used by several threads at once, each
+ * reading its own ranges.
+ */
+public class IndexedFastaChunkReader implements Closeable {
+
+    /** The number of bytes of the FASTA read at once. */
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    /** Receives the bases of a range in order, one chunk at a time. */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * @param bases a buffer, owned by the reader, whose first length bytes are the next bases of the range as they
+         *              appear in the FASTA; it may be modified in place and is reused after this returns.
+         */
+        void accept(final byte[] bases, final int length) throws IOException;
+    }
+
+    private final File fasta;
+    private final FileChannel channel;
+    private final List<FastaSequenceIndexEntry> entries;
+    private final FastaSequenceIndex index;
+
+    public IndexedFastaChunkReader(final File fasta) {
+        if (!canRead(fasta)) {
+            throw new PicardException(fasta + " must be an uncompressed FASTA file with a .fai index.");
+        }
+        this.fasta = fasta;
+        this.index = new FastaSequenceIndex(ReferenceSequenceFileFactory.getFastaIndexFileName(fasta.toPath()));
+        final List<FastaSequenceIndexEntry> indexEntries = new ArrayList<>(index.size());
+        index.forEach(indexEntries::add);
+        indexEntries.sort(Comparator.comparingInt(FastaSequenceIndexEntry::getSequenceIndex));
+        this.entries = Collections.unmodifiableList(indexEntries);
+        try {
+            this.channel = FileChannel.open(fasta.toPath(), StandardOpenOption.READ);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening " + fasta, e);
+        }
+    }
+
+    /** Returns true if the FASTA can be read by this class: uncompressed, with a .fai index. */
+    public static boolean canRead(final File fasta) {
+        final Path path = fasta.toPath();
+        return !IOUtil.hasBlockCompressedExtension(path) && Files.exists(ReferenceSequenceFileFactory.getFastaIndexFileName(path));
+    }
+
+    public File getFasta() {
+        return fasta;
+    }
+
+    /** The index entries of the contigs, in FASTA order. */
+    public List<FastaSequenceIndexEntry> getEntries() {
+        return entries;
+    }
+
+    /** Returns the index entry of the named contig, or null if the FASTA has no such contig. */
+    public FastaSequenceIndexEntry getEntry(final String contig) {
+        return index.hasIndexEntry(contig) ? index.getIndexEntry(contig) : null;
+    }
+
+    /** The file offset of the given 0-based base of a contig. */
+    public static long getOffset(final FastaSequenceIndexEntry entry, final long base) {
+        return entry.getLocation() + (base / entry.getBasesPerLine()) * entry.getBytesPerLine() + base % entry.getBasesPerLine();
+    }
+
+    /** The file offset just past the last base of a contig, where its last line terminator or the next header begins. */
+    public static long getEndOffset(final FastaSequenceIndexEntry entry) {
+        return entry.getSize() == 0 ? entry.getLocation() : getOffset(entry, entry.getSize() - 1) + 1;
+    }
+
+    /**
+     * Reads the bases from 0-based start (inclusive) to end (exclusive) of a contig and passes them to the consumer in
+     * chunks of at most {@link #CHUNK_SIZE} bases.
+     *
+     * @throws PicardException if the FASTA does not have the number of bases the index says it has
+     */
+    public void readBases(final FastaSequenceIndexEntry entry, final long start, final long end, final ChunkConsumer consumer) throws IOException {
+        if (start < 0 || end > entry.getSize() || start > end) {
+            throw new IllegalArgumentException("Invalid range " + start + "-" + end + " of " + entry.getContig() + " with " + entry.getSize() + " bases.");
+        }
+        if (start == end) return;
+        if (entry.getBasesPerLine() <= 0) {
+            throw new PicardException("Invalid line length for " + entry.getContig() + " in the index of " + fasta);
+        }
+
+        long position = getOffset(entry, start);
+        final long endPosition = getOffset(entry, end - 1) + 1;
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, endPosition - position));
+        final byte[] bases = buffer.array();
+        long numBases = 0;
+        while (position < endPosition) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), endPosition - position));
+            final int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+
+            int length = 0;
+            for (int i = 0; i < read; i++) {
+                final byte b = bases[i];
+                if (b != '\n' && b != '\r') {
+                    bases[length++] = b;
+                }
+            }
+            numBases += length;
+            consumer.accept(bases, length);
+        }
+        if (numBases != end - start) {
+            throw new PicardException("Read " + numBases + " bases of " + entry.getContig() + " where its index entry implies " +
+                    (end - start) + ".  The index of " + fasta + " may be out of date.");
+        }
+    }
+
+    /** Reads up to length bytes from the given file offset, e.g. to recover a header line; fewer at the end of the file. */
+    public byte[] readBytes(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) break;
+        }
+        final byte[] bytes = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(channel);
+    }
+}
@@ -25,13 +25,17 @@ package picard.reference;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.IntervalListReferenceSequenceMask;
+import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ReferenceSequenceMask;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
 import htsjdk.samtools.util.WholeGenomeReferenceSequenceMask;
@@ -42,10 +46,16 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReferenceProgramGroup;
+import picard.util.ThreadPoolExecutorUtil;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A tool to count the number of non-N bases in a fasta file
@@ -60,7 +70,9 @@ public class NonNFastaSize extends CommandLineProgram {
     static final String USAGE_SUMMARY = "Counts the number of non-N bases in a fasta file.";
 
     static final String USAGE_DETAILS = "This tool takes any FASTA-formatted file and counts the number of non-N bases in it." +
-            "Note that it requires that the fasta file have associated index (.fai) and dictionary (.dict) files.<br />" +
+            "Note that it requires that the fasta file have associated index (.fai) and dictionary (.dict) files. " +
+            "An uncompressed fasta is read in chunks at the offsets given by its index, so only the INTERVALS are read and " +
+            "memory use does not depend on contig length; the chunks are counted on NUM_PROCESSORS threads.<br />" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
             "java -jar picard.jar NonNFastaSize \\<br />" +
@@ -78,16 +90,106 @@ public class NonNFastaSize extends CommandLineProgram {
     @Argument(shortName = "INTERVALS", doc = "An interval list file that contains the locations of the positions to assess.  If not provided, the entire reference will be used", optional = true)
     public File INTERVALS = null;
 
+    @Argument(doc = "The number of threads to count with, when INPUT is an uncompressed FASTA file. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
+    private final Log log = Log.getInstance(NonNFastaSize.class);
+
     @Override
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
         IOUtil.assertFileIsWritable(OUTPUT);
+        if (INTERVALS != null) IOUtil.assertFileIsReadable(INTERVALS);
+
+        final long nonNbases = IndexedFastaChunkReader.canRead(INPUT) ? countNonNBasesFromIndex() : countNonNBases();
+
+        try {
+            final BufferedWriter out = IOUtil.openFileForBufferedWriting(OUTPUT);
+            out.write(nonNbases + "\n");
+            out.close();
+        }
+        catch (IOException ioe) {
+            throw new PicardException("Error writing to file " + OUTPUT.getAbsolutePath(), ioe);
+        }
+
+        return 0;
+    }
 
+    /**
+     * Counts the non-N bases of an uncompressed, indexed FASTA, reading only the bases in INTERVALS.  The ranges to read
+     * are split into chunks that are counted on separate threads.
+     */
+    private long countNonNBasesFromIndex() {
+        final LongAdder nonNbases = new LongAdder();
+        try (final IndexedFastaChunkReader reader = new IndexedFastaChunkReader(INPUT)) {
+            final List<Runnable> chunks = new ArrayList<>();
+            for (final Interval range : getRanges(reader)) {
+                final FastaSequenceIndexEntry entry = reader.getEntry(range.getContig());
+                // 1-based closed ranges to 0-based half-open chunks
+                for (long start = range.getStart() - 1; start < range.getEnd(); start += IndexedFastaChunkReader.CHUNK_SIZE) {
+                    final long chunkStart = start;
+                    final long chunkEnd = Math.min(range.getEnd(), start + IndexedFastaChunkReader.CHUNK_SIZE);
+                    chunks.add(() -> {
+                        try {
+                            reader.readBases(entry, chunkStart, chunkEnd, (bases, length) -> nonNbases.add(countNonN(bases, length)));
+                        } catch (final IOException e) {
+                            throw new RuntimeIOException("Error reading " + INPUT, e);
+                        }
+                    });
+                }
+            }
+
+            final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+            if (numThreads <= 1 || chunks.size() <= 1) {
+                chunks.forEach(Runnable::run);
+            } else {
+                log.info("Counting " + chunks.size() + " chunks with " + numThreads + " threads.");
+                final ThreadPoolExecutorWithExceptions pool = new ThreadPoolExecutorWithExceptions(numThreads);
+                chunks.forEach(pool::submit);
+                pool.shutdown();
+                ThreadPoolExecutorUtil.awaitThreadPoolTermination("NonNFastaSize executor", pool, Duration.ofMinutes(5));
+                if (pool.hasError()) {
+                    throw new PicardException("Exceptions in counting threads; see log for details.");
+                }
+            }
+        }
+        return nonNbases.sum();
+    }
+
+    /**
+     * The ranges of the reference to count: the merged INTERVALS, clipped to the contigs of the reference, or all of it.
+     */
+    private List<Interval> getRanges(final IndexedFastaChunkReader reader) {
+        final List<Interval> ranges = new ArrayList<>();
+        if (INTERVALS == null) {
+            for (final FastaSequenceIndexEntry entry : reader.getEntries()) {
+                if (entry.getSize() > 0) ranges.add(new Interval(entry.getContig(), 1, (int) entry.getSize()));
+            }
+        } else {
+            for (final Interval interval : IntervalList.fromFile(INTERVALS).uniqued().getIntervals()) {
+                final FastaSequenceIndexEntry entry = reader.getEntry(interval.getContig());
+                if (entry == null || interval.getStart() > entry.getSize()) continue;
+                ranges.add(new Interval(interval.getContig(), interval.getStart(), (int) Math.min(interval.getEnd(), entry.getSize())));
+            }
+        }
+        return ranges;
+    }
+
+    private static long countNonN(final byte[] bases, final int length) {
+        long count = 0;
+        for (int i = 0; i < length; i++) {
+            if (bases[i] != 'N' && bases[i] != 'n') count++;
+        }
+        return count;
+    }
+
+    /** Counts the non-N bases of a FASTA that cannot be read in chunks, loading one contig at a time. */
+    private long countNonNBases() {
         // set up the reference and a mask so that we only count the positions requested by the user
         final ReferenceSequenceFile ref = ReferenceSequenceFileFactory.getReferenceSequenceFile(INPUT);
         final ReferenceSequenceMask referenceSequenceMask;
         if (INTERVALS != null) {
-            IOUtil.assertFileIsReadable(INTERVALS);
             final IntervalList intervalList = IntervalList.fromFile(INTERVALS);
             referenceSequenceMask = new IntervalListReferenceSequenceMask(intervalList);
         } else {
@@ -111,16 +213,6 @@ public class NonNFastaSize extends CommandLineProgram {
                 }
             }
         }
-
-        try {
-            final BufferedWriter out = IOUtil.openFileForBufferedWriting(OUTPUT);
-            out.write(nonNbases + "\n");
-            out.close();
-        }
-        catch (IOException ioe) {
-            throw new PicardException("Error writing to file " + OUTPUT.getAbsolutePath(), ioe);
-        }
-
-        return 0;
+        return nonNbases;
     }
 }
@@ -1,11 +1,13 @@
 package picard.reference;
 
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
-import htsjdk.samtools.util.RuntimeIOException;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
@@ -13,10 +15,19 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.programgroups.ReferenceProgramGroup;
 import picard.cmdline.StandardOptionDefinitions;
+import picard.util.ThreadPoolExecutorUtil;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Little program to "normalize" a fasta file to ensure that all line of sequence are the
@@ -33,7 +44,8 @@ public class NormalizeFasta extends CommandLineProgram {
     static final String USAGE_DETAILS = "This tool takes any FASTA-formatted file and reformats the sequence to ensure that all of the " +
             "sequence record lines are of the same length (with the exception of the last line). Although the default setting is 100 bases " +
             "per line, a custom line_length can be specified by the user. In addition, record names can be truncated at the first " +
-            "instance of a whitespace character to ensure downstream compatibility.<br />" +
+            "instance of a whitespace character to ensure downstream compatibility. An uncompressed FASTA with a .fai index is " +
+            "read in chunks and reformatted on NUM_PROCESSORS threads, so memory use does not depend on contig length.<br />" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
             "java -jar picard.jar NormalizeFasta \\<br />" +
@@ -54,8 +66,20 @@ public class NormalizeFasta extends CommandLineProgram {
     @Argument(doc="Truncate sequence names at first whitespace.")
     public boolean TRUNCATE_SEQUENCE_NAMES_AT_WHITESPACE=false;
 
+    @Argument(doc = "The number of threads to reformat with, when INPUT is an uncompressed FASTA file with a .fai index. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private final Log log = Log.getInstance(NormalizeFasta.class);
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (LINE_LENGTH < 1) {
+            return new String[]{"LINE_LENGTH must be greater than 0."};
+        }
+        return super.customCommandLineValidation();
+    }
+
     @Override
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
@@ -65,41 +89,156 @@ public class NormalizeFasta extends CommandLineProgram {
             throw new IllegalArgumentException("Input and output cannot be the same file.");
         }
 
+        try (final OutputStream out = new BufferedOutputStream(IOUtil.openFileForWriting(OUTPUT), IndexedFastaChunkReader.CHUNK_SIZE)) {
+            if (IndexedFastaChunkReader.canRead(INPUT)) {
+                normalizeFromIndex(out);
+            } else {
+                normalize(out);
+            }
+        } catch (final IOException ioe) {
+            throw new PicardException("Error writing to file " + OUTPUT.getAbsolutePath(), ioe);
+        }
+        return 0;
+    }
+
+    /** Normalizes a FASTA that cannot be read in chunks, loading one contig at a time. */
+    private void normalize(final OutputStream out) throws IOException {
         final ReferenceSequenceFile ref = ReferenceSequenceFileFactory.getReferenceSequenceFile(INPUT, TRUNCATE_SEQUENCE_NAMES_AT_WHITESPACE);
-        final BufferedWriter out = IOUtil.openFileForBufferedWriting(OUTPUT);
 
         ReferenceSequence seq = null;
         while ((seq = ref.nextSequence()) != null) {
             final String name  = seq.getName();
             final byte[] bases = seq.getBases();
 
-            try {
-                out.write(">");
-                out.write(name);
-                out.newLine();
+            writeHeader(out, name);
+            if (bases.length == 0) {
+                log.warn("Sequence " + name + " contains 0 bases.");
+            }
+            else {
+                for (int i = 0; i < bases.length; i += LINE_LENGTH) {
+                    out.write(bases, i, Math.min(LINE_LENGTH, bases.length - i));
+                    out.write('\n');
+                }
+            }
+        }
+        CloserUtil.close(ref);
+    }
 
-                if (bases.length == 0) {
+    /**
+     * Normalizes an uncompressed, indexed FASTA without loading whole contigs.  Each contig is split into blocks of
+     * {@link IndexedFastaChunkReader#CHUNK_SIZE} bases that are read and line-wrapped on NUM_PROCESSORS threads, and the
+     * wrapped blocks are written in order, so memory use is bounded by the block size times the number of threads.
+     */
+    private void normalizeFromIndex(final OutputStream out) throws IOException {
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        // Blocks are returned in order through the futures, so a plain pool is used.
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "NormalizeFasta");
+        final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        // Enough blocks are queued to keep every thread busy while the next one is written.
+        final int maxPending = 2 * numThreads;
+
+        try (final IndexedFastaChunkReader reader = new IndexedFastaChunkReader(INPUT)) {
+            long previousEnd = 0;
+            for (final FastaSequenceIndexEntry entry : reader.getEntries()) {
+                final String name = readName(reader, previousEnd, entry);
+                previousEnd = IndexedFastaChunkReader.getEndOffset(entry);
+                final ByteArrayOutputStream header = new ByteArrayOutputStream();
+                writeHeader(header, name);
+                pending.add(CompletableFuture.completedFuture(header.toByteArray()));
+                if (entry.getSize() == 0) {
                     log.warn("Sequence " + name + " contains 0 bases.");
                 }
-                else {
-                    for (int i=0; i<bases.length; ++i) {
-                        if (i > 0 && i % LINE_LENGTH == 0) out.write("\n");
-                        out.write(bases[i]);
-                    }
 
-                    out.write("\n");
+                for (long start = 0; start < entry.getSize(); start += IndexedFastaChunkReader.CHUNK_SIZE) {
+                    final long blockStart = start;
+                    final long blockEnd = Math.min(entry.getSize(), start + IndexedFastaChunkReader.CHUNK_SIZE);
+                    pending.add(pool.submit(() -> wrapLines(reader, entry, blockStart, blockEnd)));
+                    while (pending.size() >= maxPending) {
+                        out.write(getBlock(pending.poll()));
+                    }
                 }
             }
-            catch (IOException ioe) {
-                throw new PicardException("Error writing to file " + OUTPUT.getAbsolutePath(), ioe);
+            while (!pending.isEmpty()) {
+                out.write(getBlock(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private byte[] getBlock(final Future<byte[]> block) {
+        return ThreadPoolExecutorUtil.getResult(block, "normalizing " + INPUT);
+    }
+
+    /** Reads the bases from start to end of a contig, which starts at a line boundary, as LINE_LENGTH lines. */
+    private byte[] wrapLines(final IndexedFastaChunkReader reader, final FastaSequenceIndexEntry entry, final long start, final long end) throws IOException {
+        final boolean lastBlock = end == entry.getSize();
+        // A newline follows every base at the end of a line, and the last base of the contig.
+        final int numNewlines = (int) (end / LINE_LENGTH - start / LINE_LENGTH) + (lastBlock && end % LINE_LENGTH != 0 ? 1 : 0);
+        final byte[] wrapped = new byte[(int) (end - start) + numNewlines];
+
+        final LineWrapper wrapper = new LineWrapper(wrapped, start);
+        reader.readBases(entry, start, end, wrapper);
+        if (lastBlock && end % LINE_LENGTH != 0) {
+            wrapped[wrapper.length++] = '\n';
+        }
+        return wrapped;
+    }
+
+    /** Copies bases into a buffer, adding a newline at the end of each line. */
+    private class LineWrapper implements IndexedFastaChunkReader.ChunkConsumer {
+        private final byte[] wrapped;
+        private long position;
+        private int length = 0;
+
+        LineWrapper(final byte[] wrapped, final long position) {
+            this.wrapped = wrapped;
+            this.position = position;
+        }
 
+        @Override
+        public void accept(final byte[] bases, final int numBases) {
+            int i = 0;
+            while (i < numBases) {
+                final int n = (int) Math.min(numBases - i, LINE_LENGTH - position % LINE_LENGTH);
+                System.arraycopy(bases, i, wrapped, length, n);
+                i += n;
+                length += n;
+                position += n;
+                if (position % LINE_LENGTH == 0) {
+                    wrapped[length++] = '\n';
+                }
             }
         }
-        try {
-            out.close();
-        } catch (IOException e) {
-            throw new RuntimeIOException(e);
+    }
+
+    /**
+     * Reads the name of a contig from its header line, which lies between the end of the previous contig's bases and
+     * the contig's first base.  The index only has the name up to the first whitespace.
+     */
+    private String readName(final IndexedFastaChunkReader reader, final long previousEnd, final FastaSequenceIndexEntry entry) throws IOException {
+        if (entry.getLocation() < previousEnd) {
+            throw new PicardException("The index entry of " + entry.getContig() + " overlaps the previous contig in the index of " + INPUT);
         }
-        return 0;
+        final byte[] bytes = reader.readBytes(previousEnd, (int) (entry.getLocation() - previousEnd));
+        int start = 0;
+        while (start < bytes.length && !(bytes[start] == '>' && (start == 0 || bytes[start - 1] == '\n'))) {
+            start++;
+        }
+        int end = ++start;
+        while (end < bytes.length && bytes[end] != '\n' && bytes[end] != '\r') {
+            end++;
+        }
+        if (start > bytes.length) {
+            throw new PicardException("Could not find the header of " + entry.getContig() + " in " + INPUT + "; its index may be out of date.");
+        }
+        final String name = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        return TRUNCATE_SEQUENCE_NAMES_AT_WHITESPACE ? SAMSequenceRecord.truncateSequenceName(name) : name;
+    }
+
+    private static void writeHeader(final OutputStream out, final String name) throws IOException {
+        out.write('>');
+        out.write(name.getBytes(StandardCharsets.US_ASCII));
+        out.write('\n');
     }
 }
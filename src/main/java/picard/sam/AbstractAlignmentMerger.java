@@ -592,13 +592,26 @@ public abstract class AbstractAlignmentMerger {
      * No return value, modifies the provided record.
      */
     public static void fixNmMdAndUq(final SAMRecord record, final ReferenceSequenceFileWalker refSeqWalker, final boolean isBisulfiteSequence) {
-        final byte[] referenceBases = refSeqWalker.get(record.getReferenceIndex()).getBases();
+        fixNmMdAndUq(record, refSeqWalker.get(record.getReferenceIndex()).getBases(), isBisulfiteSequence);
+    }
+
+    /** Calculates and sets the NM, MD, and and UQ tags from the record and the bases of the contig it is aligned to
+     *
+     * @param record the record to be fixed
+     * @param referenceBases the bases of the contig the record is aligned to. They are only read, so may be shared
+     * between threads fixing records on the same contig.
+     * @param isBisulfiteSequence a flag indicating whether the sequence came from bisulfite-sequencing which would imply a different
+     * calculation of the NM tag.
+     *
+     * No return value, modifies the provided record.
+     */
+    public static void fixNmMdAndUq(final SAMRecord record, final byte[] referenceBases, final boolean isBisulfiteSequence) {
         // only recalculate NM if it isn't bisulfite, since it needs to be treated specially below
         SequenceUtil.calculateMdAndNmTags(record, referenceBases, true, !isBisulfiteSequence);
         if (isBisulfiteSequence) {  // recalculate the NM tag for bisulfite data
             record.setAttribute(SAMTag.NM.name(), SequenceUtil.calculateSamNmTag(record, referenceBases, 0, isBisulfiteSequence));
         }
-        fixUq(record, refSeqWalker, isBisulfiteSequence);
+        fixUq(record, referenceBases, isBisulfiteSequence);
     }
 
     /** Calculates and sets UQ tag from the record and the reference
@@ -611,7 +624,20 @@ public abstract class AbstractAlignmentMerger {
      */
     public static void fixUq(final SAMRecord record, final ReferenceSequenceFileWalker refSeqWalker, final boolean isBisulfiteSequence) {
         if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
-            final byte[] referenceBases = refSeqWalker.get(record.getReferenceIndex()).getBases();
+            fixUq(record, refSeqWalker.get(record.getReferenceIndex()).getBases(), isBisulfiteSequence);
+        }
+    }
+
+    /** Calculates and sets UQ tag from the record and the bases of the contig it is aligned to
+     *
+     * @param record the record to be fixed
+     * @param referenceBases the bases of the contig the record is aligned to.
+     * @param isBisulfiteSequence a flag indicating whether the sequence came from bisulfite-sequencing.
+     *
+     * No return value, modifies the provided record.
+     */
+    public static void fixUq(final SAMRecord record, final byte[] referenceBases, final boolean isBisulfiteSequence) {
+        if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
             record.setAttribute(SAMTag.UQ.name(), SequenceUtil.sumQualitiesOfMismatches(record, referenceBases, 0, isBisulfiteSequence));
         }
     }
@@ -23,9 +23,7 @@
  */
 package picard.sam;
 
-import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
-import htsjdk.samtools.util.RuntimeIOException;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.ArgumentCollection;
 import org.broadinstitute.barclay.argparser.PositionalArguments;
@@ -36,9 +34,9 @@ import picard.cmdline.StandardOptionDefinitions;
 import picard.sam.util.SAMComparisonArgumentCollection;
 import picard.sam.util.SamComparison;
 import picard.cmdline.programgroups.DiagnosticsAndQCProgramGroup;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 
 /**
@@ -60,7 +58,8 @@ public class CompareSAMs extends CommandLineProgram {
             "are allowed to have different alignments, duplicate marks are allowed to differ to account for " +
             "ambiguities in selecting the representative read of a duplicate set, and some differences in headers is allowed.  By default, alignment comparisons, " +
             "duplicate marking comparisons, and header comparisons are performed in the strict mode.  Results of comparison are summarised in " +
-            " an output metrics file." +
+            " an output metrics file.  If both files are coordinate sorted and indexed, contigs can be compared in parallel by " +
+            "setting NUM_PROCESSORS." +
             "<h3>Usage example:</h3>" +
             "<h4>CompareSAMs for exact matching:</h4>" +
             "<pre>" +
@@ -98,6 +97,9 @@ public class CompareSAMs extends CommandLineProgram {
     @ArgumentCollection
     public SAMComparisonArgumentCollection samComparisonArgumentCollection = new SAMComparisonArgumentCollection();
 
+    @Argument(doc = "The number of threads used to compare alignments when both files are coordinate sorted and indexed, in " +
+            "which case each contig is compared on its own thread. " + ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
 
 
     /**
@@ -110,23 +112,17 @@ public class CompareSAMs extends CommandLineProgram {
     protected int doWork() {
         final SamReaderFactory samReaderFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
 
-        try (final SamReader samReader1 = samReaderFactory.open(SAM_FILES.get(0));
-             final SamReader samReader2 = samReaderFactory.open(SAM_FILES.get(1)))
-        {
-            final SamComparison comparison = new SamComparison(samReader1, samReader2,
-                    SAM_FILES.get(0).getAbsolutePath(), SAM_FILES.get(1).getAbsolutePath(), samComparisonArgumentCollection);
-            if (OUTPUT != null) {
-                comparison.writeReport(OUTPUT, getDefaultHeaders());
-            }
-            if (comparison.areEqual()) {
-                System.out.println("SAM files match.");
-            } else {
-                System.out.println("SAM files differ.");
-            }
-            return comparison.areEqual() ? 0 : 1;
-        } catch (IOException e) {
-            throw new RuntimeIOException("Error opening file", e);
+        final SamComparison comparison = new SamComparison(samReaderFactory, SAM_FILES.get(0), SAM_FILES.get(1),
+                samComparisonArgumentCollection, ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS));
+        if (OUTPUT != null) {
+            comparison.writeReport(OUTPUT, getDefaultHeaders());
         }
+        if (comparison.areEqual()) {
+            System.out.println("SAM files match.");
+        } else {
+            System.out.println("SAM files differ.");
+        }
+        return comparison.areEqual() ? 0 : 1;
     }
 
 }
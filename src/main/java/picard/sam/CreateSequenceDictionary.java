@@ -30,6 +30,7 @@ import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.AsciiWriter;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.Md5CalculatingOutputStream;
@@ -44,6 +45,7 @@ import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.ReferenceArgumentCollection;
 import picard.cmdline.programgroups.ReferenceProgramGroup;
 import picard.util.SequenceDictionaryUtils;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -56,6 +58,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,6 +81,9 @@ public class CreateSequenceDictionary extends CommandLineProgram {
             "header but no SAMRecords, and the header contains only sequence records." +
             "<br /><br />" +
             "The reference sequence can be gzipped (both .fasta and .fasta.gz are supported)." +
+            "<br /><br />" +
+            "For very large references, USE_FASTA_INDEX streams the bases of an uncompressed, indexed FASTA instead of loading " +
+            "whole contigs into memory, and NUM_PROCESSORS contigs are hashed in parallel." +
             "" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
@@ -121,6 +127,15 @@ public class CreateSequenceDictionary extends CommandLineProgram {
             optional = true)
     public File ALT_NAMES = null;
 
+    @Argument(doc = "If true, read the bases of each contig in chunks from the uncompressed REFERENCE using its .fai index, " +
+            "rather than loading whole contigs into memory.  Memory use is then bounded by the number of processors rather " +
+            "than by the length of the longest contig.  Names are taken from the index, so TRUNCATE_NAMES_AT_WHITESPACE must be true.")
+    public boolean USE_FASTA_INDEX = false;
+
+    @Argument(doc = "The number of contigs to hash in parallel when USE_FASTA_INDEX is true. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private final MessageDigest md5;
     /**
      * Regular expression defined in the sam spec. Any alternative contig should match this regular expression
@@ -165,6 +180,10 @@ public class CreateSequenceDictionary extends CommandLineProgram {
     }
 
     private Iterable<SAMSequenceRecord> getSamSequenceRecordsIterable() {
+        if (USE_FASTA_INDEX) {
+            return () -> new SequenceDictionaryUtils.IndexedSamSequenceRecordsIterator(REFERENCE_SEQUENCE,
+                    ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS), GENOME_ASSEMBLY, URI, SPECIES);
+        }
         return () -> {
             final SequenceDictionaryUtils.SamSequenceRecordsIterator iterator =
                     new SequenceDictionaryUtils.SamSequenceRecordsIterator(REFERENCE_SEQUENCE,
@@ -180,6 +199,18 @@ public class CreateSequenceDictionary extends CommandLineProgram {
      * Use reference filename to create URI to go into header if URI was not passed on cmd line.
      */
     protected String[] customCommandLineValidation() {
+        if (USE_FASTA_INDEX) {
+            final List<String> errors = new ArrayList<>();
+            if (!TRUNCATE_NAMES_AT_WHITESPACE) {
+                errors.add("USE_FASTA_INDEX requires TRUNCATE_NAMES_AT_WHITESPACE, as the names in a FASTA index are truncated.");
+            }
+            if (!SequenceDictionaryUtils.canStreamFromIndex(referenceSequence.getReferenceFile())) {
+                errors.add("USE_FASTA_INDEX requires an uncompressed REFERENCE with a .fai index.");
+            }
+            if (!errors.isEmpty()) {
+                return errors.toArray(new String[0]);
+            }
+        }
         if (URI == null) {
             URI = "file:" + referenceSequence.getReferenceFile().getAbsolutePath();
         }
@@ -224,13 +255,14 @@ public class CreateSequenceDictionary extends CommandLineProgram {
         // map for aliases mapping a contig to its aliases
         final Map<String, Set<String>> aliasesByContig = loadContigAliasesMap();
 
+        final Iterator<SAMSequenceRecord> samSequenceRecordIterator = getSamSequenceRecordsIterable().iterator();
         try (BufferedWriter writer = makeWriter()) {
-            final Iterable<SAMSequenceRecord> samSequenceRecordIterable = getSamSequenceRecordsIterable();
             SAMSequenceDictionaryCodec samDictCodec = new SAMSequenceDictionaryCodec(writer);
 
             samDictCodec.encodeHeaderLine(false);
             // read reference sequence one by one and write its metadata
-            for (SAMSequenceRecord samSequenceRecord : samSequenceRecordIterable) {
+            while (samSequenceRecordIterator.hasNext()) {
+                final SAMSequenceRecord samSequenceRecord = samSequenceRecordIterator.next();
                 // retrieve aliases, if any
                 final Set<String> aliases = aliasesByContig.get(samSequenceRecord.getSequenceName());
                 if (aliases != null) {
@@ -253,6 +285,9 @@ public class CreateSequenceDictionary extends CommandLineProgram {
             // truncated result which might be valid and wrong.
             OUTPUT.delete();
             throw new PicardException("Unknown problem. Partial dictionary file was deleted.", e);
+        } finally {
+            // The indexed iterator holds threads until it is read to the end or closed.
+            CloserUtil.close(samSequenceRecordIterator);
         }
 
         return 0;
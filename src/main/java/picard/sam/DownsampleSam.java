@@ -29,6 +29,7 @@ import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.Murmur3;
 import htsjdk.samtools.util.ProgressLogger;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
@@ -39,11 +40,21 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.ReferenceArgumentCollection;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <h3>Summary</h3>
@@ -82,6 +93,12 @@ import java.util.Random;
  *
  * The number of records written can be output to a {@link QualityYieldMetrics} metrics file via the {@link #METRICS_FILE}.
  *
+ * Several downsampled files can be written in one pass over the input by giving {@link #PROBABILITY} and {@link #OUTPUT}
+ * (and {@link #METRICS_FILE}) several times.  Each output is the same as the one a separate run with its probability
+ * would write, and with the ConstantMemory strategy the outputs are nested: every read kept at a lower probability is
+ * also kept at a higher one.  With {@link #NUM_PROCESSORS} greater than one the outputs are written on a shared pool
+ * of threads.
+ *
  * <h3>Usage examples:</h3>
  * <h4>Downsample file, keeping about 10% of the reads</h4>
  * <pre>
@@ -111,6 +128,16 @@ import java.util.Random;
  *       ACCURACY=0.0000001
  * </pre>
  *
+ * <h4>Downsample file to 25%, 50% and 75% of the reads in one pass</h4>
+ * <pre>
+ * java -jar picard.jar DownsampleSam \
+ *       I=input.bam \
+ *       P=0.25 O=downsampled_25.bam \
+ *       P=0.5 O=downsampled_50.bam \
+ *       P=0.75 O=downsampled_75.bam \
+ *       NUM_PROCESSORS=3
+ * </pre>
+ *
  * @author Tim Fennell
  */
 
@@ -132,6 +159,8 @@ public class DownsampleSam extends CommandLineProgram {
             "ConstantMemory:\n " + DownsamplingIteratorFactory.CONSTANT_MEMORY_DESCRPTION + "\n" +
             "HighAccuracy:\n " + DownsamplingIteratorFactory.HIGH_ACCURACY_DESCRIPTION + "\n" +
             "Chained:\n " + DownsamplingIteratorFactory.CHAINED_DESCRIPTION + "\n" +
+            "Several downsampled files can be written in one pass over the input by giving PROBABILITY and OUTPUT " +
+            "several times, in the same order. Each output is the same as that of a separate run with its PROBABILITY.\n" +
             "<h3>Usage examples:</h3>\n" +
             "<h4>Downsample file, keeping about 10% of the reads</h4>\n"+
             "\n"+
@@ -156,12 +185,22 @@ public class DownsampleSam extends CommandLineProgram {
             "      O=downsampled.bam \\\n" +
             "      STRATEGY=HighAccuracy \\\n" +
             "      P=0.00001 \\\n" +
-            "      ACCURACY=0.0000001\n";
+            "      ACCURACY=0.0000001\n" +
+            "\n" +
+            "<h3>Downsample file to 25%, 50% and 75% of the reads in one pass</h3>\n" +
+            "\n" +
+            "java -jar picard.jar DownsampleSam \\\n" +
+            "      I=input.bam \\\n" +
+            "      P=0.25 O=downsampled_25.bam \\\n" +
+            "      P=0.5 O=downsampled_50.bam \\\n" +
+            "      P=0.75 O=downsampled_75.bam \\\n" +
+            "      NUM_PROCESSORS=3\n";
     @Argument(shortName = StandardOptionDefinitions.INPUT_SHORT_NAME, doc = "The input SAM or BAM file to downsample.")
     public File INPUT;
 
-    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The output, downsampled, SAM or BAM file to write.")
-    public File OUTPUT;
+    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The output, downsampled, SAM or BAM file to write. " +
+            "May be given several times, once for each PROBABILITY, to write several downsampled files in one pass over the input.")
+    public List<File> OUTPUT;
 
     @Argument(shortName="S", doc="The downsampling strategy to use. See usage for discussion.")
     public Strategy STRATEGY = Strategy.ConstantMemory;
@@ -170,23 +209,46 @@ public class DownsampleSam extends CommandLineProgram {
             "Setting to null will cause multiple invocations to produce different results.")
     public Integer RANDOM_SEED = 1;
 
-    @Argument(shortName = "P", doc = "The probability of keeping any individual read, between 0 and 1.")
-    public double PROBABILITY = 1;
+    @Argument(shortName = "P", doc = "The probability of keeping any individual read, between 0 and 1. " +
+            "May be given several times, once for each OUTPUT, in the same order. If not given, 1 is used.", optional = true)
+    public List<Double> PROBABILITY = new ArrayList<>();
 
     @Argument(shortName = "A", doc = "The accuracy that the downsampler should try to achieve if the selected strategy supports it. " +
             "Note that accuracy is never guaranteed, but some strategies will attempt to provide accuracy within the requested bounds." +
             "Higher accuracy will generally require more memory.")
     public double ACCURACY = 0.0001;
 
-    @Argument(shortName = "M", doc = "The metrics file (of type QualityYieldMetrics) which will contain information about the downsampled file.", optional=true)
-    public File METRICS_FILE;
+    @Argument(shortName = "M", doc = "The metrics file (of type QualityYieldMetrics) which will contain information about the downsampled file. " +
+            "If given, it must be given once for each OUTPUT, in the same order.", optional=true)
+    public List<File> METRICS_FILE = new ArrayList<>();
+
+    @Argument(doc = "The number of threads used to write the OUTPUT files when there are several of them. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
+    /** The number of records handed to a writer thread at a time. */
+    private static final int BATCH_SIZE = 10000;
 
     private final Log log = Log.getInstance(DownsampleSam.class);
 
     @Override
     protected String[] customCommandLineValidation() {
-        if (PROBABILITY < 0 || PROBABILITY > 1)
-            return new String[]{"Downsampling requires 0<=PROBABILITY<=1. Found invalid value: " + PROBABILITY};
+        final List<String> errors = new ArrayList<>();
+        for (final double probability : PROBABILITY) {
+            if (probability < 0 || probability > 1) {
+                errors.add("Downsampling requires 0<=PROBABILITY<=1. Found invalid value: " + probability);
+            }
+        }
+        // A single OUTPUT may leave out PROBABILITY, which then defaults to 1.
+        if (PROBABILITY.size() != OUTPUT.size() && !(PROBABILITY.isEmpty() && OUTPUT.size() == 1)) {
+            errors.add("PROBABILITY must be given once for each OUTPUT, but found " + PROBABILITY.size() +
+                    " PROBABILITY and " + OUTPUT.size() + " OUTPUT values.");
+        }
+        if (!METRICS_FILE.isEmpty() && METRICS_FILE.size() != OUTPUT.size()) {
+            errors.add("METRICS_FILE must be given once for each OUTPUT, but found " + METRICS_FILE.size() +
+                    " METRICS_FILE and " + OUTPUT.size() + " OUTPUT values.");
+        }
+        if (!errors.isEmpty()) return errors.toArray(new String[0]);
 
         return super.customCommandLineValidation();
     }
@@ -194,14 +256,15 @@ public class DownsampleSam extends CommandLineProgram {
     @Override
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
-        IOUtil.assertFileIsWritable(OUTPUT);
+        OUTPUT.forEach(IOUtil::assertFileIsWritable);
+        final List<Double> probabilities = PROBABILITY.isEmpty() ? Collections.singletonList(1.0) : PROBABILITY;
 
         // Warn the user if they are running with P=1 or P=0 (which are legal, but odd)
-        if (PROBABILITY == 1) {
+        if (probabilities.contains(1.0)) {
             log.warn("Running DownsampleSam with PROBABILITY=1! This will likely just recreate the input file.");
         }
 
-        if (PROBABILITY == 0) {
+        if (probabilities.contains(0.0)) {
             log.warn("Running DownsampleSam with PROBABILITY=0! This will create an empty file.");
         }
 
@@ -212,34 +275,202 @@ public class DownsampleSam extends CommandLineProgram {
         }
 
         final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(SamInputResource.of(INPUT));
-        final SAMFileWriter out = new SAMFileWriterFactory().makeSAMOrBAMWriter(in.getFileHeader(), true, OUTPUT);
-        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7, "Wrote");
-        final DownsamplingIterator iterator = DownsamplingIteratorFactory.make(in, STRATEGY, PROBABILITY, ACCURACY, RANDOM_SEED);
-        final QualityYieldMetricsCollector metricsCollector = new QualityYieldMetricsCollector(true, false, false);
-
-        while (iterator.hasNext()) {
-            final SAMRecord rec = iterator.next();
-            out.addAlignment(rec);
-            if (METRICS_FILE != null) metricsCollector.acceptRecord(rec, null);
-            progress.record(rec);
+        final int numThreads = OUTPUT.size() == 1 ? 1 : ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        final ExecutorService pool = numThreads == 1 ? null :
+                ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "DownsampleSam");
+
+        final List<DownsampledOutput> outputs = new ArrayList<>(OUTPUT.size());
+        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7, "Read");
+        final long seen;
+        try {
+            for (final File output : OUTPUT) {
+                outputs.add(new DownsampledOutput(new SAMFileWriterFactory().makeSAMOrBAMWriter(in.getFileHeader(), true, output), pool,
+                        !METRICS_FILE.isEmpty()));
+            }
+
+            final Iterator<SAMRecord> records = new Iterator<SAMRecord>() {
+                private final Iterator<SAMRecord> iterator = in.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SAMRecord next() {
+                    final SAMRecord rec = iterator.next();
+                    // The writer threads of several outputs copy the same record at once, so its lazily decoded
+                    // fields are decoded here first and the record is only ever read afterwards.
+                    if (pool != null) decode(rec);
+                    progress.record(rec);
+                    return rec;
+                }
+            };
+
+            if (STRATEGY == Strategy.ConstantMemory) {
+                downsampleWithNestedThresholds(records, probabilities, outputs);
+            } else {
+                downsampleWithSharedInput(records, probabilities, outputs);
+            }
+            seen = progress.getCount();
+
+            for (final DownsampledOutput output : outputs) {
+                output.close();
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+            CloserUtil.close(in);
         }
 
-        out.close();
-        CloserUtil.close(in);
         final NumberFormat fmt = new DecimalFormat("0.00%");
         log.info("Finished downsampling.");
-        log.info("Kept ", iterator.getAcceptedCount(), " out of ", iterator.getSeenCount(), " reads (", fmt.format(iterator.getAcceptedFraction()), ").");
+        for (int i = 0; i < outputs.size(); ++i) {
+            final long accepted = outputs.get(i).accepted;
+            log.info("Kept ", accepted, " out of ", seen, " reads (", fmt.format(seen == 0 ? 0 : accepted / (double) seen), ") in ", OUTPUT.get(i), ".");
+        }
 
-        if (METRICS_FILE != null) {
+        for (int i = 0; i < METRICS_FILE.size(); ++i) {
             final MetricsFile<QualityYieldMetrics, Integer> metricsFile = getMetricsFile();
+            final QualityYieldMetricsCollector metricsCollector = outputs.get(i).metricsCollector;
             metricsCollector.finish();
             metricsCollector.addMetricsToFile(metricsFile);
-            metricsFile.write(METRICS_FILE);
+            metricsFile.write(METRICS_FILE.get(i));
         }
 
         return 0;
     }
 
+    /**
+     * Downsamples with the ConstantMemory strategy: a record is kept in an output if the hash of its name is at most a
+     * threshold set by the output's probability, exactly as ConstantMemoryDownsamplingIterator does.  The thresholds are
+     * nested, so the name of each record is hashed once and the record goes to every output whose threshold it is under.
+     */
+    private void downsampleWithNestedThresholds(final Iterator<SAMRecord> records, final List<Double> probabilities,
+                                                final List<DownsampledOutput> outputs) {
+        final Murmur3 hasher = new Murmur3(RANDOM_SEED);
+        final int[] maxHashValues = new int[probabilities.size()];
+        for (int i = 0; i < maxHashValues.length; ++i) {
+            maxHashValues[i] = Integer.MIN_VALUE + (int) Math.round(0xffffffffL * probabilities.get(i));
+        }
+
+        while (records.hasNext()) {
+            final SAMRecord rec = records.next();
+            final int hash = hasher.hashUnencodedChars(rec.getReadName());
+            for (int i = 0; i < maxHashValues.length; ++i) {
+                if (hash <= maxHashValues[i]) outputs.get(i).add(rec);
+            }
+        }
+    }
+
+    /**
+     * Downsamples with a strategy that keeps state across records: each output gets its own DownsamplingIterator, and
+     * all of them read the same pass over the input through their own queue.  The iterators are advanced in turn, so the
+     * queues only hold the records that one iterator has read ahead of the others.
+     */
+    private void downsampleWithSharedInput(final Iterator<SAMRecord> records, final List<Double> probabilities,
+                                           final List<DownsampledOutput> outputs) {
+        final List<Queue<SAMRecord>> queues = new ArrayList<>(outputs.size());
+        final List<DownsamplingIterator> downsamplers = new ArrayList<>(outputs.size());
+        for (int i = 0; i < outputs.size(); ++i) {
+            queues.add(new ArrayDeque<>());
+        }
+        // Some iterators read ahead when they are made, so every queue must exist before the first of them is.
+        for (int i = 0; i < outputs.size(); ++i) {
+            final Queue<SAMRecord> queue = queues.get(i);
+            final Iterator<SAMRecord> branch = new Iterator<SAMRecord>() {
+                @Override
+                public boolean hasNext() {
+                    if (queue.isEmpty() && records.hasNext()) {
+                        final SAMRecord rec = records.next();
+                        queues.forEach(q -> q.add(rec));
+                    }
+                    return !queue.isEmpty();
+                }
+
+                @Override
+                public SAMRecord next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return queue.poll();
+                }
+            };
+            downsamplers.add(DownsamplingIteratorFactory.make(branch, STRATEGY, probabilities.get(i), ACCURACY, RANDOM_SEED));
+        }
+
+        boolean active = true;
+        while (active) {
+            active = false;
+            for (int i = 0; i < downsamplers.size(); ++i) {
+                final DownsamplingIterator downsampler = downsamplers.get(i);
+                while (downsampler.hasNext()) {
+                    active = true;
+                    outputs.get(i).add(downsampler.next());
+                    if (queues.get(i).isEmpty()) break;
+                }
+            }
+        }
+    }
+
+    /** Decodes the fields of a record that are only decoded from its binary form when first accessed. */
+    private static void decode(final SAMRecord rec) {
+        rec.getCigar();
+        rec.getAlignmentEnd();
+        rec.getReadBases();
+        rec.getBaseQualities();
+        rec.getAttributes();
+    }
+
+    /**
+     * One downsampled file.  Without a thread pool records are written as they are added; with one they are written in
+     * batches on the pool, one batch at a time for each output so that the records stay in order.  A record may be
+     * kept in several outputs and writing a record sets its header, so each output writes its own copy.
+     */
+    private static final class DownsampledOutput {
+        private final SAMFileWriter writer;
+        private final ExecutorService pool;
+        private final QualityYieldMetricsCollector metricsCollector;
+        private List<SAMRecord> batch = new ArrayList<>();
+        private Future<?> pending;
+        private long accepted;
+
+        DownsampledOutput(final SAMFileWriter writer, final ExecutorService pool, final boolean collectMetrics) {
+            this.writer = writer;
+            this.pool = pool;
+            this.metricsCollector = collectMetrics ? new QualityYieldMetricsCollector(true, false, false) : null;
+        }
+
+        void add(final SAMRecord rec) {
+            ++accepted;
+            if (metricsCollector != null) metricsCollector.acceptRecord(rec, null);
+            if (pool == null) {
+                writer.addAlignment(rec);
+            } else {
+                batch.add(rec);
+                if (batch.size() == BATCH_SIZE) flush();
+            }
+        }
+
+        private void flush() {
+            awaitPending();
+            final List<SAMRecord> records = batch;
+            pending = pool.submit(() -> records.forEach(rec -> writer.addAlignment(rec.deepCopy())));
+            batch = new ArrayList<>();
+        }
+
+        private void awaitPending() {
+            if (pending == null) return;
+            ThreadPoolExecutorUtil.getResult(pending, "writing downsampled records");
+            pending = null;
+        }
+
+        void close() {
+            if (pool != null) {
+                if (!batch.isEmpty()) flush();
+                awaitPending();
+            }
+            writer.close();
+        }
+    }
+
     @Override
     protected ReferenceArgumentCollection makeReferenceArgumentCollection() {
         // Override to allow "R" to be hijacked for "RANDOM_SEED"
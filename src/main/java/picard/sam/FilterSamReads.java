@@ -45,6 +45,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -162,7 +163,8 @@ public class FilterSamReads extends CommandLineProgram {
         excludeReadList("Output reads with names *not* contained in READ_LIST_FILE. See READ_LIST_FILE for more detail."),
         includeJavascript("Output reads that have been accepted by the JAVASCRIPT_FILE script, that is, reads for which the value of the script is true. " +
                 "See the JAVASCRIPT_FILE argument for more detail. "),
-        includePairedIntervals("Output reads that overlap with an interval from INTERVAL_LIST (and their mate). INPUT must be coordinate sorted."),
+        includePairedIntervals("Output reads that overlap with an interval from INTERVAL_LIST (and their mate). INPUT must be coordinate sorted. " +
+                "If INPUT is indexed, only the reads overlapping the intervals and their mates are read from it."),
         includeTagValues("OUTPUT SAM/BAM will contain reads that have a value of tag TAG that is contained in the values for TAG_VALUES"),
         excludeTagValues("OUTPUT SAM/BAM will contain reads that do not have a value of tag TAG that is contained in the values for TAG_VALUES");
        private final String description;
@@ -287,6 +289,87 @@ public class FilterSamReads extends CommandLineProgram {
         return IntervalList.fromFile(intervalFile).getIntervals();
     }
 
+    /**
+     * Uses the index to read only the records that IntervalKeepPairFilter could keep: those overlapping the intervals
+     * and the mates of those.  A first query over the intervals collects the mate position of each primary record that
+     * overlaps them; a second query over the intervals together with those mate positions then returns the candidates
+     * in file order, so that filtering them gives the same output as filtering the whole file.  Mates that are not
+     * placed on a reference are found by reading the unmapped reads at the end of the file.
+     * <p/>
+     * This relies on the mate fields of each record agreeing with its mate, as IntervalKeepPairFilter itself does.
+     */
+    private CloseableIterator<SAMRecord> queryPairedIntervals(final SamReader samReader, final List<Interval> intervals) {
+        final SAMFileHeader header = samReader.getFileHeader();
+        final List<QueryInterval> queryIntervals = new ArrayList<>();
+        for (final Interval interval : intervals) {
+            final int referenceIndex = header.getSequenceIndex(interval.getContig());
+            if (referenceIndex != SAMSequenceRecord.UNAVAILABLE_SEQUENCE_INDEX) {
+                queryIntervals.add(new QueryInterval(referenceIndex, interval.getStart(), interval.getEnd()));
+            }
+        }
+        final OverlapDetector<Interval> overlapDetector = new OverlapDetector<>(0, 0);
+        overlapDetector.addAll(intervals, intervals);
+
+        final List<QueryInterval> mateStarts = new ArrayList<>();
+        boolean hasUnplacedMates = false;
+        try (final SAMRecordIterator iterator = samReader.query(QueryInterval.optimizeIntervals(queryIntervals.toArray(new QueryInterval[0])), false)) {
+            while (iterator.hasNext()) {
+                final SAMRecord rec = iterator.next();
+                if (rec.isSecondaryOrSupplementary() || !rec.getReadPairedFlag() || rec.getReadUnmappedFlag()) continue;
+
+                final int mateStart = rec.getMateAlignmentStart();
+                if (rec.getMateReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    hasUnplacedMates = true;
+                } else if (!overlapDetector.overlapsAny(new Interval(rec.getMateReferenceName(), mateStart, mateStart))) {
+                    // A mate starting inside an interval is returned by the interval query already.
+                    mateStarts.add(new QueryInterval(rec.getMateReferenceIndex(), mateStart, mateStart));
+                }
+            }
+        }
+        queryIntervals.addAll(mateStarts);
+        log.info("Querying " + INPUT.getName() + " for " + intervals.size() + " intervals and " + mateStarts.size() + " mate positions outside them.");
+
+        final QueryInterval[] candidateIntervals = QueryInterval.optimizeIntervals(queryIntervals.toArray(new QueryInterval[0]));
+        final List<Supplier<SAMRecordIterator>> queries = new ArrayList<>();
+        queries.add(() -> samReader.query(candidateIntervals, false));
+        if (hasUnplacedMates) queries.add(samReader::queryUnmapped);
+        return new SequentialQueryIterator(queries);
+    }
+
+    /** Runs queries against a reader one after the other, since a reader can only have one iterator open at a time. */
+    private static class SequentialQueryIterator implements CloseableIterator<SAMRecord> {
+        private final Iterator<Supplier<SAMRecordIterator>> queries;
+        private SAMRecordIterator current;
+
+        SequentialQueryIterator(final List<Supplier<SAMRecordIterator>> queries) {
+            this.queries = queries.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (!queries.hasNext()) return false;
+                current = queries.next().get();
+            }
+            return true;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            if (current != null) current.close();
+        }
+    }
+
     @Override
     protected int doWork() {
 
@@ -327,8 +410,14 @@ public class FilterSamReads extends CommandLineProgram {
                                     samReader.getFileHeader()));
                     break;
                 case includePairedIntervals:
-                    filteringIterator = new FilteringSamIterator(samReader.iterator(),
-                            new IntervalKeepPairFilter(getIntervalList(INTERVAL_LIST)));
+                    final List<Interval> intervals = getIntervalList(INTERVAL_LIST);
+                    if (samReader.hasIndex() && samReader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.coordinate) {
+                        filteringIterator = new FilteringSamIterator(queryPairedIntervals(samReader, intervals),
+                                new IntervalKeepPairFilter(intervals));
+                    } else {
+                        filteringIterator = new FilteringSamIterator(samReader.iterator(),
+                                new IntervalKeepPairFilter(intervals));
+                    }
                     break;
                 case includeTagValues:
                     filteringIterator = new FilteringSamIterator(samReader.iterator(),
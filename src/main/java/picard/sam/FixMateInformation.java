@@ -37,6 +37,7 @@ import htsjdk.samtools.SamFileHeaderMerger;
 import htsjdk.samtools.SamPairUtil;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
@@ -51,6 +52,7 @@ import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.argparser.Argument;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.sam.util.StreamingMateFixer;
 
 import java.io.File;
 import java.io.IOException;
@@ -66,6 +68,11 @@ import java.util.List;
  * Reads marked with the secondary alignment flag are written to the output file unchanged.
  * However, <b>supplementary</b> reads are corrected so that they point to the primary,
  * non-supplemental mate record.
+ * <p>
+ * The input is sorted by query name, fixed and sorted again.  With {@link #FIX_WITHOUT_SORTING}, coordinate-sorted
+ * input files are instead fixed without sorting, by reading them twice: reads are held only until their mate arrives,
+ * and mates further apart than {@link #MAX_MATE_DISTANCE}, or on different contigs, are written to temporary files in
+ * the first pass and paired up before the second pass writes the output.
  *
  * <h3>Usage example:</h3>
  * <pre>
@@ -91,7 +98,10 @@ public class FixMateInformation extends CommandLineProgram {
             "and its mate pair.  If no OUTPUT file is supplied then the output is written to a temporary file " +
             "and then copied over the INPUT file (with the original placed in a .old file.)  Reads marked with the secondary alignment flag are written " +
             "to the output file unchanged. However <b>supplementary</b> reads are corrected so that they point to the primary, " +
-            "non-supplemental mate record.\n" +
+            "non-supplemental mate record.  With FIX_WITHOUT_SORTING, coordinate-sorted input files are fixed without " +
+            "sorting, by reading them twice: reads are held only until their mate arrives, and mates further apart than " +
+            "MAX_MATE_DISTANCE, or on different contigs, are written to temporary files in the first pass and paired up " +
+            "before the second pass writes the output.\n" +
             "\n" +
             "<h3>Usage example</h3>\n" +
             "\n" +
@@ -125,6 +135,14 @@ public class FixMateInformation extends CommandLineProgram {
     @Argument(doc = "If true, ignore missing mates, otherwise will throw an exception when missing mates are found.", optional = true)
     public Boolean IGNORE_MISSING_MATES = true;
 
+    @Argument(doc = "If true, fix coordinate-sorted INPUT files into a coordinate-sorted OUTPUT without sorting them, by " +
+            "reading them twice.  The inputs must be regular files whose headers say they are coordinate sorted.")
+    public boolean FIX_WITHOUT_SORTING = false;
+
+    @Argument(doc = "With FIX_WITHOUT_SORTING, reads whose mate has not been found within this " +
+            "many bases are written to temporary files and paired up after the first pass over the input.")
+    public int MAX_MATE_DISTANCE = 10000;
+
     private static final Log log = Log.getInstance(FixMateInformation.class);
 
     protected SAMFileWriter out;
@@ -132,12 +150,14 @@ public class FixMateInformation extends CommandLineProgram {
     protected int doWork() {
         // Open up the input
         boolean allQueryNameSorted = true;
+        boolean allCoordinateSorted = true;
         final List<SamReader> readers = new ArrayList<>();
         for (final File f : INPUT) {
             IOUtil.assertFileIsReadable(f);
             final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(f);
             readers.add(reader);
             if (reader.getFileHeader().getSortOrder() != SortOrder.queryname) allQueryNameSorted = false;
+            if (reader.getFileHeader().getSortOrder() != SortOrder.coordinate) allCoordinateSorted = false;
         }
 
         // Decide where to write the fixed file - into the specified output file
@@ -161,8 +181,12 @@ public class FixMateInformation extends CommandLineProgram {
             }
         }
 
+        if (FIX_WITHOUT_SORTING && !allCoordinateSorted) {
+            throw new PicardException("FIX_WITHOUT_SORTING requires all INPUT files to be coordinate sorted.");
+        }
+
         // Get the input records merged and sorted by query name as needed
-        final PeekableIterator<SAMRecord> iterator;
+        final CloseableIterator<SAMRecord> iterator;
         final SAMFileHeader header;
 
         {
@@ -173,7 +197,7 @@ public class FixMateInformation extends CommandLineProgram {
                 for (final SamReader reader : readers) {
                     headers.add(reader.getFileHeader());
                 }
-                final SortOrder sortOrder = (allQueryNameSorted ? SortOrder.queryname : SortOrder.unsorted);
+                final SortOrder sortOrder = (allQueryNameSorted ? SortOrder.queryname : FIX_WITHOUT_SORTING ? SortOrder.coordinate : SortOrder.unsorted);
                 final SamFileHeaderMerger merger = new SamFileHeaderMerger(sortOrder, headers, false);
                 tmp = new MergingSamRecordIterator(merger, readers, false);
                 header = merger.getMergedHeader();
@@ -183,7 +207,20 @@ public class FixMateInformation extends CommandLineProgram {
             }
 
             // And now deal with re-sorting if necessary
-            if (ASSUME_SORTED || allQueryNameSorted) {
+            if (FIX_WITHOUT_SORTING) {
+                log.info("Finding mates that are far apart in coordinate-sorted input.");
+                final StreamingMateFixer fixer = new StreamingMateFixer(header, ADD_MATE_CIGAR, IGNORE_MISSING_MATES,
+                        MAX_MATE_DISTANCE, MAX_RECORDS_IN_RAM, TMP_DIR);
+                final ProgressLogger firstPassProgress = new ProgressLogger(log);
+                while (tmp.hasNext()) {
+                    final SAMRecord record = tmp.next();
+                    fixer.add(record);
+                    firstPassProgress.record(record);
+                }
+                CloserUtil.close(tmp);
+                log.info("Pairing up mates that were far apart.");
+                iterator = fixer.finish(reopenInputs(readers));
+            } else if (ASSUME_SORTED || allQueryNameSorted) {
                 iterator = new SamPairUtil.SetMateInfoIterator(new PeekableIterator<>(tmp), ADD_MATE_CIGAR, IGNORE_MISSING_MATES);
             } else {
                 log.info("Sorting input into queryname order.");
@@ -216,9 +253,13 @@ public class FixMateInformation extends CommandLineProgram {
             throw new PicardException("Can't CREATE_INDEX unless sort order is coordinate");
         }
 
-        createSamFileWriter(header);
-
-        log.info("Traversing query name sorted records and fixing up mate pair information.");
+        if (FIX_WITHOUT_SORTING) {
+            createSamFileWriter(header, true);
+            log.info("Writing records with fixed mate pair information.");
+        } else {
+            createSamFileWriter(header);
+            log.info("Traversing query name sorted records and fixing up mate pair information.");
+        }
         final ProgressLogger progress = new ProgressLogger(log);
         while (iterator.hasNext()) {
             final SAMRecord record = iterator.next();
@@ -227,7 +268,7 @@ public class FixMateInformation extends CommandLineProgram {
         }
         iterator.close();
 
-        if (header.getSortOrder() == SortOrder.queryname) {
+        if (header.getSortOrder() == SortOrder.queryname || FIX_WITHOUT_SORTING) {
             log.info("Closing output file.");
         } else {
             log.info("Finished processing reads; re-sorting output file.");
@@ -281,9 +322,51 @@ public class FixMateInformation extends CommandLineProgram {
         return 0;
     }
 
+    /** Opens INPUT again, merged in the same way as the first time, and adds the new readers to the given ones. */
+    private CloseableIterator<SAMRecord> reopenInputs(final List<SamReader> readers) {
+        final List<SamReader> reopened = new ArrayList<>(INPUT.size());
+        for (final File f : INPUT) {
+            reopened.add(SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(f));
+        }
+        readers.addAll(reopened);
+        if (reopened.size() == 1) {
+            return reopened.get(0).iterator();
+        }
+        final List<SAMFileHeader> headers = new ArrayList<>(reopened.size());
+        for (final SamReader reader : reopened) {
+            headers.add(reader.getFileHeader());
+        }
+        return new MergingSamRecordIterator(new SamFileHeaderMerger(SortOrder.coordinate, headers, false), reopened, false);
+    }
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (FIX_WITHOUT_SORTING) {
+            final List<String> errors = new ArrayList<>();
+            if (ASSUME_SORTED) {
+                errors.add("FIX_WITHOUT_SORTING cannot be used with ASSUME_SORTED.");
+            }
+            if (SORT_ORDER != null && SORT_ORDER != SortOrder.coordinate) {
+                errors.add("FIX_WITHOUT_SORTING can only write coordinate-sorted output, not " + SORT_ORDER + ".");
+            }
+            for (final File f : INPUT) {
+                if (!IOUtil.isRegularPath(f)) {
+                    errors.add("FIX_WITHOUT_SORTING reads INPUT twice, so it must be a regular file: " + f);
+                }
+            }
+            if (!errors.isEmpty()) {
+                return errors.toArray(new String[0]);
+            }
+        }
+        return super.customCommandLineValidation();
+    }
+
     protected void createSamFileWriter(final SAMFileHeader header) {
-        out = new SAMFileWriterFactory().makeSAMOrBAMWriter(header,
-                header.getSortOrder() == SortOrder.queryname, OUTPUT);
+        createSamFileWriter(header, header.getSortOrder() == SortOrder.queryname);
+    }
+
+    protected void createSamFileWriter(final SAMFileHeader header, final boolean presorted) {
+        out = new SAMFileWriterFactory().makeSAMOrBAMWriter(header, presorted, OUTPUT);
 
     }
 
@@ -47,12 +47,15 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.sam.util.ParallelMergingSamRecordIterator;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -91,6 +94,8 @@ public class MergeSamFiles extends CommandLineProgram {
             "unique. For more information about read groups, see the " +
             "<a href='https://www.broadinstitute.org/gatk/guide/article?id=6472'>GATK Dictionary entry.</a> <br /><br />" +
             "<br />" +
+            "With NUM_PROCESSORS greater than 1, the inputs are read and decoded on that many threads while the merge itself " +
+            "runs on the main thread. <br /><br />" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
             "java -jar picard.jar MergeSamFiles \\<br />" +
@@ -131,6 +136,10 @@ public class MergeSamFiles extends CommandLineProgram {
             optional = true)
     public File INTERVALS = null;
 
+    @Argument(doc = "The number of threads used to read and decode the input files. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private static final int PROGRESS_INTERVAL = 1000000;
 
     /** Combines multiple SAM/BAM files into one. */
@@ -197,9 +206,17 @@ public class MergeSamFiles extends CommandLineProgram {
             presorted = false;
         }
         final SamFileHeaderMerger headerMerger = new SamFileHeaderMerger(headerMergerSortOrder, headers, MERGE_SEQUENCE_DICTIONARIES);
-        final MergingSamRecordIterator iterator;
-        // no interval defined, get an iterator for the whole bam
-        if (intervalList == null) {
+        final CloseableIterator<SAMRecord> iterator;
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        if (numThreads > 1) {
+            log.info("Reading input files on " + numThreads + " threads.");
+            final Map<SamReader, CloseableIterator<SAMRecord>> iterators = new LinkedHashMap<>();
+            for (final SamReader reader : readers) {
+                iterators.put(reader, intervalList == null ? reader.iterator() : samReaderToIterator.get(reader));
+            }
+            iterator = new ParallelMergingSamRecordIterator(headerMerger, iterators, intervalList != null || mergingSamRecordIteratorAssumeSorted, numThreads);
+        } else if (intervalList == null) {
+            // no interval defined, get an iterator for the whole bam
             iterator = new MergingSamRecordIterator(headerMerger, readers, mergingSamRecordIteratorAssumeSorted);
         } else {
             // show warning related to https://github.com/broadinstitute/picard/pull/314/files
@@ -226,6 +243,7 @@ public class MergeSamFiles extends CommandLineProgram {
         }
 
         log.info("Finished reading inputs.");
+        iterator.close();
         for(final CloseableIterator<SAMRecord> iter : samReaderToIterator.values())  CloserUtil.close(iter);
         CloserUtil.close(readers);
         out.close();
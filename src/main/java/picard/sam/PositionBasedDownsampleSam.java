@@ -25,6 +25,8 @@
 package picard.sam;
 
 import htsjdk.samtools.*;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.*;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
@@ -63,7 +65,9 @@ import java.util.Map;
  * By default the program expects the read names to have 5 or 7 fields separated by colons (:), and it takes the last two
  * to indicate the x and y coordinates of the reads within the tile whence it was sequenced. See
  * {@link ReadNameParser#DEFAULT_READ_NAME_REGEX} for more detail. The program traverses the {@link #INPUT} twice: first
- * to find out the size of each of the tiles, and next to perform the downsampling.
+ * to find out the size of each of the tiles, and next to perform the downsampling. With {@link #TILE_COORDINATES} the
+ * sizes of the tiles are written to a file by the first run and read back by later ones, which then traverse the
+ * {@link #INPUT} only once.
  *
  * Downsampling invalidates the duplicate flag because duplicate reads before downsampling may not all remain duplicated
  * after downsampling. Thus, the default setting also removes the duplicate information.
@@ -121,7 +125,9 @@ import java.util.Map;
               "By default the program expects the read names to have 5 or 7 fields separated by colons (:) and it takes the last two " +
               "to indicate the x and y coordinates of the reads within the tile whence it was sequenced. See " +
               "DEFAULT_READ_NAME_REGEX for more detail. The program traverses the INPUT twice: first " +
-              "to find out the size of each of the tiles, and next to perform the downsampling. " +
+              "to find out the size of each of the tiles, and next to perform the downsampling. With TILE_COORDINATES " +
+              "the sizes of the tiles are written to a file by the first run and read back by later ones, which then " +
+              "traverse the INPUT only once. " +
               "Downsampling invalidates the duplicate flag because duplicate reads before downsampling " +
               "may not all remain duplicated after downsampling. Thus, the default setting also removes the duplicate information. " +
               "\n\n" +
@@ -190,9 +196,17 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
     @Argument(doc = "Allow downsampling again despite this being a bad idea with possibly unexpected results.", optional = true)
     public boolean ALLOW_MULTIPLE_DOWNSAMPLING_DESPITE_WARNINGS = false;
 
+    @Argument(doc = "A file holding the range of x and y coordinates of the reads in each tile. If it exists, the ranges are " +
+            "read from it and INPUT is read only once. Otherwise the ranges are found by reading INPUT an extra time and are " +
+            "written to this file, so that later runs on inputs from the same run or flowcell type can reuse them. " +
+            "Every tile of INPUT must be in the file.", optional = true)
+    public File TILE_COORDINATES = null;
+
     private final Log log = Log.getInstance(PositionBasedDownsampleSam.class);
 
     private ReadNameParser readNameParser;
+    // A single location is reused for every read, so it is reset before each read name is parsed into it.
+    private final PhysicalLocationInt location = new PhysicalLocationInt();
     private long total = 0;
     private long kept = 0;
     public static String PG_PROGRAM_NAME = "PositionBasedDownsampleSam";
@@ -235,9 +249,19 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
 
         readNameParser = new ReadNameParser(READ_NAME_REGEX);
 
-        log.info("Starting first pass. Examining read distribution in tiles.");
-        fillTileMinMaxCoord();
-        log.info("First pass done.");
+        if (TILE_COORDINATES != null && TILE_COORDINATES.exists()) {
+            log.info("Reading the coordinate ranges of the tiles from " + TILE_COORDINATES + ".");
+            readTileCoordinates();
+        } else {
+            log.info("Starting first pass. Examining read distribution in tiles.");
+            fillTileMinMaxCoord();
+            log.info("First pass done.");
+            if (TILE_COORDINATES != null) {
+                log.info("Writing the coordinate ranges of the tiles to " + TILE_COORDINATES + ".");
+                writeTileCoordinates();
+            }
+        }
+        widenTileCoordinates();
 
         log.info("Starting second pass. Outputting reads.");
         outputSamRecords();
@@ -284,6 +308,10 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
                 yPositions.put(pos.getTile(), new Histogram<>(pos.getTile() + "-ypos", "count"));
             }
 
+            if (!tileCoord.containsKey(pos.getTile())) {
+                throw new PicardException("Tile " + pos.getTile() + " of read " + rec.getReadName() + " is not in " +
+                        TILE_COORDINATES + ". Remove the file to find the coordinate ranges of the tiles of INPUT.");
+            }
             final boolean keepRecord = selector.select(pos, tileCoord.get(pos.getTile()));
 
             if (keepRecord) {
@@ -351,7 +379,11 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
 
         }
 
-        // now that we know what the maximal/minimal numbers were, we should increase/decrease them a little, to account for sampling error
+        CloserUtil.close(in);
+    }
+
+    // now that we know what the maximal/minimal numbers were, we should increase/decrease them a little, to account for sampling error
+    private void widenTileCoordinates() {
         for (final Coord coord : tileCoord.values()) {
 
             final int diffX = coord.maxX - coord.minX;
@@ -363,14 +395,41 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
             coord.maxY += diffY / coord.count;
             coord.minY -= diffY / coord.count;
         }
+    }
 
-        CloserUtil.close(in);
+    private void writeTileCoordinates() {
+        final MetricsFile<TileCoordinates, Integer> metricsFile = getMetricsFile();
+        for (final Map.Entry<Short, Coord> entry : tileCoord.entrySet()) {
+            final TileCoordinates metric = new TileCoordinates();
+            metric.TILE = entry.getKey();
+            metric.MIN_X = entry.getValue().minX;
+            metric.MAX_X = entry.getValue().maxX;
+            metric.MIN_Y = entry.getValue().minY;
+            metric.MAX_Y = entry.getValue().maxY;
+            metric.READS = entry.getValue().count;
+            metricsFile.addMetric(metric);
+        }
+        metricsFile.write(TILE_COORDINATES);
+    }
+
+    private void readTileCoordinates() {
+        IOUtil.assertFileIsReadable(TILE_COORDINATES);
+        for (final TileCoordinates metric : MetricsFile.<TileCoordinates>readBeans(TILE_COORDINATES)) {
+            final Coord coord = tileCoord.get(metric.TILE);
+            coord.minX = metric.MIN_X;
+            coord.maxX = metric.MAX_X;
+            coord.minY = metric.MIN_Y;
+            coord.maxY = metric.MAX_Y;
+            coord.count = metric.READS;
+        }
     }
 
     private PhysicalLocationInt getSamRecordLocation(final SAMRecord rec) {
-        final PhysicalLocationInt pos = new PhysicalLocationInt();
-        readNameParser.addLocationInformation(rec.getReadName(), pos);
-        return pos;
+        location.setTile((short) -1);
+        location.setX(-1);
+        location.setY(-1);
+        readNameParser.addLocationInformation(rec.getReadName(), location);
+        return location;
     }
 
     /*
@@ -446,4 +505,20 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
             maxY = 0;
         }
     }
+
+    /** The range of x and y coordinates of the reads in one tile, as found by reading the input. */
+    public static class TileCoordinates extends MetricBase {
+        /** The tile number. */
+        public short TILE;
+        /** The smallest x coordinate of a read in the tile. */
+        public int MIN_X;
+        /** The largest x coordinate of a read in the tile. */
+        public int MAX_X;
+        /** The smallest y coordinate of a read in the tile. */
+        public int MIN_Y;
+        /** The largest y coordinate of a read in the tile. */
+        public int MAX_Y;
+        /** The number of reads in the tile. */
+        public int READS;
+    }
 }
@@ -23,10 +23,12 @@
  */
 package picard.sam;
 
+import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
@@ -43,11 +45,16 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static htsjdk.samtools.SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
 import static htsjdk.samtools.SAMRecord.NO_ALIGNMENT_START;
@@ -61,6 +68,11 @@ import static htsjdk.samtools.SAMRecord.NO_ALIGNMENT_START;
  * as determined by exact name matching of contigs.  Reads mapped to contigs absent in the new
  * reference are unmapped. Runs substantially faster if the input is an indexed BAM file.
  *
+ * <p>With NUM_PROCESSORS greater than one, an indexed input and a BAM output, the reads of each contig of the new
+ * reference are reordered on a separate thread into a BAM file of their own, and these files are concatenated block by
+ * block into the OUTPUT, which is then indexed if CREATE_INDEX is set. The reads are in the same order as with a single
+ * thread.</p>
+ *
  * <h3>Example</h3>
  * <pre>
  *     java -jar picard.jar ReorderSam \
@@ -79,7 +91,9 @@ import static htsjdk.samtools.SAMRecord.NO_ALIGNMENT_START;
         summary = "Not to be confused with SortSam which sorts a SAM or BAM file with a valid sequence dictionary, " +
                 "ReorderSam reorders reads in a SAM/BAM file to match the contig ordering in a provided reference file, " +
                 "as determined by exact name matching of contigs.  Reads mapped to contigs absent in the new " +
-                "reference are unmapped. Runs substantially faster if the input is an indexed BAM file." +
+                "reference are unmapped. Runs substantially faster if the input is an indexed BAM file. " +
+                "With NUM_PROCESSORS greater than one, an indexed input and a BAM output, the contigs are reordered on " +
+                "several threads and the results concatenated." +
                 "\n" +
                 "Example\n" +
                 "\n" +
@@ -114,6 +128,10 @@ public class ReorderSam extends CommandLineProgram {
             "are doing.")
     public boolean ALLOW_CONTIG_LENGTH_DISCORDANCE = false;
 
+    @Argument(doc = "The number of threads used to reorder an indexed input into a BAM output. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private final Log log = Log.getInstance(ReorderSam.class);
 
     protected int doWork() {
@@ -144,7 +162,10 @@ public class ReorderSam extends CommandLineProgram {
             outHeader.setSequenceDictionary(outputDictionary);
 
             log.info("Writing reads...");
-            if (in.hasIndex()) {
+            final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+            if (in.hasIndex() && numThreads > 1 && OUTPUT.getName().endsWith(BamFileIoUtils.BAM_FILE_EXTENSION)) {
+                writeContigsInParallel(in.getFileHeader().getSequenceDictionary(), outHeader, newOrder, numThreads);
+            } else if (in.hasIndex()) {
                 try (final SAMFileWriter out = new SAMFileWriterFactory().makeSAMOrBAMWriter(outHeader, false, OUTPUT)) {
 
                     // write the reads in contig order
@@ -201,36 +222,149 @@ public class ReorderSam extends CommandLineProgram {
         while (it.hasNext()) {
             counter++;
             final SAMRecord read = it.next();
-            final int oldRefIndex = read.getReferenceIndex();
-            final int oldMateIndex = read.getMateReferenceIndex();
-            final int newRefIndex = newOrderIndex(read, oldRefIndex, newOrder);
-
-            read.setHeader(out.getFileHeader());
-            read.setReferenceIndex(newRefIndex);
-
-            // read becoming unmapped
-            if (oldRefIndex != NO_ALIGNMENT_REFERENCE_INDEX &&
-                    newRefIndex == NO_ALIGNMENT_REFERENCE_INDEX) {
-                read.setAlignmentStart(NO_ALIGNMENT_START);
-                read.setReadUnmappedFlag(true);
-                read.setCigarString(SAMRecord.NO_ALIGNMENT_CIGAR);
-                read.setMappingQuality(SAMRecord.NO_MAPPING_QUALITY);
+            reorderRead(read, out.getFileHeader(), newOrder);
+            out.addAlignment(read);
+        }
+
+        it.close();
+        log.info("Wrote " + counter + " reads");
+    }
+
+    /**
+     * Moves a read, and the reference of its mate, to the given header according to the newOrder mapping from
+     * dictionary index -> index, unmapping the read or its mate if their contig is not in the new dictionary.
+     */
+    private void reorderRead(final SAMRecord read, final SAMFileHeader header, final Map<Integer, Integer> newOrder) {
+        final int oldRefIndex = read.getReferenceIndex();
+        final int oldMateIndex = read.getMateReferenceIndex();
+        final int newRefIndex = newOrderIndex(read, oldRefIndex, newOrder);
+
+        read.setHeader(header);
+        read.setReferenceIndex(newRefIndex);
+
+        // read becoming unmapped
+        if (oldRefIndex != NO_ALIGNMENT_REFERENCE_INDEX &&
+                newRefIndex == NO_ALIGNMENT_REFERENCE_INDEX) {
+            read.setAlignmentStart(NO_ALIGNMENT_START);
+            read.setReadUnmappedFlag(true);
+            read.setCigarString(SAMRecord.NO_ALIGNMENT_CIGAR);
+            read.setMappingQuality(SAMRecord.NO_MAPPING_QUALITY);
+        }
+
+        final int newMateIndex = newOrderIndex(read, oldMateIndex, newOrder);
+        if (oldMateIndex != NO_ALIGNMENT_REFERENCE_INDEX &&
+                newMateIndex == NO_ALIGNMENT_REFERENCE_INDEX) { // mate becoming unmapped
+            read.setMateAlignmentStart(NO_ALIGNMENT_START);
+            read.setMateUnmappedFlag(true);
+            read.setAttribute(SAMTag.MC.name(), null);      // Set the Mate Cigar String to null
+        }
+        read.setMateReferenceIndex(newMateIndex);
+    }
+
+    /**
+     * Reorders each contig of the new dictionary on the thread pool into a BAM file of its own, by querying the index
+     * for the matching contig of the input, and the unmapped reads together with the reads of contigs that are not in
+     * the new dictionary into one more.  The files are then concatenated block by block into OUTPUT.
+     */
+    private void writeContigsInParallel(final SAMSequenceDictionary inputDictionary, final SAMFileHeader outHeader,
+                                        final Map<Integer, Integer> newOrder, final int numThreads) throws IOException {
+        log.info("Reordering contigs on " + numThreads + " threads.");
+
+        final Map<Integer, String> inputContigs = new HashMap<>();
+        final List<String> droppedContigs = new ArrayList<>();
+        for (final SAMSequenceRecord contig : inputDictionary.getSequences()) {
+            final int newIndex = newOrder.get(contig.getSequenceIndex());
+            if (newIndex == NO_ALIGNMENT_REFERENCE_INDEX) {
+                droppedContigs.add(contig.getSequenceName());
+            } else {
+                inputContigs.put(newIndex, contig.getSequenceName());
             }
+        }
 
-            final int newMateIndex = newOrderIndex(read, oldMateIndex, newOrder);
-            if (oldMateIndex != NO_ALIGNMENT_REFERENCE_INDEX &&
-                    newMateIndex == NO_ALIGNMENT_REFERENCE_INDEX) { // mate becoming unmapped
-                read.setMateAlignmentStart(NO_ALIGNMENT_START);
-                read.setMateUnmappedFlag(true);
-                read.setAttribute(SAMTag.MC.name(), null);      // Set the Mate Cigar String to null
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "ReorderSam");
+        final List<File> segments = new ArrayList<>();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final SAMSequenceRecord contig : outHeader.getSequenceDictionary().getSequences()) {
+                final String inputContig = inputContigs.get(contig.getSequenceIndex());
+                if (inputContig == null) continue;
+                final File segment = newSegmentFile();
+                segments.add(segment);
+                futures.add(pool.submit(() -> writeContig(inputContig, segment, outHeader, newOrder)));
             }
-            read.setMateReferenceIndex(newMateIndex);
+            final File unmappedSegment = newSegmentFile();
+            segments.add(unmappedSegment);
+            futures.add(pool.submit(() -> writeUnmapped(droppedContigs, unmappedSegment, outHeader, newOrder)));
 
-            out.addAlignment(read);
+            for (final Future<?> future : futures) {
+                ThreadPoolExecutorUtil.getResult(future, "reordering contigs");
+            }
+
+            log.info("Concatenating " + segments.size() + " contigs into " + OUTPUT);
+            BamFileIoUtils.gatherWithBlockCopying(segments, OUTPUT, CREATE_INDEX, CREATE_MD5_FILE);
+        } finally {
+            pool.shutdownNow();
+            segments.forEach(File::delete);
         }
+    }
 
-        it.close();
-        log.info("Wrote " + counter + " reads");
+    private File newSegmentFile() throws IOException {
+        final File segment = File.createTempFile("ReorderSam.", BamFileIoUtils.BAM_FILE_EXTENSION, TMP_DIR.get(0));
+        segment.deleteOnExit();
+        return segment;
+    }
+
+    /**
+     * Writes the reads of one input contig, which keeps its coordinates but moves to a new index.  The reads are already
+     * in coordinate order, except that reads starting at the same position may compare differently once the indices of
+     * their mates change, so each such run of reads is sorted again.
+     */
+    private void writeContig(final String inputContig, final File segment, final SAMFileHeader outHeader,
+                             final Map<Integer, Integer> newOrder) {
+        final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        final List<SAMRecord> sameStart = new ArrayList<>();
+        long counter = 0;
+        try (final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+             final SAMRecordIterator it = in.query(inputContig, 0, 0, false);
+             final SAMFileWriter out = newSegmentWriter(outHeader, true, segment)) {
+            while (it.hasNext()) {
+                counter++;
+                final SAMRecord read = it.next();
+                reorderRead(read, outHeader, newOrder);
+                if (!sameStart.isEmpty() && sameStart.get(0).getAlignmentStart() != read.getAlignmentStart()) {
+                    writeSorted(sameStart, comparator, out);
+                }
+                sameStart.add(read);
+            }
+            writeSorted(sameStart, comparator, out);
+        } catch (final IOException e) {
+            throw new PicardException("Error reading " + INPUT, e);
+        }
+        log.info("Wrote " + counter + " reads from " + inputContig);
+    }
+
+    private static void writeSorted(final List<SAMRecord> reads, final SAMRecordCoordinateComparator comparator, final SAMFileWriter out) {
+        reads.sort(comparator);
+        reads.forEach(out::addAlignment);
+        reads.clear();
+    }
+
+    /** Writes the unmapped reads and the reads of input contigs that are not in the new dictionary, sorted. */
+    private void writeUnmapped(final List<String> droppedContigs, final File segment, final SAMFileHeader outHeader,
+                               final Map<Integer, Integer> newOrder) {
+        try (final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+             final SAMFileWriter out = newSegmentWriter(outHeader, false, segment)) {
+            for (final String contig : droppedContigs) {
+                writeReads(out, in.query(contig, 0, 0, false), newOrder, contig);
+            }
+            writeReads(out, in.queryUnmapped(), newOrder, "unmapped");
+        } catch (final IOException e) {
+            throw new PicardException("Error reading " + INPUT, e);
+        }
+    }
+
+    private static SAMFileWriter newSegmentWriter(final SAMFileHeader outHeader, final boolean presorted, final File segment) {
+        return new SAMFileWriterFactory().setCreateIndex(false).setCreateMd5File(false).makeBAMWriter(outHeader, presorted, segment);
     }
 
     /**
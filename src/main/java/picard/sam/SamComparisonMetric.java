@@ -1,22 +1,25 @@
 package picard.sam;
 
-import htsjdk.samtools.metrics.MetricBase;
 import picard.PicardException;
+import picard.analysis.MergeableMetricBase;
 import picard.sam.util.SamComparison;
 
 /**
- * Metric for results of SamComparison.  Used to store results in CompareSAMs.
+ * Metric for results of SamComparison.  Used to store results in CompareSAMs.  The counts of comparisons of
+ * different parts of the inputs can be merged by adding them.
  */
-public class SamComparisonMetric extends MetricBase {
+public class SamComparisonMetric extends MergeableMetricBase {
 
     /**
      * Left file used in comparison
      */
+    @NoMergingKeepsValue
     public String LEFT_FILE;
 
     /**
      * Right file used in comparison
      */
+    @NoMergingKeepsValue
     public String RIGHT_FILE;
 
     /**
@@ -25,36 +28,43 @@ public class SamComparisonMetric extends MetricBase {
      * all records which are mapped in both files with mapping quality at most equal to LOW_MQ_THRESHOLD are counted as matching. If
      * running with LENIENT_255_MQ_ALIGNMENT=true, all records which are mapped in both files with mapping quality 255 are counted as matches.
      */
+    @MergeByAdding
     public int MAPPINGS_MATCH;
 
     /**
      * The number of primary records which are mapped in both files but do not meet criteria to be counted in MAPPINGS_MATCH.
      */
+    @MergeByAdding
     public int MAPPINGS_DIFFER;
 
     /**
      * The number of primary records which are not mapped in either file.
      */
+    @MergeByAdding
     public int UNMAPPED_BOTH;
 
     /**
      * The number of primary records which are mapped in right file and found but not mapped in left file
      */
+    @MergeByAdding
     public int UNMAPPED_LEFT;
 
     /**
      * The number of primary records which are mapped in left file and found but not mapped in right file
      */
+    @MergeByAdding
     public int UNMAPPED_RIGHT;
 
     /**
      * The number of primary records which are found in right file but not found in left file
      */
+    @MergeByAdding
     public int MISSING_LEFT;
 
     /**
      * The number of primary records which are found in left file but not found in right file
      */
+    @MergeByAdding
     public int MISSING_RIGHT;
 
     /**
@@ -65,6 +75,7 @@ public class SamComparisonMetric extends MetricBase {
      * metric is counted on a per read basis, so a paired end fragment which differs in duplicate marking between the two
      * files will increment this metric by 2.
      */
+    @MergeByAdding
     public int DUPLICATE_MARKINGS_DIFFER;
 
     /**
@@ -73,6 +84,7 @@ public class SamComparisonMetric extends MetricBase {
      * the headers have been compared to be equal.  Note that the header comparison result can be dependent on whether
      * the tool is run with LENIENT_HEADER true or false.
      */
+    @NoMergingKeepsValue
     public boolean ARE_EQUAL;
 
     public boolean allVisitedAlignmentsEqual() {
@@ -35,9 +35,15 @@ import picard.cmdline.CommandLineProgram;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
-import java.util.stream.StreamSupport;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Fixes the NM, MD, and UQ tags in a SAM or BAM file.
@@ -49,6 +55,10 @@ import java.util.stream.StreamSupport;
  * and thus could not fix these tags then. The input must be coordinate sorted in order to run.
  * If specified, the MD and NM tags can be ignored and only the UQ tag be set.</p>
  *
+ * <p>With NUM_PROCESSORS greater than one, records are read in batches and the tags of each batch are calculated on a
+ * separate thread. Batches are written in the order they were read, so the output is the same as with a single
+ * thread.</p>
+ *
  * <h3>Inputs</h3>
  * <p>
  *     <li> The BAM or SAM file to fix </li>
@@ -88,6 +98,9 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
             "This may be needed when MergeBamAlignment was run with SORT_ORDER other than 'coordinate' and thus"+
             "could not fix these tags then. The input must be coordinate sorted in order to run. If specified,"+
             "the MD and NM tags can be ignored and only the UQ tag be set."+
+            "<br />" +
+            "With NUM_PROCESSORS greater than one, the tags are calculated on several threads; the output is the same " +
+            "as with a single thread." +
             "<br />"+
             "<h4>Usage example:</h4>" +
             "<pre>" +
@@ -109,6 +122,12 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
     @Argument(doc = "Only set the UQ tag, ignore MD and NM.")
     public boolean SET_ONLY_UQ = false;
 
+    @Argument(doc = "The number of threads used to calculate the tags. " + ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
+    /** The number of records whose tags are calculated together on one thread. */
+    static final int BATCH_SIZE = 10000;
+
     @Override
     protected boolean requiresReference() {
         return true;
@@ -131,15 +150,80 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
                 new ProgressLogger(log, (int) 1e7, "Wrote", "records"));
 
         final ReferenceSequenceFileWalker refSeqWalker = new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE);
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
 
-        StreamSupport.stream(reader.spliterator(), false)
-                .peek(rec -> fixRecord(rec, refSeqWalker))
-                .forEach(writer::addAlignment);
+        if (numThreads == 1) {
+            for (final SAMRecord rec : reader) {
+                fixRecord(rec, refSeqWalker);
+                writer.addAlignment(rec);
+            }
+        } else {
+            fixRecordsInParallel(reader, refSeqWalker, writer, numThreads);
+        }
         CloserUtil.close(reader);
         writer.close();
         return 0;
     }
 
+    /**
+     * Splits the input into batches of records on a single contig, calculates the tags of each batch on the thread pool
+     * against the bases of that contig, and writes the batches in the order they were read.  Since the input is
+     * coordinate sorted, the reference is only walked forward, by this thread, and each contig is loaded once and
+     * shared by all of its batches.
+     */
+    private void fixRecordsInParallel(final SamReader reader, final ReferenceSequenceFileWalker refSeqWalker,
+                                      final SAMFileWriter writer, final int numThreads) {
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "SetNmMdAndUqTags");
+        // Enough batches are kept in flight to keep every thread busy while the oldest one is being written.
+        final int maxPending = 2 * numThreads;
+        final Deque<Future<List<SAMRecord>>> pending = new ArrayDeque<>();
+        try {
+            List<SAMRecord> batch = new ArrayList<>(BATCH_SIZE);
+            byte[] batchBases = null;
+            int batchReferenceIndex = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+            for (final SAMRecord rec : reader) {
+                final int referenceIndex = rec.getReferenceIndex();
+                if (batch.size() == BATCH_SIZE || referenceIndex != batchReferenceIndex) {
+                    if (!batch.isEmpty()) {
+                        pending.add(submitBatch(pool, batch, batchBases));
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                    if (referenceIndex != batchReferenceIndex) {
+                        batchBases = referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? null : refSeqWalker.get(referenceIndex).getBases();
+                        batchReferenceIndex = referenceIndex;
+                    }
+                    while (pending.size() >= maxPending) {
+                        writeBatch(pending.poll(), writer);
+                    }
+                }
+                batch.add(rec);
+            }
+            if (!batch.isEmpty()) {
+                pending.add(submitBatch(pool, batch, batchBases));
+            }
+            while (!pending.isEmpty()) {
+                writeBatch(pending.poll(), writer);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Future<List<SAMRecord>> submitBatch(final ExecutorService pool, final List<SAMRecord> batch, final byte[] referenceBases) {
+        return pool.submit(() -> {
+            for (final SAMRecord rec : batch) {
+                fixRecord(rec, referenceBases);
+            }
+            return batch;
+        });
+    }
+
+    private static void writeBatch(final Future<List<SAMRecord>> batch, final SAMFileWriter writer) {
+        for (final SAMRecord rec : ThreadPoolExecutorUtil.getResult(batch, "calculating tags")) {
+            writer.addAlignment(rec);
+        }
+    }
+
     private void fixRecord(SAMRecord record, ReferenceSequenceFileWalker refSeqWalker){
         if (!record.getReadUnmappedFlag()) {
             if (SET_ONLY_UQ) {
@@ -149,4 +233,14 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
             }
         }
     }
+
+    private void fixRecord(final SAMRecord record, final byte[] referenceBases) {
+        if (!record.getReadUnmappedFlag()) {
+            if (SET_ONLY_UQ) {
+                AbstractAlignmentMerger.fixUq(record, referenceBases, IS_BISULFITE_SEQUENCE);
+            } else {
+                AbstractAlignmentMerger.fixNmMdAndUq(record, referenceBases, IS_BISULFITE_SEQUENCE);
+            }
+        }
+    }
 }
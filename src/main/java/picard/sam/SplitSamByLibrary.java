@@ -39,6 +39,8 @@ import picard.cmdline.CommandLineProgram;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.sam.util.ParallelBamWriter;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -46,6 +48,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Command-line program to split a SAM or BAM file into separate files based on
@@ -55,7 +58,8 @@ import java.util.Map;
  * into one SAM or BAM file per library name. Reads that do not have
  * a read group specified or whose read group does not have a library name
  * are written to a file called 'unknown.' The format (SAM or BAM) of the
- * output files matches that of the input file.</p>
+ * output files matches that of the input file.  With NUM_PROCESSORS greater than 1, BAM outputs are
+ * compressed concurrently on that many threads.</p>
  *
  * <h3>Inputs</h3>
  * <ul>
@@ -91,7 +95,8 @@ public class SplitSamByLibrary extends CommandLineProgram {
             "into one SAM or BAM file per library name.  Reads that do not have " +
             "a read group specified or whose read group does not have a library name " +
             "are written to a file called 'unknown.' The format (SAM or BAM) of the  " +
-            "output files matches that of the input file." +
+            "output files matches that of the input file.  With NUM_PROCESSORS greater than 1, BAM outputs are " +
+            "compressed concurrently on that many threads." +
             "<br />"+
             "<h4>Usage example:</h4>" +
             "<pre>" +
@@ -108,6 +113,10 @@ public class SplitSamByLibrary extends CommandLineProgram {
                     "(defaults to the current directory). ", optional = true)
     public File OUTPUT = new File(".").getAbsoluteFile();
 
+    @Argument(doc = "The number of threads used to compress BAM output files. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private static final Log log = Log.getInstance(SplitSamByLibrary.class);
 
     public static final int NO_LIBRARIES_SPECIFIED_IN_HEADER = 2;
@@ -123,6 +132,10 @@ public class SplitSamByLibrary extends CommandLineProgram {
         SAMFileWriterFactory factory = new SAMFileWriterFactory();
         String extension = reader.type().equals(SamReader.Type.BAM_TYPE) ? ".bam" : ".sam";
 
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        final ExecutorService pool = numThreads == 1 || !extension.equals(".bam") ? null :
+                ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, SplitSamByLibrary.class.getSimpleName());
+
         SAMFileHeader unknownHeader = reader.getFileHeader().clone();
         unknownHeader.setReadGroups(new ArrayList<SAMReadGroupRecord>());
         SAMFileWriter unknown = null;
@@ -149,35 +162,46 @@ public class SplitSamByLibrary extends CommandLineProgram {
             String lib = entry.getKey();
             SAMFileHeader header = reader.getFileHeader().clone();
             header.setReadGroups(entry.getValue());
-            libraryToWriter.put(lib, factory.makeSAMOrBAMWriter(header, true,
+            libraryToWriter.put(lib, makeWriter(factory, pool, numThreads, header,
                     new File(OUTPUT, IOUtil.makeFileNameSafe(lib) + extension)));
         }
 
-        for (Iterator<SAMRecord> it = reader.iterator(); it.hasNext(); ) {
-            SAMRecord sam = it.next();
-            SAMReadGroupRecord rg = sam.getReadGroup();
-            if (rg != null && rg.getLibrary() != null) {
-                libraryToWriter.get(rg.getLibrary()).addAlignment(sam);
-            } else {
-                if (unknown == null) {
-                    unknown = factory.makeSAMOrBAMWriter(unknownHeader, true,
-                            new File(OUTPUT, "unknown" + extension));
+        try {
+            for (Iterator<SAMRecord> it = reader.iterator(); it.hasNext(); ) {
+                SAMRecord sam = it.next();
+                SAMReadGroupRecord rg = sam.getReadGroup();
+                if (rg != null && rg.getLibrary() != null) {
+                    libraryToWriter.get(rg.getLibrary()).addAlignment(sam);
+                } else {
+                    if (unknown == null) {
+                        unknown = makeWriter(factory, pool, numThreads, unknownHeader,
+                                new File(OUTPUT, "unknown" + extension));
+                    }
+                    unknown.addAlignment(sam);
                 }
-                unknown.addAlignment(sam);
             }
-        }
 
-        // Close the reader and writers
-        CloserUtil.close(reader);
+            // Close the reader and writers
+            CloserUtil.close(reader);
 
-        if (unknown != null) {
-            unknown.close();
-        }
+            if (unknown != null) {
+                unknown.close();
+            }
 
-        for (SAMFileWriter writer : libraryToWriter.values()) {
-            writer.close();
+            for (SAMFileWriter writer : libraryToWriter.values()) {
+                writer.close();
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
         }
 
         return 0;
     }
+
+    /** Records are not modified, so a pooled writer copies the variable-length data of BAM input as is. */
+    private SAMFileWriter makeWriter(final SAMFileWriterFactory factory, final ExecutorService pool, final int numThreads,
+                                     final SAMFileHeader header, final File output) {
+        if (pool == null) return factory.makeSAMOrBAMWriter(header, true, output);
+        return new ParallelBamWriter(header, output, pool, 2 * numThreads, CREATE_INDEX, CREATE_MD5_FILE);
+    }
 }
@@ -32,9 +32,12 @@ import org.broadinstitute.barclay.help.DocumentedFeature;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.sam.util.ParallelBamWriter;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 /**
@@ -43,7 +46,8 @@ import java.util.function.Function;
  * multiple BAM files, each with an approximately equal number of reads. This will retain the sort order
  * within each output BAM and if the BAMs are concatenated in order (output files are named
  * numerically) the order of the reads will match the original BAM. It will traverse the bam twice unless
- * TOTAL_READS_IN_INPUT is provided.
+ * TOTAL_READS_IN_INPUT is provided. With NUM_PROCESSORS greater than 1 the output files are compressed on that many
+ * threads; the reads of a template are still always written to the same file.
  */
 @CommandLineProgramProperties(
         summary = SplitSamByNumberOfReads.USAGE_SUMMARY + SplitSamByNumberOfReads.USAGE_DETAILS,
@@ -54,7 +58,8 @@ public class SplitSamByNumberOfReads extends CommandLineProgram {
     static final String USAGE_SUMMARY = "Splits a SAM or BAM file to multiple BAMs.";
     static final String USAGE_DETAILS = "This tool splits the input query-grouped SAM/BAM file into multiple BAM files " +
             "while maintaining the sort order. This can be used to split a large unmapped BAM in order to parallelize alignment. " +
-            "It will traverse the bam twice unless TOTAL_READS_IN_INPUT is provided." +
+            "It will traverse the bam twice unless TOTAL_READS_IN_INPUT is provided. " +
+            "With NUM_PROCESSORS greater than 1 the output files are compressed on that many threads." +
             "<br />" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
@@ -86,6 +91,10 @@ public class SplitSamByNumberOfReads extends CommandLineProgram {
     @Argument(shortName = "OUT_PREFIX", doc = "Output files will be named <OUT_PREFIX>_N.bam, where N enumerates the output file.")
     public String OUT_PREFIX = "shard";
 
+    @Argument(doc = "The number of threads used to compress the output files. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     private final Log log = Log.getInstance(SplitSamByNumberOfReads.class);
 
     protected int doWork() {
@@ -130,24 +139,36 @@ public class SplitSamByNumberOfReads extends CommandLineProgram {
         int readsWritten = 0;
         int fileIndex = 1;
 
-        Function<Integer, SAMFileWriter> createWriter = (index) ->
-                writerFactory.makeSAMOrBAMWriter(header, true, new File(OUTPUT, OUT_PREFIX + "_" + String.format("%04d", index) + BamFileIoUtils.BAM_FILE_EXTENSION));
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        final ExecutorService pool = numThreads == 1 ? null :
+                ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, SplitSamByNumberOfReads.class.getSimpleName());
+
+        Function<Integer, SAMFileWriter> createWriter = (index) -> {
+            final File output = new File(OUTPUT, OUT_PREFIX + "_" + String.format("%04d", index) + BamFileIoUtils.BAM_FILE_EXTENSION);
+            // Records are never modified here, so the pooled writer copies the variable-length data of BAM input as is.
+            return pool == null ? writerFactory.makeSAMOrBAMWriter(header, true, output) :
+                    new ParallelBamWriter(header, output, pool, 2 * numThreads, CREATE_INDEX, CREATE_MD5_FILE);
+        };
 
-        SAMFileWriter currentWriter = createWriter.apply(fileIndex++);
         String lastReadName = "";
         final ProgressLogger progress = new ProgressLogger(log);
-        for (SAMRecord currentRecord : reader) {
-            if (readsWritten >= readsPerFile && !lastReadName.equals(currentRecord.getReadName())) {
-                currentWriter.close();
-                currentWriter = createWriter.apply(fileIndex++);
-                readsWritten = 0;
+        try {
+            SAMFileWriter currentWriter = createWriter.apply(fileIndex++);
+            for (SAMRecord currentRecord : reader) {
+                if (readsWritten >= readsPerFile && !lastReadName.equals(currentRecord.getReadName())) {
+                    currentWriter.close();
+                    currentWriter = createWriter.apply(fileIndex++);
+                    readsWritten = 0;
+                }
+                currentWriter.addAlignment(currentRecord);
+                lastReadName = currentRecord.getReadName();
+                readsWritten++;
+                progress.record(currentRecord);
             }
-            currentWriter.addAlignment(currentRecord);
-            lastReadName = currentRecord.getReadName();
-            readsWritten++;
-            progress.record(currentRecord);
+            currentWriter.close();
+        } finally {
+            if (pool != null) pool.shutdownNow();
         }
-        currentWriter.close();
         CloserUtil.close(reader);
 
         if (progress.getCount() != totalReads) {
@@ -41,6 +41,8 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.DiagnosticsAndQCProgramGroup;
+import picard.sam.util.ShardedSamFileValidator;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -61,6 +63,9 @@ import java.util.List;
  * errors/warnings of lesser concern.  This can be done using the IGNORE and/or IGNORE_WARNINGS arguments.  For helpful
  * suggestions on error prioritization, please follow this link to obtain additional documentation on <a href='https://www.broadinstitute.org/gatk/guide/article?id=7571'>ValidateSamFile</a>.</p>
  *
+ * <p>In SUMMARY mode, an indexed coordinate-sorted file can be validated on several threads by setting NUM_PROCESSORS.
+ * The reads of each contig are then validated separately, and mates are matched up across contigs afterwards.</p>
+ *
  * <p>After identifying and fixing your 'warnings/errors', we recommend that you rerun this tool to validate your SAM/BAM
  * file prior to proceeding with your downstream analysis.  This will verify that all problems in your file have been addressed.</p>
  *
@@ -98,6 +103,9 @@ public class ValidateSamFile extends CommandLineProgram {
             "errors/warnings of lesser concern.  This can be done using the IGNORE and/or IGNORE_WARNINGS arguments.  For helpful " +
             "suggestions on error prioritization, please follow this link to obtain additional documentation on <a href='https://www.broadinstitute.org/gatk/guide/article?id=7571'>ValidateSamFile</a>.</p>" +
 
+            "<p>In SUMMARY mode, an indexed coordinate-sorted file can be validated on several threads by setting NUM_PROCESSORS. " +
+            "The reads of each contig are then validated separately, and mates are matched up across contigs afterwards.</p>" +
+
             "<p>After identifying and fixing your 'warnings/errors', we recommend that you rerun this tool to validate your SAM/BAM " +
             "file prior to proceeding with your downstream analysis.  This will verify that all problems in your file have been addressed.</p>" +
             "<h3>Usage example:</h3>" +
@@ -173,6 +181,11 @@ public class ValidateSamFile extends CommandLineProgram {
             "large amounts of memory to run, so this flag allows you to forego that check.")
     public boolean SKIP_MATE_VALIDATION = false;
 
+    @Argument(doc = "The number of threads used to validate an indexed coordinate-sorted file in SUMMARY mode, each " +
+            "validating the reads of one contig at a time. Other files and VERBOSE mode are validated on a single " +
+            "thread. " + ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     /**
      * Return types for doWork()
      */
@@ -238,11 +251,19 @@ public class ValidateSamFile extends CommandLineProgram {
             factory.setOption(SamReaderFactory.Option.CACHE_FILE_BASED_INDEXES, VALIDATE_INDEX);
             factory.reapplyOptions(samReader);
 
-            final SamFileValidator validator = new SamFileValidator(out, MAX_OPEN_TEMP_FILES);
-            validator.setErrorsToIgnore(IGNORE);
-            validator.setSkipMateValidation(SKIP_MATE_VALIDATION);
-            validator.setBisulfiteSequenced(IS_BISULFITE_SEQUENCED);
-            validator.setIgnoreWarnings(IGNORE_WARNINGS);
+            final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+            if (MODE == Mode.SUMMARY && numThreads > 1 && IOUtil.isRegularPath(INPUT) &&
+                    ShardedSamFileValidator.canValidateInParts(samReader)) {
+                samReader.close();
+                final ShardedSamFileValidator validator = new ShardedSamFileValidator(factory, INPUT, REFERENCE_SEQUENCE,
+                        this::makeValidator, IGNORE, IGNORE_WARNINGS, SKIP_MATE_VALIDATION, MAX_OPEN_TEMP_FILES, numThreads);
+                result = validator.validateSamFileSummary(out, true,
+                        VALIDATE_INDEX ? IndexValidationStringency.EXHAUSTIVE : IndexValidationStringency.NONE);
+                out.flush();
+                return getReturnType(result, validator.getNumErrors(), validator.getNumWarnings());
+            }
+
+            final SamFileValidator validator = makeValidator(out);
 
             if (MODE == Mode.SUMMARY) {
                 validator.setVerbose(false, 0);
@@ -269,27 +290,40 @@ public class ValidateSamFile extends CommandLineProgram {
             }
             out.flush();
 
-            if (result) {
-                return ReturnTypes.SUCCESSFUL.value();  // ran successfully with no warnings or errors
+            return getReturnType(result, validator.getNumErrors(), validator.getNumWarnings());
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return ReturnTypes.FAILED.value();  // failed to complete execution
+        }
+    }
+
+    private SamFileValidator makeValidator(final PrintWriter out) {
+        final SamFileValidator validator = new SamFileValidator(out, MAX_OPEN_TEMP_FILES);
+        validator.setErrorsToIgnore(IGNORE);
+        validator.setSkipMateValidation(SKIP_MATE_VALIDATION);
+        validator.setBisulfiteSequenced(IS_BISULFITE_SEQUENCED);
+        validator.setIgnoreWarnings(IGNORE_WARNINGS);
+        return validator;
+    }
+
+    private static int getReturnType(final boolean result, final int numErrors, final int numWarnings) {
+        if (result) {
+            return ReturnTypes.SUCCESSFUL.value();  // ran successfully with no warnings or errors
+        } else {
+            if (numErrors == 0) {
+                if (numWarnings > 0) {
+                    return ReturnTypes.WARNINGS.value();   // warnings but no errors
+                } else {
+                    log.error("SAM file validation fails without warnings or errors.");
+                    return ReturnTypes.FAILED.value();
+                }
             } else {
-                if (validator.getNumErrors() == 0) {
-                    if (validator.getNumWarnings() > 0) {
-                        return ReturnTypes.WARNINGS.value();   // warnings but no errors
-                    } else {
-                        log.error("SAM file validation fails without warnings or errors.");
-                        return ReturnTypes.FAILED.value();
-                    }
+                if (numWarnings > 0) {
+                    return ReturnTypes.ERRORS_WARNINGS.value();   // errors and warnings
                 } else {
-                    if (validator.getNumWarnings() > 0) {
-                        return ReturnTypes.ERRORS_WARNINGS.value();   // errors and warnings
-                    } else {
-                        return ReturnTypes.ERRORS.value();  // errors but no warnings
-                    }
+                    return ReturnTypes.ERRORS.value();  // errors but no warnings
                 }
             }
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            return ReturnTypes.FAILED.value();  // failed to complete execution
         }
     }
 
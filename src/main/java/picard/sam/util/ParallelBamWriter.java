@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.sam.util;
+
+import htsjdk.samtools.BAMFileWriter;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import htsjdk.samtools.util.ProgressLoggerInterface;
+import htsjdk.samtools.util.RuntimeIOException;
+import picard.util.ThreadPoolExecutorUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A BAM writer that encodes and compresses its records on a shared thread pool.
+ * <p>
+ * Records are collected in batches, and every batch is encoded and compressed into its own run of BGZF blocks by a
+ * task on the pool.  BGZF blocks can be concatenated, so the compressed batches are appended to the file in the order
+ * in which they were added, by the thread that adds the records.  Several batches of one writer, and the batches of
+ * several writers sharing the pool, are therefore compressed at the same time.  Records that have not been modified
+ * since they were read from a BAM are encoded by copying their variable-length data.
+ * <p>
+ * At most maxPendingBatches batches of a writer are held in memory; adding a record waits for the oldest batch once
+ * that many are pending.  An index can only be created for coordinate-sorted output, and is built from the file when
+ * the writer is closed.  Records are written in the order in which they are added, whatever the sort order of the
+ * header.
+ */
+public class ParallelBamWriter implements SAMFileWriter {
+    private static final int BATCH_SIZE = 10_000;
+
+    private final SAMFileHeader header;
+    private final File output;
+    private final ExecutorService pool;
+    private final int maxPendingBatches;
+    private final boolean createIndex;
+    private final OutputStream out;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private List<SAMRecord> batch = new ArrayList<>(BATCH_SIZE);
+    private ProgressLoggerInterface progressLogger = null;
+
+    /**
+     * @param header            the header of the output, written as is.
+     * @param output            the BAM file to write.
+     * @param pool              the pool on which the batches are compressed.
+     * @param maxPendingBatches the number of batches that may be waiting to be compressed or written.
+     * @param createIndex       whether to index the output when it is closed; it must then be coordinate sorted.
+     * @param createMd5File     whether to write an MD5 file next to the output.
+     */
+    public ParallelBamWriter(final SAMFileHeader header, final File output, final ExecutorService pool, final int maxPendingBatches,
+                             final boolean createIndex, final boolean createMd5File) {
+        this.header = header;
+        this.output = output;
+        this.pool = pool;
+        this.maxPendingBatches = Math.max(1, maxPendingBatches);
+        this.createIndex = createIndex && header.getSortOrder() == SAMFileHeader.SortOrder.coordinate;
+        try {
+            final OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(output), IOUtil.STANDARD_BUFFER_SIZE);
+            this.out = createMd5File ? new Md5CalculatingOutputStream(fileStream, new File(output.getAbsolutePath() + ".md5")) : fileStream;
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening " + output, e);
+        }
+        BAMFileWriter.writeHeader(out, header);
+    }
+
+    @Override
+    public void addAlignment(final SAMRecord record) {
+        batch.add(record);
+        if (progressLogger != null) progressLogger.record(record);
+        if (batch.size() == BATCH_SIZE) submitBatch();
+    }
+
+    @Override
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    @Override
+    public void setProgressLogger(final ProgressLoggerInterface progressLogger) {
+        this.progressLogger = progressLogger;
+    }
+
+    @Override
+    public void close() {
+        if (!batch.isEmpty()) submitBatch();
+        try {
+            while (!pending.isEmpty()) {
+                out.write(awaitOldest());
+            }
+            out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+            out.close();
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing " + output, e);
+        }
+
+        if (createIndex) {
+            final File index = new File(output.getParentFile(), IOUtil.basename(output) + BAMIndex.BAI_INDEX_SUFFIX);
+            try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(output)) {
+                BAMIndexer.createIndex(reader, index);
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Error indexing " + output, e);
+            }
+        }
+    }
+
+    private void submitBatch() {
+        try {
+            while (pending.size() >= maxPendingBatches) {
+                out.write(awaitOldest());
+            }
+            // Write out any batches that are already compressed so they don't hold on to memory.
+            while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+                out.write(awaitOldest());
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing " + output, e);
+        }
+
+        final List<SAMRecord> records = batch;
+        pending.addLast(pool.submit(() -> compress(records)));
+        batch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    private byte[] compress(final List<SAMRecord> records) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BlockCompressedOutputStream blockStream = new BlockCompressedOutputStream(bytes, (File) null);
+        final BAMRecordCodec codec = new BAMRecordCodec(header);
+        codec.setOutputStream(blockStream, output.getPath());
+        for (final SAMRecord record : records) {
+            codec.encode(record);
+        }
+        // flush() ends the last block without writing the empty block that marks the end of the file
+        blockStream.flush();
+        return bytes.toByteArray();
+    }
+
+    private byte[] awaitOldest() {
+        return ThreadPoolExecutorUtil.getResult(pending.removeFirst(), "writing " + output);
+    }
+}
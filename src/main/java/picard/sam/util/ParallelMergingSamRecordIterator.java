@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.sam.util;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamFileHeaderMerger;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+import picard.PicardException;
+import picard.util.ThreadPoolExecutorUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the records of several inputs in the same way as {@link htsjdk.samtools.MergingSamRecordIterator}, but reads
+ * and decodes the inputs on a thread pool.
+ * <p>
+ * Records are read from each input in batches.  While one batch of an input is being merged, the next one is read on
+ * the pool, so every input has at most two batches in memory.  The reading task also decodes the parts of each record
+ * that the merge and the writer need and translates its header, read group and program group to the merged header, so
+ * that only the comparisons are left to the consuming thread.  The next record is chosen with a tournament tree of the
+ * inputs, which takes log2(number of inputs) comparisons per record; records that compare equal are taken in input
+ * order.
+ * <p>
+ * When the merged header has no read group or program group collisions the records are not modified, so a BAM writer
+ * copies their variable-length data as it was read rather than encoding it again.
+ */
+public class ParallelMergingSamRecordIterator implements CloseableIterator<SAMRecord> {
+    private static final Log log = Log.getInstance(ParallelMergingSamRecordIterator.class);
+
+    // The number of records of all the inputs that may be held in memory at once
+    private static final int MAX_RECORDS_IN_MEMORY = 500_000;
+    private static final int MIN_BATCH_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    private final SamFileHeaderMerger headerMerger;
+    private final SAMFileHeader mergedHeader;
+    private final SAMRecordComparator comparator;
+    private final boolean translateReadGroups;
+    private final boolean translateProgramGroups;
+    private final int batchSize;
+    private final ExecutorService executor;
+
+    private final Input[] inputs;
+    private final SAMRecord[] heads;
+    // tree[0] is the input with the smallest head record; tree[1..n-1] hold the loser of each match.
+    private final int[] tree;
+
+    /**
+     * @param headerMerger the merger of the headers of all the inputs.
+     * @param iterators    the iterator over each input, in the order in which equal records are taken.
+     * @param assumeSorted if false, every input must be sorted in the sort order of the merged header.
+     * @param numThreads   the number of threads that read the inputs.
+     */
+    public ParallelMergingSamRecordIterator(final SamFileHeaderMerger headerMerger, final Map<SamReader, CloseableIterator<SAMRecord>> iterators,
+                                            final boolean assumeSorted, final int numThreads) {
+        this.headerMerger = headerMerger;
+        this.mergedHeader = headerMerger.getMergedHeader();
+        final SAMFileHeader.SortOrder sortOrder = mergedHeader.getSortOrder();
+        // With no comparator the inputs are concatenated.
+        this.comparator = sortOrder == SAMFileHeader.SortOrder.unsorted ? null : sortOrder.getComparatorInstance();
+        this.translateReadGroups = headerMerger.hasReadGroupCollisions();
+        this.translateProgramGroups = headerMerger.hasProgramGroupCollisions();
+        this.batchSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, MAX_RECORDS_IN_MEMORY / (2 * Math.max(1, iterators.size()))));
+
+        final List<Input> inputList = new ArrayList<>(iterators.size());
+        for (final Map.Entry<SamReader, CloseableIterator<SAMRecord>> entry : iterators.entrySet()) {
+            final SAMFileHeader header = entry.getKey().getFileHeader();
+            if (!headerMerger.getHeaders().contains(header)) {
+                throw new SAMException("All iterators to be merged must be accounted for in the SAM header merger");
+            }
+            if (!assumeSorted && comparator != null && header.getSortOrder() != sortOrder) {
+                throw new SAMException("Files are not compatible with sort order");
+            }
+            inputList.add(new Input(header, entry.getValue()));
+        }
+        this.inputs = inputList.toArray(new Input[0]);
+        this.heads = new SAMRecord[inputs.length];
+        this.tree = new int[Math.max(1, inputs.length)];
+
+        this.executor = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(Math.max(1, numThreads),
+
+                ParallelMergingSamRecordIterator.class.getSimpleName());
+
+        try {
+            for (final Input input : inputs) {
+                input.fetchNextBatch();
+            }
+            for (int i = 0; i < inputs.length; ++i) {
+                heads[i] = inputs[i].next();
+            }
+        } catch (final RuntimeException | Error e) {
+            executor.shutdownNow();
+            throw e;
+        }
+        buildTree();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return inputs.length > 0 && heads[tree[0]] != null;
+    }
+
+    @Override
+    public SAMRecord next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        final int winner = tree[0];
+        final SAMRecord record = heads[winner];
+        heads[winner] = inputs[winner].next();
+        replay(winner);
+        return record;
+    }
+
+    @Override
+    public void close() {
+        // Tasks that have not started are cancelled; a running task reads at most one batch, so it is waited for
+        // rather than interrupted, and its iterator is only closed once no thread is using it.
+        for (final Input input : inputs) {
+            if (input.pending != null) input.pending.cancel(false);
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Waiting for input reading tasks to finish before closing the inputs.");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while waiting for input reading tasks to finish.", e);
+        }
+        for (final Input input : inputs) {
+            CloserUtil.close(input.iterator);
+        }
+    }
+
+    /** True if the head of input a comes before the head of input b; an exhausted input comes after everything. */
+    private boolean precedes(final int a, final int b) {
+        if (heads[a] == null) return false;
+        if (heads[b] == null) return true;
+        final int cmp = comparator == null ? 0 : comparator.compare(heads[a], heads[b]);
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+    private void buildTree() {
+        final int n = inputs.length;
+        if (n == 0) return;
+        // Leaf i is node n + i; winners[node] is the input that wins the subtree below node.
+        final int[] winners = new int[2 * n];
+        for (int i = 0; i < n; ++i) {
+            winners[n + i] = i;
+        }
+        for (int node = n - 1; node > 0; --node) {
+            final int left = winners[2 * node];
+            final int right = winners[2 * node + 1];
+            if (precedes(left, right)) {
+                winners[node] = left;
+                tree[node] = right;
+            } else {
+                winners[node] = right;
+                tree[node] = left;
+            }
+        }
+        tree[0] = n == 1 ? 0 : winners[1];
+    }
+
+    /** Replays the matches from the leaf of the given input to the root after its head has changed. */
+    private void replay(final int input) {
+        int winner = input;
+        for (int node = (inputs.length + input) / 2; node > 0; node /= 2) {
+            if (precedes(tree[node], winner)) {
+                final int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /** Decodes the record and translates it to the merged header, as MergingSamRecordIterator does. */
+    private void prepare(final SAMRecord record, final SAMFileHeader header) {
+        record.getReadName();
+        record.getCigar();
+        final String readGroup = (String) record.getAttribute(SAMTag.RG.name());
+        record.setHeader(mergedHeader);
+        if (translateReadGroups && readGroup != null) {
+            record.setAttribute(SAMTag.RG.name(), headerMerger.getReadGroupId(header, readGroup));
+        }
+        if (translateProgramGroups) {
+            final String programGroup = (String) record.getAttribute(SAMTag.PG.name());
+            if (programGroup != null) {
+                record.setAttribute(SAMTag.PG.name(), headerMerger.getProgramGroupId(header, programGroup));
+            }
+        }
+    }
+
+    private class Input {
+        private final SAMFileHeader header;
+        private final CloseableIterator<SAMRecord> iterator;
+        private Future<List<SAMRecord>> pending;
+        private List<SAMRecord> batch = new ArrayList<>();
+        private int offset = 0;
+
+        Input(final SAMFileHeader header, final CloseableIterator<SAMRecord> iterator) {
+            this.header = header;
+            this.iterator = iterator;
+        }
+
+        /** Starts reading the next batch on the pool.  Only one batch of an input is read at a time. */
+        void fetchNextBatch() {
+            pending = executor.submit(() -> {
+                final List<SAMRecord> records = new ArrayList<>(batchSize);
+                while (records.size() < batchSize && iterator.hasNext()) {
+                    final SAMRecord record = iterator.next();
+                    prepare(record, header);
+                    records.add(record);
+                }
+                return records;
+            });
+        }
+
+        /** Returns the next record of the input, or null once it is exhausted. */
+        SAMRecord next() {
+            if (offset == batch.size()) {
+                if (pending == null) return null;
+                batch = awaitPending();
+                offset = 0;
+                if (batch.isEmpty()) {
+                    pending = null;
+                    return null;
+                }
+                fetchNextBatch();
+            }
+            final SAMRecord record = batch.get(offset);
+            batch.set(offset++, null);
+            return record;
+        }
+
+        private List<SAMRecord> awaitPending() {
+            return ThreadPoolExecutorUtil.getResult(pending, "reading input records");
+        }
+    }
+}
@@ -143,7 +143,7 @@ public class ReadNameParser implements Serializable {
         for (i = readName.length() - 1; 0 <= i && 0 <= tokensIdx; i--) {
             if (readName.charAt(i) == delim || 0 == i) {
                 numFields++;
-                tokens[tokensIdx] = rapidParseInt(readName.substring((0 == i) ? 0 : (i+1), endIdx));
+                tokens[tokensIdx] = rapidParseInt(readName, (0 == i) ? 0 : (i+1), endIdx);
                 tokensIdx--;
                 endIdx = i;
             }
@@ -169,18 +169,27 @@ public class ReadNameParser implements Serializable {
      * @throws NumberFormatException if the String does not start with an optional - followed by at least on digit
      */
     public static int rapidParseInt(final String input) throws NumberFormatException {
-        final int len = input.length();
+        return rapidParseInt(input, 0, input.length());
+    }
+
+    /**
+     * As {@link #rapidParseInt(String)}, but parses the characters of input from start (inclusive) to end (exclusive) in
+     * place, so that parsing the fields of a read name does not allocate a String for each of them.
+     *
+     * @throws NumberFormatException if the range does not start with an optional - followed by at least on digit
+     */
+    public static int rapidParseInt(final CharSequence input, final int start, final int end) throws NumberFormatException {
         int val = 0;
-        int i = 0;
+        int i = start;
         boolean isNegative = false;
 
-        if (0 < len && '-' == input.charAt(0)) {
-            i = 1;
+        if (start < end && '-' == input.charAt(start)) {
+            i = start + 1;
             isNegative = true;
         }
 
         boolean hasDigits = false;
-        for (; i < len; ++i) {
+        for (; i < end; ++i) {
             final char ch = input.charAt(i);
             if (Character.isDigit(ch)) {
                 val = (val * 10) + (ch - 48);
@@ -190,7 +199,7 @@ public class ReadNameParser implements Serializable {
             }
         }
 
-        if (!hasDigits) throw new NumberFormatException("String '" + input + "' did not start with a parsable number.");
+        if (!hasDigits) throw new NumberFormatException("String '" + input.subSequence(start, end) + "' did not start with a parsable number.");
         if (isNegative) val = -val;
         return val;
     }
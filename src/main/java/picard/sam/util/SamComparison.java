@@ -3,13 +3,18 @@ package picard.sam.util;
 import htsjdk.samtools.*;
 import htsjdk.samtools.metrics.Header;
 import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IterableAdapter;
 import htsjdk.samtools.util.SortingCollection;
 import picard.PicardException;
 import picard.sam.SamComparisonMetric;
+import picard.util.ThreadPoolExecutorUtil;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -18,6 +23,11 @@ import java.util.stream.Collectors;
  * looking at alignment and duplicate marking info.  Can perform either a naive comparison for which each alignment must be identical, or a more sophisticated check of "equivalence", where mapping quality
  * 0 reads are allowed to have different alignments, and duplicate marks are allowed to differ to account for ambiguities in selecting the representative read of a duplicate set.  Results of comparison are
  * summarised in an output metrics file.
+ * <p>
+ * When constructed from files with more than one thread, and both files are coordinate sorted and indexed, each contig
+ * is compared on its own thread.  Reads left unmatched within a contig, e.g. because they are aligned to different
+ * contigs in the two files, are matched up after all contigs have been compared, so the counts are the same as those
+ * of a single-threaded comparison.
  */
 public final class SamComparison {
     private final SamReader leftReader;
@@ -27,8 +37,16 @@ public final class SamComparison {
 
     private final SamComparisonMetric comparisonMetric = new SamComparisonMetric();
 
+    private final AlignmentTally tally = new AlignmentTally(comparisonMetric, false);
+
     private final SAMComparisonArgumentCollection samComparisonArgumentCollection;
 
+    // Used to open a reader per thread when comparing contigs in parallel; null when constructed from readers.
+    private final SamReaderFactory readerFactory;
+    private final File leftFile;
+    private final File rightFile;
+    private final int numThreads;
+
     private SortingCollection<SAMRecord> markDuplicatesCheckLeft;
     private SortingCollection<SAMRecord> markDuplicatesCheckRight;
 
@@ -47,8 +65,38 @@ public final class SamComparison {
         this.leftReader = leftReader;
         this.rightReader = rightReader;
         this.samComparisonArgumentCollection = samComparisonArgumentCollection;
+        this.readerFactory = null;
+        this.leftFile = null;
+        this.rightFile = null;
+        this.numThreads = 1;
         comparisonMetric.LEFT_FILE = leftName;
         comparisonMetric.RIGHT_FILE = rightName;
+        compare();
+    }
+
+    /**
+     * Compares two files, opening and closing the readers itself.  If numThreads is greater than one and both files are
+     * coordinate sorted and indexed, contigs are compared in parallel, each thread with its own readers.
+     */
+    public SamComparison(final SamReaderFactory readerFactory, final File leftFile, final File rightFile,
+                         final SAMComparisonArgumentCollection samComparisonArgumentCollection, final int numThreads) {
+        this.readerFactory = readerFactory;
+        this.leftFile = leftFile;
+        this.rightFile = rightFile;
+        this.numThreads = numThreads;
+        this.samComparisonArgumentCollection = samComparisonArgumentCollection;
+        this.leftReader = readerFactory.open(leftFile);
+        this.rightReader = readerFactory.open(rightFile);
+        comparisonMetric.LEFT_FILE = leftFile.getAbsolutePath();
+        comparisonMetric.RIGHT_FILE = rightFile.getAbsolutePath();
+        try {
+            compare();
+        } finally {
+            CloserUtil.close(Arrays.asList(leftReader, rightReader));
+        }
+    }
+
+    private void compare() {
         if (samComparisonArgumentCollection.LENIENT_DUP) {
             setupLenientDuplicateChecking();
         }
@@ -76,14 +124,13 @@ public final class SamComparison {
         /* Setup for duplicate marking checks.  Recs which disagree on duplicate marking will be added to markDuplicatesCheckLeft/Right and then fed to a DuplicateSetIterator to check if
          * differences are due only to choice of representative read within duplicate set.
          */
-        final SAMFileHeader leftHeader = leftReader.getFileHeader();
-        final SAMFileHeader rightHeader = rightReader.getFileHeader();
-        final SAMRecordDuplicateComparator leftDupComparator = new SAMRecordDuplicateComparator(Collections.singletonList(leftHeader));
-        final SAMRecordDuplicateComparator rightDupComparator = new SAMRecordDuplicateComparator(Collections.singletonList(rightHeader));
-        markDuplicatesCheckLeft = SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(leftHeader),
-                leftDupComparator, SAMFileWriterImpl.getDefaultMaxRecordsInRam());
-        markDuplicatesCheckRight = SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(rightHeader),
-                rightDupComparator, SAMFileWriterImpl.getDefaultMaxRecordsInRam());
+        markDuplicatesCheckLeft = newDuplicateCheckCollection(leftReader.getFileHeader(), SAMFileWriterImpl.getDefaultMaxRecordsInRam());
+        markDuplicatesCheckRight = newDuplicateCheckCollection(rightReader.getFileHeader(), SAMFileWriterImpl.getDefaultMaxRecordsInRam());
+    }
+
+    private static SortingCollection<SAMRecord> newDuplicateCheckCollection(final SAMFileHeader header, final int maxRecordsInRam) {
+        return SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(header),
+                new SAMRecordDuplicateComparator(Collections.singletonList(header)), maxRecordsInRam);
     }
 
     private void countLenientDuplicateMarkingDifferences() {
@@ -104,49 +151,64 @@ public final class SamComparison {
          * we do not count the read or the read it could be swapped with as having mismatched duplicates.  Note however, that once a swap is allowed, the reads swapped cannot be used for any
          * further swaps.
          */
-        // count reads which are not saved
-        final HashMap<String, Set<String>> swapTargetsForLeftReps = new HashMap<>();
+        // Reads are identified by a 64-bit hash of their name rather than by the name itself, to keep these maps small.
+        final Map<Long, long[]> swapTargetsForLeftReps = new HashMap<>();
         for (final DuplicateSet duplicateSet : new IterableAdapter<>(duplicateSetLeftIterator)) {
            // do not want to redo duplicate marking, want to keep marks assigned in input files
            final List<SAMRecord> allRecords = duplicateSet.getRecords(false);
            if (allRecords.size() > 1) {
-               // for this set, get a list of non-rep reads that can potentially swap with the rep read
-               final Set<String> nonRepReads = allRecords.stream()
+               // for this set, get a sorted array of non-rep reads that can potentially swap with the rep read
+               final long[] nonRepReads = allRecords.stream()
                        .filter(SAMRecord::getDuplicateReadFlag)
-                       .map(SAMRecord::getReadName)
-                       .collect(Collectors.toSet());
+                       .mapToLong(r -> readNameHash(r.getReadName()))
+                       .sorted()
+                       .distinct()
+                       .toArray();
                allRecords.stream().filter(r -> !r.getDuplicateReadFlag())
-                       .forEach(leftRep -> swapTargetsForLeftReps.put(leftRep.getReadName(), nonRepReads));
+                       .forEach(leftRep -> swapTargetsForLeftReps.put(readNameHash(leftRep.getReadName()), nonRepReads));
            }
         }
         // set of fragments which have been "matched", i.e. will not be counted as having mismatched duplicate marks.
-        final HashSet<String> matchedSwaps = new HashSet<>();
+        final Set<Long> matchedSwaps = new HashSet<>();
         for (final DuplicateSet duplicateSet : new IterableAdapter<>(duplicateSetRightIterator)) {
            // do not want to redo duplicate marking, want to keep marking assigned in files
            final List<SAMRecord> records = duplicateSet.getRecords(false);
            if (records.size() > 1) {
                // create a list of non-rep reads for this set that were also rep-reads in the left file
-               final List<String> nonRepSwapCandidates = records.stream()
+               final long[] nonRepSwapCandidates = records.stream()
                        .filter(SAMRecord::getDuplicateReadFlag)
-                       .map(SAMRecord::getReadName)
+                       .mapToLong(r -> readNameHash(r.getReadName()))
                        .filter(swapTargetsForLeftReps::containsKey)
-                       .collect(Collectors.toList());
+                       .toArray();
                // now try to match up the rep reads in this set with a non-rep swap candidate
-               records.stream().filter(r -> !r.getDuplicateReadFlag()).map(SAMRecord::getReadName)
+               records.stream().filter(r -> !r.getDuplicateReadFlag()).mapToLong(r -> readNameHash(r.getReadName()))
                        .filter(repRead -> !matchedSwaps.contains(repRead))
                        .forEach(unMatchedRep ->
-                           nonRepSwapCandidates.stream()
-                                   .filter(nonRep -> !matchedSwaps.contains(nonRep) && swapTargetsForLeftReps.get(nonRep).contains(unMatchedRep))
+                           Arrays.stream(nonRepSwapCandidates)
+                                   .filter(nonRep -> !matchedSwaps.contains(nonRep) && Arrays.binarySearch(swapTargetsForLeftReps.get(nonRep), unMatchedRep) >= 0)
                                    .findFirst()
                                    .ifPresent(matchedRep -> matchedSwaps.addAll(Arrays.asList(matchedRep, unMatchedRep)))
                    );
            }
            // count reads which differ, but for which no swap match was found
-           comparisonMetric.DUPLICATE_MARKINGS_DIFFER += records.stream().filter(n -> !matchedSwaps.contains(n.getReadName())).count();
+           comparisonMetric.DUPLICATE_MARKINGS_DIFFER += records.stream().filter(n -> !matchedSwaps.contains(readNameHash(n.getReadName()))).count();
         }
 
     }
 
+    /** A 64-bit FNV-1a hash of a read name, with a final mix so that similar names spread over all bits. */
+    static long readNameHash(final String readName) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < readName.length(); ++i) {
+            hash ^= readName.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
     private boolean compareAlignmentsAndCatalogDuplicateMarkingDifferences() {
         /* Compares alignments of primary sam records.  Eventual comparison of sam records found in both files is performed in tallyAlignments.  tallyAlignments
          * includes duplicate marking cataloging, which counts all duplicate marking differences when in strict mode, or adds reads which differ in duplicate marking
@@ -176,14 +238,93 @@ public final class SamComparison {
     }
 
     private boolean compareCoordinateSortedAlignments() {
+        if (numThreads > 1 && readerFactory != null && leftReader.hasIndex() && rightReader.hasIndex()) {
+            return compareCoordinateSortedAlignmentsByContig();
+        }
         final SecondaryOrSupplementarySkippingIterator itLeft =
                 new SecondaryOrSupplementarySkippingIterator(leftReader.iterator());
         final SecondaryOrSupplementarySkippingIterator itRight =
                 new SecondaryOrSupplementarySkippingIterator(rightReader.iterator());
+        compareCoordinateSortedAlignments(itLeft, itRight, tally);
+        return tallyUnmatchedAlignments(tally.leftUnmatched, tally.rightUnmatched);
+    }
 
-        // Save any reads which haven't been matched during in-order scan.
+    /**
+     * Compares each contig, and the unplaced unmapped reads, on its own thread with its own readers, and then merges
+     * the counts and matches up the reads left unmatched within each contig.
+     */
+    private boolean compareCoordinateSortedAlignmentsByContig() {
+        final List<SAMSequenceRecord> contigs = leftReader.getFileHeader().getSequenceDictionary().getSequences();
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "SamComparison");
         final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched = new LinkedHashMap<>();
         final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched = new LinkedHashMap<>();
+        // Results are merged in contig order so that the outcome does not depend on which contig finishes first.
+        final Deque<Future<AlignmentTally>> pending = new ArrayDeque<>();
+        try {
+            for (int contig = 0; contig <= contigs.size(); ++contig) {
+                final String contigName = contig < contigs.size() ? contigs.get(contig).getSequenceName() : null;
+                pending.add(pool.submit(() -> compareContig(contigName)));
+                while (pending.size() > numThreads) {
+                    mergeContigTally(pending.poll(), leftUnmatched, rightUnmatched);
+                }
+            }
+            while (!pending.isEmpty()) {
+                mergeContigTally(pending.poll(), leftUnmatched, rightUnmatched);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return tallyUnmatchedAlignments(leftUnmatched, rightUnmatched);
+    }
+
+    /** Compares the reads on the named contig, or the unplaced unmapped reads if contigName is null. */
+    private AlignmentTally compareContig(final String contigName) {
+        final SamReader left = readerFactory.open(leftFile);
+        final SamReader right = readerFactory.open(rightFile);
+        try {
+            final AlignmentTally contigTally = new AlignmentTally(new SamComparisonMetric(), true);
+            compareCoordinateSortedAlignments(
+                    new SecondaryOrSupplementarySkippingIterator(contigName == null ? left.queryUnmapped() : left.query(contigName, 0, 0, false)),
+                    new SecondaryOrSupplementarySkippingIterator(contigName == null ? right.queryUnmapped() : right.query(contigName, 0, 0, false)),
+                    contigTally);
+            return contigTally;
+        } finally {
+            CloserUtil.close(Arrays.asList(left, right));
+        }
+    }
+
+    private void mergeContigTally(final Future<AlignmentTally> future,
+                                  final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched,
+                                  final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched) {
+        final AlignmentTally contigTally = ThreadPoolExecutorUtil.getResult(future, "comparing alignments");
+        comparisonMetric.merge(contigTally.metric);
+        leftUnmatched.putAll(contigTally.leftUnmatched);
+        rightUnmatched.putAll(contigTally.rightUnmatched);
+        if (contigTally.duplicateDifferencesLeft != null) {
+            addAll(contigTally.duplicateDifferencesLeft, markDuplicatesCheckLeft);
+            addAll(contigTally.duplicateDifferencesRight, markDuplicatesCheckRight);
+        }
+    }
+
+    private static void addAll(final SortingCollection<SAMRecord> from, final SortingCollection<SAMRecord> to) {
+        from.doneAdding();
+        try (final CloseableIterator<SAMRecord> it = from.iterator()) {
+            it.forEachRemaining(to::add);
+        }
+        from.cleanup();
+    }
+
+    /**
+     * Walks two coordinate-sorted iterators in lockstep, tallying the reads found in both.  Reads that are not matched
+     * up during the scan are left in the tally's unmatched maps, since their counterparts may be in a part of the files
+     * that is compared separately.
+     */
+    private void compareCoordinateSortedAlignments(final SecondaryOrSupplementarySkippingIterator itLeft,
+                                                   final SecondaryOrSupplementarySkippingIterator itRight,
+                                                   final AlignmentTally tally) {
+        // Save any reads which haven't been matched during in-order scan.
+        final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched = tally.leftUnmatched;
+        final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched = tally.rightUnmatched;
 
         while (itLeft.hasCurrent()) {
             if (!itRight.hasCurrent()) {
@@ -194,9 +335,9 @@ public final class SamComparison {
                     final PrimaryAlignmentKey leftKey = new PrimaryAlignmentKey(left);
                     final SAMRecord right = rightUnmatched.remove(leftKey);
                     if (right == null) {
-                        ++comparisonMetric.MISSING_RIGHT;
+                        leftUnmatched.put(leftKey, left);
                     } else {
-                        tallyAlignmentRecords(left, right);
+                        tally.tally(left, right);
                     }
                 }
                 break;
@@ -231,7 +372,7 @@ public final class SamComparison {
                 final PrimaryAlignmentKey rightKey = new PrimaryAlignmentKey(right);
                 final SAMRecord matchingLeft = leftCurrentCoordinate.remove(rightKey);
                 if (matchingLeft != null) {
-                    tallyAlignmentRecords(matchingLeft, right);
+                    tally.tally(matchingLeft, right);
                 } else {
                     rightUnmatched.put(rightKey, right);
                 }
@@ -245,10 +386,23 @@ public final class SamComparison {
         }
         // The left iterator has been exhausted.  See if any of the remaining right reads
         // match any of the saved left reads.
-        consumeUnmatchedRights(itRight, leftUnmatched);
+        consumeAll(itRight,
+                (alignmentRecord, primaryKey) -> {
+                    final SAMRecord left = leftUnmatched.remove(primaryKey);
+                    if (left != null) {
+                        tally.tally(left, alignmentRecord);
+                    } else {
+                        rightUnmatched.put(primaryKey, alignmentRecord);
+                    }
+                });
+    }
 
-        // Look up reads that were unmatched from left, and see if they are in rightUnmatched.
-        // If found, remove from rightUnmatched and tally.
+    /**
+     * Looks up reads that were unmatched from left, and sees if they are in rightUnmatched.  If found, removes them from
+     * rightUnmatched and tallies them; otherwise counts them as missing.
+     */
+    private boolean tallyUnmatchedAlignments(final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched,
+                                             final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched) {
         for (final Map.Entry<PrimaryAlignmentKey, SAMRecord> leftEntry : leftUnmatched.entrySet()) {
             final PrimaryAlignmentKey leftKey = leftEntry.getKey();
             final SAMRecord left = leftEntry.getValue();
@@ -401,24 +555,59 @@ public final class SamComparison {
      * Compare the mapping information for two SAMRecords.  Makes comparison of alignments, and also catalogs duplicate marking differences.
      */
     private void tallyAlignmentRecords(final SAMRecord s1, final SAMRecord s2) {
-        if (!s1.getReadName().equals(s2.getReadName())) {
-            throw new PicardException("Read names do not match: " + s1.getReadName() + " : " + s2.getReadName());
-        }
-        catalogDuplicateDifferences(s1, s2);
-        final AlignmentComparison comp = compareAlignmentRecords(s1, s2);
-        comparisonMetric.updateMetric(comp);
-    }
-
-    private void catalogDuplicateDifferences(final SAMRecord s1, final SAMRecord s2) {
-        // if strict, reads with differing duplicate marking are counted by DUPLICATE_MARKINGS_DIFFER.
-        // if lenient, reads with differing duplicate marking are added to markDuplicatesCheckLeft/Right
-        // to later be counted while allowing for swaps withing duplicate sets by updateLenientDuplicateMarkingDifferences
-        if (s1.getDuplicateReadFlag() != s2.getDuplicateReadFlag()) {
-            if (samComparisonArgumentCollection.LENIENT_DUP) {
-                markDuplicatesCheckLeft.add(s1);
-                markDuplicatesCheckRight.add(s2);
+        tally.tally(s1, s2);
+    }
+
+    /**
+     * The counts from comparing all or part of the files, the reads not yet matched up, and, when comparing a part of
+     * the files on another thread, the reads whose duplicate marking differs.
+     */
+    private final class AlignmentTally {
+        private final SamComparisonMetric metric;
+        private final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched = new LinkedHashMap<>();
+        private final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched = new LinkedHashMap<>();
+        // When comparing in lenient duplicate mode on another thread, the reads whose duplicate marking differs are
+        // kept here, to be added to markDuplicatesCheckLeft/Right by the main thread, rather than added directly.
+        // They spill to disk like those, sharing MAX_RECORDS_IN_RAM between the tallies that can be held at once.
+        private final SortingCollection<SAMRecord> duplicateDifferencesLeft;
+        private final SortingCollection<SAMRecord> duplicateDifferencesRight;
+
+        private AlignmentTally(final SamComparisonMetric metric, final boolean bufferDuplicateDifferences) {
+            this.metric = metric;
+            if (bufferDuplicateDifferences && samComparisonArgumentCollection.LENIENT_DUP) {
+                // Up to numThreads tallies are being filled while the main thread merges another.
+                final int maxRecordsInRam = Math.max(1, SAMFileWriterImpl.getDefaultMaxRecordsInRam() / (numThreads + 1));
+                duplicateDifferencesLeft = newDuplicateCheckCollection(leftReader.getFileHeader(), maxRecordsInRam);
+                duplicateDifferencesRight = newDuplicateCheckCollection(rightReader.getFileHeader(), maxRecordsInRam);
             } else {
-                comparisonMetric.DUPLICATE_MARKINGS_DIFFER++;
+                duplicateDifferencesLeft = null;
+                duplicateDifferencesRight = null;
+            }
+        }
+
+        private void tally(final SAMRecord s1, final SAMRecord s2) {
+            if (!s1.getReadName().equals(s2.getReadName())) {
+                throw new PicardException("Read names do not match: " + s1.getReadName() + " : " + s2.getReadName());
+            }
+            catalogDuplicateDifferences(s1, s2);
+            final AlignmentComparison comp = compareAlignmentRecords(s1, s2);
+            metric.updateMetric(comp);
+        }
+
+        private void catalogDuplicateDifferences(final SAMRecord s1, final SAMRecord s2) {
+            // if strict, reads with differing duplicate marking are counted by DUPLICATE_MARKINGS_DIFFER.
+            // if lenient, reads with differing duplicate marking are added to markDuplicatesCheckLeft/Right
+            // to later be counted while allowing for swaps withing duplicate sets by updateLenientDuplicateMarkingDifferences
+            if (s1.getDuplicateReadFlag() != s2.getDuplicateReadFlag()) {
+                if (!samComparisonArgumentCollection.LENIENT_DUP) {
+                    metric.DUPLICATE_MARKINGS_DIFFER++;
+                } else if (duplicateDifferencesLeft != null) {
+                    duplicateDifferencesLeft.add(s1);
+                    duplicateDifferencesRight.add(s2);
+                } else {
+                    markDuplicatesCheckLeft.add(s1);
+                    markDuplicatesCheckRight.add(s2);
+                }
             }
         }
     }
@@ -0,0 +1,642 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.sam.util;
+
+import com.google.common.io.CharStreams;
+import htsjdk.samtools.BamIndexValidator;
+import htsjdk.samtools.BamIndexValidator.IndexValidationStringency;
+import htsjdk.samtools.CoordinateSortedPairInfoMap;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SAMValidationError;
+import htsjdk.samtools.SamFileValidator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Histogram;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.StringUtil;
+import picard.PicardException;
+import picard.util.ThreadPoolExecutorUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Produces the same summary as {@link SamFileValidator#validateSamFileSummary} for an indexed, coordinate-sorted file,
+ * but validates the reads of each contig, and the unplaced unmapped reads, on a separate thread.
+ * <p>
+ * Each part is validated by its own SamFileValidator, with mate validation turned off, and the errors it reports are
+ * counted by type.  The header is validated by every part, so its errors are counted once by subtracting those of a
+ * validation of the header alone.  Each part also matches up the mates that are both on its contig, keeping only the
+ * read name and the fields being compared, and passes the rest on.  Those are matched on the main thread in file
+ * order, keyed on reference index and read name as SamFileValidator keys them, with the mates waiting on a later
+ * contig spilled to disk; as in SamFileValidator, the mates left over are then matched on read name alone.  At most
+ * one part per thread is in flight, so that only that many parts' mates are held at once.  The index is validated on
+ * its own thread.
+ * <p>
+ * The counts are the same as those of a single validator, except that a name shared by more than two primary
+ * records may be paired up differently.
+ */
+public class ShardedSamFileValidator {
+    private static final Log log = Log.getInstance(ShardedSamFileValidator.class);
+
+    private static final String BIN_LABEL = "Error Type";
+    private static final String VALUE_LABEL = "Count";
+    // Written in place of the histogram when there are no errors, as SamFileValidator does.
+    private static final String NO_ERRORS_FOUND = "No errors found";
+
+    private final SamReaderFactory readerFactory;
+    private final File input;
+    private final File referenceSequence;
+    private final Function<PrintWriter, SamFileValidator> validatorFactory;
+    private final Set<SAMValidationError.Type> errorsToIgnore = EnumSet.noneOf(SAMValidationError.Type.class);
+    private final boolean ignoreWarnings;
+    private final boolean skipMateValidation;
+    private final int maxTempFiles;
+    private final int numThreads;
+
+    private final Map<String, Long> errorsByType = new TreeMap<>();
+
+    /**
+     * @param validatorFactory makes a validator writing to the given writer, configured as for a whole-file validation.
+     *                         Verbosity, mate validation and index validation are set here.
+     * @param errorsToIgnore the error types ignored by the validators, also ignored when validating mates.
+     * @param ignoreWarnings whether the validators ignore warnings, also applied when validating mates.
+     * @param maxTempFiles the maximum number of files kept open when spilling mates to disk.
+     */
+    public ShardedSamFileValidator(final SamReaderFactory readerFactory, final File input, final File referenceSequence,
+                                   final Function<PrintWriter, SamFileValidator> validatorFactory,
+                                   final Collection<SAMValidationError.Type> errorsToIgnore, final boolean ignoreWarnings,
+                                   final boolean skipMateValidation, final int maxTempFiles, final int numThreads) {
+        this.readerFactory = readerFactory;
+        this.input = input;
+        this.referenceSequence = referenceSequence;
+        this.validatorFactory = validatorFactory;
+        this.errorsToIgnore.addAll(errorsToIgnore);
+        this.ignoreWarnings = ignoreWarnings;
+        this.skipMateValidation = skipMateValidation;
+        this.maxTempFiles = maxTempFiles;
+        this.numThreads = numThreads;
+    }
+
+    /** Whether a file read by this reader can be validated in parts. */
+    public static boolean canValidateInParts(final SamReader reader) {
+        return reader.hasIndex() && reader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.coordinate;
+    }
+
+    /**
+     * Validates the file and writes the summary to out, in the same format as SamFileValidator.
+     *
+     * @return true if there are no errors or warnings.
+     */
+    public boolean validateSamFileSummary(final PrintWriter out, final boolean validateTermination,
+                                          final IndexValidationStringency indexValidationStringency) {
+        final List<SAMSequenceRecord> contigs;
+        try (final SamReader reader = readerFactory.open(input)) {
+            contigs = reader.getFileHeader().getSequenceDictionary().getSequences();
+        } catch (final java.io.IOException e) {
+            throw new PicardException("Error reading " + input, e);
+        }
+
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "ShardedSamFileValidator");
+        try {
+            final Future<Map<String, Long>> indexErrors = pool.submit(() -> validateIndex(indexValidationStringency));
+            // The contigs in order, then the unplaced unmapped reads.
+            final int numParts = contigs.size() + 1;
+            final Deque<Future<Part>> parts = new ArrayDeque<>(numThreads);
+            int nextPart = 0;
+            while (nextPart < numParts && parts.size() < numThreads) {
+                parts.add(submitPart(pool, contigs, nextPart++));
+            }
+
+            // The header is validated once here, along with the termination of the file, and once more without it so
+            // that the header's errors can be taken out of every part's counts.
+            final Map<String, Long> headerErrors = validateHeader(false);
+            add(validateHeader(validateTermination), 1);
+
+            final CoordinateSortedPairInfoMap<String, MateInfo> unmatchedMates =
+                    new CoordinateSortedPairInfoMap<>(maxTempFiles, new MateInfoCodec());
+            while (!parts.isEmpty()) {
+                final Part part = get(parts.removeFirst());
+                if (nextPart < numParts) {
+                    parts.add(submitPart(pool, contigs, nextPart++));
+                }
+                add(part.errorsByType, 1);
+                add(headerErrors, -1);
+                for (final MateInfo mate : part.unmatchedMates) {
+                    final MateInfo other = unmatchedMates.remove(mate.referenceIndex, mate.name);
+                    if (other == null) {
+                        unmatchedMates.put(mate.mateReferenceIndex, mate.name, mate);
+                    } else {
+                        validateMates(other, mate, errorsByType);
+                    }
+                }
+            }
+            validateUnmatchedMates(unmatchedMates);
+            add(get(indexErrors), 1);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        errorsByType.values().removeIf(count -> count == 0);
+        if (errorsByType.isEmpty()) {
+            out.println(NO_ERRORS_FOUND);
+        } else {
+            final Histogram<String> histogram = new Histogram<>(BIN_LABEL, VALUE_LABEL);
+            errorsByType.forEach(histogram::increment);
+            final MetricsFile<MetricBase, String> metricsFile = new MetricsFile<>();
+            metricsFile.setHistogram(histogram);
+            metricsFile.write(out);
+        }
+        return errorsByType.isEmpty();
+    }
+
+    public int getNumErrors() {
+        return count(SAMValidationError.Severity.ERROR);
+    }
+
+    public int getNumWarnings() {
+        return count(SAMValidationError.Severity.WARNING);
+    }
+
+    private int count(final SAMValidationError.Severity severity) {
+        long count = 0;
+        for (final SAMValidationError.Type type : SAMValidationError.Type.values()) {
+            if (type.severity == severity) count += errorsByType.getOrDefault(type.getHistogramString(), 0L);
+        }
+        return (int) count;
+    }
+
+    /** The errors of one part of the file, and its primary paired reads whose mates were not found in the same part. */
+    private static class Part {
+        private final Map<String, Long> errorsByType;
+        private final Collection<MateInfo> unmatchedMates;
+
+        private Part(final Map<String, Long> errorsByType, final Collection<MateInfo> unmatchedMates) {
+            this.errorsByType = errorsByType;
+            this.unmatchedMates = unmatchedMates;
+        }
+    }
+
+    private Future<Part> submitPart(final ExecutorService pool, final List<SAMSequenceRecord> contigs, final int part) {
+        final int referenceIndex = part < contigs.size() ? part : SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        final String contigName = part < contigs.size() ? contigs.get(part).getSequenceName() : null;
+        return pool.submit(() -> validatePart(referenceIndex, contigName));
+    }
+
+    private Part validatePart(final int referenceIndex, final String contigName) {
+        final SamReader reader = readerFactory.open(input);
+        final ReferenceSequenceFile reference = referenceSequence == null ? null :
+                ReferenceSequenceFileFactory.getReferenceSequenceFile(referenceSequence);
+        try {
+            final Map<String, MateInfo> mates = new HashMap<>();
+            final List<MateInfo> unmatchedMates = new ArrayList<>();
+            final Map<String, Long> mateErrors = new TreeMap<>();
+            final SAMRecordIterator iterator = contigName == null ? reader.queryUnmapped() : reader.query(contigName, 0, 0, false);
+            final Map<String, Long> errors = validate(reader, reference, new SAMRecordIterator() {
+                @Override
+                public SAMRecordIterator assertSorted(final SAMFileHeader.SortOrder sortOrder) {
+                    iterator.assertSorted(sortOrder);
+                    return this;
+                }
+
+                @Override
+                public void close() {
+                    iterator.close();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SAMRecord next() {
+                    final SAMRecord record = iterator.next();
+                    if (!skipMateValidation && record.getReadPairedFlag() && !record.isSecondaryOrSupplementary()) {
+                        // Mates on this contig are matched here; the rest are kept for matching across contigs.  Every
+                        // record of the part has this reference index, so the read name alone is the key.
+                        final MateInfo mate = new MateInfo(record);
+                        final MateInfo other = mates.remove(mate.name);
+                        if (other != null) {
+                            validateMates(other, mate, mateErrors);
+                        } else if (mate.mateReferenceIndex == referenceIndex) {
+                            mates.put(mate.name, mate);
+                        } else {
+                            unmatchedMates.add(mate);
+                        }
+                    }
+                    return record;
+                }
+            }, false);
+            unmatchedMates.addAll(mates.values());
+            mateErrors.forEach((type, count) -> errors.merge(type, count, Long::sum));
+            return new Part(errors, unmatchedMates);
+        } finally {
+            CloserUtil.close(reader);
+            CloserUtil.close(reference);
+        }
+    }
+
+    private Map<String, Long> validateHeader(final boolean validateTermination) {
+        final SamReader reader = readerFactory.open(input);
+        try {
+            return validate(reader, null, null, validateTermination);
+        } finally {
+            CloserUtil.close(reader);
+        }
+    }
+
+    private Map<String, Long> validateIndex(final IndexValidationStringency indexValidationStringency) {
+        final Map<String, Long> errors = new TreeMap<>();
+        if (indexValidationStringency == IndexValidationStringency.NONE) return errors;
+        final SamReader reader = readerFactory.open(input);
+        try {
+            if (indexValidationStringency == IndexValidationStringency.LESS_EXHAUSTIVE) {
+                BamIndexValidator.lessExhaustivelyTestIndex(reader);
+            } else {
+                BamIndexValidator.exhaustivelyTestIndex(reader);
+            }
+        } catch (final Exception e) {
+            log.debug(e, "Index validation failed");
+            addError(SAMValidationError.Type.INVALID_INDEX_FILE_POINTER, errors);
+        } finally {
+            CloserUtil.close(reader);
+        }
+        return errors;
+    }
+
+    /** Runs a SamFileValidator over the given records, or over none to validate only the header, and counts its errors. */
+    private Map<String, Long> validate(final SamReader reader, final ReferenceSequenceFile reference,
+                                       final SAMRecordIterator records, final boolean validateTermination) {
+        final ErrorCountingWriter errorCounter = new ErrorCountingWriter();
+        final SamFileValidator validator = validatorFactory.apply(errorCounter);
+        validator.setVerbose(true, Integer.MAX_VALUE);
+        validator.setSkipMateValidation(true);
+        validator.setIndexValidationStringency(IndexValidationStringency.NONE);
+        if (validateTermination) {
+            validator.validateBamFileTermination(input);
+        }
+        validator.validateSamFileVerbose(new PartSamReader(reader, records), reference);
+        return errorCounter.errorsByType;
+    }
+
+    /**
+     * Counts the errors a verbose SamFileValidator reports, each of which it passes to println(Object) after applying
+     * the errors to ignore and whether to ignore warnings, and discards everything else written to it.
+     */
+    private static class ErrorCountingWriter extends PrintWriter {
+        private final Map<String, Long> errorsByType = new TreeMap<>();
+
+        private ErrorCountingWriter() {
+            super(CharStreams.nullWriter());
+        }
+
+        @Override
+        public void println(final Object x) {
+            if (x instanceof SAMValidationError) {
+                errorsByType.merge(((SAMValidationError) x).getType().getHistogramString(), 1L, Long::sum);
+            } else {
+                super.println(x);
+            }
+        }
+    }
+
+    /**
+     * Matches the mates left over once every part has been merged on read name alone and counts the rest as not
+     * found, as SamFileValidator does at the end of the file.
+     */
+    private void validateUnmatchedMates(final CoordinateSortedPairInfoMap<String, MateInfo> unmatchedMates) {
+        final Map<String, MateInfo> matesByName = new HashMap<>();
+        try (final CloseableIterator<Map.Entry<String, MateInfo>> iterator = unmatchedMates.iterator()) {
+            while (iterator.hasNext()) {
+                final MateInfo mate = iterator.next().getValue();
+                final MateInfo other = matesByName.remove(mate.name);
+                if (other == null) {
+                    matesByName.put(mate.name, mate);
+                } else {
+                    validateMates(other, mate, errorsByType);
+                }
+            }
+        }
+        for (int i = 0; i < matesByName.size(); ++i) {
+            addError(SAMValidationError.Type.MATE_NOT_FOUND, errorsByType);
+        }
+    }
+
+    private void add(final Map<String, Long> errors, final int sign) {
+        errors.forEach((type, count) -> errorsByType.merge(type, sign * count, Long::sum));
+    }
+
+    private void addError(final SAMValidationError.Type type, final Map<String, Long> errors) {
+        if (errorsToIgnore.contains(type) || (ignoreWarnings && type.severity == SAMValidationError.Severity.WARNING)) {
+            return;
+        }
+        errors.merge(type.getHistogramString(), 1L, Long::sum);
+    }
+
+    /** Compares the fields of two mates the same way SamFileValidator does. */
+    private void validateMates(final MateInfo first, final MateInfo second, final Map<String, Long> errors) {
+        validateMateFields(first, second, errors);
+        validateMateFields(second, first, errors);
+        if (first.firstOfPair == second.firstOfPair) {
+            addError(SAMValidationError.Type.MATES_ARE_SAME_END, errors);
+        }
+    }
+
+    private void validateMateFields(final MateInfo end1, final MateInfo end2, final Map<String, Long> errors) {
+        if (end1.mateAlignmentStart != end2.alignmentStart) {
+            addError(SAMValidationError.Type.MISMATCH_MATE_ALIGNMENT_START, errors);
+        }
+        if (end1.mateNegativeStrand != end2.negativeStrand) {
+            addError(SAMValidationError.Type.MISMATCH_FLAG_MATE_NEG_STRAND, errors);
+        }
+        if (end1.mateReferenceIndex != end2.referenceIndex) {
+            addError(SAMValidationError.Type.MISMATCH_MATE_REF_INDEX, errors);
+        }
+        if (end1.mateUnmapped != end2.unmapped) {
+            addError(SAMValidationError.Type.MISMATCH_FLAG_MATE_UNMAPPED, errors);
+        }
+        if (end1.mateCigar != null && !end1.mateCigar.equals(end2.cigar)) {
+            addError(SAMValidationError.Type.MISMATCH_MATE_CIGAR_STRING, errors);
+        }
+    }
+
+    /** The name of a primary paired read and the fields that are compared with its mate. */
+    private static class MateInfo {
+        private final String name;
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final int mateReferenceIndex;
+        private final int mateAlignmentStart;
+        private final String cigar;
+        private final String mateCigar;
+        private final boolean negativeStrand;
+        private final boolean unmapped;
+        private final boolean mateNegativeStrand;
+        private final boolean mateUnmapped;
+        private final boolean firstOfPair;
+
+        private MateInfo(final SAMRecord record) {
+            name = record.getReadName();
+            referenceIndex = record.getReferenceIndex();
+            alignmentStart = record.getAlignmentStart();
+            mateReferenceIndex = record.getMateReferenceIndex();
+            mateAlignmentStart = record.getMateAlignmentStart();
+            cigar = record.getCigarString();
+            final Object mateCigar = record.getAttribute(SAMTag.MC.name());
+            this.mateCigar = mateCigar instanceof String ? (String) mateCigar : null;
+            negativeStrand = record.getReadNegativeStrandFlag();
+            unmapped = record.getReadUnmappedFlag();
+            mateNegativeStrand = record.getMateNegativeStrandFlag();
+            mateUnmapped = record.getMateUnmappedFlag();
+            firstOfPair = record.getFirstOfPairFlag();
+        }
+
+        private MateInfo(final String name, final DataInputStream in) throws IOException {
+            this.name = name;
+            referenceIndex = in.readInt();
+            alignmentStart = in.readInt();
+            mateReferenceIndex = in.readInt();
+            mateAlignmentStart = in.readInt();
+            cigar = readString(in);
+            mateCigar = in.readBoolean() ? readString(in) : null;
+            final byte flags = in.readByte();
+            negativeStrand = (flags & 1) != 0;
+            unmapped = (flags & 2) != 0;
+            mateNegativeStrand = (flags & 4) != 0;
+            mateUnmapped = (flags & 8) != 0;
+            firstOfPair = (flags & 16) != 0;
+        }
+
+        private void write(final DataOutputStream out) throws IOException {
+            out.writeInt(referenceIndex);
+            out.writeInt(alignmentStart);
+            out.writeInt(mateReferenceIndex);
+            out.writeInt(mateAlignmentStart);
+            writeString(cigar, out);
+            out.writeBoolean(mateCigar != null);
+            if (mateCigar != null) writeString(mateCigar, out);
+            out.writeByte((negativeStrand ? 1 : 0) | (unmapped ? 2 : 0) | (mateNegativeStrand ? 4 : 0) |
+                    (mateUnmapped ? 8 : 0) | (firstOfPair ? 16 : 0));
+        }
+
+        // CIGAR strings can be longer than writeUTF() allows.
+        private static void writeString(final String s, final DataOutputStream out) throws IOException {
+            final byte[] bytes = StringUtil.stringToBytes(s);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(final DataInputStream in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return StringUtil.bytesToString(bytes);
+        }
+    }
+
+    /** Writes mates waiting on a contig other than the one being merged to that contig's file, keyed on read name. */
+    private static class MateInfoCodec implements CoordinateSortedPairInfoMap.Codec<String, MateInfo> {
+        private DataInputStream in;
+        private DataOutputStream out;
+
+        @Override
+        public void setInputStream(final InputStream is) {
+            in = new DataInputStream(is);
+        }
+
+        @Override
+        public void setOutputStream(final OutputStream os) {
+            out = new DataOutputStream(os);
+        }
+
+        @Override
+        public Map.Entry<String, MateInfo> decode() {
+            try {
+                final String name = in.readUTF();
+                return new AbstractMap.SimpleEntry<>(name, new MateInfo(name, in));
+            } catch (final IOException e) {
+                throw new PicardException("Error reading unmatched mates from disk", e);
+            }
+        }
+
+        @Override
+        public void encode(final String name, final MateInfo mate) {
+            try {
+                out.writeUTF(name);
+                mate.write(out);
+            } catch (final IOException e) {
+                throw new PicardException("Error spilling unmatched mates to disk", e);
+            }
+        }
+    }
+
+    /**
+     * A view of a reader whose iterator() returns the records of one part of the file, or no records at all, so that
+     * SamFileValidator can be run on that part.
+     */
+    private static class PartSamReader implements SamReader {
+        private final SamReader reader;
+        private final SAMRecordIterator records;
+
+        private PartSamReader(final SamReader reader, final SAMRecordIterator records) {
+            this.reader = reader;
+            this.records = records;
+        }
+
+        @Override
+        public SAMRecordIterator iterator() {
+            if (records != null) return records;
+            return new SAMRecordIterator() {
+                @Override
+                public SAMRecordIterator assertSorted(final SAMFileHeader.SortOrder sortOrder) {
+                    return this;
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return false;
+                }
+
+                @Override
+                public SAMRecord next() {
+                    return Collections.<SAMRecord>emptyIterator().next();
+                }
+            };
+        }
+
+        @Override
+        public SAMFileHeader getFileHeader() {
+            return reader.getFileHeader();
+        }
+
+        @Override
+        public Type type() {
+            return reader.type();
+        }
+
+        @Override
+        public String getResourceDescription() {
+            return reader.getResourceDescription();
+        }
+
+        @Override
+        public boolean hasIndex() {
+            return reader.hasIndex();
+        }
+
+        @Override
+        public Indexing indexing() {
+            return reader.indexing();
+        }
+
+        @Override
+        public SAMRecordIterator query(final String sequence, final int start, final int end, final boolean contained) {
+            return reader.query(sequence, start, end, contained);
+        }
+
+        @Override
+        public SAMRecordIterator queryOverlapping(final String sequence, final int start, final int end) {
+            return reader.queryOverlapping(sequence, start, end);
+        }
+
+        @Override
+        public SAMRecordIterator queryContained(final String sequence, final int start, final int end) {
+            return reader.queryContained(sequence, start, end);
+        }
+
+        @Override
+        public SAMRecordIterator query(final QueryInterval[] intervals, final boolean contained) {
+            return reader.query(intervals, contained);
+        }
+
+        @Override
+        public SAMRecordIterator queryOverlapping(final QueryInterval[] intervals) {
+            return reader.queryOverlapping(intervals);
+        }
+
+        @Override
+        public SAMRecordIterator queryContained(final QueryInterval[] intervals) {
+            return reader.queryContained(intervals);
+        }
+
+        @Override
+        public SAMRecordIterator queryUnmapped() {
+            return reader.queryUnmapped();
+        }
+
+        @Override
+        public SAMRecordIterator queryAlignmentStart(final String sequence, final int start) {
+            return reader.queryAlignmentStart(sequence, start);
+        }
+
+        @Override
+        public SAMRecord queryMate(final SAMRecord rec) {
+            return reader.queryMate(rec);
+        }
+
+        @Override
+        public void close() {
+            // The underlying reader is closed by its owner.
+        }
+    }
+
+    private <T> T get(final Future<T> future) {
+        return ThreadPoolExecutorUtil.getResult(future, "validating " + input);
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.sam.util;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamPairUtil;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.PeekableIterator;
+import htsjdk.samtools.util.SortingCollection;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Sets the mate information of coordinate-sorted records without sorting them by name, in the same way as
+ * {@link SamPairUtil.SetMateInfoIterator} does for query-name-sorted records.  The input is read twice.
+ * <p>
+ * In both passes records are added in coordinate order.  A cache keyed by read name holds the primary reads that are
+ * waiting for their mate; when the mate arrives both are fixed, along with any supplementary records of the template
+ * seen so far, and the template only stays in the cache, for later supplementary records, until the input has moved on
+ * by more than maxMateDistance.  Records are released in input order once they are fixed, so only the records since
+ * the oldest waiting read are held in memory.
+ * <p>
+ * A template still waiting for its mate when the input has moved on by more than maxMateDistance, or to another
+ * contig, is an orphan.  In the first pass the records of orphans are spilled to a temporary store sorted by read name
+ * and all other records are dropped.  A read whose mate was spilled waits in the same way and is spilled in turn, so
+ * the two meet in the store.  So that supplementary records arriving after their primary reads have left the cache can
+ * be fixed as well, the primary reads of templates that have supplementary alignments (an SA tag) are also added to
+ * the store when they leave the cache.  Once the first pass is done the orphans are paired up, fixed and sorted by
+ * coordinate.  The second pass makes the same decisions over the same input, and the records it releases are merged
+ * with the fixed orphans in place of the orphans it finds.
+ * <p>
+ * Fixing a pair can move a read: an unmapped read is placed at its mapped mate, and a pair with neither read mapped
+ * is unplaced.  Such a read cannot be released in input order, so in the first pass it is added to the fixed orphans
+ * straight away, and in the second pass it is dropped like an orphan.
+ * <p>
+ * maxRecordsInRam is shared: half of it bounds the records held since the oldest waiting read, and each of the
+ * three temporary stores holds up to a sixth of it in memory.
+ */
+public class StreamingMateFixer {
+    private final SAMFileHeader header;
+    private final boolean addMateCigar;
+    private final boolean ignoreMissingMates;
+    private final int maxMateDistance;
+    private final int maxPendingRecords;
+    private final int maxRecordsInRamPerStore;
+    private final File[] tmpDirs;
+
+    private final Map<String, Template> templates = new LinkedHashMap<>();
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private final SortingCollection<SAMRecord> orphans;
+    private final SortingCollection<SAMRecord> orphanMates;
+    // Fixed orphans and moved reads, in coordinate order.
+    private final SortingCollection<SAMRecord> fixed;
+    private long numOrphans = 0;
+    private long numMoved = 0;
+    private boolean firstPass = true;
+    // The records released by the second pass, in input order.
+    private final Deque<SAMRecord> released = new ArrayDeque<>();
+
+    /**
+     * @param header             the header of the records, which must be coordinate sorted.
+     * @param addMateCigar       whether to add the mate CIGAR tag (MC).
+     * @param ignoreMissingMates if false, a SAMException is thrown for a primary read whose mate is missing.
+     * @param maxMateDistance    how far the input may move past a read waiting for its mate before it is spilled.
+     * @param maxRecordsInRam    the number of records that may be held in memory in all.
+     * @param tmpDirs            the directories for the temporary files.
+     */
+    public StreamingMateFixer(final SAMFileHeader header, final boolean addMateCigar, final boolean ignoreMissingMates,
+                              final int maxMateDistance, final int maxRecordsInRam, final List<File> tmpDirs) {
+        if (header.getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+            throw new IllegalArgumentException("The header must be coordinate sorted, found " + header.getSortOrder());
+        }
+        this.header = header;
+        this.addMateCigar = addMateCigar;
+        this.ignoreMissingMates = ignoreMissingMates;
+        this.maxMateDistance = maxMateDistance;
+        this.maxPendingRecords = Math.max(1, maxRecordsInRam / 2);
+        this.maxRecordsInRamPerStore = Math.max(1, maxRecordsInRam / 6);
+        this.tmpDirs = tmpDirs.toArray(new File[0]);
+
+        orphans = newSorter(new SAMRecordQueryNameComparator());
+        orphanMates = newSorter(new SAMRecordQueryNameComparator());
+        fixed = newSorter(new SAMRecordCoordinateComparator());
+    }
+
+    private SortingCollection<SAMRecord> newSorter(final Comparator<SAMRecord> comparator) {
+        return SortingCollection.newInstance(SAMRecord.class, new BAMRecordCodec(header), comparator,
+                maxRecordsInRamPerStore, tmpDirs);
+    }
+
+    /** Adds the next record of the coordinate-sorted input in the first pass. */
+    public void add(final SAMRecord record) {
+        if (!firstPass) throw new IllegalStateException("Records cannot be added after the first pass.");
+        process(record);
+    }
+
+    /**
+     * Finishes the first pass, fixes the orphans, and starts the second pass.
+     *
+     * @param input the same records as were added in the first pass, in the same order.
+     * @return all records, with their mate information set, in coordinate order.
+     */
+    public CloseableIterator<SAMRecord> finish(final CloseableIterator<SAMRecord> input) {
+        finishPass();
+        firstPass = false;
+        if (numOrphans > 0) {
+            fixOrphans();
+        }
+        orphans.cleanup();
+        orphanMates.cleanup();
+        if (numOrphans == 0 && numMoved == 0) {
+            fixed.cleanup();
+            return new SecondPassIterator(input, null);
+        }
+        fixed.doneAdding();
+        return new SecondPassIterator(input, fixed);
+    }
+
+    private void process(final SAMRecord record) {
+        final Entry entry = new Entry(record);
+        pending.addLast(entry);
+
+        if (record.getReadPairedFlag() && !record.isSecondaryAlignment()) {
+            Template template = templates.get(record.getReadName());
+            if (template == null) {
+                template = new Template(record);
+                templates.put(record.getReadName(), template);
+            }
+            template.add(entry);
+        } else {
+            // Secondary and unpaired records are written unchanged.
+            entry.resolved = true;
+        }
+
+        retireTemplates(record);
+        while (pending.size() > maxPendingRecords && !pending.peekFirst().resolved) {
+            final Entry oldest = pending.peekFirst();
+            spill(templates.remove(oldest.record.getReadName()));
+            releaseRecords();
+        }
+        releaseRecords();
+    }
+
+    /** Retires every template left at the end of the input. */
+    private void finishPass() {
+        for (final Template template : templates.values()) {
+            retire(template);
+        }
+        templates.clear();
+        releaseRecords();
+        if (!pending.isEmpty()) throw new IllegalStateException("Records were left unresolved.");
+    }
+
+    /** Retires the templates, oldest first, that the input has moved on from. */
+    private void retireTemplates(final SAMRecord current) {
+        final Iterator<Template> iterator = templates.values().iterator();
+        while (iterator.hasNext()) {
+            final Template template = iterator.next();
+            if (template.referenceIndex == current.getReferenceIndex() &&
+                    current.getAlignmentStart() - template.alignmentStart <= maxMateDistance) {
+                break;
+            }
+            iterator.remove();
+            retire(template);
+        }
+    }
+
+    private void retire(final Template template) {
+        if (template.isFixed()) {
+            if (firstPass && (template.first.getAttribute(SAMTag.SA.name()) != null || template.second.getAttribute(SAMTag.SA.name()) != null)) {
+                orphanMates.add(template.first);
+                orphanMates.add(template.second);
+            }
+        } else {
+            spill(template);
+        }
+    }
+
+    /** Moves the records of an orphan to the store in the first pass, and drops them in the second. */
+    private void spill(final Template template) {
+        for (final Entry entry : template.entries) {
+            if (firstPass) {
+                orphans.add(entry.record);
+                ++numOrphans;
+            }
+            entry.spilled = true;
+            entry.resolved = true;
+        }
+        template.entries.clear();
+    }
+
+    /** Releases the records at the front of the queue that are no longer waiting for a mate. */
+    private void releaseRecords() {
+        while (!pending.isEmpty() && pending.peekFirst().resolved) {
+            final Entry entry = pending.removeFirst();
+            if (!firstPass && !entry.spilled) released.addLast(entry.record);
+        }
+    }
+
+    /** Pairs up the orphans by name, sets their mate information and adds them to the fixed records. */
+    private void fixOrphans() {
+        final PeekableIterator<SAMRecord> orphanIterator = new PeekableIterator<>(orphans.iterator());
+        final PeekableIterator<SAMRecord> mateIterator = new PeekableIterator<>(orphanMates.iterator());
+        final List<SAMRecord> group = new ArrayList<>();
+        while (orphanIterator.hasNext()) {
+            final String readName = orphanIterator.peek().getReadName();
+            group.clear();
+            while (orphanIterator.hasNext() && orphanIterator.peek().getReadName().equals(readName)) {
+                group.add(orphanIterator.next());
+            }
+            while (mateIterator.hasNext() && SAMRecordQueryNameComparator.compareReadNames(mateIterator.peek().getReadName(), readName) < 0) {
+                mateIterator.next();
+            }
+            SAMRecord firstMate = null, secondMate = null;
+            while (mateIterator.hasNext() && mateIterator.peek().getReadName().equals(readName)) {
+                final SAMRecord mate = mateIterator.next();
+                if (mate.getFirstOfPairFlag()) firstMate = mate;
+                else secondMate = mate;
+            }
+            fixGroup(group, firstMate, secondMate);
+            group.forEach(fixed::add);
+        }
+        orphanIterator.close();
+        mateIterator.close();
+    }
+
+    /** Sets the mate information of the records of one template, as SamPairUtil.SetMateInfoIterator does. */
+    private void fixGroup(final List<SAMRecord> group, final SAMRecord firstMate, final SAMRecord secondMate) {
+        SAMRecord first = null, second = null;
+        for (final SAMRecord record : group) {
+            if (record.getSupplementaryAlignmentFlag()) continue;
+            if (record.getFirstOfPairFlag()) {
+                if (first != null) throw new SAMException("Found two records that are paired, not supplementary, and first of the pair: " + record.getReadName());
+                first = record;
+            } else if (record.getSecondOfPairFlag()) {
+                if (second != null) throw new SAMException("Found two records that are paired, not supplementary, and second of the pair: " + record.getReadName());
+                second = record;
+            }
+        }
+
+        if (first != null && second != null) {
+            SamPairUtil.setMateInfo(first, second, addMateCigar);
+        } else if (!ignoreMissingMates) {
+            if (first != null && secondMate == null) throw new SAMException("Missing second read of pair: " + first.getReadName());
+            if (second != null && firstMate == null) throw new SAMException("Missing first read of pair: " + second.getReadName());
+        }
+
+        // Mates that already had their information set are only used for their supplementary records
+        if (first == null) first = firstMate;
+        if (second == null) second = secondMate;
+        if (first != null && second != null) {
+            for (final SAMRecord record : group) {
+                if (record.getSupplementaryAlignmentFlag()) {
+                    SamPairUtil.setMateInformationOnSupplementalAlignment(record, record.getFirstOfPairFlag() ? second : first, addMateCigar);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final SAMRecord record;
+        private boolean resolved = false;
+        private boolean spilled = false;
+
+        Entry(final SAMRecord record) {
+            this.record = record;
+        }
+    }
+
+    /** The primary and supplementary records of a template seen so far. */
+    private class Template {
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final List<Entry> entries = new ArrayList<>(2);
+        private SAMRecord first = null;
+        private SAMRecord second = null;
+
+        Template(final SAMRecord record) {
+            this.referenceIndex = record.getReferenceIndex();
+            this.alignmentStart = record.getAlignmentStart();
+        }
+
+        boolean isFixed() {
+            return first != null && second != null;
+        }
+
+        void add(final Entry entry) {
+            final SAMRecord record = entry.record;
+            if (record.getSupplementaryAlignmentFlag()) {
+                if (isFixed()) {
+                    SamPairUtil.setMateInformationOnSupplementalAlignment(record, record.getFirstOfPairFlag() ? second : first, addMateCigar);
+                    entry.resolved = true;
+                } else {
+                    entries.add(entry);
+                }
+                return;
+            }
+
+            if (record.getFirstOfPairFlag()) {
+                if (first != null) throw new SAMException("Found two records that are paired, not supplementary, and first of the pair: " + record.getReadName());
+                first = record;
+            } else if (record.getSecondOfPairFlag()) {
+                if (second != null) throw new SAMException("Found two records that are paired, not supplementary, and second of the pair: " + record.getReadName());
+                second = record;
+            }
+            entries.add(entry);
+
+            if (isFixed()) {
+                final int firstReferenceIndex = first.getReferenceIndex();
+                final int firstAlignmentStart = first.getAlignmentStart();
+                final int secondReferenceIndex = second.getReferenceIndex();
+                final int secondAlignmentStart = second.getAlignmentStart();
+                SamPairUtil.setMateInfo(first, second, addMateCigar);
+                final boolean firstMoved = hasMoved(first, firstReferenceIndex, firstAlignmentStart);
+                final boolean secondMoved = hasMoved(second, secondReferenceIndex, secondAlignmentStart);
+                for (final Entry waiting : entries) {
+                    if (waiting.record.getSupplementaryAlignmentFlag()) {
+                        SamPairUtil.setMateInformationOnSupplementalAlignment(waiting.record,
+                                waiting.record.getFirstOfPairFlag() ? second : first, addMateCigar);
+                    }
+                    if ((waiting.record == first && firstMoved) || (waiting.record == second && secondMoved)) {
+                        move(waiting);
+                    }
+                    waiting.resolved = true;
+                }
+                entries.clear();
+            }
+        }
+    }
+
+    private static boolean hasMoved(final SAMRecord record, final int referenceIndex, final int alignmentStart) {
+        return record.getReferenceIndex() != referenceIndex || record.getAlignmentStart() != alignmentStart;
+    }
+
+    /**
+     * Takes a read that fixing moved out of input order: in the first pass it is added to the fixed records, which
+     * are in coordinate order, and in the second pass it is dropped like an orphan.
+     */
+    private void move(final Entry entry) {
+        if (firstPass) {
+            fixed.add(entry.record);
+            ++numMoved;
+        }
+        entry.spilled = true;
+    }
+
+    /** Runs the second pass over the input and merges the records it releases with the fixed orphans. */
+    private class SecondPassIterator implements CloseableIterator<SAMRecord> {
+        private final CloseableIterator<SAMRecord> input;
+        private final SortingCollection<SAMRecord> fixedOrphans;
+        private final PeekableIterator<SAMRecord> orphanIterator;
+        private final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        private boolean inputFinished = false;
+
+        SecondPassIterator(final CloseableIterator<SAMRecord> input, final SortingCollection<SAMRecord> fixedOrphans) {
+            this.input = input;
+            this.fixedOrphans = fixedOrphans;
+            this.orphanIterator = new PeekableIterator<>(fixedOrphans == null ?
+                    Collections.<SAMRecord>emptyIterator() : fixedOrphans.iterator());
+        }
+
+        /** Reads the input until a record is released or the input is exhausted. */
+        private void fill() {
+            while (released.isEmpty() && !inputFinished) {
+                if (input.hasNext()) {
+                    process(input.next());
+                } else {
+                    finishPass();
+                    inputFinished = true;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !released.isEmpty() || orphanIterator.hasNext();
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            if (!orphanIterator.hasNext()) return released.removeFirst();
+            if (released.isEmpty()) return orphanIterator.next();
+            return comparator.fileOrderCompare(orphanIterator.peek(), released.peekFirst()) < 0 ? orphanIterator.next() : released.removeFirst();
+        }
+
+        @Override
+        public void close() {
+            CloserUtil.close(input);
+            orphanIterator.close();
+            if (fixedOrphans != null) fixedOrphans.cleanup();
+        }
+    }
+}
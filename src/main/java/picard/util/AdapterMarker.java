@@ -31,11 +31,16 @@ import htsjdk.samtools.util.StringUtil;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -48,6 +53,9 @@ import java.util.stream.Stream;
  *
  * Note that the AdapterPair object returned by all the adapterTrim* methods will not be one of the original AdapterPairs
  * passed to the ctor, but rather will be one of the truncated copies.
+ *
+ * The adapterTrim* methods may be called from several threads at once; they do not lock.  The setters are meant to be
+ * called before any adapters are marked.
  */
 public class AdapterMarker {
     public static final int DEFAULT_ADAPTER_LENGTH = 30;
@@ -55,25 +63,27 @@ public class AdapterMarker {
     public static final int DEFAULT_NUM_ADAPTERS_TO_KEEP = 1;
 
     // It is assumed that these are set once during execution, before the class is used to mark any adapters, but this is not enforced.
-    private int thresholdForSelectingAdaptersToKeep = DEFAULT_PRUNE_ADAPTER_LIST_AFTER_THIS_MANY_ADAPTERS_SEEN;
-    private int numAdaptersToKeep = DEFAULT_NUM_ADAPTERS_TO_KEEP;
-    private int minSingleEndMatchBases = ClippingUtility.MIN_MATCH_BASES;
-    private int minPairMatchBases = ClippingUtility.MIN_MATCH_PE_BASES;
-    private double maxSingleEndErrorRate = ClippingUtility.MAX_ERROR_RATE;
-    private double maxPairErrorRate = ClippingUtility.MAX_PE_ERROR_RATE;
+    private volatile int thresholdForSelectingAdaptersToKeep = DEFAULT_PRUNE_ADAPTER_LIST_AFTER_THIS_MANY_ADAPTERS_SEEN;
+    private volatile int numAdaptersToKeep = DEFAULT_NUM_ADAPTERS_TO_KEEP;
+    private volatile int minSingleEndMatchBases = ClippingUtility.MIN_MATCH_BASES;
+    private volatile int minPairMatchBases = ClippingUtility.MIN_MATCH_PE_BASES;
+    private volatile double maxSingleEndErrorRate = ClippingUtility.MAX_ERROR_RATE;
+    private volatile double maxPairErrorRate = ClippingUtility.MAX_PE_ERROR_RATE;
 
     // This is AtomicReference because one thread could be matching adapters while the threshold has been crossed in another
     // thread and the array is being replaced.
     private final AtomicReference<AdapterPair[]> adapters = new AtomicReference<AdapterPair[]>();
 
-    // All the members below are only accessed within a synchronized block.
-    private boolean thresholdReached = false;
-    private int numAdaptersSeen = 0;
-    private final CollectionUtil.DefaultingMap<AdapterPair, Integer> seenCounts = new CollectionUtil.DefaultingMap<AdapterPair, Integer>(0);
+    // The adapters kept when the list was pruned, or null until then.  It is set before thresholdReached.
+    private volatile Set<AdapterPair> keptAdapters = null;
+    private volatile boolean thresholdReached = false;
+    private final AtomicInteger numAdaptersSeen = new AtomicInteger();
+    private final Map<AdapterPair, AtomicInteger> seenCounts = new ConcurrentHashMap<>();
 
     //Store all the sam records we have seen prior to choosing an adapter so that we can go back and fix the ones
-    //that have clipping tags for adapters that were not chosen.
-    private Map<AdapterPair, List<SAMRecord>> preAdapterPrunedRecords = new HashMap<>();
+    //that have clipping tags for adapters that were not chosen.  Each record is taken off its queue by exactly one thread,
+    //which then fixes it.
+    private final Map<AdapterPair, Queue<SAMRecord>> preAdapterPrunedRecords = new ConcurrentHashMap<>();
     /**
      * Truncates adapters to DEFAULT_ADAPTER_LENGTH
      * @param originalAdapters These should be in order from longest & most likely to shortest & least likely.
@@ -109,7 +119,7 @@ public class AdapterMarker {
     /**
      * After seeing the thresholdForSelectingAdapters number of adapters, keep up to this many of the original adapters.
      */
-    public synchronized AdapterMarker setNumAdaptersToKeep(final int numAdaptersToKeep) {
+    public AdapterMarker setNumAdaptersToKeep(final int numAdaptersToKeep) {
         if (numAdaptersToKeep <= 0) {
             throw new IllegalArgumentException(String.format("numAdaptersToKeep should be positive: %d", numAdaptersToKeep));
         }
@@ -125,7 +135,7 @@ public class AdapterMarker {
      * When this number of adapters have been matched, discard the least-frequently matching ones.
      * @param thresholdForSelectingAdaptersToKeep set to -1 to never discard any adapters.
      */
-    public synchronized AdapterMarker setThresholdForSelectingAdaptersToKeep(final int thresholdForSelectingAdaptersToKeep) {
+    public AdapterMarker setThresholdForSelectingAdaptersToKeep(final int thresholdForSelectingAdaptersToKeep) {
         this.thresholdForSelectingAdaptersToKeep = thresholdForSelectingAdaptersToKeep;
         return this;
     }
@@ -138,7 +148,7 @@ public class AdapterMarker {
      *
      * @param minSingleEndMatchBases When marking a single-end read, adapter must match at least this many bases.
      */
-    public synchronized AdapterMarker setMinSingleEndMatchBases(final int minSingleEndMatchBases) {
+    public AdapterMarker setMinSingleEndMatchBases(final int minSingleEndMatchBases) {
         this.minSingleEndMatchBases = minSingleEndMatchBases;
         return this;
     }
@@ -151,7 +161,7 @@ public class AdapterMarker {
      *
      * @param minPairMatchBases When marking a paired-end read, adapter must match at least this many bases.
      */
-    public synchronized AdapterMarker setMinPairMatchBases(final int minPairMatchBases) {
+    public AdapterMarker setMinPairMatchBases(final int minPairMatchBases) {
         this.minPairMatchBases = minPairMatchBases;
         return this;
     }
@@ -164,7 +174,7 @@ public class AdapterMarker {
      * @param maxSingleEndErrorRate For single-end read, no more than this fraction of the bases that align with the adapter can
      *                              mismatch the adapter and still be considered an adapter match.
      */
-    public synchronized AdapterMarker setMaxSingleEndErrorRate(final double maxSingleEndErrorRate) {
+    public AdapterMarker setMaxSingleEndErrorRate(final double maxSingleEndErrorRate) {
         this.maxSingleEndErrorRate = maxSingleEndErrorRate;
         return this;
     }
@@ -177,7 +187,7 @@ public class AdapterMarker {
      * @param maxPairErrorRate For paired-end read, no more than this fraction of the bases that align with the adapter can
      *                         mismatch the adapter and still be considered an adapter match.
      */
-    public synchronized AdapterMarker setMaxPairErrorRate(final double maxPairErrorRate) {
+    public AdapterMarker setMaxPairErrorRate(final double maxPairErrorRate) {
         this.maxPairErrorRate = maxPairErrorRate;
         return this;
     }
@@ -200,13 +210,20 @@ public class AdapterMarker {
     }
 
     private void tallyAndFixAdapters(AdapterPair ret, SAMRecord... reads) {
-        if (ret != null && !thresholdReached) {
-            if(!preAdapterPrunedRecords.containsKey(ret)) {
-                preAdapterPrunedRecords.put(ret, new ArrayList<>());
-            }
-            Arrays.stream(reads).forEach(read -> preAdapterPrunedRecords.get(ret).add(read));
-            tallyFoundAdapter(ret);
+        // If caller does not want adapter pruning, do nothing.
+        if (ret == null || thresholdForSelectingAdaptersToKeep < 1) return;
+
+        if (thresholdReached) {
+            // The reads were matched against the adapter list from before it was pruned.
+            if (!keptAdapters.contains(ret)) Arrays.stream(reads).forEach(AdapterMarker::removeAdapterTag);
+            return;
         }
+
+        final Queue<SAMRecord> records = preAdapterPrunedRecords.computeIfAbsent(ret, adapter -> new ConcurrentLinkedQueue<>());
+        records.addAll(Arrays.asList(reads));
+        tallyFoundAdapter(ret);
+        // If the list was pruned while the reads were being added, they may have been missed by fixAlreadySeenReads().
+        if (thresholdReached && !keptAdapters.contains(ret)) fixReads(records);
     }
 
     /**
@@ -243,67 +260,73 @@ public class AdapterMarker {
     }
 
     /**
-     * Keep track of every time an adapter is found, until it is time to prune the list of adapters.
+     * Keep track of every time an adapter is found, until it is time to prune the list of adapters.  The thread that
+     * finds the adapter that reaches the threshold prunes the list.
      */
     private void tallyFoundAdapter(final AdapterPair foundAdapter) {
-        // If caller does not want adapter pruning, do nothing.
-        if (thresholdForSelectingAdaptersToKeep < 1) return;
-        synchronized (this) {
-
-            // Tally this adapter
-            seenCounts.put(foundAdapter, seenCounts.get(foundAdapter) + 1);
-
-            // Keep track of the number of times an adapter has been seen.
-            numAdaptersSeen += 1;
-
-            // Reached the threshold for pruning the list.
-            if (numAdaptersSeen >= thresholdForSelectingAdaptersToKeep) {
-
-                // Sort adapters by number of times each has been seen.
-                final TreeMap<Integer, AdapterPair> sortedAdapters = new TreeMap<Integer, AdapterPair>(new Comparator<Integer>() {
-                    @Override
-                    public int compare(final Integer integer, final Integer integer2) {
-                        // Reverse of natural ordering
-                        return integer2.compareTo(integer);
-                    }
-                });
-                for (final Map.Entry<AdapterPair, Integer> entry : seenCounts.entrySet()) {
-                    sortedAdapters.put(entry.getValue(), entry.getKey());
-                }
+        // Tally this adapter
+        seenCounts.computeIfAbsent(foundAdapter, adapter -> new AtomicInteger()).incrementAndGet();
+
+        // Keep track of the number of times an adapter has been seen.
+        if (numAdaptersSeen.incrementAndGet() != thresholdForSelectingAdaptersToKeep) return;
+
+        // Reached the threshold for pruning the list.
+        // Sort adapters by number of times each has been seen.
+        final TreeMap<Integer, AdapterPair> sortedAdapters = new TreeMap<Integer, AdapterPair>(new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer integer, final Integer integer2) {
+                // Reverse of natural ordering
+                return integer2.compareTo(integer);
+            }
+        });
+        final CollectionUtil.DefaultingMap<AdapterPair, Integer> counts = new CollectionUtil.DefaultingMap<AdapterPair, Integer>(0);
+        seenCounts.forEach((adapter, count) -> counts.put(adapter, count.get()));
+        for (final Map.Entry<AdapterPair, Integer> entry : counts.entrySet()) {
+            sortedAdapters.put(entry.getValue(), entry.getKey());
+        }
 
-                // Keep the #numAdaptersToKeep adapters that have been seen the most, plus any ties.
-                final ArrayList<AdapterPair> bestAdapters = new ArrayList<AdapterPair>(numAdaptersToKeep);
-                int countOfLastAdapter = Integer.MAX_VALUE;
-                for (final Map.Entry<Integer, AdapterPair> entry : sortedAdapters.entrySet()) {
-                    if (bestAdapters.size() >= numAdaptersToKeep) {
-                        if (entry.getKey() == countOfLastAdapter) {
-                            bestAdapters.add(entry.getValue());
-                        } else {
-                            break;
-                        }
-                    } else {
-                        countOfLastAdapter = entry.getKey();
-                        bestAdapters.add(entry.getValue());
-                    }
+        // Keep the #numAdaptersToKeep adapters that have been seen the most, plus any ties.
+        final ArrayList<AdapterPair> bestAdapters = new ArrayList<AdapterPair>(numAdaptersToKeep);
+        int countOfLastAdapter = Integer.MAX_VALUE;
+        for (final Map.Entry<Integer, AdapterPair> entry : sortedAdapters.entrySet()) {
+            if (bestAdapters.size() >= numAdaptersToKeep) {
+                if (entry.getKey() == countOfLastAdapter) {
+                    bestAdapters.add(entry.getValue());
+                } else {
+                    break;
                 }
-                // Replace the existing list with the pruned list.
-                thresholdReached = true;
-                adapters.set(bestAdapters.toArray(new AdapterPair[bestAdapters.size()]));
-                fixAlreadySeenReads();
+            } else {
+                countOfLastAdapter = entry.getKey();
+                bestAdapters.add(entry.getValue());
             }
         }
+        // Replace the existing list with the pruned list.
+        adapters.set(bestAdapters.toArray(new AdapterPair[bestAdapters.size()]));
+        keptAdapters = Collections.unmodifiableSet(new HashSet<>(bestAdapters));
+        thresholdReached = true;
+        fixAlreadySeenReads();
     }
 
     private void fixAlreadySeenReads() {
-        //remove all the reads for the selected adapters
-        Arrays.stream(adapters.get()).forEach(adapter -> preAdapterPrunedRecords.remove(adapter));
-        //anything left is marked with the incorrect adapter and needs its XT tag removed
-        preAdapterPrunedRecords.values().forEach(readList -> readList.parallelStream().forEach(read -> {
-            Stream<SAMRecord.SAMTagAndValue> filterAttributes = read.getAttributes().stream().filter(tag -> !tag.tag.equals(ReservedTagConstants.XT));
-            read.clearAttributes();
-            filterAttributes.forEach(tag -> read.setAttribute(tag.tag, tag.value));
-        }));
-        preAdapterPrunedRecords.clear();
+        //the reads for the selected adapters keep their tags; anything else is marked with the incorrect adapter and
+        //needs its XT tag removed
+        preAdapterPrunedRecords.forEach((adapter, records) -> {
+            if (keptAdapters.contains(adapter)) records.clear();
+            else fixReads(records);
+        });
+    }
+
+    private static void fixReads(final Queue<SAMRecord> records) {
+        SAMRecord read;
+        while ((read = records.poll()) != null) {
+            removeAdapterTag(read);
+        }
+    }
+
+    private static void removeAdapterTag(final SAMRecord read) {
+        Stream<SAMRecord.SAMTagAndValue> filterAttributes = read.getAttributes().stream().filter(tag -> !tag.tag.equals(ReservedTagConstants.XT));
+        read.clearAttributes();
+        filterAttributes.forEach(tag -> read.setAttribute(tag.tag, tag.value));
     }
 
     private static final class TruncatedAdapterPair implements AdapterPair {
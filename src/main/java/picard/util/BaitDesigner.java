@@ -26,11 +26,15 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -108,13 +112,56 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
         public byte[] getBases() { return bases; }
     }
 
+    /**
+     * The number of soft or hard masked bases (those other than A, C, G and T) in any range of a contig, in constant
+     * time.  A bit is kept per base, with the number of masked bases before each 64-base word, so a count takes two
+     * lookups and two bit counts however long the range; at 1.5 bits per base this is much smaller than the contig.
+     */
+    static class MaskedBaseCounts {
+        private final long[] maskedBits;
+        private final int[] maskedBefore;
+
+        MaskedBaseCounts(final byte[] bases) {
+            final int numWords = (bases.length >> 6) + 1;
+            maskedBits = new long[numWords];
+            maskedBefore = new int[numWords];
+            for (int i = 0; i < bases.length; i++) {
+                final byte b = bases[i];
+                if (b != 'A' && b != 'C' && b != 'G' && b != 'T') {
+                    maskedBits[i >> 6] |= 1L << (i & 63);
+                }
+            }
+            for (int w = 1; w < numWords; w++) {
+                maskedBefore[w] = maskedBefore[w - 1] + Long.bitCount(maskedBits[w - 1]);
+            }
+        }
+
+        /** The number of masked bases before the 0-based position. */
+        private int countBefore(final int position) {
+            final int w = position >> 6;
+            return maskedBefore[w] + Long.bitCount(maskedBits[w] & ((1L << (position & 63)) - 1));
+        }
+
+        /** Returns the same as {@link BaitDesigner#getMaskedBaseCount(byte[], int, int)} for the contig's bases. */
+        int count(final int from, final int until) {
+            return countBefore(until) - countBefore(from);
+        }
+    }
+
+    /** The baits designed for a run of targets on one contig. */
+    private static class DesignedBaits {
+        final List<Bait> kept = new ArrayList<>();
+        final List<Bait> nonSynthesizable = new ArrayList<>();
+        final List<Bait> discarded = new ArrayList<>();
+    }
+
     /**
      * Set of possible design strategies for bait design.
      */
     public enum DesignStrategy {
         /** Implementation that "constrains" baits to be within the target region when possible. */
         CenteredConstrained {
-            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference) {
+            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference, final MaskedBaseCounts masked) {
                 final List<Bait> baits = new LinkedList<Bait>();
 
                 final int baitSize = designer.BAIT_SIZE;
@@ -166,7 +213,7 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
          * as dictated by the target size and offset.
          */
         FixedOffset {
-            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference) {
+            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference, final MaskedBaseCounts masked) {
                 final List<Bait> baits = new LinkedList<Bait>();
 
                 final int baitSize = designer.BAIT_SIZE;
@@ -195,7 +242,6 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
                 final int firstBaitStart = Math.max(t2.getStart() - ((baitedBases - t2.length()) / 2), 1);
 
                 // And then design them
-                final byte[] bases = reference.getBases();
                 final int MAX_MASKED = designer.REPEAT_TOLERANCE;
 
                 for (int i = 1; i <= baitCount; ++i) {
@@ -205,18 +251,18 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
                     if (end > reference.length()) break;
 
                     // If there are too many soft masked bases try shifting it around
-                    if (getMaskedBaseCount(bases, start - 1, end) > MAX_MASKED) {
+                    if (masked.count(start - 1, end) > MAX_MASKED) {
                         final int maxMove = baitOffset * 3 / 4;
 
                         for (int move = 1; move <= maxMove; move++) {
                             // Move it "backwards?"
-                            if (start - move >= 1 && getMaskedBaseCount(bases, start - move - 1, end - move) <= MAX_MASKED) {
+                            if (start - move >= 1 && masked.count(start - move - 1, end - move) <= MAX_MASKED) {
                                 start = start - move;
                                 end = end - move;
                                 break;
                             }
                             // Move it "forwards"?
-                            if (end + move <= reference.length() && getMaskedBaseCount(bases, start + move - 1, end + move) <= MAX_MASKED) {
+                            if (end + move <= reference.length() && masked.count(start + move - 1, end + move) <= MAX_MASKED) {
                                 start = start + move;
                                 end = end + move;
                                 break;
@@ -243,7 +289,7 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
          */
         Simple {
             @Override
-            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference) {
+            List<Bait> design(final BaitDesigner designer, final Interval target, final ReferenceSequence reference, final MaskedBaseCounts masked) {
                 final List<Bait> baits = new LinkedList<Bait>();
                 final int baitSize = designer.BAIT_SIZE;
                 final int baitOffset = designer.BAIT_OFFSET;
@@ -264,8 +310,12 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
             }
         };
 
-        /** Design method that each Design Strategy must implement. */
-        abstract List<Bait> design(BaitDesigner designer, Interval target, ReferenceSequence reference);
+        /**
+         * Design method that each Design Strategy must implement.
+         *
+         * @param masked the masked bases of reference, for strategies that avoid repeats.
+         */
+        abstract List<Bait> design(BaitDesigner designer, Interval target, ReferenceSequence reference, MaskedBaseCounts masked);
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -323,6 +373,10 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
             doc = "The output directory. If not provided then the DESIGN_NAME will be used as the output directory")
     public File OUTPUT_DIRECTORY;
 
+    @Argument(doc = "The number of contigs to design baits on in parallel. The output is the same for any number. " +
+            ThreadPoolExecutorUtil.NUM_PROCESSORS_DOC)
+    public int NUM_PROCESSORS = 1;
+
     // "Output" members that will also get picked up by writeParametersFile()
     int TARGET_TERRITORY;
     int TARGET_COUNT;
@@ -334,7 +388,8 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
 
     // Utility objects
     private static final Log log = Log.getInstance(BaitDesigner.class);
-    private final NumberFormat fmt = NumberFormat.getIntegerInstance();
+    // Bait names are made on the design threads, and NumberFormat is not thread safe.
+    private final ThreadLocal<NumberFormat> fmt = ThreadLocal.withInitial(NumberFormat::getIntegerInstance);
 
     @Override
     protected boolean requiresReference() {
@@ -343,8 +398,8 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
 
     /** Takes a target name and a bait index and creates a uniform bait name. */
     String makeBaitName(final String targetName, final int baitIndex, final int totalBaits) {
-        final String total = fmt.format(totalBaits);
-        String bait = fmt.format(baitIndex);
+        final String total = fmt.get().format(totalBaits);
+        String bait = fmt.get().format(baitIndex);
 
         // Pad out the bait number to match the longest one for this target
         while (bait.length() < total.length()) bait = "0" + bait;
@@ -459,45 +514,87 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
         SequenceUtil.assertSequenceDictionariesEqual(referenceWalker.getSequenceDictionary(),
                 targets.getHeader().getSequenceDictionary());
 
-        // Design the baits!
-        int discardedBaits = 0;
+        // Design the baits!  Each run of targets on a contig is designed on its own thread, against the contig's bases
+        // and masked base counts, and the baits are gathered in target order so the output does not depend on threading.
+        final int numThreads = ThreadPoolExecutorUtil.getNumThreads(NUM_PROCESSORS);
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "BaitDesigner");
+        // Only as many contigs are held in memory as can be designed on at once, plus the one being loaded.
+        final Deque<Future<DesignedBaits>> pending = new ArrayDeque<>();
         final IntervalList baits = new IntervalList(targets.getHeader());
-        for (final Interval target : targets) {
-            final int sequenceIndex = targets.getHeader().getSequenceIndex(target.getContig());
-            final ReferenceSequence reference = referenceWalker.get(sequenceIndex);
+        int discardedBaits = 0;
+        try {
+            final List<Interval> allTargets = targets.getIntervals();
+            for (int runStart = 0; runStart < allTargets.size(); ) {
+                final String contig = allTargets.get(runStart).getContig();
+                int runEnd = runStart + 1;
+                while (runEnd < allTargets.size() && allTargets.get(runEnd).getContig().equals(contig)) runEnd++;
+
+                final ReferenceSequence reference = referenceWalker.get(targets.getHeader().getSequenceIndex(contig));
+                final List<Interval> run = allTargets.subList(runStart, runEnd);
+                pending.add(pool.submit(() -> designBaits(run, reference)));
+                while (pending.size() >= numThreads) {
+                    discardedBaits += addBaits(baits, getDesignedBaits(pending.poll()));
+                }
+                runStart = runEnd;
+            }
+            while (!pending.isEmpty()) {
+                discardedBaits += addBaits(baits, getDesignedBaits(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        calculateStatistics(targets, baits);
+        log.info("Designed and kept " + baits.size() + " baits, discarded " + discardedBaits);
 
-            for (final Bait bait : DESIGN_STRATEGY.design(this, target, reference)) {
+        // Write out some files!
+        originalTargets.write(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".targets.interval_list"));
+        baits.write(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".baits.interval_list"));
+        writeParametersFile(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".design_parameters.txt"));
+        writeDesignFastaFile(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".design.fasta"), baits);
+        if (POOL_SIZE > 0) writePoolFiles(OUTPUT_DIRECTORY, DESIGN_NAME, baits);
+
+        return 0;
+    }
+
+    /** Designs the baits for a run of targets on the given contig. */
+    private DesignedBaits designBaits(final List<Interval> targets, final ReferenceSequence reference) {
+        final MaskedBaseCounts masked = new MaskedBaseCounts(reference.getBases());
+        final DesignedBaits designed = new DesignedBaits();
+        for (final Interval target : targets) {
+            for (final Bait bait : DESIGN_STRATEGY.design(this, target, reference, masked)) {
                 if (bait.length() != BAIT_SIZE) {
                     throw new PicardException("Bait designed at wrong length: " + bait);
                 }
 
-                if (bait.getMaskedBaseCount() <= REPEAT_TOLERANCE) {
-                    baits.add(bait);
+                // Reverse complementing does not change the number of masked bases, so the bait can be counted on the contig.
+                if (masked.count(bait.getStart() - 1, bait.getEnd()) <= REPEAT_TOLERANCE) {
+                    designed.kept.add(bait);
 
                     for (final byte b : bait.getBases()) {
                         final byte upper = StringUtil.toUpperCase(b);
                         if (upper != 'A' && upper != 'C' && upper != 'G' && upper != 'T') {
-                            log.warn("Bait contains non-synthesizable bases: " + bait);
+                            designed.nonSynthesizable.add(bait);
                         }
                     }
                 } else {
-                    log.debug("Discarding bait: " + bait);
-                    discardedBaits++;
+                    designed.discarded.add(bait);
                 }
             }
         }
+        return designed;
+    }
 
-        calculateStatistics(targets, baits);
-        log.info("Designed and kept " + baits.size() + " baits, discarded " + discardedBaits);
-
-        // Write out some files!
-        originalTargets.write(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".targets.interval_list"));
-        baits.write(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".baits.interval_list"));
-        writeParametersFile(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".design_parameters.txt"));
-        writeDesignFastaFile(new File(OUTPUT_DIRECTORY, DESIGN_NAME + ".design.fasta"), baits);
-        if (POOL_SIZE > 0) writePoolFiles(OUTPUT_DIRECTORY, DESIGN_NAME, baits);
+    /** Adds the kept baits to the list, logging as the serial design did, and returns the number discarded. */
+    private static int addBaits(final IntervalList baits, final DesignedBaits designed) {
+        designed.nonSynthesizable.forEach(bait -> log.warn("Bait contains non-synthesizable bases: " + bait));
+        designed.discarded.forEach(bait -> log.debug("Discarding bait: " + bait));
+        designed.kept.forEach(baits::add);
+        return designed.discarded.size();
+    }
 
-        return 0;
+    private static DesignedBaits getDesignedBaits(final Future<DesignedBaits> future) {
+        return ThreadPoolExecutorUtil.getResult(future, "designing baits");
     }
 
     /** Calculates a few statistics about the bait design that can then be output. */
@@ -536,7 +633,8 @@ static final String USAGE_DETAILS = "<p>This tool is used to design custom bait
 
                 final String name = field.getName();
 
-                if (name.toUpperCase().equals(name) && !name.equals("USAGE")) {
+                // NUM_PROCESSORS does not affect the design, so is left out to keep the file independent of it.
+                if (name.toUpperCase().equals(name) && !name.equals("USAGE") && !name.equals("NUM_PROCESSORS")) {
                     final Object value = field.get(this);
 
                     if (value != null) {
@@ -104,9 +104,10 @@ public class ClippingUtility {
      */
     public static AdapterPair adapterTrimIlluminaSingleRead(final SAMRecord read, final int minMatchBases,
                                                      final double maxErrorRate, final AdapterPair ... adapters) {
+        final ReadMismatches readMismatches = new ReadMismatches(getReadBases(read));
         for (AdapterPair adapter : adapters) {
-            final int indexOfAdapterSequence = findIndexOfClipSequence(
-                    getReadBases(read), adapter.get3PrimeAdapterBytes(), minMatchBases, maxErrorRate);
+            final int indexOfAdapterSequence = readMismatches.findIndexOfClipSequence(
+                    adapter.get3PrimeAdapterBytes(), minMatchBases, maxErrorRate);
             if (indexOfAdapterSequence != NO_MATCH) {
                 // Convert to a one-based index for storage on the record.
                 read.setAttribute(ReservedTagConstants.XT, indexOfAdapterSequence + 1);
@@ -164,12 +165,14 @@ public class ClippingUtility {
     public static AdapterPair adapterTrimIlluminaPairedReads(final SAMRecord read1, final SAMRecord read2,
         final int minMatchBases, final double maxErrorRate, final AdapterPair ... adapters) {
         AdapterPair matched = null;
+        final ReadMismatches read1Mismatches = new ReadMismatches(getReadBases(read1));
+        final ReadMismatches read2Mismatches = new ReadMismatches(getReadBases(read2));
 
         for (final AdapterPair adapterPair : adapters) {
-            final int index1 = findIndexOfClipSequence(
-                    getReadBases(read1), adapterPair.get3PrimeAdapterBytes(), minMatchBases, maxErrorRate);
-            final int index2 = findIndexOfClipSequence(
-                    getReadBases(read2), adapterPair.get5PrimeAdapterBytesInReadOrder(), minMatchBases, maxErrorRate);
+            final int index1 = read1Mismatches.findIndexOfClipSequence(
+                    adapterPair.get3PrimeAdapterBytes(), minMatchBases, maxErrorRate);
+            final int index2 = read2Mismatches.findIndexOfClipSequence(
+                    adapterPair.get5PrimeAdapterBytesInReadOrder(), minMatchBases, maxErrorRate);
 
             if (index1 == index2) {
                 if (index1 != NO_MATCH) {
@@ -252,29 +255,110 @@ public class ClippingUtility {
      * @param read
      */
     public static int findIndexOfClipSequence(final byte[] read, final byte[] adapterSequence, final int minMatch, final double maxErrorRate) {
-        // If the read's too short we can't possibly match it
-        if (read == null || read.length < minMatch) return NO_MATCH;
-        final int minClipPosition = 0;
-
-        // Walk backwards down the read looking for the sequence
-        READ_LOOP:
-        for (int start = read.length - minMatch; start > minClipPosition -1; --start) {
-            final int length = Math.min(read.length - start, adapterSequence.length);
-            final int mismatchesAllowed = (int) (length * maxErrorRate);
-            int mismatches = 0;
-
-            for (int i = 0; i < length; ++i) {
-                if (!SequenceUtil.isNoCall(adapterSequence[i]) && 
-                        !SequenceUtil.basesEqual(adapterSequence[i], read[start + i]) &&
-                        ++mismatches > mismatchesAllowed) {
-                    continue READ_LOOP;
+        return new ReadMismatches(read).findIndexOfClipSequence(adapterSequence, minMatch, maxErrorRate);
+    }
+
+    /**
+     * Compares adapter sequences with a read at all start positions at once, 64 start positions per long.
+     * <p/>
+     * For each adapter base, the positions of the read that it does not match are kept as a bit set.  Shifting that
+     * bit set by the position of the base in the adapter gives, for every start position of the adapter in the read,
+     * whether that adapter base mismatches the read.  These bits are added into bit-sliced counters, one long per 64
+     * start positions for each bit of the counts, which saturate once a count exceeds any number of mismatches that
+     * could be allowed.  This is the shift-add approach to Hamming distance matching; an edit distance matcher such as
+     * Myers' would also allow indels, which findIndexOfClipSequence does not.
+     * <p/>
+     * The mismatch bit sets of a read are computed once for each distinct adapter base and shared by all the adapters
+     * compared with the read.
+     */
+    private static final class ReadMismatches {
+        private final byte[] read;
+        // The positions of the read that do not match each base, indexed by the unsigned value of the base.
+        private final long[][] mismatchesByBase = new long[256][];
+
+        ReadMismatches(final byte[] read) {
+            this.read = read;
+        }
+
+        private long[] getMismatches(final byte base) {
+            long[] mismatches = mismatchesByBase[base & 0xFF];
+            if (mismatches == null) {
+                mismatches = new long[(read.length + 63) >>> 6];
+                for (int i = 0; i < read.length; ++i) {
+                    if (!SequenceUtil.basesEqual(base, read[i])) mismatches[i >>> 6] |= 1L << i;
                 }
+                mismatchesByBase[base & 0xFF] = mismatches;
             }
+            return mismatches;
+        }
 
-            // If we got this far without breaking out, then it matches
-            return start;
+        /** Returns the 64 bits of the bit set starting at the given bit; bits past the end of the set are 0. */
+        private static long getWord(final long[] bits, final int fromBit) {
+            final int word = fromBit >>> 6;
+            final int shift = fromBit & 63;
+            long result = word < bits.length ? bits[word] >>> shift : 0;
+            if (shift != 0 && word + 1 < bits.length) result |= bits[word + 1] << (64 - shift);
+            return result;
         }
 
-        return NO_MATCH;
+        /** Same as ClippingUtility.findIndexOfClipSequence() with this read. */
+        int findIndexOfClipSequence(final byte[] adapterSequence, final int minMatch, final double maxErrorRate) {
+            // If the read's too short we can't possibly match it
+            if (read == null || read.length < minMatch) return NO_MATCH;
+
+            // The adapter is compared with the read at the start positions from 0 to read.length - minMatch, over the
+            // bases of the read that remain after the start, and may mismatch at (int) (length * maxErrorRate) of them.
+            final int numStarts = read.length - minMatch + 1;
+            final int[] mismatchesAllowed = new int[numStarts];
+            int maxMismatchesAllowed = -1;
+            for (int start = 0; start < numStarts; ++start) {
+                final int length = Math.min(read.length - start, adapterSequence.length);
+                // Nothing is compared when minMatch is not positive and the start is at or past the end of the read.
+                mismatchesAllowed[start] = length <= 0 ? Integer.MAX_VALUE : (int) (length * maxErrorRate);
+                maxMismatchesAllowed = Math.max(maxMismatchesAllowed, Math.min(mismatchesAllowed[start], Math.max(length, 0)));
+            }
+            if (maxMismatchesAllowed < 0) return NO_MATCH;
+
+            // Bit b of counts[k][w] is bit k of the number of mismatches at start 64 * w + b, and the same bit of
+            // saturated[w] is set once that number exceeds maxMismatchesAllowed.
+            final int numWords = (numStarts + 63) >>> 6;
+            final int numCountBits = 32 - Integer.numberOfLeadingZeros(maxMismatchesAllowed);
+            final long[][] counts = new long[numCountBits][numWords];
+            final long[] saturated = new long[numWords];
+            final long unusedBits = (numStarts & 63) == 0 ? 0 : -1L << (numStarts & 63);
+
+            for (int i = 0; i < adapterSequence.length; ++i) {
+                if (SequenceUtil.isNoCall(adapterSequence[i])) continue;
+                final long[] mismatches = getMismatches(adapterSequence[i]);
+
+                boolean allSaturated = true;
+                for (int w = 0; w < numWords; ++w) {
+                    long carry = getWord(mismatches, 64 * w + i) & ~saturated[w];
+                    for (int k = 0; k < numCountBits && carry != 0; ++k) {
+                        final long sum = counts[k][w] ^ carry;
+                        carry &= counts[k][w];
+                        counts[k][w] = sum;
+                    }
+                    saturated[w] |= carry;
+                    if ((saturated[w] | (w == numWords - 1 ? unusedBits : 0)) != -1L) allSaturated = false;
+                }
+                // No start can match any more
+                if (allSaturated) return NO_MATCH;
+            }
+
+            // Walk backwards down the read looking for the sequence
+            for (int start = numStarts - 1; start >= 0; --start) {
+                final int w = start >>> 6;
+                final long bit = 1L << start;
+                if ((saturated[w] & bit) != 0) continue;
+                int mismatches = 0;
+                for (int k = 0; k < numCountBits; ++k) {
+                    if ((counts[k][w] & bit) != 0) mismatches |= 1 << k;
+                }
+                if (mismatches <= mismatchesAllowed[start]) return start;
+            }
+
+            return NO_MATCH;
+        }
     }
 }
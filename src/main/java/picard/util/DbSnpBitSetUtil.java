@@ -24,25 +24,55 @@
 package picard.util;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
+import picard.PicardException;
 import picard.vcf.ByIntervalListVariantContextIterator;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
  * Utility class to use with DbSnp files to determine is a locus is
  * a dbSnp site.
+ *
+ * Parsing a full dbSNP VCF takes minutes and several GB of heap, so the bit sets can also be compiled once into a
+ * bit set file (see writeBitSetFile() and CompileDbSnpBitSets).  Anywhere a dbSNP VCF is accepted, such a file may
+ * be given instead; its bit sets are memory-mapped rather than parsed, so they load immediately and their pages are
+ * shared between processes on the same machine.
  */
 public class DbSnpBitSetUtil {
 
+    /** The conventional extension of a compiled dbSNP bit set file. */
+    public static final String BIT_SET_FILE_EXTENSION = ".dbsnp_bitsets";
+
+    private static final int BIT_SET_FILE_MAGIC = 0x44425342; // "DBSB"
+    private static final int BIT_SET_FILE_VERSION = 1;
+
+    /** The bit sets stored in a compiled file for each contig, in order. */
+    private enum StoredBitSet { SNPS, INDELS, ALL }
+
     private final Map<String, BitSet> sequenceToBitSet = new HashMap<>();
 
+    /** Bit sets memory-mapped from a compiled file, laid out as by BitSet.toLongArray(). */
+    private final Map<String, LongBuffer> sequenceToMappedBits = new HashMap<>();
+
     /** Little tuple class to contain one bitset for SNPs and another for Indels. */
     public static class DbSnpBitSets {
         public DbSnpBitSetUtil snps;
@@ -94,6 +124,10 @@ public class DbSnpBitSetUtil {
                            final Optional<Log> log) {
 
         if (dbSnpFile == null) throw new IllegalArgumentException("null dbSnpFile");
+        if (isBitSetFile(dbSnpFile)) {
+            loadBitSetFile(dbSnpFile, sequenceDictionary, Collections.singletonMap(this, storedBitSetFor(variantsToMatch)), intervals, log);
+            return;
+        }
         final Map<DbSnpBitSetUtil, Set<VariantType>> tmp = new HashMap<>();
         tmp.put(this, EnumSet.copyOf(variantsToMatch));
         loadVcf(dbSnpFile, sequenceDictionary, tmp, intervals, log);
@@ -125,6 +159,14 @@ public class DbSnpBitSetUtil {
         sets.snps   = new DbSnpBitSetUtil();
         sets.indels = new DbSnpBitSetUtil();
 
+        if (isBitSetFile(dbSnpFile)) {
+            final Map<DbSnpBitSetUtil, StoredBitSet> stored = new HashMap<>();
+            stored.put(sets.snps,   StoredBitSet.SNPS);
+            stored.put(sets.indels, StoredBitSet.INDELS);
+            loadBitSetFile(dbSnpFile, sequenceDictionary, stored, intervals, log);
+            return sets;
+        }
+
         final Map<DbSnpBitSetUtil, Set<VariantType>> map = new HashMap<>();
         map.put(sets.snps,   EnumSet.of(VariantType.SNP));
         map.put(sets.indels, EnumSet.of(VariantType.insertion, VariantType.deletion));
@@ -178,10 +220,160 @@ public class DbSnpBitSetUtil {
         CloserUtil.close(variantReader);
     }
 
+    /**
+     * Reads the dbSNP VCF once and writes its SNP, indel and all-variant bit sets to a file that can be used in its
+     * place.  The file is keyed to the sequence dictionary: every contig is sized from it, and loading the file
+     * against a different dictionary fails.
+     */
+    public static void writeBitSetFile(final File dbSnpFile,
+                                       final SAMSequenceDictionary sequenceDictionary,
+                                       final File output,
+                                       final Optional<Log> log) {
+        final EnumMap<StoredBitSet, DbSnpBitSetUtil> sets = new EnumMap<>(StoredBitSet.class);
+        final Map<DbSnpBitSetUtil, Set<VariantType>> map = new HashMap<>();
+        for (final StoredBitSet stored : StoredBitSet.values()) {
+            final DbSnpBitSetUtil bitSet = new DbSnpBitSetUtil();
+            sets.put(stored, bitSet);
+            map.put(bitSet, variantTypesFor(stored));
+        }
+        loadVcf(dbSnpFile, sequenceDictionary, map, null, log);
+
+        // Every bit set has an entry for every contig with a dbSNP record, so the SNP bit sets name the contigs.
+        final List<SAMSequenceRecord> contigs = new ArrayList<>();
+        for (final SAMSequenceRecord contig : sequenceDictionary.getSequences()) {
+            if (sets.get(StoredBitSet.SNPS).sequenceToBitSet.containsKey(contig.getSequenceName())) contigs.add(contig);
+        }
+
+        try {
+            // The header holds fixed-size offsets, so writing it once with placeholders gives its size.
+            final long dataStart = align(writeBitSetFileHeader(contigs, 0).length);
+            final byte[] header = writeBitSetFileHeader(contigs, dataStart);
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+                out.write(header);
+                for (long i = header.length; i < dataStart; ++i) out.writeByte(0);
+                for (final SAMSequenceRecord contig : contigs) {
+                    final int numWords = numWords(contig);
+                    for (final StoredBitSet stored : StoredBitSet.values()) {
+                        final long[] words = sets.get(stored).sequenceToBitSet.get(contig.getSequenceName()).toLongArray();
+                        if (words.length > numWords) {
+                            throw new PicardException("dbSNP file " + dbSnpFile + " has a record past the end of contig " +
+                                    contig.getSequenceName() + " in the sequence dictionary.");
+                        }
+                        for (int i = 0; i < numWords; ++i) {
+                            out.writeLong(i < words.length ? words[i] : 0);
+                        }
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error writing dbSNP bit set file " + output, e);
+        }
+    }
+
+    /** Returns true if the file is a compiled dbSNP bit set file rather than a VCF. */
+    public static boolean isBitSetFile(final File file) {
+        if (!file.isFile() || file.length() < Integer.BYTES) return false;
+        try (final DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == BIT_SET_FILE_MAGIC;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] writeBitSetFileHeader(final List<SAMSequenceRecord> contigs, final long dataStart) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(BIT_SET_FILE_MAGIC);
+        out.writeInt(BIT_SET_FILE_VERSION);
+        out.writeInt(contigs.size());
+        long offset = dataStart;
+        for (final SAMSequenceRecord contig : contigs) {
+            out.writeUTF(contig.getSequenceName());
+            out.writeInt(contig.getSequenceLength());
+            out.writeLong(offset);
+            offset += (long) numWords(contig) * Long.BYTES * StoredBitSet.values().length;
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /** Memory-maps the requested bit sets out of a compiled file. */
+    private static void loadBitSetFile(final File bitSetFile,
+                                       final SAMSequenceDictionary sequenceDictionary,
+                                       final Map<DbSnpBitSetUtil, StoredBitSet> bitSetsToLoad,
+                                       final IntervalList intervals,
+                                       final Optional<Log> log) {
+        if (intervals != null) {
+            log.ifPresent(l -> l.info("Using all sites in dbSNP bit set file " + bitSetFile + ", not only those in the given intervals."));
+        }
+        try (final RandomAccessFile raf = new RandomAccessFile(bitSetFile, "r");
+             final FileChannel channel = raf.getChannel()) {
+            if (raf.readInt() != BIT_SET_FILE_MAGIC) throw new PicardException(bitSetFile + " is not a dbSNP bit set file.");
+            final int version = raf.readInt();
+            if (version != BIT_SET_FILE_VERSION) {
+                throw new PicardException("Unsupported version " + version + " of dbSNP bit set file " + bitSetFile);
+            }
+            final int numContigs = raf.readInt();
+            for (int i = 0; i < numContigs; ++i) {
+                final String name = raf.readUTF();
+                final int length = raf.readInt();
+                final long offset = raf.readLong();
+                if (sequenceDictionary != null) {
+                    final SAMSequenceRecord contig = sequenceDictionary.getSequence(name);
+                    if (contig == null || contig.getSequenceLength() != length) {
+                        throw new PicardException("dbSNP bit set file " + bitSetFile +
+                                " was compiled against a different sequence dictionary: contig " + name + " of length " + length +
+                                (contig == null ? " is not in the dictionary." : " has length " + contig.getSequenceLength() + " in the dictionary."));
+                    }
+                }
+                final long bytesPerSet = (long) (length / Long.SIZE + 1) * Long.BYTES;
+                for (final Map.Entry<DbSnpBitSetUtil, StoredBitSet> entry : bitSetsToLoad.entrySet()) {
+                    final long setOffset = offset + entry.getValue().ordinal() * bytesPerSet;
+                    // The mapping stays valid after the channel is closed.
+                    entry.getKey().sequenceToMappedBits.put(name, channel.map(FileChannel.MapMode.READ_ONLY, setOffset, bytesPerSet).asLongBuffer());
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading dbSNP bit set file " + bitSetFile, e);
+        }
+    }
+
+    /** The number of longs needed for a bit set indexed by 1-based position on the contig. */
+    private static int numWords(final SAMSequenceRecord contig) {
+        return contig.getSequenceLength() / Long.SIZE + 1;
+    }
+
+    private static long align(final long offset) {
+        return (offset + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+
+    private static Set<VariantType> variantTypesFor(final StoredBitSet stored) {
+        switch (stored) {
+            case SNPS:   return EnumSet.of(VariantType.SNP);
+            case INDELS: return EnumSet.of(VariantType.insertion, VariantType.deletion);
+            default:     return EnumSet.noneOf(VariantType.class);
+        }
+    }
+
+    /** The stored bit set that matches the same records loadVcf() would for the given variant types. */
+    private static StoredBitSet storedBitSetFor(final Collection<VariantType> variantsToMatch) {
+        if (variantsToMatch.isEmpty()) return StoredBitSet.ALL;
+        final boolean snps = variantsToMatch.contains(VariantType.SNP);
+        final boolean indels = variantsToMatch.contains(VariantType.insertion) || variantsToMatch.contains(VariantType.deletion);
+        if (snps && !indels) return StoredBitSet.SNPS;
+        if (indels && !snps) return StoredBitSet.INDELS;
+        throw new PicardException("A dbSNP bit set file holds SNPs and indels separately and cannot match " + variantsToMatch);
+    }
+
     /**
      * Returns true if there is a dbSnp entry at pos in sequenceName, otherwise false
      */
     public boolean isDbSnpSite(final String sequenceName, final int pos) {
+        final LongBuffer mappedBits = sequenceToMappedBits.get(sequenceName);
+        if (mappedBits != null) {
+            final int word = pos >>> 6;
+            return pos >= 0 && word < mappedBits.limit() && (mappedBits.get(word) & (1L << pos)) != 0;
+        }
         // When we have a dbSnpFile with no sequence dictionary, this line will be necessary
         return sequenceToBitSet.get(sequenceName) != null &&
                 pos <= sequenceToBitSet.get(sequenceName).length() &&
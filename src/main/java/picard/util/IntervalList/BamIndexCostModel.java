@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.util.IntervalList;
+
+import htsjdk.samtools.BAMFileSpan;
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.Chunk;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Interval;
+import picard.PicardException;
+
+import java.io.File;
+
+/**
+ * An {@link IntervalCostModel} that takes the cost of an interval to be the approximate number of compressed bytes of
+ * the reads that the index of a BAM maps to it, i.e. the data a per-interval process would have to decode.  Only the
+ * index is read, so the cost of a whole-genome BAM can be estimated without reading its reads.
+ * <p/>
+ * The index is coarse: its bins and 16kb linear index windows may include reads that end before a small interval, so
+ * the cost of small intervals is overestimated, roughly equally in every shard.
+ */
+public class BamIndexCostModel implements IntervalCostModel {
+
+    // Uncompressed bytes per compressed byte in a typical BGZF block, for spans within one block.
+    private static final double COMPRESSION_RATIO = 4.0;
+
+    private final SamReader reader;
+    private final BAMIndex index;
+    private final SAMSequenceDictionary dictionary;
+
+    public BamIndexCostModel(final File bam) {
+        reader = SamReaderFactory.makeDefault().open(bam);
+        if (!reader.hasIndex() || reader.type() != SamReader.Type.BAM_TYPE) {
+            CloserUtil.close(reader);
+            throw new PicardException(bam + " must be a BAM file with an index to be used as a cost input.");
+        }
+        index = reader.indexing().getIndex();
+        dictionary = reader.getFileHeader().getSequenceDictionary();
+    }
+
+    @Override
+    public double cost(final Interval interval) {
+        final int referenceIndex = dictionary.getSequenceIndex(interval.getContig());
+        if (referenceIndex < 0) return 0;
+        final BAMFileSpan span = index.getSpanOverlapping(referenceIndex, interval.getStart(), interval.getEnd());
+        if (span == null) return 0;
+
+        double cost = 0;
+        for (final Chunk chunk : span.getChunks()) {
+            final long blocks = BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkEnd()) -
+                    BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart());
+            final int offsets = BlockCompressedFilePointerUtil.getBlockOffset(chunk.getChunkEnd()) -
+                    BlockCompressedFilePointerUtil.getBlockOffset(chunk.getChunkStart());
+            cost += Math.max(0, blocks + offsets / COMPRESSION_RATIO);
+        }
+        return cost;
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(reader);
+    }
+}
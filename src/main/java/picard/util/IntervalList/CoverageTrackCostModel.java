@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.util.IntervalList;
+
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.RuntimeIOException;
+import picard.PicardException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link IntervalCostModel} that takes the cost of an interval to be the sum, over its bases, of the values in a
+ * coverage track such as a bedGraph of depth: tab-separated lines of contig, 0-based start, end (exclusive) and value.
+ * Blank lines and "#", "track" and "browser" lines are skipped, bases outside the track cost nothing and the records
+ * of a contig must not overlap.
+ * <p/>
+ * Prefix sums of the track are kept per contig, so the cost of an interval takes two binary searches however many
+ * track records it spans.
+ */
+public class CoverageTrackCostModel implements IntervalCostModel {
+
+    private final Map<String, Track> tracks = new HashMap<>();
+
+    public CoverageTrackCostModel(final File coverageTrack) {
+        final Map<String, List<double[]>> recordsByContig = new HashMap<>();
+        try (final BufferedReader reader = IOUtil.openFileForBufferedReading(coverageTrack)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) {
+                    continue;
+                }
+                final String[] fields = line.split("\t");
+                if (fields.length < 4) {
+                    throw new PicardException("Expected contig, start, end and value at line " + lineNumber + " of " + coverageTrack);
+                }
+                final double[] record;
+                try {
+                    record = new double[]{Long.parseLong(fields[1]), Long.parseLong(fields[2]), Double.parseDouble(fields[3])};
+                } catch (final NumberFormatException e) {
+                    throw new PicardException("Could not parse line " + lineNumber + " of " + coverageTrack + ": " + line, e);
+                }
+                if (record[0] < 0 || record[1] < record[0] || record[2] < 0) {
+                    throw new PicardException("Invalid coordinates or negative value at line " + lineNumber + " of " + coverageTrack);
+                }
+                recordsByContig.computeIfAbsent(fields[0], k -> new ArrayList<>()).add(record);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading " + coverageTrack, e);
+        }
+        recordsByContig.forEach((contig, records) -> tracks.put(contig, new Track(contig, records)));
+    }
+
+    @Override
+    public double cost(final Interval interval) {
+        final Track track = tracks.get(interval.getContig());
+        if (track == null) return 0;
+        // 1-based closed to 0-based half-open
+        return track.costBefore(interval.getEnd()) - track.costBefore(interval.getStart() - 1);
+    }
+
+    private static class Track {
+        private final long[] starts;
+        private final long[] ends;
+        private final double[] values;
+        // costs[i] is the total cost of records 0 to i - 1
+        private final double[] costs;
+
+        Track(final String contig, final List<double[]> records) {
+            records.sort((a, b) -> Double.compare(a[0], b[0]));
+            final int n = records.size();
+            starts = new long[n];
+            ends = new long[n];
+            values = new double[n];
+            costs = new double[n + 1];
+            for (int i = 0; i < n; ++i) {
+                final double[] record = records.get(i);
+                starts[i] = (long) record[0];
+                ends[i] = (long) record[1];
+                values[i] = record[2];
+                if (i > 0 && starts[i] < ends[i - 1]) {
+                    throw new PicardException("Overlapping coverage track records on " + contig + " at " + starts[i]);
+                }
+                costs[i + 1] = costs[i] + values[i] * (ends[i] - starts[i]);
+            }
+        }
+
+        /** The total cost of the bases at 0-based positions before the given one. */
+        double costBefore(final long position) {
+            // The number of records starting before position; only the last of them can extend past it.
+            int i = Arrays.binarySearch(starts, position);
+            i = i < 0 ? -i - 1 : i;
+            if (i == 0) return 0;
+            return costs[i - 1] + values[i - 1] * (Math.min(position, ends[i - 1]) - starts[i - 1]);
+        }
+    }
+}
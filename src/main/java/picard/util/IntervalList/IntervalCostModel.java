@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.util.IntervalList;
+
+import htsjdk.samtools.util.FileExtensions;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+
+import java.io.File;
+
+/**
+ * The predicted cost of processing an interval, used by {@link IntervalListScattererByCost} to balance the work in each
+ * scattered interval list rather than its base or interval count.
+ */
+@FunctionalInterface
+public interface IntervalCostModel extends AutoCloseable {
+
+    /** The predicted cost of processing the interval; never negative. */
+    double cost(final Interval interval);
+
+    /** The predicted cost of processing all of the intervals. */
+    default double cost(final Iterable<Interval> intervals) {
+        double cost = 0;
+        for (final Interval interval : intervals) {
+            cost += cost(interval);
+        }
+        return cost;
+    }
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Creates a cost model from a file, according to its extension:
+     * <ul>
+     * <li>an indexed BAM: {@link BamIndexCostModel}, the compressed size of the reads the index maps to the interval</li>
+     * <li>a VCF: {@link VariantDensityCostModel}, the number of variants starting in the interval</li>
+     * <li>anything else is read as a coverage track: {@link CoverageTrackCostModel}, the sum of the per-base values</li>
+     * </ul>
+     */
+    static IntervalCostModel fromFile(final File costFile) {
+        IOUtil.assertFileIsReadable(costFile);
+        final String name = costFile.getName();
+        if (name.endsWith(FileExtensions.BAM)) {
+            return new BamIndexCostModel(costFile);
+        }
+        for (final String extension : FileExtensions.VCF_LIST) {
+            if (name.endsWith(extension)) {
+                return new VariantDensityCostModel(costFile);
+            }
+        }
+        return new CoverageTrackCostModel(costFile);
+    }
+}
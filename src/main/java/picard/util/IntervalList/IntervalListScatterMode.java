@@ -76,7 +76,17 @@ public enum IntervalListScatterMode implements CommandLineParser.ClpEnum {
      */
     INTERVAL_COUNT(IntervalListScattererByIntervalCount::new, "Scatter the interval list into similarly sized interval lists " +
             "(by interval count, not by base count). " +
-            "Resulting interval lists will contain similar number of intervals.");
+            "Resulting interval lists will contain similar number of intervals."),
+
+    /**
+     * A scatter that balances the predicted cost of each interval list, using the longest-processing-time heuristic of
+     * {@link IntervalListScattererByCost}.  No interval is subdivided, and the intervals of an interval list need not be
+     * contiguous.  The cost of an interval is its base count unless a cost input, such as a coverage track, a VCF or an
+     * indexed BAM, is given to IntervalListTools.
+     */
+    COST_BALANCED(IntervalListScattererByCost::new, "Scatter the interval list into interval lists of similar predicted cost, " +
+            "without breaking up intervals. The cost of an interval is taken from SCATTER_COST_INPUT if given, otherwise it is the " +
+            "base count. Intervals are packed greedily, most costly first, so the intervals of each list need not be contiguous.");
 
     private final Supplier<IntervalListScatterer> scattererSupplier;
 
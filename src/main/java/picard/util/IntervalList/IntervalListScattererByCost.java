@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.util.IntervalList;
+
+import htsjdk.samtools.util.CollectionUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Scatters an {@link IntervalList} into lists of similar predicted cost, according to an {@link IntervalCostModel}, so
+ * that the slowest of the scattered jobs finishes as early as possible.  Intervals are not subdivided.
+ * <p/>
+ * The intervals are packed with the longest-processing-time heuristic: in order of decreasing cost, each interval is
+ * added to the list with the least cost so far.  This takes O(n log n) time for n intervals, and the most costly list
+ * is within 4/3 of the best possible.  Unlike the other scatterers, the intervals of a list need not be contiguous;
+ * each list is sorted, and the lists are ordered by their first interval.  Ties in cost are broken by base count so that
+ * intervals with no predicted cost are still spread out.
+ * <p/>
+ * When driven interval by interval by {@link IntervalListScatter}, whole intervals are instead packed in genomic order,
+ * as by {@link IntervalListScattererWithoutSubdivision}, with the predicted cost as their weight.
+ */
+public class IntervalListScattererByCost implements IntervalListScatterer {
+
+    private final IntervalCostModel costModel;
+
+    /** Balances the base count of the lists, packing whole intervals. */
+    public IntervalListScattererByCost() {
+        this(Interval::length);
+    }
+
+    public IntervalListScattererByCost(final IntervalCostModel costModel) {
+        this.costModel = costModel;
+    }
+
+    @Override
+    public List<IntervalList> scatter(final IntervalList inputList, final int scatterCount) {
+        if (scatterCount < 1) {
+            throw new IllegalArgumentException("scatterCount < 1");
+        }
+        final IntervalList sorted = preprocessIntervalList(inputList);
+        final List<Interval> intervals = sorted.getIntervals();
+        final double[] costs = new double[intervals.size()];
+        for (int i = 0; i < costs.length; ++i) {
+            costs[i] = costModel.cost(intervals.get(i));
+        }
+
+        // Most costly first; the sort is stable, so ties stay in genomic order.
+        final Integer[] order = new Integer[costs.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Double.compare(costs[b], costs[a]));
+
+        final int numShards = Math.min(scatterCount, intervals.size());
+        final PriorityQueue<Shard> shards = new PriorityQueue<>(Math.max(1, numShards), Comparator
+                .comparingDouble((Shard shard) -> shard.cost)
+                .thenComparingLong(shard -> shard.bases)
+                .thenComparingInt(shard -> shard.index));
+        for (int i = 0; i < numShards; ++i) {
+            shards.add(new Shard(i));
+        }
+        for (final int i : order) {
+            final Shard shard = shards.poll();
+            shard.add(i, costs[i], intervals.get(i).length());
+            shards.add(shard);
+        }
+
+        final List<Shard> packed = new ArrayList<>(shards);
+        packed.forEach(shard -> shard.members.sort(null));
+        packed.sort(Comparator.comparingInt(shard -> shard.members.get(0)));
+
+        final List<IntervalList> scattered = new ArrayList<>(packed.size());
+        for (final Shard shard : packed) {
+            final IntervalList list = new IntervalList(sorted.getHeader());
+            shard.members.forEach(i -> list.add(intervals.get(i)));
+            scattered.add(list);
+        }
+        return scattered;
+    }
+
+    @Override
+    public long intervalWeight(final Interval interval) {
+        return Math.round(costModel.cost(interval));
+    }
+
+    @Override
+    public long listWeight(final IntervalList intervalList) {
+        return Math.round(costModel.cost(intervalList));
+    }
+
+    /** Adds the whole interval to the current list if it stays within the ideal weight, or if the list is empty. */
+    @Override
+    public List<Interval> takeSome(final Interval interval, final long idealSplitWeight, final long currentSize, final double projectSizeOfRemaining) {
+        if (currentSize == 0 || currentSize + intervalWeight(interval) <= idealSplitWeight) {
+            return CollectionUtil.makeList(interval, null);
+        } else {
+            return CollectionUtil.makeList(null, interval);
+        }
+    }
+
+    @Override
+    public int deduceIdealSplitWeight(final IntervalList intervalList, final int nCount) {
+        final long splitWeight = Math.floorDiv(listWeight(intervalList), nCount);
+        final long costliestIntervalWeight = intervalList.getIntervals().stream()
+                .mapToLong(this::intervalWeight)
+                .max()
+                .orElse(1);
+
+        // There is no purpose to splitting with more granularity than the costliest interval
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.max(costliestIntervalWeight, splitWeight)));
+    }
+
+    private static class Shard {
+        final int index;
+        final List<Integer> members = new ArrayList<>();
+        double cost = 0;
+        long bases = 0;
+
+        Shard(final int index) {
+            this.index = index;
+        }
+
+        void add(final int interval, final double intervalCost, final long intervalBases) {
+            members.add(interval);
+            cost += intervalCost;
+            bases += intervalBases;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.util.IntervalList;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.Interval;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link IntervalCostModel} that takes the cost of an interval to be the number of records of a VCF that start in it,
+ * for work, such as joint genotyping, whose time depends on variant density rather than on the number of bases.
+ * <p/>
+ * The start positions are read once into a sorted array per contig, so the cost of an interval takes two binary searches.
+ */
+public class VariantDensityCostModel implements IntervalCostModel {
+
+    private final Map<String, int[]> startsByContig = new HashMap<>();
+
+    public VariantDensityCostModel(final File vcf) {
+        final Map<String, int[]> buffers = new HashMap<>();
+        final Map<String, Integer> sizes = new HashMap<>();
+        try (final VCFFileReader reader = new VCFFileReader(vcf, false);
+             final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+            while (iterator.hasNext()) {
+                final VariantContext variant = iterator.next();
+                final String contig = variant.getContig();
+                final int size = sizes.getOrDefault(contig, 0);
+                int[] starts = buffers.computeIfAbsent(contig, k -> new int[1024]);
+                if (size == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * size);
+                    buffers.put(contig, starts);
+                }
+                starts[size] = variant.getStart();
+                sizes.put(contig, size + 1);
+            }
+        }
+        buffers.forEach((contig, starts) -> {
+            final int[] trimmed = Arrays.copyOf(starts, sizes.get(contig));
+            // A VCF need not be sorted to be used as a cost input.
+            Arrays.sort(trimmed);
+            startsByContig.put(contig, trimmed);
+        });
+    }
+
+    @Override
+    public double cost(final Interval interval) {
+        final int[] starts = startsByContig.get(interval.getContig());
+        if (starts == null) return 0;
+        return countBefore(starts, interval.getEnd() + 1) - countBefore(starts, interval.getStart());
+    }
+
+    /** The number of starts less than position. */
+    private static int countBefore(final int[] starts, final int position) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
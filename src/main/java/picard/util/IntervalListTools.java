@@ -27,6 +27,8 @@ package picard.util;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMProgramRecord;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.CollectionUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Interval;
@@ -41,9 +43,10 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.IntervalsManipulationProgramGroup;
-import picard.util.IntervalList.IntervalListScatter;
+import picard.util.IntervalList.IntervalCostModel;
 import picard.util.IntervalList.IntervalListScatterMode;
 import picard.util.IntervalList.IntervalListScatterer;
+import picard.util.IntervalList.IntervalListScattererByCost;
 
 import java.io.File;
 import java.io.IOException;
@@ -73,7 +76,9 @@ import java.util.function.BinaryOperator;
  * INFO annotation (if present) to determine the extent of the interval.
  * <p>
  * {@link IntervalListTools} can also "scatter" the resulting interval-list into many interval-files. This can be useful
- * for creating multiple interval lists for scattering an analysis over.
+ * for creating multiple interval lists for scattering an analysis over. With SUBDIVISION_MODE=COST_BALANCED and a
+ * SCATTER_COST_INPUT, such as a coverage track, the interval-files are balanced by the predicted cost of processing them
+ * rather than by their base count.
  * <p>
  * <h3>Details</h3>
  * The IntervalList file format is designed to help the users avoid mixing references when supplying intervals and
@@ -165,7 +170,9 @@ public class IntervalListTools extends CommandLineProgram {
                     "INFO annotation (if present) to determine the extent of the interval. " +
                     "\n" +
                     "IntervalListTools can also \"scatter\" the resulting interval-list into many interval-files. This can be useful " +
-                    "for creating multiple interval lists for scattering an analysis over.\n" +
+                    "for creating multiple interval lists for scattering an analysis over. With SUBDIVISION_MODE=COST_BALANCED and " +
+                    "a SCATTER_COST_INPUT, such as a coverage track, the interval-files are balanced by the predicted cost of " +
+                    "processing them rather than by their base count.\n" +
                     "\n" +
                     " <h3>Details</h3> " +
                     "The IntervalList file format is designed to help the users avoid mixing references when supplying intervals and " +
@@ -281,6 +288,18 @@ public class IntervalListTools extends CommandLineProgram {
     @Argument(shortName = "M", doc = "The mode used to scatter the interval list.")
     public IntervalListScatterMode SUBDIVISION_MODE = IntervalListScatterMode.INTERVAL_SUBDIVISION;
 
+    @Argument(doc = "The cost of processing each interval, for SUBDIVISION_MODE=COST_BALANCED. Either a coverage track of " +
+            "tab-separated contig, 0-based start, end and value lines (e.g. a bedGraph of depth), where the cost of an interval is " +
+            "the sum of the values of its bases; a VCF, where it is the number of variants starting in the interval; or an indexed " +
+            "BAM, where it is the compressed size of the reads the index maps to the interval. SCATTER_CONTENT is in the same units.",
+            optional = true)
+    public File SCATTER_COST_INPUT;
+
+    @Argument(doc = "If given, a metrics file with the number of intervals, the base count and the predicted cost of each output " +
+            "interval list. The cost is taken from SCATTER_COST_INPUT if given, otherwise it is the weight used by SUBDIVISION_MODE.",
+            optional = true)
+    public File SCATTER_COST_REPORT;
+
     @Argument(doc = "Produce the inverse list of intervals, that is, the regions in the genome that are <br>not</br> covered " +
             "by any of the input intervals. Will merge abutting intervals first. Output will be sorted.", optional = true)
     public boolean INVERT = false;
@@ -316,6 +335,20 @@ public class IntervalListTools extends CommandLineProgram {
 
     private static final Log LOG = Log.getInstance(IntervalListTools.class);
 
+    /** The predicted cost of one output interval list, written to SCATTER_COST_REPORT. */
+    public static class ScatterCostMetrics extends MetricBase {
+        /** The 1-based index of the interval list, as in its directory name. */
+        public int SCATTER_INDEX;
+        /** The number of intervals in the list. */
+        public long INTERVALS;
+        /** The number of bases in the list. */
+        public long BASES;
+        /** The predicted cost of processing the list. */
+        public double COST;
+        /** COST divided by the mean cost of all the lists; the largest value is the predicted slowdown of the slowest job. */
+        public double RELATIVE_COST;
+    }
+
     public enum Action implements ClpEnum {
 
         CONCAT("The concatenation of all the intervals in all the INPUTs, no sorting or merging of overlapping/abutting " +
@@ -386,6 +419,12 @@ public class IntervalListTools extends CommandLineProgram {
         if (COUNT_OUTPUT != null) {
             IOUtil.assertFileIsWritable(COUNT_OUTPUT);
         }
+        if (SCATTER_COST_INPUT != null) {
+            IOUtil.assertFileIsReadable(SCATTER_COST_INPUT);
+        }
+        if (SCATTER_COST_REPORT != null) {
+            IOUtil.assertFileIsWritable(SCATTER_COST_REPORT);
+        }
 
         // Read in the interval lists and apply any padding
         final IntervalList lists = openIntervalLists(INPUT, ACTION::reduceEach);
@@ -440,8 +479,30 @@ public class IntervalListTools extends CommandLineProgram {
 
         final ScatterSummary resultIntervals;
 
+        try (final IntervalCostModel costModel = SCATTER_COST_INPUT == null ? null : IntervalCostModel.fromFile(SCATTER_COST_INPUT)) {
+            final IntervalListScatterer scatterer = costModel == null ? SUBDIVISION_MODE.make() : new IntervalListScattererByCost(costModel);
+            resultIntervals = scatterAndWrite(output, scatterer, costModel == null ? scatterer::intervalWeight : costModel);
+        }
+
+        LOG.info("Produced " + resultIntervals.intervalCount + " intervals totalling " + resultIntervals.baseCount + " bases.");
+        if (COUNT_OUTPUT != null) {
+            try (final PrintStream countStream = new PrintStream(COUNT_OUTPUT)) {
+                OUTPUT_VALUE.output(resultIntervals.baseCount, resultIntervals.intervalCount, countStream);
+            }
+            catch (final IOException e) {
+                throw new PicardException("There was a problem writing count to " + COUNT_OUTPUT.getAbsolutePath());
+            }
+        } else {
+            OUTPUT_VALUE.output(resultIntervals.baseCount, resultIntervals.intervalCount, System.out);
+        }
+        return 0;
+    }
+
+    private ScatterSummary scatterAndWrite(final IntervalList output, final IntervalListScatterer scatterer, final IntervalCostModel reportCostModel) {
+        final ScatterSummary resultIntervals;
+
         if (SCATTER_CONTENT != null) {
-            final long listSize = SUBDIVISION_MODE.make().listWeight(output);
+            final long listSize = scatterer.listWeight(output);
             SCATTER_COUNT = (int) listSize / SCATTER_CONTENT;
             LOG.info(String.format("Using SCATTER_CONTENT = %d and an interval of size %d, attempting to scatter into %s intervals.", SCATTER_CONTENT, listSize, SCATTER_COUNT));
         }
@@ -450,7 +511,8 @@ public class IntervalListTools extends CommandLineProgram {
 
             IOUtil.assertDirectoryIsWritable(OUTPUT);
 
-            final ScatterSummary scattered = writeScatterIntervals(output);
+            final List<IntervalList> scatter = scatterer.scatter(output, SCATTER_COUNT);
+            final ScatterSummary scattered = writeScatterIntervals(scatter);
             LOG.info(String.format("Wrote %s scatter subdirectories to %s.", scattered.size, OUTPUT));
             if (scattered.size != SCATTER_COUNT) {
                 LOG.warn(String.format(
@@ -461,6 +523,7 @@ public class IntervalListTools extends CommandLineProgram {
                 ));
             }
             resultIntervals = scattered;
+            writeScatterCostReport(scatter, reportCostModel);
 
         } else {
             if (OUTPUT != null) {
@@ -470,20 +533,34 @@ public class IntervalListTools extends CommandLineProgram {
             resultIntervals.size = 1;
             resultIntervals.intervalCount = output.getIntervals().size();
             resultIntervals.baseCount = output.getBaseCount();
+            writeScatterCostReport(Collections.singletonList(output), reportCostModel);
         }
+        return resultIntervals;
+    }
 
-        LOG.info("Produced " + resultIntervals.intervalCount + " intervals totalling " + resultIntervals.baseCount + " bases.");
-        if (COUNT_OUTPUT != null) {
-            try (final PrintStream countStream = new PrintStream(COUNT_OUTPUT)) {
-                OUTPUT_VALUE.output(resultIntervals.baseCount, resultIntervals.intervalCount, countStream);
-            }
-            catch (final IOException e) {
-                throw new PicardException("There was a problem writing count to " + COUNT_OUTPUT.getAbsolutePath());
-            }
-        } else {
-            OUTPUT_VALUE.output(resultIntervals.baseCount, resultIntervals.intervalCount, System.out);
+    private void writeScatterCostReport(final List<IntervalList> scatter, final IntervalCostModel costModel) {
+        if (SCATTER_COST_REPORT == null) return;
+
+        final MetricsFile<ScatterCostMetrics, Integer> metricsFile = getMetricsFile();
+        double totalCost = 0;
+        double maxCost = 0;
+        for (int i = 0; i < scatter.size(); ++i) {
+            final ScatterCostMetrics metrics = new ScatterCostMetrics();
+            metrics.SCATTER_INDEX = i + 1;
+            metrics.INTERVALS = scatter.get(i).size();
+            metrics.BASES = scatter.get(i).getBaseCount();
+            metrics.COST = costModel.cost(scatter.get(i));
+            totalCost += metrics.COST;
+            maxCost = Math.max(maxCost, metrics.COST);
+            metricsFile.addMetric(metrics);
         }
-        return 0;
+        final double meanCost = totalCost / scatter.size();
+        for (final ScatterCostMetrics metrics : metricsFile.getMetrics()) {
+            metrics.RELATIVE_COST = meanCost == 0 ? 0 : metrics.COST / meanCost;
+        }
+        metricsFile.write(SCATTER_COST_REPORT);
+        LOG.info(String.format("Predicted cost of the most costly interval list is %.4g, %.3f times the mean.",
+                maxCost, meanCost == 0 ? 0 : maxCost / meanCost));
     }
 
     private IntervalList openIntervalLists(final List<File> files, BinaryOperator<IntervalList> accumulator ) {
@@ -511,6 +588,10 @@ public class IntervalListTools extends CommandLineProgram {
         if (COUNT_OUTPUT != null && OUTPUT_VALUE == Output.NONE) {
             errorMsgs.add("COUNT_OUTPUT was provided but OUTPUT_VALUE is set to NONE.");
         }
+        if (SCATTER_COST_INPUT != null && SUBDIVISION_MODE != IntervalListScatterMode.COST_BALANCED) {
+            errorMsgs.add("SCATTER_COST_INPUT was provided but SUBDIVISION_MODE is " + SUBDIVISION_MODE + " rather than " +
+                    IntervalListScatterMode.COST_BALANCED + ".");
+        }
 
         return errorMsgs.isEmpty() ? null : errorMsgs.toArray(new String[0]);
     }
@@ -522,15 +603,12 @@ public class IntervalListTools extends CommandLineProgram {
         public long intervalCount;
     }
     /**
-     * Method to scatter an interval list by locus.
+     * Method to write the interval lists of a scatter.
      *
-     * @param list The list of intervals to scatter
-     * @return The scattered intervals, represented as a {@link List} of {@link IntervalList}
+     * @param scatter The scattered intervals, represented as a {@link List} of {@link IntervalList}
+     * @return A summary of the scattered intervals
      */
-    private  ScatterSummary writeScatterIntervals(final IntervalList list) {
-        final IntervalListScatterer scatterer = SUBDIVISION_MODE.make();
-        final IntervalListScatter scatter = new IntervalListScatter(scatterer, list, SCATTER_COUNT);
-
+    private  ScatterSummary writeScatterIntervals(final List<IntervalList> scatter) {
         final DecimalFormat fileNameFormatter = new DecimalFormat("0000");
         int fileIndex = 1;
         final ScatterSummary summary = new ScatterSummary();
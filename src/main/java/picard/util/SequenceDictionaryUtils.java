@@ -25,6 +25,7 @@ package picard.util;
 
 import htsjdk.samtools.SAMSequenceDictionaryCodec;
 import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.FastaSequenceIndexEntry;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
@@ -34,6 +35,7 @@ import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.SortingCollection;
 import htsjdk.samtools.util.StringUtil;
 import picard.PicardException;
+import picard.reference.IndexedFastaChunkReader;
 
 import java.io.BufferedWriter;
 import java.io.DataInputStream;
@@ -46,8 +48,12 @@ import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Class with helper methods for generating and writing SequenceDictionary objects.
@@ -92,12 +98,7 @@ public class SequenceDictionaryUtils {
         private String md5Hash(final byte[] bytes) {
             md5.reset();
             md5.update(bytes);
-            String s = new BigInteger(1, md5.digest()).toString(16);
-            if (s.length() != 32) {
-                final String zeros = "00000000000000000000000000000000";
-                s = zeros.substring(0, 32 - s.length()) + s;
-            }
-            return s;
+            return md5HexString(md5);
         }
 
         /**
@@ -113,13 +114,7 @@ public class SequenceDictionaryUtils {
             }
 
             ret.setAttribute(SAMSequenceRecord.MD5_TAG, md5Hash(bases));
-            if (genomeAssembly != null) {
-                ret.setAttribute(SAMSequenceRecord.ASSEMBLY_TAG, genomeAssembly);
-            }
-            ret.setAttribute(SAMSequenceRecord.URI_TAG, uri);
-            if (species != null) {
-                ret.setAttribute(SAMSequenceRecord.SPECIES_TAG, species);
-            }
+            setOptionalAttributes(ret, genomeAssembly, uri, species);
             return ret;
         }
 
@@ -139,6 +134,130 @@ public class SequenceDictionaryUtils {
         }
     }
 
+    /**
+     * Produces the same SAMSequenceRecords as SamSequenceRecordsIterator, for an uncompressed FASTA with a .fai index,
+     * without loading whole contigs into memory.  The bases of each contig are read from the FASTA in chunks, at the
+     * offsets given by the index, and are upper-cased into an incremental MD5 digest.  Up to numThreads contigs are
+     * hashed at once, each on its own thread, and the records are returned in FASTA order; memory use is bounded by
+     * the chunk size times the number of threads rather than by the length of the largest contig.
+     * <p/>
+     * Names are taken from the index, so are always truncated at whitespace.  The iterator should be closed if it is
+     * not read to the end.
+     */
+    static public class IndexedSamSequenceRecordsIterator implements CloseableIterator<SAMSequenceRecord> {
+        private final IndexedFastaChunkReader reader;
+        private final Iterator<FastaSequenceIndexEntry> entries;
+        private final ExecutorService pool;
+        private final Deque<Future<SAMSequenceRecord>> pending = new ArrayDeque<>();
+        private final int maxPending;
+        private final String genomeAssembly;
+        private final String uri;
+        private final String species;
+        private boolean closed = false;
+
+        public IndexedSamSequenceRecordsIterator(final File referenceSequence, final int numThreads, final String genomeAssembly,
+                                                 final String uri, final String species) {
+            this.genomeAssembly = genomeAssembly;
+            this.uri = uri;
+            this.species = species;
+            this.reader = new IndexedFastaChunkReader(referenceSequence);
+            this.entries = reader.getEntries().iterator();
+
+            // Failures are reported through the futures, in FASTA order, so a plain pool is used.  Its threads are
+            // daemons so that a contig still being hashed when the iterator is closed early cannot hold up exit.
+            this.pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(numThreads, "SequenceDictionaryHasher");
+            // Enough contigs are queued to keep every thread busy while the next record is written.
+            this.maxPending = 2 * numThreads;
+            fillPending();
+        }
+
+        private void fillPending() {
+            while (pending.size() < maxPending && entries.hasNext()) {
+                final FastaSequenceIndexEntry entry = entries.next();
+                pending.add(pool.submit(() -> makeSequenceRecord(entry)));
+            }
+        }
+
+        private SAMSequenceRecord makeSequenceRecord(final FastaSequenceIndexEntry entry) throws IOException {
+            final MessageDigest md5;
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new PicardException("MD5 algorithm not found", e);
+            }
+            reader.readBases(entry, 0, entry.getSize(), (bases, length) -> {
+                for (int i = 0; i < length; i++) {
+                    bases[i] = StringUtil.toUpperCase(bases[i]);
+                }
+                md5.update(bases, 0, length);
+            });
+
+            final SAMSequenceRecord ret = new SAMSequenceRecord(entry.getContig(), (int) entry.getSize());
+            ret.setAttribute(SAMSequenceRecord.MD5_TAG, md5HexString(md5));
+            setOptionalAttributes(ret, genomeAssembly, uri, species);
+            return ret;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public SAMSequenceRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("next() was called when hasNext() was false.");
+            }
+            final SAMSequenceRecord record;
+            try {
+                record = ThreadPoolExecutorUtil.getResult(pending.poll(), "reading " + reader.getFasta());
+            } catch (final RuntimeException e) {
+                close();
+                throw e;
+            }
+            fillPending();
+            return record;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            pending.forEach(future -> future.cancel(true));
+            pending.clear();
+            pool.shutdownNow();
+            reader.close();
+        }
+    }
+
+    /** Returns true if the reference can be read by IndexedSamSequenceRecordsIterator: uncompressed, with a .fai index. */
+    public static boolean canStreamFromIndex(final File referenceSequence) {
+        return IndexedFastaChunkReader.canRead(referenceSequence);
+    }
+
+    private static void setOptionalAttributes(final SAMSequenceRecord record, final String genomeAssembly, final String uri, final String species) {
+        if (genomeAssembly != null) {
+            record.setAttribute(SAMSequenceRecord.ASSEMBLY_TAG, genomeAssembly);
+        }
+        record.setAttribute(SAMSequenceRecord.URI_TAG, uri);
+        if (species != null) {
+            record.setAttribute(SAMSequenceRecord.SPECIES_TAG, species);
+        }
+    }
+
+    private static String md5HexString(final MessageDigest md5) {
+        String s = new BigInteger(1, md5.digest()).toString(16);
+        if (s.length() != 32) {
+            final String zeros = "00000000000000000000000000000000";
+            s = zeros.substring(0, 32 - s.length()) + s;
+        }
+        return s;
+    }
+
     /**
      * Encodes a sequence dictionary
      *
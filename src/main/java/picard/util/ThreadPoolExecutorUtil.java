@@ -1,14 +1,27 @@
 package picard.util;
 
 import htsjdk.samtools.util.Log;
+import picard.PicardException;
 
 import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ThreadPoolExecutorUtil {
     private static final Log log = Log.getInstance(ThreadPoolExecutorUtil.class);
 
+    /**
+     * How a NUM_PROCESSORS argument is interpreted by {@link #getNumThreads(int)}, to follow the tool-specific
+     * description in the doc of the argument.
+     */
+    public static final String NUM_PROCESSORS_DOC = "If NUM_PROCESSORS = 0, the number of cores is automatically set to " +
+            "the number of cores available on the machine. If NUM_PROCESSORS < 0 then the number of cores used will be " +
+            "the number available on the machine less NUM_PROCESSORS.";
+
     public static void awaitThreadPoolTermination(final String executorName, final ThreadPoolExecutor executorService,
                                                   final Duration timeBetweenChecks) {
         try {
@@ -21,4 +34,43 @@ public class ThreadPoolExecutorUtil {
             log.error("Interrupted exception caught: ", e);
         }
     }
+
+    /**
+     * Returns the number of threads requested by a NUM_PROCESSORS argument, as described by {@link #NUM_PROCESSORS_DOC}:
+     * all available cores if it is 0, and that many fewer, but at least one, if it is negative.
+     */
+    public static int getNumThreads(final int numProcessors) {
+        final int available = Runtime.getRuntime().availableProcessors();
+        if (numProcessors == 0) return available;
+        if (numProcessors < 0) return Math.max(1, available + numProcessors);
+        return numProcessors;
+    }
+
+    /**
+     * Creates a fixed-size pool whose threads have the given name.  They are daemons so that tasks left running when
+     * the pool is abandoned on an error cannot hold up exit; callers should still shut the pool down when done.
+     */
+    public static ExecutorService newDaemonFixedThreadPool(final int numThreads, final String threadName) {
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for a task and returns its result.  A RuntimeException thrown by the task is rethrown as is; any other
+     * failure, or an interrupt, is wrapped in a PicardException that names the activity, e.g. "writing out.bam".
+     */
+    public static <T> T getResult(final Future<T> future, final String activity) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while " + activity, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new PicardException("Error " + activity, e.getCause());
+        }
+    }
 }
@@ -62,7 +62,7 @@ public class CollectVariantCallingMetrics extends CommandLineProgram {
             "to write.")
     public File OUTPUT;
 
-    @Argument(doc = "Reference dbSNP file in dbSNP or VCF format.")
+    @Argument(doc = "Reference dbSNP file in dbSNP or VCF format, or a bit set file created from it by CompileDbSnpBitSets.")
     public File DBSNP;
 
     @Argument(shortName = "TI", doc = "Target intervals to restrict analysis to.", optional = true)
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2020 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.vcf;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.PicardException;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.StandardOptionDefinitions;
+import picard.cmdline.programgroups.VariantManipulationProgramGroup;
+import picard.util.DbSnpBitSetUtil;
+
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Compiles a dbSNP VCF into a bit set file that can be used in place of the VCF by the tools that take a dbSNP file.
+ *
+ * <h3>Usage example:</h3>
+ * <pre>
+ *     java -jar picard.jar CompileDbSnpBitSets \
+ *      DBSNP=dbsnp_138.vcf.gz \
+ *      SEQUENCE_DICTIONARY=reference.dict \
+ *      OUTPUT=dbsnp_138.dbsnp_bitsets
+ * </pre>
+ */
+@CommandLineProgramProperties(
+        summary = CompileDbSnpBitSets.USAGE_DETAILS,
+        oneLineSummary = CompileDbSnpBitSets.USAGE_SUMMARY,
+        programGroup = VariantManipulationProgramGroup.class)
+@DocumentedFeature
+public class CompileDbSnpBitSets extends CommandLineProgram {
+    static final String USAGE_SUMMARY = "Compiles a dbSNP VCF into a bit set file that loads without parsing.";
+    static final String USAGE_DETAILS = "Reads a dbSNP VCF once and writes, for every contig of the sequence dictionary " +
+            "that has a dbSNP record, bit sets of the positions covered by SNPs, by indels and by any variant. The output " +
+            "can be given wherever CollectVariantCallingMetrics, CollectArraysVariantCallingMetrics, CollectOxoGMetrics or " +
+            "CollectSequencingArtifactMetrics take a dbSNP file; it is memory-mapped rather than parsed, so it loads " +
+            "immediately and its pages are shared by concurrent processes on the same machine. The file can only be used " +
+            "with data on the same sequence dictionary. When target intervals are given to those tools, all compiled " +
+            "sites are used rather than only those overlapping the intervals." +
+            "<h4>Usage example:</h4>" +
+            "<pre>" +
+            "java -jar picard.jar CompileDbSnpBitSets \\ <br />" +
+            "      DBSNP=dbsnp_138.vcf.gz \\ <br />" +
+            "      SEQUENCE_DICTIONARY=reference.dict \\ <br />" +
+            "      OUTPUT=dbsnp_138" + DbSnpBitSetUtil.BIT_SET_FILE_EXTENSION +
+            "</pre>";
+
+    @Argument(doc = "The dbSNP file in VCF format.")
+    public File DBSNP;
+
+    @Argument(shortName = StandardOptionDefinitions.SEQUENCE_DICTIONARY_SHORT_NAME, optional = true,
+            doc = "The sequence dictionary the bit sets are keyed to. If not given, the dictionary in the dbSNP VCF header is used.")
+    public File SEQUENCE_DICTIONARY;
+
+    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The bit set file to write.")
+    public File OUTPUT;
+
+    private final Log log = Log.getInstance(CompileDbSnpBitSets.class);
+
+    @Override
+    protected int doWork() {
+        IOUtil.assertFileIsReadable(DBSNP);
+        if (SEQUENCE_DICTIONARY != null) IOUtil.assertFileIsReadable(SEQUENCE_DICTIONARY);
+        IOUtil.assertFileIsWritable(OUTPUT);
+
+        final SAMSequenceDictionary sequenceDictionary =
+                SAMSequenceDictionaryExtractor.extractDictionary(SEQUENCE_DICTIONARY == null ? DBSNP.toPath() : SEQUENCE_DICTIONARY.toPath());
+        if (sequenceDictionary == null || sequenceDictionary.isEmpty()) {
+            throw new PicardException("A sequence dictionary is required, either in the dbSNP VCF header or as SEQUENCE_DICTIONARY.");
+        }
+
+        log.info("Compiling dbSNP file " + DBSNP + " to " + OUTPUT);
+        DbSnpBitSetUtil.writeBitSetFile(DBSNP, sequenceDictionary, OUTPUT, Optional.of(log));
+        return 0;
+    }
+}
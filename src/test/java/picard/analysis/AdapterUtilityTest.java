@@ -5,6 +5,10 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 public class AdapterUtilityTest {
     private static final AdapterUtility adapterUtility = new AdapterUtility(AdapterUtility.DEFAULT_ADAPTER_SEQUENCE);
 
@@ -65,4 +69,58 @@ public class AdapterUtilityTest {
     public void testAdapterReadsRevComp(final String readBases, final boolean isAdapter) {
         Assert.assertEquals(adapterUtility.isAdapterSequence(SequenceUtil.reverseComplement(readBases).getBytes(), true), isAdapter);
     }
-}
\ No newline at end of file
+
+    /** The first 16 bases of the read, in the orientation the machine read them, against every adapter kmer. */
+    private static boolean matchesAnyKmerBaseByBase(final List<String> adapters, final byte[] read, final boolean revCompRead) {
+        final String start = revCompRead ? SequenceUtil.reverseComplement(new String(read, read.length - 16, 16)) : new String(read, 0, 16);
+        for (final String adapter : adapters) {
+            for (int i = 0; i + 16 <= adapter.length(); ++i) {
+                for (final String kmer : new String[]{adapter.substring(i, i + 16), SequenceUtil.reverseComplement(adapter.substring(i, i + 16))}) {
+                    int errors = 0;
+                    for (int j = 0; j < 16; ++j) {
+                        if (!SequenceUtil.basesEqual((byte) start.charAt(j), (byte) Character.toUpperCase(kmer.charAt(j)))) ++errors;
+                    }
+                    if (errors <= 1 && kmer.toUpperCase().chars().filter(c -> c == 'N').count() <= 1) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testRandomReadsMatchBaseByBaseComparison() {
+        final List<String> adapters = Arrays.asList(
+                AdapterUtility.DEFAULT_ADAPTER_SEQUENCE.get(0),
+                AdapterUtility.DEFAULT_ADAPTER_SEQUENCE.get(3),
+                "ACGTNACGTTGCAAGGCTTACGGATCNNGATTACA",
+                "ttgacNgatcgatcggatcaactgga");
+        final AdapterUtility utility = new AdapterUtility(adapters);
+        final Random random = new Random(17);
+        final String bases = "ACGTacgtN";
+
+        int numAdapterReads = 0;
+        for (int n = 0; n < 20000; ++n) {
+            final String adapter = adapters.get(random.nextInt(adapters.size()));
+            final int offset = random.nextInt(adapter.length() - 16 + 1);
+            final char[] read = new char[16 + random.nextInt(10)];
+            for (int i = 0; i < read.length; ++i) {
+                read[i] = i < 16 && random.nextBoolean() ? adapter.charAt(offset + i) : bases.charAt(random.nextInt(bases.length() - 1));
+            }
+            // Derive most reads from an adapter with up to three changes, some of them no-calls.
+            if (random.nextInt(4) != 0) {
+                for (int i = 0; i < 16; ++i) read[i] = adapter.charAt(offset + i);
+                for (int changes = random.nextInt(4); changes > 0; --changes) {
+                    read[random.nextInt(16)] = bases.charAt(random.nextInt(bases.length()));
+                }
+            }
+
+            final byte[] readBases = new String(read).getBytes();
+            final boolean expected = matchesAnyKmerBaseByBase(adapters, readBases, false);
+            Assert.assertEquals(utility.isAdapterSequence(readBases), expected, new String(read));
+            final byte[] revComp = SequenceUtil.reverseComplement(new String(read)).getBytes();
+            Assert.assertEquals(utility.isAdapterSequence(revComp, true), expected, new String(read));
+            if (expected) ++numAdapterReads;
+        }
+        Assert.assertTrue(numAdapterReads > 1000);
+    }
+}
@@ -30,11 +30,13 @@ import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.metrics.MetricBase;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.SAMException;
 import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
 import org.testng.Assert;
 import org.testng.annotations.BeforeTest;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
 import picard.sam.SortSam;
@@ -45,7 +47,9 @@ import static picard.analysis.GcBiasMetricsCollector.PerUnitGcBiasMetricsCollect
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -251,6 +255,51 @@ public class CollectGcBiasMetricsTest extends CommandLineProgramTest {
         }
     }
 
+    /////////////////////////////////////////////////////////////////////////////
+    // The metrics must be the same whether the GC of each window is computed on the fly or looked up in a
+    // GC window table, both when the table is first written and when an existing table is memory-mapped.
+    /////////////////////////////////////////////////////////////////////////////
+    @Test
+    public void runGcWindowTableComparisonTest() throws IOException {
+        final File table = File.createTempFile("test", GcWindowTable.FILE_EXTENSION);
+        Assert.assertTrue(table.delete());
+        table.deleteOnExit();
+
+        final List<File> detailsOutfiles = new ArrayList<>();
+        final List<File> summaryOutfiles = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            final File detailsOutfile = File.createTempFile("test", ".gc_bias_detail_metrics");
+            final File summaryOutfile = File.createTempFile("test", ".gc_bias_summary_metrics");
+            detailsOutfile.deleteOnExit();
+            summaryOutfile.deleteOnExit();
+            detailsOutfiles.add(detailsOutfile);
+            summaryOutfiles.add(summaryOutfile);
+            if (i == 0) {
+                runGcBias(tempSamFileAllChr, REFERENCE_FILE_1, summaryOutfile, detailsOutfile, true);
+            } else {
+                runGcBias(tempSamFileAllChr, REFERENCE_FILE_1, summaryOutfile, detailsOutfile, true,
+                        "USE_GC_WINDOW_TABLE=true", "GC_WINDOW_TABLE=" + table.getAbsolutePath());
+                Assert.assertTrue(table.exists());
+            }
+        }
+
+        final List<GcBiasDetailMetrics> expectedDetails = readMetrics(detailsOutfiles.get(0));
+        final List<GcBiasSummaryMetrics> expectedSummaries = readMetrics(summaryOutfiles.get(0));
+        Assert.assertFalse(expectedDetails.isEmpty());
+        for (int i = 1; i < 3; ++i) {
+            Assert.assertEquals(readMetrics(detailsOutfiles.get(i)), expectedDetails);
+            Assert.assertEquals(readMetrics(summaryOutfiles.get(i)), expectedSummaries);
+        }
+    }
+
+    private static <T extends MetricBase> List<T> readMetrics(final File file) throws IOException {
+        final MetricsFile<T, Comparable<?>> metricsFile = new MetricsFile<>();
+        try (final FileReader reader = new FileReader(file)) {
+            metricsFile.read(reader);
+        }
+        return metricsFile.getMetrics();
+    }
+
     /////////////////////////////////////////////////////////////////////////////
     // Writes the setBuilders to a SAMFileWriter and sorts the sam.
     // Takes in a list of SAMRecordSetBuilders because of the multi-level collection: setBuilders cannot take in more than one read group
@@ -285,7 +334,7 @@ public class CollectGcBiasMetricsTest extends CommandLineProgramTest {
     // Runs CollectGcBias with input Sam file and outputs details and summary files for truth assertion.
     /////////////////////////////////////////////////////////////////////////////
     public void runGcBias (final File input, final String referenceFile, final File summaryOutfile, final File detailsOutfile,
-                           final boolean nonDups) throws IOException {
+                           final boolean nonDups, final String... extraArgs) throws IOException {
         final File pdf = File.createTempFile("test", ".pdf");
         pdf.deleteOnExit();
 
@@ -309,7 +358,9 @@ public class CollectGcBiasMetricsTest extends CommandLineProgramTest {
                 "ASSUME_SORTED=" + assumeSorted,
                 "ALSO_IGNORE_DUPLICATES=" + nonDups
         };
-        runPicardCommandLine(args);
+        final List<String> allArgs = new ArrayList<>(Arrays.asList(args));
+        allArgs.addAll(Arrays.asList(extraArgs));
+        runPicardCommandLine(allArgs);
     }
 
     /**
@@ -356,11 +407,23 @@ public class CollectGcBiasMetricsTest extends CommandLineProgramTest {
     }
 
     /**
-     * If SAM/BAM file with '*' in SEQ field omit this read.
+     * If SAM/BAM file with '*' in SEQ field omit this read, also once more reads than are warned about have been seen.
      */
-    @Test
-    public void runCheckingNoSEQTest() throws IOException {
-        final File input = new File("testdata/picard/metrics/chrM_NO_SEQ.sam");
+    @Test(dataProvider = "noSeqCopies")
+    public void runCheckingNoSEQTest(final int noSeqCopies) throws IOException {
+        final File input = File.createTempFile("chrM_NO_SEQ", ".sam");
+        input.deleteOnExit();
+        final List<String> lines = new ArrayList<>();
+        for (final String line : Files.readAllLines(new File("testdata/picard/metrics/chrM_NO_SEQ.sam").toPath())) {
+            if (line.split("\t").length > 9 && line.split("\t")[9].equals("*")) {
+                for (int i = 0; i < noSeqCopies; i++) {
+                    lines.add(i == 0 ? line : line.replaceFirst("\t", "_" + i + "\t"));
+                }
+            } else {
+                lines.add(line);
+            }
+        }
+        Files.write(input.toPath(), lines);
         final File summaryOutfile = File.createTempFile("test", ".gc_bias.summary_metrics");
         final File detailsOutfile = File.createTempFile("test", ".gc_bias.detail_metrics");
         summaryOutfile.deleteOnExit();
@@ -386,6 +449,11 @@ public class CollectGcBiasMetricsTest extends CommandLineProgramTest {
         }
     }
 
+    @DataProvider(name = "noSeqCopies")
+    public Object[][] noSeqCopies() {
+        return new Object[][]{{1}, {150}};
+    }
+
     /////////////////////////////////////////////////////////////////////////////
     //Used to generate the Sam Record Sets with SamRecordSetBuilder.addPair().
     //testNumber 1: runGcBiasMultiLevelTest, generates records aligning to chrM and chrO
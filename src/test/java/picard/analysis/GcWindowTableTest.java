@@ -0,0 +1,68 @@
+package picard.analysis;
+
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.StringUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class GcWindowTableTest {
+    private static final File REFERENCE = new File("testdata/picard/metrics/chrMNO.reference.fasta");
+    private static final int BINS = 101;
+
+    @DataProvider
+    public Object[][] windowSizes() {
+        return new Object[][]{{50}, {100}, {1000}};
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testTableMatchesGcBiasUtils(final int windowSize) throws IOException {
+        final File tableFile = File.createTempFile("GcWindowTableTest", GcWindowTable.FILE_EXTENSION);
+        tableFile.deleteOnExit();
+        Assert.assertTrue(tableFile.delete());
+
+        final GcWindowTable written = GcWindowTable.loadOrCreate(REFERENCE, windowSize, tableFile);
+        Assert.assertTrue(tableFile.exists());
+        final GcWindowTable mapped = GcWindowTable.loadOrCreate(REFERENCE, windowSize, tableFile);
+
+        for (final GcWindowTable table : new GcWindowTable[]{GcWindowTable.compute(REFERENCE, windowSize), written, mapped}) {
+            Assert.assertEquals(table.getWindowSize(), windowSize);
+            Assert.assertEquals(table.getWindowsByGc(), GcBiasUtils.calculateRefWindowsByGc(BINS, REFERENCE, windowSize));
+
+            final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(REFERENCE);
+            ReferenceSequence ref;
+            int numContigs = 0;
+            while ((ref = refFile.nextSequence()) != null) {
+                final byte[] bases = ref.getBases();
+                StringUtil.toUpperCase(bases);
+                final byte[] expected = GcBiasUtils.calculateAllGcs(bases, bases.length - windowSize, windowSize);
+                final int contig = table.getContigIndex(ref.getName());
+                Assert.assertEquals(contig, numContigs++);
+                for (int pos = 0; pos < expected.length; ++pos) {
+                    Assert.assertEquals(table.getGc(contig, pos), expected[pos]);
+                }
+            }
+            refFile.close();
+            Assert.assertEquals(table.getNumContigs(), numContigs);
+            Assert.assertEquals(table.getContigIndex("noSuchContig"), -1);
+        }
+    }
+
+    @Test
+    public void testTableIsRebuiltForDifferentWindowSize() throws IOException {
+        final File tableFile = File.createTempFile("GcWindowTableTest", GcWindowTable.FILE_EXTENSION);
+        tableFile.deleteOnExit();
+        Assert.assertTrue(tableFile.delete());
+
+        GcWindowTable.loadOrCreate(REFERENCE, 100, tableFile);
+        Assert.assertNull(GcWindowTable.load(tableFile, REFERENCE, 50));
+        final GcWindowTable rebuilt = GcWindowTable.loadOrCreate(REFERENCE, 50, tableFile);
+        Assert.assertEquals(rebuilt.getWindowSize(), 50);
+        Assert.assertNotNull(GcWindowTable.load(tableFile, REFERENCE, 50));
+    }
+}
@@ -26,6 +26,7 @@ package picard.analysis;
 
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.Histogram;
+import org.apache.commons.math3.distribution.BinomialDistribution;
 import org.apache.commons.math3.util.CombinatoricsUtils;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -398,6 +399,114 @@ public class TheoreticalSensitivityTest {
         }
     }
 
+    @Test
+    public void testExactSensitivityWithConstantQuality() {
+        // With every base at Q30 the sum of m alt qualities is exactly 30 * m, so the sensitivity is the probability
+        // of an alt depth that isCalled() accepts.
+        // normalizeHistogram() expects a bin for every quality below the highest.
+        final Histogram<Integer> qualityHistogram = new Histogram<>();
+        IntStream.range(0, 30).forEach(q -> qualityHistogram.increment(q, 0));
+        qualityHistogram.increment(30, 1000);
+        final double alleleFraction = 0.2;
+        final double logOddsThreshold = 6.2;
+
+        for (final int depth : new int[]{0, 1, 10, 30, 100}) {
+            final BinomialDistribution altDepthDistribution = new BinomialDistribution(null, depth, alleleFraction);
+            double expected = 0;
+            for (int altDepth = 0; altDepth <= depth; altDepth++) {
+                if (TheoreticalSensitivity.isCalled(depth, altDepth, 30 * altDepth, alleleFraction, logOddsThreshold)) {
+                    expected += altDepthDistribution.probability(altDepth);
+                }
+            }
+            Assert.assertEquals(TheoreticalSensitivity.exactSensitivityAtConstantDepth(depth, qualityHistogram, logOddsThreshold, alleleFraction), expected, 1e-12);
+        }
+    }
+
+    @Test(dataProvider = "TheoreticalSensitivityConstantDepthDataProvider")
+    public void testExactSensitivityAtConstantDepth(final double expected, final File metricsFile, final double alleleFraction, final int depth, final int sampleSize, final double tolerance) throws Exception {
+        final MetricsFile<?, Integer> metrics = new MetricsFile<>();
+        try (final FileReader metricsFileReader = new FileReader(metricsFile)) {
+            metrics.read(metricsFileReader);
+        }
+        final Histogram<Integer> qualityHistogram = metrics.getAllHistograms().get(1);
+
+        Assert.assertEquals(TheoreticalSensitivity.exactSensitivityAtConstantDepth(depth, qualityHistogram, 3, alleleFraction), expected, tolerance);
+    }
+
+    @Test(dataProvider = "TheoreticalSensitivityDataProvider")
+    public void testExactSensitivityMatchesSampled(final double expected, final File metricsFile, final double alleleFraction, final int sampleSize) throws Exception {
+        final MetricsFile<?, Integer> metrics = new MetricsFile<>();
+        try (final FileReader metricsFileReader = new FileReader(metricsFile)) {
+            metrics.read(metricsFileReader);
+        }
+        final List<Histogram<Integer>> histograms = metrics.getAllHistograms();
+        final Histogram<Integer> depthHistogram = histograms.get(0);
+        final Histogram<Integer> qualityHistogram = histograms.get(1);
+
+        // A larger sample than the data provider's, so that the sampled value is within the tolerance of the exact one.
+        final double sampled = TheoreticalSensitivity.theoreticalSensitivity(depthHistogram, qualityHistogram, 10000, 3, alleleFraction);
+        final double exact = TheoreticalSensitivity.exactTheoreticalSensitivity(depthHistogram, qualityHistogram, 3, alleleFraction);
+
+        Assert.assertEquals(exact, sampled, 0.02);
+        Assert.assertEquals(exact, expected, 0.02);
+    }
+
+    @Test
+    public void testCalculateSensitivitiesIsReproducible() throws Exception {
+        final File metricsFile = new File(TEST_DIR, "test_Solexa-332667.wgs_metrics");
+        final MetricsFile<?, Integer> metrics = new MetricsFile<>();
+        try (final FileReader metricsFileReader = new FileReader(metricsFile)) {
+            metrics.read(metricsFileReader);
+        }
+        final List<Histogram<Integer>> histograms = metrics.getAllHistograms();
+        final List<Double> alleleFractions = Arrays.asList(0.05, 0.1, 0.3, 0.5);
+
+        // The depths and allele fractions are simulated in parallel; each must match a run of its own.
+        final List<TheoreticalSensitivityMetrics> results = TheoreticalSensitivity.calculateSensitivities(500, histograms.get(0), histograms.get(1), alleleFractions, false, 4);
+        Assert.assertEquals(results.size(), alleleFractions.size());
+        for (int i = 0; i < alleleFractions.size(); i++) {
+            Assert.assertEquals(results.get(i).ALLELE_FRACTION, alleleFractions.get(i));
+            Assert.assertEquals(results.get(i).THEORETICAL_SENSITIVITY,
+                    TheoreticalSensitivity.theoreticalSensitivity(histograms.get(0), histograms.get(1), 500, 6.2, alleleFractions.get(i)));
+            Assert.assertEquals(results.get(i).SAMPLE_SIZE, 500);
+        }
+
+        final List<TheoreticalSensitivityMetrics> exactResults = TheoreticalSensitivity.calculateSensitivities(500, histograms.get(0), histograms.get(1), alleleFractions, true, 4);
+        for (int i = 0; i < alleleFractions.size(); i++) {
+            Assert.assertEquals(exactResults.get(i).THEORETICAL_SENSITIVITY, results.get(i).THEORETICAL_SENSITIVITY, 0.03);
+            Assert.assertEquals(exactResults.get(i).SAMPLE_SIZE, 0);
+        }
+
+        // Each depth is simulated with its own random stream.
+        Assert.assertNotEquals(TheoreticalSensitivity.seedForDepth(30), TheoreticalSensitivity.seedForDepth(31));
+    }
+
+    // A benchmark of the exact calculation against the sampler, excluded from the default test run.
+    @Test(groups = "slow")
+    public void benchmarkExactSensitivity() throws Exception {
+        final File metricsFile = new File(TEST_DIR, "test_Solexa-332667.wgs_metrics");
+        final MetricsFile<?, Integer> metrics = new MetricsFile<>();
+        try (final FileReader metricsFileReader = new FileReader(metricsFile)) {
+            metrics.read(metricsFileReader);
+        }
+        final List<Histogram<Integer>> histograms = metrics.getAllHistograms();
+        final List<Double> alleleFractions = Arrays.asList(0.001, 0.005, 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5);
+
+        long start = System.nanoTime();
+        final List<TheoreticalSensitivityMetrics> sampled = TheoreticalSensitivity.calculateSensitivities(10000, histograms.get(0), histograms.get(1), alleleFractions, false, 1);
+        final long sampledMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        final List<TheoreticalSensitivityMetrics> exact = TheoreticalSensitivity.calculateSensitivities(10000, histograms.get(0), histograms.get(1), alleleFractions, true, 1);
+        final long exactMillis = (System.nanoTime() - start) / 1_000_000;
+
+        for (int i = 0; i < alleleFractions.size(); i++) {
+            System.out.println(String.format("Allele fraction %.3f: sampled %.4f, exact %.4f",
+                    alleleFractions.get(i), sampled.get(i).THEORETICAL_SENSITIVITY, exact.get(i).THEORETICAL_SENSITIVITY));
+            Assert.assertEquals(exact.get(i).THEORETICAL_SENSITIVITY, sampled.get(i).THEORETICAL_SENSITIVITY, 0.02);
+        }
+        System.out.println("Sampled (sample size 10000) in " + sampledMillis + " ms, exact in " + exactMillis + " ms");
+    }
+
     @DataProvider(name = "trimDistributionDataProvider")
     public Object[][] trimDistributions() {
         return new Object[][]{
@@ -0,0 +1,109 @@
+package picard.annotation;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class LocusFunctionMapTest {
+    private static final int CONTIG_LENGTH = 20000;
+
+    /** Genes with several overlapping transcripts, some of them non-coding, on two contigs. */
+    private static List<Gene> makeGenes(final Random random) {
+        final List<Gene> genes = new ArrayList<>();
+        for (final String contig : new String[]{"chr1", "chr2"}) {
+            for (int g = 0; g < 15; ++g) {
+                final int geneStart = 1 + random.nextInt(CONTIG_LENGTH - 3000);
+                final Gene gene = new Gene(contig, geneStart, geneStart + 2500, random.nextBoolean(), contig + "_gene" + g);
+                final int numTranscripts = 1 + random.nextInt(4);
+                for (int t = 0; t < numTranscripts; ++t) {
+                    final int numExons = 1 + random.nextInt(5);
+                    final int[] bounds = new int[2 * numExons];
+                    for (int i = 0; i < bounds.length; ++i) bounds[i] = geneStart + random.nextInt(2500);
+                    Arrays.sort(bounds);
+                    // Distinct, ordered exons: make every start greater than the end of the previous exon.
+                    for (int i = 1; i < bounds.length; ++i) bounds[i] = Math.max(bounds[i], bounds[i - 1] + 1);
+
+                    final int txStart = bounds[0];
+                    final int txEnd = bounds[bounds.length - 1];
+                    final boolean coding = random.nextInt(4) != 0;
+                    final int codingStart = coding ? txStart + random.nextInt(txEnd - txStart + 1) : txEnd + 1;
+                    final int codingEnd = coding ? codingStart + random.nextInt(txEnd - codingStart + 1) : txEnd;
+                    final Gene.Transcript transcript = gene.addTranscript("tx" + t, txStart, txEnd, codingStart, codingEnd, numExons);
+                    for (int i = 0; i < numExons; ++i) transcript.addExon(bounds[2 * i], bounds[2 * i + 1]);
+                }
+                genes.add(gene);
+            }
+        }
+        return genes;
+    }
+
+    private static LocusFunction[] assignLocusFunctions(final List<Gene> genes, final String contig) {
+        final LocusFunction[] functions = new LocusFunction[CONTIG_LENGTH];
+        Arrays.fill(functions, LocusFunction.INTERGENIC);
+        for (final Gene gene : genes) {
+            if (!gene.getContig().equals(contig)) continue;
+            for (final Gene.Transcript transcript : gene) {
+                transcript.assignLocusFunctionForRange(1, functions);
+            }
+        }
+        return functions;
+    }
+
+    @Test
+    public void testMapMatchesTranscripts() {
+        final Random random = new Random(42);
+        final List<Gene> genes = makeGenes(random);
+        final LocusFunctionMap map = new LocusFunctionMap(genes);
+
+        for (final String contig : new String[]{"chr1", "chr2"}) {
+            final LocusFunction[] expected = assignLocusFunctions(genes, contig);
+            for (int pos = 1; pos <= CONTIG_LENGTH; ++pos) {
+                Assert.assertEquals(map.getLocusFunction(contig, pos), expected[pos - 1], contig + ":" + pos);
+            }
+
+            // Ranges mostly in coordinate order, with occasional jumps backwards, through a single cursor.
+            final LocusFunctionMap.Cursor cursor = map.newCursor();
+            for (int i = 0; i < 2000; ++i) {
+                final int start = random.nextInt(10) == 0 ? 1 + random.nextInt(CONTIG_LENGTH - 500) : 1 + (i * 9) % (CONTIG_LENGTH - 500);
+                final int length = 1 + random.nextInt(500);
+                final long[] actual = new long[LocusFunction.values().length];
+                cursor.countBases(contig, start, length, actual);
+                final long[] counts = new long[LocusFunction.values().length];
+                for (int pos = start; pos < start + length; ++pos) {
+                    counts[expected[pos - 1].ordinal()]++;
+                }
+                Assert.assertEquals(actual, counts, contig + ":" + start + "+" + length);
+            }
+        }
+
+        final long[] counts = new long[LocusFunction.values().length];
+        map.newCursor().countBases("chrUnknown", 100, 50, counts);
+        Assert.assertEquals(counts[LocusFunction.INTERGENIC.ordinal()], 50);
+        Assert.assertEquals(map.getLocusFunction("chrUnknown", 100), LocusFunction.INTERGENIC);
+    }
+
+    @Test
+    public void testCoverageCountsMatchTranscriptCoordinates() {
+        final Random random = new Random(7);
+        for (final Gene gene : makeGenes(random)) {
+            for (final Gene.Transcript transcript : gene) {
+                for (int i = 0; i < 20; ++i) {
+                    final int start = gene.getStart() - 100 + random.nextInt(2700);
+                    final int end = start + random.nextInt(300);
+                    final int[] actual = new int[transcript.length()];
+                    transcript.addCoverageCounts(start, end, actual);
+                    final int[] expected = new int[transcript.length()];
+                    for (int pos = start; pos < end; ++pos) {
+                        final int txBase = transcript.getTranscriptCoordinate(pos);
+                        if (txBase > 0) expected[txBase - 1]++;
+                    }
+                    Assert.assertEquals(actual, expected);
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package picard.arrays;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
@@ -7,6 +9,7 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.PicardException;
+import picard.arrays.illumina.BinaryIlluminaManifest;
 import picard.arrays.illumina.Build37ExtendedIlluminaManifest;
 import picard.arrays.illumina.Build37ExtendedIlluminaManifestRecord;
 import picard.arrays.illumina.InfiniumGTCFile;
@@ -17,11 +20,14 @@ import picard.pedigree.Sex;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.Set;
 
 public class GtcToVcfTest {
@@ -118,6 +124,88 @@ public class GtcToVcfTest {
         };
     }
 
+    @Test
+    public void testGetCoordinateOrder() throws IOException {
+        final Build37ExtendedIlluminaManifest manifest = new Build37ExtendedIlluminaManifest(TEST_EXTENDED_MANIFEST_FILE);
+        final GtcToVcf.ManifestRecords records = GtcToVcf.getGoodManifestRecords(manifest);
+        Assert.assertTrue(records.size() > 0);
+
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(IntStream.rangeClosed(1, 22)
+                .mapToObj(i -> new SAMSequenceRecord(Integer.toString(i), 250_000_000))
+                .collect(Collectors.toList()));
+        dictionary.addSequence(new SAMSequenceRecord("X", 160_000_000));
+        dictionary.addSequence(new SAMSequenceRecord("Y", 60_000_000));
+        dictionary.addSequence(new SAMSequenceRecord("MT", 17_000));
+
+        final int[] order = GtcToVcf.getCoordinateOrder(records, dictionary);
+        Assert.assertEquals(IntStream.of(order).sorted().toArray(), IntStream.range(0, records.size()).toArray());
+        for (int i = 1; i < order.length; i++) {
+            final Build37ExtendedIlluminaManifestRecord previous = records.get(order[i - 1]);
+            final Build37ExtendedIlluminaManifestRecord current = records.get(order[i]);
+            final int contigCompare = Integer.compare(dictionary.getSequenceIndex(previous.getB37Chr()), dictionary.getSequenceIndex(current.getB37Chr()));
+            Assert.assertTrue(contigCompare < 0 || (contigCompare == 0 && previous.getB37Pos() <= current.getB37Pos()));
+            if (contigCompare == 0 && previous.getB37Pos() == current.getB37Pos()) {
+                Assert.assertTrue(order[i - 1] < order[i]);
+            }
+        }
+
+        // The records of a binary manifest are selected and ordered from its columns, and built on demand.
+        final File binaryFile = File.createTempFile("GtcToVcfTest", BinaryIlluminaManifest.FILE_EXTENSION);
+        binaryFile.deleteOnExit();
+        BinaryIlluminaManifest.write(new Build37ExtendedIlluminaManifest(TEST_EXTENDED_MANIFEST_FILE), binaryFile);
+        final GtcToVcf.ManifestRecords binaryRecords = GtcToVcf.getGoodManifestRecords(new Build37ExtendedIlluminaManifest(binaryFile));
+        Assert.assertEquals(binaryRecords.size(), records.size());
+        Assert.assertEquals(GtcToVcf.getCoordinateOrder(binaryRecords, dictionary), order);
+        for (int i = 0; i < records.size(); i++) {
+            Assert.assertEquals(binaryRecords.get(i).getLine(), records.get(i).getLine());
+            Assert.assertEquals(binaryRecords.get(i).getIndex(), records.get(i).getIndex());
+        }
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testGetCoordinateOrderMissingContig() throws IOException {
+        final Build37ExtendedIlluminaManifest manifest = new Build37ExtendedIlluminaManifest(TEST_EXTENDED_MANIFEST_FILE);
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+        dictionary.addSequence(new SAMSequenceRecord("noSuchContig", 1000));
+        GtcToVcf.getCoordinateOrder(GtcToVcf.getGoodManifestRecords(manifest), dictionary);
+    }
+
+    @Test
+    public void testReadBatchFile() throws IOException {
+        final File batchFile = File.createTempFile("GtcToVcfTest", ".txt");
+        batchFile.deleteOnExit();
+        try (final PrintWriter writer = new PrintWriter(batchFile)) {
+            writer.println("INPUT\tOUTPUT\tSAMPLE_ALIAS\tEXPECTED_GENDER\tGENDER_GTC");
+            writer.println("a.gtc\ta.vcf\tsampleA\tFemale\ta.gender.gtc");
+            writer.println("b.gtc\tb.vcf\tsampleB\t\t");
+        }
+        final List<GtcToVcf.GtcSample> samples = GtcToVcf.readBatchFile(batchFile);
+        Assert.assertEquals(samples.size(), 2);
+
+        Assert.assertEquals(samples.get(0).input, new File("a.gtc"));
+        Assert.assertEquals(samples.get(0).output, new File("a.vcf"));
+        Assert.assertEquals(samples.get(0).sampleAlias, "sampleA");
+        Assert.assertEquals(samples.get(0).expectedGender, "Female");
+        Assert.assertEquals(samples.get(0).genderGtc, new File("a.gender.gtc"));
+        Assert.assertNull(samples.get(0).fingerprintGenotypesVcfFile);
+        Assert.assertEquals(samples.get(0).getChipWellBarcode(), "a");
+
+        Assert.assertEquals(samples.get(1).sampleAlias, "sampleB");
+        Assert.assertNull(samples.get(1).expectedGender);
+        Assert.assertNull(samples.get(1).genderGtc);
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testReadBatchFileMissingColumn() throws IOException {
+        final File batchFile = File.createTempFile("GtcToVcfTest", ".txt");
+        batchFile.deleteOnExit();
+        try (final PrintWriter writer = new PrintWriter(batchFile)) {
+            writer.println("INPUT\tOUTPUT");
+            writer.println("a.gtc\ta.vcf");
+        }
+        GtcToVcf.readBatchFile(batchFile);
+    }
+
     private List<InfiniumGTCRecord> loadInfiniumGTCRecords() throws FileNotFoundException {
         final List<String> lines = IOUtil.slurpLines(TEST_GTC_RECORDS_FILE);
         final List<InfiniumGTCRecord> infiniumGTCRecords = new ArrayList<>();
@@ -0,0 +1,152 @@
+package picard.arrays.illumina;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import picard.PicardException;
+import picard.arrays.CompileIlluminaManifest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class BinaryIlluminaManifestTest {
+    private static final File TEST_DATA_DIR = new File("testdata/picard/arrays/illumina");
+
+    private static File compile(final File manifestFile) throws IOException {
+        final File output = File.createTempFile("BinaryIlluminaManifestTest", BinaryIlluminaManifest.FILE_EXTENSION);
+        output.deleteOnExit();
+        Assert.assertEquals(new CompileIlluminaManifest().instanceMain(new String[]{
+                "INPUT=" + manifestFile.getAbsolutePath(), "OUTPUT=" + output.getAbsolutePath()}), 0);
+        Assert.assertTrue(BinaryIlluminaManifest.isBinaryManifest(output));
+        Assert.assertFalse(BinaryIlluminaManifest.isBinaryManifest(manifestFile));
+        return output;
+    }
+
+    @DataProvider
+    public Object[][] extendedManifests() {
+        return new Object[][]{
+                {"HumanExome-12v1-1_A.extended.csv"},
+                {"HumanExome-12v1-1_A.1.3.extended.csv"},
+                {"MEG_AllofUs_20002558X351448_A2.1.4.extended.csv"}
+        };
+    }
+
+    @Test(dataProvider = "extendedManifests")
+    public void testExtendedManifestMatchesCsv(final String manifestName) throws IOException {
+        final File csv = new File(TEST_DATA_DIR, manifestName);
+        final Build37ExtendedIlluminaManifest fromCsv = new Build37ExtendedIlluminaManifest(csv);
+        final Build37ExtendedIlluminaManifest fromBinary = new Build37ExtendedIlluminaManifest(compile(csv));
+        Assert.assertNull(fromCsv.getBinaryManifest());
+        Assert.assertNotNull(fromBinary.getBinaryManifest());
+
+        Assert.assertEquals(fromBinary.getDescriptorFileName(), fromCsv.getDescriptorFileName());
+        Assert.assertEquals(fromBinary.getDateManufactured(), fromCsv.getDateManufactured());
+        Assert.assertEquals(fromBinary.getAssayFormat(), fromCsv.getAssayFormat());
+        Assert.assertEquals(fromBinary.getLociCount(), fromCsv.getLociCount());
+        Assert.assertEquals(fromBinary.getNumAssays(), fromCsv.getNumAssays());
+        Assert.assertEquals(fromBinary.getExtendedManifestVersion(), fromCsv.getExtendedManifestVersion());
+        Assert.assertEquals(fromBinary.getAssayHeaderNames(), fromCsv.getAssayHeaderNames());
+        Assert.assertEquals(fromBinary.getHeaderContents().size(), fromCsv.getHeaderContents().size());
+        for (int i = 0; i < fromCsv.getHeaderContents().size(); i++) {
+            Assert.assertEquals(fromBinary.getHeaderContents().get(i), fromCsv.getHeaderContents().get(i));
+        }
+
+        final List<Build37ExtendedIlluminaManifestRecord> expected = new ArrayList<>();
+        fromCsv.extendedIterator().forEachRemaining(expected::add);
+        final List<Build37ExtendedIlluminaManifestRecord> actual = new ArrayList<>();
+        fromBinary.extendedIterator().forEachRemaining(actual::add);
+        Assert.assertEquals(actual.size(), expected.size());
+
+        final BinaryIlluminaManifest binary = fromBinary.getBinaryManifest();
+        final int nameColumn = binary.getColumnIndex(IlluminaManifest.NAME_HEADER_NAME);
+        final int mapInfoColumn = binary.getColumnIndex(IlluminaManifest.MAP_INFO_HEADER_NAME);
+        final int chrColumn = binary.getColumnIndex(IlluminaManifest.CHROMOSOME_HEADER_NAME);
+        Assert.assertEquals(binary.getColumnIndex("noSuchColumn"), -1);
+
+        // Compare in reverse order, so the records are accessed randomly.
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            final Build37ExtendedIlluminaManifestRecord csvRecord = expected.get(i);
+            final Build37ExtendedIlluminaManifestRecord binaryRecord = fromBinary.getExtendedRecord(i);
+            Assert.assertEquals(actual.get(i).getLine(), csvRecord.getLine());
+            Assert.assertEquals(binaryRecord.getLine(), csvRecord.getLine());
+            Assert.assertEquals(binaryRecord.getIndex(), csvRecord.getIndex());
+            Assert.assertEquals(binaryRecord.getFlag(), csvRecord.getFlag());
+            Assert.assertEquals(binaryRecord.getB37Chr(), csvRecord.getB37Chr());
+            Assert.assertEquals(binaryRecord.getB37Pos(), csvRecord.getB37Pos());
+            Assert.assertEquals(binaryRecord.getAlleleA(), csvRecord.getAlleleA());
+            Assert.assertEquals(binaryRecord.getAlleleB(), csvRecord.getAlleleB());
+            Assert.assertEquals(fromBinary.isBadRecord(i), csvRecord.isBad().booleanValue());
+            if (!csvRecord.isBad()) {
+                Assert.assertEquals(fromBinary.getB37Chr(i), csvRecord.getB37Chr());
+                Assert.assertEquals(fromBinary.getB37Pos(i), csvRecord.getB37Pos().intValue());
+            }
+
+            Assert.assertEquals(binary.getString(i, nameColumn), csvRecord.getName());
+            Assert.assertEquals(binary.getInt(i, mapInfoColumn), csvRecord.getPosition());
+            for (int j = 0; j < expected.size(); j++) {
+                Assert.assertEquals(binary.getValueId(i, chrColumn) == binary.getValueId(j, chrColumn),
+                        binary.getString(i, chrColumn).equals(binary.getString(j, chrColumn)));
+            }
+        }
+    }
+
+    @Test
+    public void testStandardManifest() throws IOException {
+        final File csv = new File(TEST_DATA_DIR, "HumanExome-12v1-1_A.csv");
+        final Iterator<IlluminaManifestRecord> expected = new IlluminaManifest(csv).iterator();
+        final IlluminaManifest fromBinary = new IlluminaManifest(compile(csv));
+        final Iterator<IlluminaManifestRecord> actual = fromBinary.iterator();
+        int count = 0;
+        while (expected.hasNext()) {
+            Assert.assertTrue(actual.hasNext());
+            final IlluminaManifestRecord expectedRecord = expected.next();
+            Assert.assertEquals(actual.next().getLine(), expectedRecord.getLine());
+            Assert.assertEquals(fromBinary.getRecord(count).getLine(), expectedRecord.getLine());
+            count++;
+        }
+        Assert.assertFalse(actual.hasNext());
+        Assert.assertEquals(count, 4);
+    }
+
+    @Test
+    public void testGetIntRejectsOverflowAndLoneSign() throws IOException {
+        final String[] sourceVersions = {"2147483647", "-2147483648", "9999999999", "-"};
+        final List<String> lines = Files.readAllLines(new File(TEST_DATA_DIR, "HumanExome-12v1-1_A.csv").toPath());
+        final int firstRecord = lines.indexOf("[Assay]") + 2;
+        for (int i = 0; i < sourceVersions.length; i++) {
+            final String[] fields = lines.get(firstRecord + i).split(",", -1);
+            fields[14] = sourceVersions[i];
+            lines.set(firstRecord + i, String.join(",", fields));
+        }
+        final File csv = File.createTempFile("BinaryIlluminaManifestTest", ".csv");
+        csv.deleteOnExit();
+        Files.write(csv.toPath(), lines);
+
+        final BinaryIlluminaManifest binary = BinaryIlluminaManifest.open(compile(csv));
+        final int column = binary.getColumnIndex(IlluminaManifest.SOURCE_VERSION_HEADER_NAME);
+        Assert.assertEquals(binary.getInt(0, column), Integer.MAX_VALUE);
+        Assert.assertEquals(binary.getInt(1, column), Integer.MIN_VALUE);
+        for (int i = 2; i < sourceVersions.length; i++) {
+            try {
+                binary.getInt(i, column);
+                Assert.fail("Expected " + sourceVersions[i] + " not to be parsed as an integer");
+            } catch (final NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testExtendedBinaryManifestIsInvalidIlluminaManifest() throws IOException {
+        new IlluminaManifest(compile(new File(TEST_DATA_DIR, "HumanExome-12v1-1_A.extended.csv")));
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testRandomAccessRequiresBinaryManifest() throws IOException {
+        new Build37ExtendedIlluminaManifest(new File(TEST_DATA_DIR, "HumanExome-12v1-1_A.extended.csv")).getExtendedRecord(0);
+    }
+}
@@ -1,11 +1,22 @@
 package picard.cmdline;
 
+import htsjdk.samtools.util.IOUtil;
 import org.broadinstitute.barclay.argparser.CommandLineArgumentParser;
 import org.broadinstitute.barclay.argparser.CommandLineException;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 public class PicardCommandLineTest {
@@ -81,4 +92,92 @@ public class PicardCommandLineTest {
             });
     }
 
-}
\ No newline at end of file
+    private static final String REGISTRY_TEST_PACKAGE = "picard.cmdline.registrytest";
+
+    /** Compiles a few annotated classes with CommandLineProgramRegistryProcessor into a new directory. */
+    private static File compileRegistryTestPrograms() throws IOException {
+        final File dir = Files.createTempDirectory("PicardCommandLineTest").toFile();
+        final File sourceDir = new File(dir, REGISTRY_TEST_PACKAGE.replace('.', File.separatorChar));
+        Assert.assertTrue(sourceDir.mkdirs());
+        final String header = "package " + REGISTRY_TEST_PACKAGE + ";\n" +
+                "import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;\n" +
+                "import picard.cmdline.programgroups.OtherProgramGroup;\n";
+        final String properties = "@CommandLineProgramProperties(summary = \"test\", oneLineSummary = \"test\", programGroup = OtherProgramGroup.class";
+        final String[][] sources = {
+                {"RegistryTestProgram", properties + ")\npublic class RegistryTestProgram extends picard.cmdline.CommandLineProgram {\n" +
+                        "    protected int doWork() { return 0; }\n" +
+                        "    @CommandLineProgramProperties(summary = \"test\", oneLineSummary = \"test\", programGroup = OtherProgramGroup.class)\n" +
+                        "    public static class NestedRegistryTestProgram extends RegistryTestProgram { }\n}\n"},
+                {"OmittedRegistryTestProgram", properties + ", omitFromCommandLine = true)\npublic class OmittedRegistryTestProgram extends picard.cmdline.CommandLineProgram {\n" +
+                        "    protected int doWork() { return 0; }\n}\n"},
+                {"AbstractRegistryTestProgram", properties + ")\npublic abstract class AbstractRegistryTestProgram extends picard.cmdline.CommandLineProgram { }\n"},
+                {"NotARegistryTestProgram", properties + ")\npublic class NotARegistryTestProgram { }\n"}
+        };
+        final List<String> javacArgs = new ArrayList<>(Arrays.asList(
+                "-d", dir.getAbsolutePath(),
+                "-cp", System.getProperty("java.class.path"),
+                "-processor", CommandLineProgramRegistryProcessor.class.getName()));
+        for (final String[] source : sources) {
+            final File sourceFile = new File(sourceDir, source[0] + ".java");
+            Files.write(sourceFile.toPath(), (header + source[1]).getBytes(StandardCharsets.UTF_8));
+            javacArgs.add(sourceFile.getAbsolutePath());
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new SkipException("No Java compiler is available to compile the test programs.");
+        }
+        Assert.assertEquals(compiler.run(null, null, null, javacArgs.toArray(new String[0])), 0);
+        return dir;
+    }
+
+    @Test
+    public void testProgramRegistry() throws IOException {
+        final File dir = compileRegistryTestPrograms();
+        try {
+            final Map<String, String> expected = new HashMap<>();
+            expected.put("RegistryTestProgram", REGISTRY_TEST_PACKAGE + ".RegistryTestProgram");
+            expected.put("NestedRegistryTestProgram", REGISTRY_TEST_PACKAGE + ".RegistryTestProgram$NestedRegistryTestProgram");
+
+            // Without a parent the registry of the main build, if it has one, is not seen
+            try (final URLClassLoader registryOnly = new URLClassLoader(new URL[]{dir.toURI().toURL()}, null)) {
+                Assert.assertEquals(PicardCommandLine.getRegisteredPrograms(PicardCommandLine.getPackageList(), registryOnly), expected);
+                Assert.assertTrue(PicardCommandLine.getRegisteredPrograms(Collections.singletonList("htsjdk"), registryOnly).isEmpty());
+            }
+
+            final ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+            try (final URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, originalClassLoader)) {
+
+                Thread.currentThread().setContextClassLoader(classLoader);
+                Assert.assertEquals(new PicardCommandLine().instanceMain(new String[]{"NestedRegistryTestProgram"}), 0);
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+        } finally {
+            IOUtil.deleteDirectoryTree(dir);
+        }
+    }
+
+    @Test
+    public void testProgramsAreFoundWithoutRegistry() throws IOException {
+        final File dir = compileRegistryTestPrograms();
+        try {
+            Assert.assertTrue(new File(dir, CommandLineProgramRegistryProcessor.REGISTRY_RESOURCE).delete());
+            try (final URLClassLoader registryOnly = new URLClassLoader(new URL[]{dir.toURI().toURL()}, null)) {
+                Assert.assertTrue(PicardCommandLine.getRegisteredPrograms(PicardCommandLine.getPackageList(), registryOnly).isEmpty());
+            }
+
+            final ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+            try (final URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, originalClassLoader)) {
+
+                // Without a registry the programs are found by scanning the classpath
+                Thread.currentThread().setContextClassLoader(classLoader);
+                Assert.assertEquals(new PicardCommandLine().instanceMain(new String[]{"RegistryTestProgram"}), 0);
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+        } finally {
+            IOUtil.deleteDirectoryTree(dir);
+        }
+    }
+}
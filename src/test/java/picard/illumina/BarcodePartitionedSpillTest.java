@@ -0,0 +1,144 @@
+package picard.illumina;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class BarcodePartitionedSpillTest {
+
+    @DataProvider
+    public Object[][] spillData() {
+        return new Object[][]{
+                // records, barcodes, max records in RAM, pool bytes
+                {0, 3, 10, 1024L},
+                {25, 3, 100, 1024L},
+                {1000, 5, 64, 1024L},
+                {1000, 1, 7, 1024L},
+                // more segments than the pool holds buffers
+                {1000, 4, 10, 2048L},
+        };
+    }
+
+    @Test(dataProvider = "spillData")
+    public void testRecordsAreSortedAndPartitionedByBarcode(final int numRecords, final int numBarcodes,
+                                                             final int maxRecordsInRam, final long poolBytes) {
+        final Map<String, Integer> barcodeIndices = new HashMap<>();
+        for (int i = 0; i < numBarcodes; ++i) {
+            barcodeIndices.put(i == 0 ? null : "BARCODE" + i, i);
+        }
+        final List<String> barcodes = new ArrayList<>(barcodeIndices.keySet());
+
+        final BarcodePartitionedSpill<Integer> spill = new BarcodePartitionedSpill<>("test", barcodeIndices,
+                maxRecordsInRam, new IntegerCodec(), Comparator.naturalOrder(),
+                Collections.singletonList(new File(System.getProperty("java.io.tmpdir"))),
+                new SpillBufferPool(poolBytes, 1024));
+
+        final Map<String, List<Integer>> expected = new HashMap<>();
+        barcodes.forEach(barcode -> expected.put(barcode, new ArrayList<>()));
+        final Random random = new Random(42);
+        for (int i = 0; i < numRecords; ++i) {
+            final String barcode = barcodes.get(random.nextInt(barcodes.size()));
+            final int value = random.nextInt(500);
+            spill.add(barcode, value);
+            expected.get(barcode).add(value);
+        }
+        spill.doneAdding();
+        // the final, partially filled buffer stays in memory
+        Assert.assertEquals(spill.getNumSegments(), numRecords == 0 ? 0 : (numRecords - 1) / maxRecordsInRam);
+
+        for (final String barcode : barcodes) {
+            final List<Integer> actual = new ArrayList<>();
+            try (final CloseableIterator<Integer> it = spill.iterator(barcode)) {
+                it.forEachRemaining(actual::add);
+            }
+            Collections.sort(expected.get(barcode));
+            Assert.assertEquals(actual, expected.get(barcode), "barcode " + barcode);
+        }
+        Assert.assertFalse(spill.iterator("UNKNOWN").hasNext());
+        spill.cleanup();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnexpectedBarcode() {
+        final BarcodePartitionedSpill<Integer> spill = new BarcodePartitionedSpill<>("test",
+                Collections.singletonMap("A", 0), 10, new IntegerCodec(), Comparator.naturalOrder(),
+                Collections.singletonList(new File(System.getProperty("java.io.tmpdir"))),
+                new SpillBufferPool(1024, 1024));
+        spill.add("B", 1);
+    }
+
+    @Test
+    public void testBufferPoolReusesBuffers() {
+        final SpillBufferPool pool = new SpillBufferPool(4096, 1024);
+        Assert.assertEquals(pool.getCapacity(), 4);
+        final byte[][] first = pool.acquire(3);
+        pool.release(first);
+        final byte[][] second = pool.acquire(2);
+        Assert.assertTrue(Arrays.asList(first).contains(second[0]));
+        pool.release(second);
+
+        final byte[][] oversized = pool.acquire(8);
+        Assert.assertEquals(oversized.length, 8);
+        Assert.assertEquals(oversized[0].length, 4096 / 8);
+        pool.release(oversized);
+    }
+
+    private static class IntegerCodec implements SortingCollection.Codec<Integer> {
+        private DataOutputStream out;
+        private DataInputStream in;
+
+        @Override
+        public void setOutputStream(final OutputStream os) {
+            out = new DataOutputStream(os);
+        }
+
+        @Override
+        public void setInputStream(final InputStream is) {
+            in = new DataInputStream(is);
+        }
+
+        @Override
+        public void encode(final Integer val) {
+            try {
+                out.writeInt(val);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        @Override
+        public Integer decode() {
+            try {
+                return in.readInt();
+            } catch (final EOFException e) {
+                return null;
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        @Override
+        public SortingCollection.Codec<Integer> clone() {
+            return new IntegerCodec();
+        }
+    }
+}
@@ -182,6 +182,13 @@ public class IlluminaBasecallsToSamTest extends CommandLineProgramTest {
         runStandardTest(1, jobName, libraryParamsFile, nColumnFields, cigar, baseCallingDir, samDir, tile, false, ClusterDataToSamConverter.PopulateBarcode.ORPHANS_ONLY, false);
     }
 
+    @Test(dataProvider = "multiplexedData")
+    public void testMultiplexedWithSpillSegments(final boolean includeBcInHeader, final ClusterDataToSamConverter.PopulateBarcode populateBarcode,
+                                                 final boolean includeBarcodeQuality, final File testDataDir) throws Exception {
+        runStandardTest(1, "multiplexedBarcode.", "library.params", 1, "25T8B25T", BASECALLS_DIR, testDataDir, null, includeBcInHeader, populateBarcode, includeBarcodeQuality,
+                "SPILL_SEGMENT_DEMULTIPLEXING=true", "SPILL_MERGE_BUFFER_BYTES=" + SpillBufferPool.DEFAULT_BUFFER_SIZE);
+    }
+
     /**
      * Ensures that a run missing a barcode from the parameters file throws an error.
      */
@@ -207,12 +214,14 @@ public class IlluminaBasecallsToSamTest extends CommandLineProgramTest {
      * @param readStructure
      * @param includeBcInHeader
      * @param populateBarcode
-     * @param includeBarcodeQuality @throws Exception
+     * @param includeBarcodeQuality
+     * @param extraArgs Additional command line arguments
+     * @throws Exception
      */
     private void runStandardTest(final int lane, final String jobName, final String libraryParamsFile,
                                  final int concatNColumnFields, final String readStructure,
                                  final File baseCallsDir, final File testDataDir, final Integer tile, final boolean includeBcInHeader, final ClusterDataToSamConverter.PopulateBarcode populateBarcode,
-                                 final boolean includeBarcodeQuality) throws Exception {
+                                 final boolean includeBarcodeQuality, final String... extraArgs) throws Exception {
         final Path outputDir = Files.createTempDirectory(jobName);
         try {
             final String tilePrefix = (tile != null) ? tile + "." : "";
@@ -253,6 +262,7 @@ public class IlluminaBasecallsToSamTest extends CommandLineProgramTest {
             if (tile != null) {
                 args.add("PROCESS_SINGLE_TILE=" + tile);
             }
+            args.addAll(Arrays.asList(extraArgs));
 
             Assert.assertEquals(runPicardCommandLine(args), 0);
 
@@ -23,7 +23,14 @@
  */
 package picard.reference;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -32,6 +39,12 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.Exception;
 import java.lang.String;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author ebanks
@@ -84,4 +97,63 @@ public class NonNFastaSizeTest {
             System.err.println("Failed to read in count because of error: " + e.getMessage());
         }
     }
+
+    @Test
+    public void testChunkedCountMatchesWholeContigs() throws IOException {
+        final File dir = IOUtil.createTempDir("NonNFastaSizeTest", "");
+        try {
+            final File fasta = NormalizeFastaTest.copyWithIndex(NormalizeFastaTest.makeFasta(dir), dir);
+            final ReferenceSequenceFile ref = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta);
+            final Map<String, byte[]> contigs = new LinkedHashMap<>();
+            ReferenceSequence sequence;
+            while ((sequence = ref.nextSequence()) != null) {
+                contigs.put(sequence.getName(), sequence.getBases());
+            }
+            ref.close();
+
+            final SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+            contigs.forEach((name, bases) -> dictionary.addSequence(new SAMSequenceRecord(name, bases.length)));
+            final IntervalList intervals = new IntervalList(dictionary);
+            intervals.add(new Interval("chr1", 3, 8));
+            intervals.add(new Interval("chr2", 1000, 1_500_000));
+            intervals.add(new Interval("chr2", 1_400_000, 2_100_000));
+            intervals.add(new Interval("chr3", 50, 65));
+            final File intervalsFile = new File(dir, "test.interval_list");
+            intervals.write(intervalsFile);
+
+            long expectedAll = 0;
+            for (final byte[] bases : contigs.values()) {
+                expectedAll += countNonN(bases, 1, bases.length);
+            }
+            final long expectedIntervals = countNonN(contigs.get("chr1"), 3, 8) +
+                    countNonN(contigs.get("chr2"), 1000, 2_100_000) +
+                    countNonN(contigs.get("chr3"), 50, contigs.get("chr3").length);
+
+            for (final int numProcessors : new int[]{1, 4}) {
+                Assert.assertEquals(countNonN(fasta, null, numProcessors, dir), expectedAll);
+                Assert.assertEquals(countNonN(fasta, intervalsFile, numProcessors, dir), expectedIntervals);
+            }
+        } finally {
+            IOUtil.recursiveDelete(dir.toPath());
+        }
+    }
+
+    private static long countNonN(final byte[] bases, final int start, final int end) {
+        long count = 0;
+        for (int i = start - 1; i < end; i++) {
+            if (Character.toUpperCase(bases[i]) != 'N') count++;
+        }
+        return count;
+    }
+
+    private static long countNonN(final File fasta, final File intervals, final int numProcessors, final File dir) throws IOException {
+        final File output = new File(dir, "count.txt");
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "INPUT=" + fasta.getAbsolutePath(),
+                "OUTPUT=" + output.getAbsolutePath(),
+                "NUM_PROCESSORS=" + numProcessors));
+        if (intervals != null) args.add("INTERVALS=" + intervals.getAbsolutePath());
+        Assert.assertEquals(new NonNFastaSize().instanceMain(args.toArray(new String[0])), 0);
+        return Long.parseLong(Files.readAllLines(output.toPath()).get(0));
+    }
 }
@@ -0,0 +1,126 @@
+package picard.reference;
+
+import htsjdk.samtools.reference.FastaSequenceIndexCreator;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+
+public class NormalizeFastaTest {
+    private static final File REFERENCE = new File("testdata/picard/reference/test.fasta");
+
+    /** A FASTA with header descriptions, soft-masked bases and a contig spanning several read chunks. */
+    static File makeFasta(final File dir) throws IOException {
+        final File fasta = new File(dir, "generated.fasta");
+        final Random random = new Random(42);
+        final String bases = "ACGTNacgtn";
+        try (final PrintWriter writer = new PrintWriter(fasta)) {
+            writer.println(">chr1 first contig");
+            writer.println("ACGTNacgtnACG");
+            writer.println("TT");
+            writer.println(">chr2\tsecond contig");
+            final int length = 2 * IndexedFastaChunkReader.CHUNK_SIZE + 12345;
+            for (int i = 0; i < length; i += 61) {
+                final StringBuilder line = new StringBuilder();
+                for (int j = i; j < Math.min(length, i + 61); j++) {
+                    line.append(bases.charAt(random.nextInt(bases.length())));
+                }
+                writer.println(line);
+            }
+            writer.println(">chr3");
+            writer.println("NNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNNacgt");
+        }
+        return fasta;
+    }
+
+    static File copyWithoutIndex(final File fasta, final File dir) throws IOException {
+        final File copy = new File(dir, "unindexed_" + fasta.getName() + ".gz");
+        try (final java.io.OutputStream out = IOUtil.openFileForWriting(copy)) {
+            Files.copy(fasta.toPath(), out);
+        }
+        return copy;
+    }
+
+    static File copyWithIndex(final File fasta, final File dir) throws IOException {
+        final File copy = new File(dir, "indexed_" + fasta.getName());
+        Files.copy(fasta.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        FastaSequenceIndexCreator.buildFromFasta(copy.toPath()).write(ReferenceSequenceFileFactory.getFastaIndexFileName(copy.toPath()));
+        return copy;
+    }
+
+    @DataProvider
+    public Object[][] normalizeArgs() {
+        return new Object[][]{
+                {false, 7, 1},
+                {false, 100, 3},
+                {true, 60, 2},
+                {true, 1000000, 4},
+        };
+    }
+
+    @Test(dataProvider = "normalizeArgs")
+    public void testIndexedMatchesUnindexed(final boolean truncate, final int lineLength, final int numProcessors) throws IOException {
+        final File dir = IOUtil.createTempDir("NormalizeFastaTest", "");
+        try {
+            for (final File fasta : new File[]{REFERENCE, makeFasta(dir)}) {
+                final File unindexed = copyWithoutIndex(fasta, dir);
+                final File indexed = copyWithIndex(fasta, dir);
+                final File expected = new File(dir, "expected.fasta");
+                final File actual = new File(dir, "actual.fasta");
+
+                Assert.assertEquals(normalize(unindexed, expected, truncate, lineLength, 1), 0);
+                Assert.assertEquals(normalize(indexed, actual, truncate, lineLength, numProcessors), 0);
+
+                final List<String> expectedLines = Files.readAllLines(expected.toPath());
+                Assert.assertTrue(expectedLines.size() > 1);
+                Assert.assertEquals(Files.readAllLines(actual.toPath()), expectedLines);
+            }
+        } finally {
+            IOUtil.recursiveDelete(dir.toPath());
+        }
+    }
+
+    @Test
+    public void testLineLengths() throws IOException {
+        final File output = File.createTempFile("NormalizeFastaTest", ".fasta");
+        output.deleteOnExit();
+        Assert.assertEquals(normalize(REFERENCE, output, true, 30, 2), 0);
+        for (final String line : Files.readAllLines(output.toPath())) {
+            Assert.assertTrue(line.startsWith(">") || (!line.isEmpty() && line.length() <= 30), line);
+        }
+    }
+
+    private static int normalize(final File input, final File output, final boolean truncate, final int lineLength, final int numProcessors) {
+        return new NormalizeFasta().instanceMain(new String[]{
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + output.getAbsolutePath(),
+                "TRUNCATE_SEQUENCE_NAMES_AT_WHITESPACE=" + truncate,
+                "LINE_LENGTH=" + lineLength,
+                "NUM_PROCESSORS=" + numProcessors
+        });
+    }
+
+    @Test
+    public void testEmptyContig() throws IOException {
+        final File dir = IOUtil.createTempDir("NormalizeFastaTest", "");
+        try {
+            final File fasta = new File(dir, "empty.fasta");
+            Files.write(fasta.toPath(), ">chr1 x\nACGT\n>empty\n>chr2\nAC\n".getBytes());
+            Files.write(new File(dir, "empty.fasta.fai").toPath(), "chr1\t4\t8\t4\t5\nempty\t0\t20\t0\t0\nchr2\t2\t26\t2\t3\n".getBytes());
+            final File output = new File(dir, "output.fasta");
+            Assert.assertEquals(normalize(fasta, output, false, 3, 2), 0);
+            Assert.assertEquals(new String(Files.readAllBytes(output.toPath())), ">chr1 x\nACG\nT\n>empty\n>chr2\nAC\n");
+        } finally {
+            IOUtil.recursiveDelete(dir.toPath());
+        }
+    }
+}
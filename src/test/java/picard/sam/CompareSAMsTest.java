@@ -36,6 +36,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class CompareSAMsTest extends CommandLineProgramTest {
     private static final File TEST_FILES_DIR = new File("testdata/picard/sam/CompareSAMs");
@@ -120,4 +121,62 @@ public class CompareSAMsTest extends CommandLineProgramTest {
         Assert.assertEquals(metricsOutput.getMetrics().get(1).LEFT_FILE, in2);
         Assert.assertEquals(metricsOutput.getMetrics().get(1).RIGHT_FILE, in1);
     }
+
+    @DataProvider(name="compareIndexedSams")
+    public Object[][] compareIndexedSamsTestData() {
+        final ArrayList<String> lenientArgs = new ArrayList<>(Arrays.asList("LENIENT_DUP=true", "LENIENT_LOW_MQ_ALIGNMENT=true"));
+        return new Object[][] {
+                {"genomic_sorted.sam", "chr21.sam", null},
+                {"genomic_sorted.sam", "genomic_sorted.sam", null},
+                {"genomic_sorted.sam", "has_non_primary.sam", null},
+                {"genomic_sorted_5.sam", "genomic_sorted_5_plus.sam", null},
+                {"group_same_coord.sam", "group_same_coord_diff_order.sam", null},
+                {"group_same_coord.sam", "diff_coords.sam", null},
+                {"genomic_sorted.sam", "unmapped_first.sam", null},
+                {"genomic_sorted.sam", "unmapped_second.sam", null},
+                {"unmapped_first.sam", "unmapped_second.sam", null},
+                {"duplicate_base.sam", "duplicate_four_mismatch_strict.sam", lenientArgs},
+                {"duplicate_base.sam", "duplicate_four_mismatch_lenient_one_align_differ.sam", lenientArgs},
+                {"duplicate_base.sam", "duplicate_two_mismatch_lenient.sam", lenientArgs},
+                {"duplicate_base.sam", "duplicate_four_mismatch_lenient.sam", lenientArgs},
+                {"duplicate_base.sam", "duplicate_four_mismatch_strict.sam", null},
+                {"mq0_1.sam", "mq0_2.sam", lenientArgs},
+                {"mq0_1.sam", "mq0_2.sam", null}
+        };
+    }
+
+    @Test(dataProvider = "compareIndexedSams")
+    public void testParallelComparisonOfIndexedFiles(final String f1, final String f2, final ArrayList<String> args) throws IOException {
+        final String in1 = toIndexedBam(new File(TEST_FILES_DIR, f1)).getAbsolutePath();
+        final String in2 = toIndexedBam(new File(TEST_FILES_DIR, f2)).getAbsolutePath();
+        final List<SamComparisonMetric> metrics = new ArrayList<>();
+        final List<Integer> results = new ArrayList<>();
+        // The last run makes the reads with differing duplicate marking spill to disk.
+        for (final String[] threadArgs : new String[][]{{"NUM_PROCESSORS=1"}, {"NUM_PROCESSORS=4"}, {"NUM_PROCESSORS=4", "MAX_RECORDS_IN_RAM=2"}}) {
+            final Path tmpOutput = Files.createTempFile("compareSam", ".tsv");
+            tmpOutput.toFile().deleteOnExit();
+            final ArrayList<String> commandArgs = new ArrayList<>(Arrays.asList(in1, in2, "O=" + tmpOutput));
+            commandArgs.addAll(Arrays.asList(threadArgs));
+            if (args != null) {
+                commandArgs.addAll(args);
+            }
+            results.add(runPicardCommandLine(commandArgs));
+            final MetricsFile<SamComparisonMetric, Comparable<?>> metricsOutput = new MetricsFile<>();
+            metricsOutput.read(new FileReader(tmpOutput.toFile()));
+            metrics.add(metricsOutput.getMetrics().get(0));
+        }
+        for (int i = 1; i < results.size(); i++) {
+            Assert.assertEquals(results.get(i), results.get(0));
+            Assert.assertEquals(metrics.get(i), metrics.get(0));
+        }
+    }
+
+    private static File toIndexedBam(final File sam) throws IOException {
+        final File bam = File.createTempFile(sam.getName(), ".bam");
+        bam.deleteOnExit();
+        new File(bam.getAbsolutePath().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        Assert.assertEquals(new SortSam().instanceMain(new String[]{
+                "INPUT=" + sam.getAbsolutePath(), "OUTPUT=" + bam.getAbsolutePath(), "SORT_ORDER=coordinate", "CREATE_INDEX=true"}), 0);
+        return bam;
+    }
 }
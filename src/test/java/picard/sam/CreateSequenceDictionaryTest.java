@@ -27,6 +27,7 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.PicardException;
 import picard.cmdline.CommandLineProgramTest;
@@ -35,6 +36,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -212,4 +214,73 @@ public class CreateSequenceDictionaryTest extends CommandLineProgramTest {
             Assert.assertTrue(anSet.contains("2/hello"));
         }
     }
+
+    @DataProvider
+    public Object[][] indexedFastas() {
+        return new Object[][]{
+                {EQUIVALENCE_TEST_FASTA, 1},
+                {EQUIVALENCE_TEST_FASTA, 3},
+                {new File(TEST_DATA_DIR + "/reference", "chrM.reference.fasta"), 2}
+        };
+    }
+
+    @Test(dataProvider = "indexedFastas")
+    public void testUseFastaIndexMatchesDefault(final File fasta, final int numProcessors) throws Exception {
+        final File expectedDict = File.createTempFile("CreateSequenceDictionaryTest.", ".dict");
+        final File indexedDict = File.createTempFile("CreateSequenceDictionaryTest.", ".dict");
+        expectedDict.delete();
+        indexedDict.delete();
+        expectedDict.deleteOnExit();
+        indexedDict.deleteOnExit();
+
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "REFERENCE=" + fasta,
+                "OUTPUT=" + expectedDict
+        }), 0);
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "REFERENCE=" + fasta,
+                "OUTPUT=" + indexedDict,
+                "USE_FASTA_INDEX=true",
+                "NUM_PROCESSORS=" + numProcessors
+        }), 0);
+
+        Assert.assertEquals(Files.readAllLines(indexedDict.toPath()), Files.readAllLines(expectedDict.toPath()));
+    }
+
+    @Test
+    public void testUseFastaIndexWithNumSequences() throws Exception {
+        final File outputDict = File.createTempFile("CreateSequenceDictionaryTest.", ".dict");
+        outputDict.delete();
+        outputDict.deleteOnExit();
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "REFERENCE=" + EQUIVALENCE_TEST_FASTA,
+                "OUTPUT=" + outputDict,
+                "USE_FASTA_INDEX=true",
+                "NUM_PROCESSORS=2",
+                "NUM_SEQUENCES=2"
+        }), 0);
+        final SAMSequenceDictionary dict = SAMSequenceDictionaryExtractor.extractDictionary(outputDict.toPath());
+        Assert.assertEquals(dict.size(), 2);
+        Assert.assertEquals(dict.getSequence(1).getSequenceName(), "chr2");
+    }
+
+    @Test
+    public void testUseFastaIndexRequiresIndexAndTruncatedNames() throws Exception {
+        final File outputDict = File.createTempFile("CreateSequenceDictionaryTest.", ".dict");
+        outputDict.delete();
+        outputDict.deleteOnExit();
+        // basic.fasta has no .fai
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "REFERENCE=" + BASIC_FASTA,
+                "OUTPUT=" + outputDict,
+                "USE_FASTA_INDEX=true"
+        }), 1);
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "REFERENCE=" + EQUIVALENCE_TEST_FASTA,
+                "OUTPUT=" + outputDict,
+                "USE_FASTA_INDEX=true",
+                "TRUNCATE_NAMES_AT_WHITESPACE=false"
+        }), 1);
+        Assert.assertFalse(outputDict.exists());
+    }
 }
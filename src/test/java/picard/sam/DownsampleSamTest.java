@@ -18,8 +18,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -149,4 +152,82 @@ public class DownsampleSamTest extends CommandLineProgramTest {
             TestNGUtil.assertLessThan(SamTestUtil.countSamTotalRecord(downsampled), fraction * 1.2 * SamTestUtil.countSamTotalRecord(samFile));
         }
     }
-}
\ No newline at end of file
+
+    @DataProvider(name = "MultipleOutputsTestProvider")
+    public Object[][] MultipleOutputsTestProvider() {
+        final List<Object[]> objects = new ArrayList<>();
+        for (final Strategy strategy : Strategy.values()) {
+            for (final int numProcessors : new int[]{1, 3}) {
+                objects.add(new Object[]{strategy, numProcessors});
+            }
+        }
+        return objects.toArray(new Object[0][]);
+    }
+
+    // test that writing several fractions in one pass gives the same files as one run per fraction
+    @Test(dataProvider = "MultipleOutputsTestProvider")
+    public void testMultipleOutputsMatchSeparateRuns(final Strategy strategy, final int numProcessors) throws IOException {
+        final double[] fractions = {0.25, 0.5, 0.75};
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "STRATEGY=" + strategy,
+                "RANDOM_SEED=7",
+                "NUM_PROCESSORS=" + numProcessors));
+        final List<File> downsampled = new ArrayList<>();
+        final List<File> metrics = new ArrayList<>();
+        for (final double fraction : fractions) {
+            downsampled.add(File.createTempFile("DownsampleSam", ".bam", tempDir));
+            metrics.add(File.createTempFile("DownsampleSam", ".quality_yield_metrics", tempDir));
+            args.add("PROBABILITY=" + fraction);
+            args.add("OUTPUT=" + downsampled.get(downsampled.size() - 1).getAbsolutePath());
+            args.add("METRICS_FILE=" + metrics.get(metrics.size() - 1).getAbsolutePath());
+        }
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        List<String> previous = null;
+        for (int i = 0; i < fractions.length; ++i) {
+            final File separate = File.createTempFile("DownsampleSam", ".bam", tempDir);
+            Assert.assertEquals(runPicardCommandLine(new String[]{
+                    "INPUT=" + tempSamFile.getAbsolutePath(),
+                    "OUTPUT=" + separate.getAbsolutePath(),
+                    "PROBABILITY=" + fractions[i],
+                    "STRATEGY=" + strategy,
+                    "RANDOM_SEED=7"}), 0);
+
+            final List<String> records = readRecords(downsampled.get(i));
+            Assert.assertEquals(records, readRecords(separate));
+            Assert.assertTrue(metrics.get(i).length() > 0);
+            if (strategy == Strategy.ConstantMemory && previous != null) {
+                Assert.assertTrue(records.containsAll(previous));
+            }
+            previous = records;
+        }
+    }
+
+    @Test
+    public void testDefaultProbabilityLeavesArgumentUnchanged() throws IOException {
+        final File downsampled = File.createTempFile("DownsampleSam", ".bam", tempDir);
+        final DownsampleSam downsampleSam = new DownsampleSam();
+        Assert.assertEquals(downsampleSam.instanceMain(new String[]{
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "OUTPUT=" + downsampled.getAbsolutePath()}), 0);
+        Assert.assertTrue(downsampleSam.PROBABILITY.isEmpty());
+        Assert.assertEquals(readRecords(downsampled), readRecords(tempSamFile));
+    }
+
+    @Test
+    public void testMismatchedOutputs() throws IOException {
+        final File downsampled = File.createTempFile("DownsampleSam", ".bam", tempDir);
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "OUTPUT=" + downsampled.getAbsolutePath(),
+                "PROBABILITY=0.2",
+                "PROBABILITY=0.4"}), 1);
+    }
+
+    private static List<String> readRecords(final File samFile) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+            return StreamSupport.stream(reader.spliterator(), false).map(SAMRecord::getSAMString).collect(Collectors.toList());
+        }
+    }
+}
@@ -25,6 +25,8 @@ package picard.sam;
 
 import htsjdk.samtools.*;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
 import org.testng.Assert;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.DataProvider;
@@ -36,8 +38,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.StreamSupport;
 
 
@@ -250,6 +255,64 @@ public class FilterSamReadsTest extends CommandLineProgramTest {
         Assert.assertEquals(count, expectNumber);
     }
 
+    @DataProvider(name = "dataTestIndexedPairedIntervalFilter")
+    public Object[][] dataTestIndexedPairedIntervalFilter() {
+        return new Object[][]{{1}, {5}, {50}};
+    }
+
+    /**
+     * checks that querying an indexed file for the intervals and their mates keeps the same reads as reading all of it
+     */
+    @Test(dataProvider = "dataTestIndexedPairedIntervalFilter")
+    public void testIndexedPairedIntervalFilterMatchesScan(final int numIntervals) throws Exception {
+        final SAMRecordSetBuilder pairs = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        final Random random = new Random(numIntervals);
+        for (int i = 0; i < 500; ++i) {
+            final int contig1 = random.nextInt(3);
+            final int contig2 = random.nextInt(4) == 0 ? random.nextInt(3) : contig1;
+            final boolean mateUnmapped = random.nextInt(10) == 0;
+            final List<SAMRecord> pair = pairs.addPair("pair" + i, contig1, contig2, 1 + random.nextInt(20000), 1 + random.nextInt(20000),
+                    false, mateUnmapped, "36M", "36M", random.nextBoolean(), random.nextBoolean(), false, false, 30);
+            if (mateUnmapped && random.nextBoolean()) {
+                // leave the unmapped mate unplaced, at the end of the file
+                pair.get(1).setReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+                pair.get(1).setAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+                pair.get(0).setMateReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+                pair.get(0).setMateAlignmentStart(SAMRecord.NO_ALIGNMENT_START);
+            }
+        }
+        pairs.addFrag("fragment", 0, 100, false);
+        pairs.addUnmappedPair("unmapped");
+
+        final File indexedBam = File.createTempFile("FilterSamReadsTest", ".bam");
+        indexedBam.deleteOnExit();
+        new File(indexedBam.getAbsolutePath().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(pairs.getHeader(), false, indexedBam)) {
+            pairs.forEach(writer::addAlignment);
+        }
+        final File unindexedBam = File.createTempFile("FilterSamReadsTest", ".bam");
+        unindexedBam.deleteOnExit();
+        Files.copy(indexedBam.toPath(), unindexedBam.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        final IntervalList intervals = new IntervalList(pairs.getHeader());
+        for (int i = 0; i < numIntervals; ++i) {
+            final int start = 1 + random.nextInt(20000);
+            intervals.add(new Interval(pairs.getHeader().getSequence(random.nextInt(3)).getSequenceName(), start, start + random.nextInt(500)));
+        }
+        final File intervalFile = File.createTempFile("FilterSamReadsTest", ".interval_list");
+        intervalFile.deleteOnExit();
+        intervals.write(intervalFile);
+
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final File input : new File[]{indexedBam, unindexedBam}) {
+            final FilterSamReads filterTest = setupProgram(intervalFile, input, FilterSamReads.Filter.includePairedIntervals);
+            Assert.assertEquals(filterTest.doWork(), 0);
+            outputs.add(Files.readAllLines(filterTest.OUTPUT.toPath()));
+        }
+        Assert.assertTrue(outputs.get(1).stream().anyMatch(line -> !line.startsWith("@")));
+        Assert.assertEquals(outputs.get(0), outputs.get(1));
+    }
+
     @DataProvider(name = "dataTestDebugOption")
     public Object[][] dataTestDebugOption() {
         return new Object[][]{
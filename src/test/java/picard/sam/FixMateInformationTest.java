@@ -24,12 +24,25 @@
 package picard.sam;
 
 import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 public class FixMateInformationTest extends CommandLineProgramTest {
     private static final File TEST_DATA_DIR = new File("testdata/picard/sam/FixMateInformation");
@@ -62,4 +75,102 @@ public class FixMateInformationTest extends CommandLineProgramTest {
     public void ignoreMissingMateExceptionTest() throws IOException {
         missingMateTestHelper(false);
     }
+
+    @Test
+    public void testFixingWithoutSortingMatchesSortingPass() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        final Random random = new Random(11);
+        for (int i = 0; i < 500; ++i) {
+            final int contig1 = random.nextInt(3);
+            final int contig2 = random.nextInt(5) == 0 ? random.nextInt(3) : contig1;
+            final int start1 = 1 + random.nextInt(5000);
+            // mostly close mates, with some far beyond MAX_MATE_DISTANCE
+            final int start2 = random.nextInt(4) == 0 ? 1 + random.nextInt(5000) : Math.max(1, start1 + random.nextInt(400) - 200);
+            final List<SAMRecord> pair = builder.addPair("pair" + i, contig1, contig2, start1, start2, false, random.nextInt(20) == 0,
+                    "50M", "50M", random.nextBoolean(), random.nextBoolean(), false, false, 30);
+            if (random.nextInt(10) == 0) {
+                final SAMRecord supplementary = builder.addFrag("pair" + i, random.nextInt(3), 1 + random.nextInt(5000), false);
+                final SAMRecord primary = pair.get(random.nextInt(2));
+                supplementary.setReadPairedFlag(true);
+                supplementary.setFirstOfPairFlag(primary.getFirstOfPairFlag());
+                supplementary.setSecondOfPairFlag(primary.getSecondOfPairFlag());
+                supplementary.setSupplementaryAlignmentFlag(true);
+                primary.setAttribute(SAMTag.SA.name(), supplementary.getContig() + "," + supplementary.getAlignmentStart() + ",+,50M,30,0;");
+            }
+        }
+        builder.addFrag("fragment", 0, 100, false);
+        builder.addUnmappedPair("unmapped");
+        // a pair with a missing mate
+        builder.addPair("missing", 1, 1, 200, 300, false, false, "50M", "50M", false, true, false, false, 30).get(1)
+                .setSecondaryAlignment(true);
+        // reads unmapped after realignment that keep their old placement, which fixing moves to the mate or unplaces:
+        // before the mate and far from it, just before it, just after it, and with an unmapped mate
+        unmapInPlace(builder.addPair("staleFar", 0, 0, 100, 5000, false, false, "50M", "50M", false, true, false, false, 30).get(0));
+        unmapInPlace(builder.addPair("staleBefore", 0, 0, 1000, 1050, false, false, "50M", "50M", false, true, false, false, 30).get(0));
+        unmapInPlace(builder.addPair("staleAfter", 1, 1, 2000, 2060, false, false, "50M", "50M", false, true, false, false, 30).get(1));
+        for (final SAMRecord record : builder.addPair("staleBoth", 2, 2, 300, 320, false, false, "50M", "50M", false, true, false, false, 30)) {
+            unmapInPlace(record);
+        }
+
+        // scramble the mate information
+        for (final SAMRecord record : builder.getRecords()) {
+            if (record.getReadPairedFlag()) {
+                record.setMateReferenceIndex(random.nextInt(3));
+                record.setMateAlignmentStart(1 + random.nextInt(5000));
+                record.setMateNegativeStrandFlag(random.nextBoolean());
+                record.setInferredInsertSize(random.nextInt(1000));
+                record.setAttribute(SAMTag.MC.name(), null);
+            }
+        }
+
+        final File coordinateInput = File.createTempFile("testFixingWithoutSortingMatchesSortingPass", ".bam");
+        coordinateInput.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), true, coordinateInput)) {
+            builder.forEach(writer::addAlignment);
+        }
+        // The same records with an unsorted header are fixed by sorting them by query name
+        final SAMFileHeader unsortedHeader = builder.getHeader().clone();
+        unsortedHeader.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        final File unsortedInput = File.createTempFile("testFixingWithoutSortingMatchesSortingPass", ".bam");
+        unsortedInput.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(unsortedHeader, true, unsortedInput)) {
+            builder.forEach(writer::addAlignment);
+        }
+
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final File input : new File[]{coordinateInput, unsortedInput}) {
+            final File output = File.createTempFile("testFixingWithoutSortingMatchesSortingPass", ".bam");
+            output.deleteOnExit();
+            Assert.assertEquals(runPicardCommandLine(new String[]{
+                    "INPUT=" + input.getAbsolutePath(),
+                    "OUTPUT=" + output.getAbsolutePath(),
+                    "SORT_ORDER=coordinate",
+                    "FIX_WITHOUT_SORTING=" + (input == coordinateInput),
+                    "MAX_MATE_DISTANCE=100",
+                    "MAX_RECORDS_IN_RAM=50"
+            }), 0);
+
+            final List<String> records = new ArrayList<>();
+            try (final SamReader reader = SamReaderFactory.makeDefault().open(output)) {
+                final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+                SAMRecord previous = null;
+                for (final SAMRecord record : reader) {
+                    if (previous != null) Assert.assertTrue(comparator.fileOrderCompare(previous, record) <= 0);
+                    previous = record;
+                    records.add(record.getSAMString());
+                }
+            }
+            // Records at the same position may be written in a different order
+            Collections.sort(records);
+            outputs.add(records);
+        }
+        Assert.assertEquals(outputs.get(0).size(), builder.getRecords().size());
+        Assert.assertEquals(outputs.get(0), outputs.get(1));
+    }
+
+    private static void unmapInPlace(final SAMRecord record) {
+        record.setReadUnmappedFlag(true);
+        record.setCigarString(SAMRecord.NO_ALIGNMENT_CIGAR);
+        record.setMappingQuality(SAMRecord.NO_MAPPING_QUALITY);
+    }
 }
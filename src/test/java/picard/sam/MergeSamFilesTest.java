@@ -26,16 +26,29 @@ package picard.sam;
 import htsjdk.samtools.BAMIndex;
 import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordComparator;
+import htsjdk.samtools.SAMRecordSetBuilder;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
 import picard.sam.testers.ValidateSamTester;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 public class MergeSamFilesTest extends CommandLineProgramTest {
     private static final File TEST_DATA_DIR = new File("testdata/picard/sam/MergeSamFiles");
@@ -70,4 +83,73 @@ public class MergeSamFilesTest extends CommandLineProgramTest {
         Assert.assertTrue(mergedOutputIndex.delete());
         CloserUtil.close(reader);
     }
+
+    @DataProvider(name = "parallelMergeData")
+    public Object[][] parallelMergeData() throws IOException {
+        final File case2 = new File(TEST_DATA_DIR, "case2");
+        final File unsorted = new File(TEST_DATA_DIR, "unsorted_input");
+        return new Object[][]{
+                // read group and program group collisions
+                {new File[]{new File(case2, "chr11sub_file1.sam"), new File(case2, "chr11sub_file2.sam"),
+                        new File(case2, "chr11sub_file3.sam"), new File(case2, "chr11sub_file4.sam")}, SAMFileHeader.SortOrder.coordinate},
+                {new File[]{new File(unsorted, "1.sam"), new File(unsorted, "2.sam")}, SAMFileHeader.SortOrder.coordinate},
+                {makeRandomBams(SAMFileHeader.SortOrder.coordinate, 7), SAMFileHeader.SortOrder.coordinate},
+                {makeRandomBams(SAMFileHeader.SortOrder.queryname, 5), SAMFileHeader.SortOrder.queryname},
+                {makeRandomBams(SAMFileHeader.SortOrder.coordinate, 1), SAMFileHeader.SortOrder.coordinate},
+        };
+    }
+
+    @Test(dataProvider = "parallelMergeData")
+    public void testParallelMergeMatchesSerialMerge(final File[] inputs, final SAMFileHeader.SortOrder sortOrder) throws IOException {
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final int numProcessors : new int[]{1, 4}) {
+            final File mergedOutput = File.createTempFile("testParallelMergeMatchesSerialMerge.", FileExtensions.BAM);
+            mergedOutput.deleteOnExit();
+
+            final List<String> args = new ArrayList<>();
+            for (final File input : inputs) {
+                args.add("I=" + input.getAbsolutePath());
+            }
+            args.add("O=" + mergedOutput.getAbsolutePath());
+            args.add("SO=" + sortOrder);
+            args.add("NUM_PROCESSORS=" + numProcessors);
+            args.add("VALIDATION_STRINGENCY=" + ValidationStringency.LENIENT);
+            Assert.assertEquals(runPicardCommandLine(args), 0);
+
+            final List<String> records = new ArrayList<>();
+            try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(mergedOutput)) {
+                Assert.assertEquals(reader.getFileHeader().getSortOrder(), sortOrder);
+                final SAMRecordComparator comparator = sortOrder.getComparatorInstance();
+                SAMRecord previous = null;
+                for (final SAMRecord record : reader) {
+                    if (previous != null) Assert.assertTrue(comparator.compare(previous, record) <= 0);
+                    previous = record;
+                    records.add(record.getSAMString());
+                }
+                // Records that compare equal may come out in a different order
+                Collections.sort(records);
+                records.add(0, reader.getFileHeader().getSAMString());
+            }
+            outputs.add(records);
+        }
+        Assert.assertTrue(outputs.get(0).size() > 1);
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+    }
+
+    private static File[] makeRandomBams(final SAMFileHeader.SortOrder sortOrder, final int numFiles) throws IOException {
+        final Random random = new Random(numFiles);
+        final File[] files = new File[numFiles];
+        for (int i = 0; i < numFiles; ++i) {
+            final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, sortOrder);
+            for (int j = 0; j < 1000; ++j) {
+                builder.addPair("file" + i + "_pair" + j, random.nextInt(4), 1 + random.nextInt(10000), 1 + random.nextInt(10000));
+            }
+            files[i] = File.createTempFile("makeRandomBams.", FileExtensions.BAM);
+            files[i].deleteOnExit();
+            try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), true, files[i])) {
+                builder.forEach(writer::addAlignment);
+            }
+        }
+        return files;
+    }
 }
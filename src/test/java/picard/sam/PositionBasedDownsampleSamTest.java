@@ -7,6 +7,9 @@ import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordSetBuilder;
 import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.BufferedLineReader;
 import htsjdk.samtools.util.IOUtil;
 import org.testng.Assert;
@@ -26,6 +29,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 public class PositionBasedDownsampleSamTest extends CommandLineProgramTest {
     final static String sample = "TestSample";
@@ -159,6 +164,59 @@ public class PositionBasedDownsampleSamTest extends CommandLineProgramTest {
     }
 
     
+    // test that reusing the tile coordinates of an earlier run gives the same output as finding them again
+    @Test
+    public void testTileCoordinatesFile() throws IOException {
+        final File tileCoordinates = new File(tempDir, "tile_coordinates.txt");
+        Assert.assertFalse(tileCoordinates.exists());
+
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final boolean useTileCoordinates : new boolean[]{false, true, true}) {
+            final File downsampled = File.createTempFile("PositionalDownsampleSam", ".bam", tempDir);
+            final List<String> args = new ArrayList<>();
+            args.add("INPUT=" + tempSamFile.getAbsolutePath());
+            args.add("OUTPUT=" + downsampled.getAbsolutePath());
+            args.add("FRACTION=0.3");
+            if (useTileCoordinates) args.add("TILE_COORDINATES=" + tileCoordinates.getAbsolutePath());
+            Assert.assertEquals(runPicardCommandLine(args), 0);
+            outputs.add(readRecords(downsampled));
+        }
+        Assert.assertTrue(tileCoordinates.exists());
+        final List<PositionBasedDownsampleSam.TileCoordinates> tiles = MetricsFile.readBeans(tileCoordinates);
+        Assert.assertEquals(tiles.size(), 1);
+        Assert.assertEquals(tiles.get(0).TILE, 2203);
+
+        Assert.assertFalse(outputs.get(0).isEmpty());
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+        Assert.assertEquals(outputs.get(2), outputs.get(0));
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testTileMissingFromTileCoordinatesFile() throws IOException {
+        final File tileCoordinates = File.createTempFile("PositionalDownsampleSam", ".txt", tempDir);
+        final PositionBasedDownsampleSam.TileCoordinates otherTile = new PositionBasedDownsampleSam.TileCoordinates();
+        otherTile.TILE = 1101;
+        otherTile.MAX_X = 1000;
+        otherTile.MAX_Y = 1000;
+        otherTile.READS = 10;
+        final MetricsFile<PositionBasedDownsampleSam.TileCoordinates, Integer> metricsFile = new MetricsFile<>();
+        metricsFile.addMetric(otherTile);
+        metricsFile.write(tileCoordinates);
+
+        runPicardCommandLine(new String[]{
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "OUTPUT=" + File.createTempFile("PositionalDownsampleSam", ".bam", tempDir).getAbsolutePath(),
+                "FRACTION=0.3",
+                "TILE_COORDINATES=" + tileCoordinates.getAbsolutePath()
+        });
+    }
+
+    private static List<String> readRecords(final File samFile) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+            return StreamSupport.stream(reader.spliterator(), false).map(SAMRecord::getSAMString).collect(Collectors.toList());
+        }
+    }
+
     @DataProvider(name="allowTwiceData")
     public Object[][] allowTwiceData(){
         return new Object[][]{{true},{false}};
@@ -159,6 +159,75 @@ public class ReorderSamTest extends CommandLineProgramTest {
         tester(sam, bamOut, builder, dictionary, allowIncomplete, expected);
     }
 
+    @DataProvider(name = "testParallelData")
+    public Object[][] testParallelData() {
+        final SAMRecordSetBuilder setBuilder = new SAMRecordSetBuilder();
+        final Random random = new Random(7);
+        final int numContigs = setBuilder.getHeader().getSequenceDictionary().size();
+        for (int i = 0; i < 2000; ++i) {
+            final int contig1 = random.nextInt(numContigs);
+            final int contig2 = random.nextInt(3) == 0 ? random.nextInt(numContigs) : contig1;
+            // starts are drawn from a small range so that many reads share a start
+            setBuilder.addPair("pair" + i, contig1, contig2, 1 + random.nextInt(200), 1 + random.nextInt(200),
+                    false, random.nextInt(10) == 0, "36M", "36M", random.nextBoolean(), random.nextBoolean(), false, false, 30);
+        }
+        setBuilder.addUnmappedPair("unmapped_pair");
+
+        final List<SAMSequenceRecord> shuffled = new ArrayList<>(new SAMRecordSetBuilder().getHeader().getSequenceDictionary().getSequences());
+        Collections.shuffle(shuffled, new Random(42));
+        final List<SAMSequenceRecord> dropped = new ArrayList<>(shuffled);
+        dropped.removeIf(sequence -> sequence.getSequenceName().equals("chr2") || sequence.getSequenceName().equals("chr7"));
+        dropped.add(new SAMSequenceRecord("test1", 100));
+
+        return new Object[][]{{setBuilder, shuffled}, {setBuilder, dropped}};
+    }
+
+    @Test(dataProvider = "testParallelData")
+    public void TestsInParallel(final SAMRecordSetBuilder builder, final List<SAMSequenceRecord> sequences) throws IOException {
+        final File dictionary = File.createTempFile("reorder", ".dict");
+        dictionary.deleteOnExit();
+        writeDictionary(dictionary, sequences);
+
+        final File bam = File.createTempFile("reorderIN", ".bam");
+        bam.deleteOnExit();
+        new File(bam.getAbsolutePath().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(builder.getHeader(), false, bam)) {
+            builder.forEach(writer::addAlignment);
+        }
+
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final int numProcessors : new int[]{1, 4}) {
+            final File bamOut = File.createTempFile("reorderOUT", ".bam");
+            bamOut.deleteOnExit();
+            final File bamOutIndex = new File(bamOut.getAbsolutePath().replaceAll("\\.bam$", ".bai"));
+            bamOutIndex.deleteOnExit();
+
+            Assert.assertEquals(runPicardCommandLine(new String[]{
+                    "INPUT=" + bam.getAbsolutePath(),
+                    "OUTPUT=" + bamOut.getAbsolutePath(),
+                    "SEQUENCE_DICTIONARY=" + dictionary.getAbsolutePath(),
+                    "ALLOW_INCOMPLETE_DICT_CONCORDANCE=true",
+                    "CREATE_INDEX=true",
+                    "NUM_PROCESSORS=" + numProcessors
+            }), 0);
+            Assert.assertTrue(bamOutIndex.exists());
+
+            final ValidateSamTester outputValidator = new ValidateSamTester();
+            outputValidator.setIgnoreError(Collections.singletonList(SAMValidationError.Type.MISSING_TAG_NM));
+            outputValidator.assertSamValid(bamOut);
+
+            try (final SamReader reader = SamReaderFactory.makeDefault().open(bamOut)) {
+                Assert.assertTrue(reader.getFileHeader().getSequenceDictionary().isSameDictionary(
+                        SAMSequenceDictionaryExtractor.extractDictionary(dictionary.toPath())));
+                final List<String> records = new ArrayList<>();
+                reader.forEach(rec -> records.add(rec.getSAMString()));
+                outputs.add(records);
+            }
+        }
+        Assert.assertEquals(outputs.get(1).size(), builder.size());
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+    }
+
     private void tester(File input, File output, final SAMRecordSetBuilder builder, final File dictionary, final boolean allowIncomplete, final int expected) {
 
         try (SAMFileWriter writer = new SAMFileWriterFactory()
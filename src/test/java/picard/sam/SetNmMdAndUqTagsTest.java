@@ -10,6 +10,10 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class SetNmMdAndUqTagsTest {
 
@@ -51,6 +55,34 @@ public class SetNmMdAndUqTagsTest {
         validateUq(fixOutput, reference);
     }
 
+    @Test(dataProvider = "filesToFix")
+    public void testParallelMatchesSerial(final File input, final File reference) throws IOException {
+        final File sortOutput = File.createTempFile("Sort", ".sam");
+        sortOutput.deleteOnExit();
+        sort(input, sortOutput);
+
+        for (final boolean onlyUq : new boolean[]{false, true}) {
+            final List<List<String>> outputs = new ArrayList<>();
+            for (final int numProcessors : new int[]{1, 4}) {
+                final File fixOutput = File.createTempFile("Fix", ".sam");
+                fixOutput.deleteOnExit();
+                final String[] args = {
+                        "INPUT=" + sortOutput,
+                        "OUTPUT=" + fixOutput,
+                        "REFERENCE_SEQUENCE=" + reference,
+                        "SET_ONLY_UQ=" + onlyUq,
+                        "NUM_PROCESSORS=" + numProcessors
+                };
+                Assert.assertEquals(new SetNmMdAndUqTags().instanceMain(args), 0, "Fix did not succeed");
+                outputs.add(Files.readAllLines(fixOutput.toPath()).stream()
+                        .filter(line -> !line.startsWith("@PG"))
+                        .collect(Collectors.toList()));
+            }
+            Assert.assertTrue(outputs.get(0).stream().anyMatch(line -> line.contains("\tUQ:i:")));
+            Assert.assertEquals(outputs.get(1), outputs.get(0));
+        }
+    }
+
     private void validate(final File input, final File output, final File reference) {
         final String[] args = {
                 "INPUT=" + input,
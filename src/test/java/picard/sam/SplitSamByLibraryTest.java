@@ -23,6 +23,8 @@
  */
 package picard.sam;
 
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.util.CloserUtil;
@@ -30,6 +32,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Iterator;
 
 /**
@@ -98,6 +102,34 @@ public class SplitSamByLibraryTest {
 
     }
 
+    @Test
+    public void testParallelBamWriters() throws IOException {
+        final File input = File.createTempFile("testParallelBamWriters", ".bam");
+        input.deleteOnExit();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(new File("testdata/picard/sam/split_test.sam"));
+             final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(reader.getFileHeader(), true, input)) {
+            reader.forEach(writer::addAlignment);
+        }
+
+        final File outputDir = Files.createTempDirectory("testParallelBamWriters").toFile();
+        outputDir.deleteOnExit();
+        SplitSamByLibrary splitter = new SplitSamByLibrary();
+        splitter.INPUT = input;
+        splitter.OUTPUT = outputDir;
+        splitter.NUM_PROCESSORS = 2;
+        Assert.assertEquals(splitter.doWork(), 0, "BAM file split should have succeeded but didn't.");
+
+        final String[] names = {"unknown.bam", "lib-1.bam", "lib-3.bam"};
+        final int[] counts = {2, 6, 2};
+        for (int i = 0; i < names.length; ++i) {
+            final File f = new File(outputDir, names[i]);
+            f.deleteOnExit();
+            Assert.assertTrue(f.exists(), names[i] + " should exist but doesn't");
+            Assert.assertEquals(countReads(f), counts[i], names[i] + " has the wrong number of reads");
+        }
+        Assert.assertFalse(new File(outputDir, "lib-2.bam").exists(), "lib-2.bam should not exist but does");
+    }
+
     private int countReads(File samFile) {
         SamReader reader = SamReaderFactory.makeDefault().open(samFile);
         int count = 0;
@@ -24,6 +24,7 @@
 package picard.sam;
 
 import htsjdk.samtools.*;
+import htsjdk.samtools.util.FileExtensions;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
@@ -33,6 +34,8 @@ import com.google.common.collect.Iterators;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
 
 /**
  * Tests for SAMSplitter
@@ -253,6 +256,63 @@ public class SplitSamByNumberOfReadsTest extends CommandLineProgramTest {
         }
     }
 
+    @Test
+    public void testParallelWritersMatchSerialWriters() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.queryname);
+        for (int i = 0; i < 12_000; ++i) {
+            builder.addPair("pair" + i, 0, 1 + i, 100 + i);
+        }
+        builder.addFrag("fragment", 0, 1, false);
+        final File input = File.createTempFile("testParallelWritersMatchSerialWriters", FileExtensions.BAM);
+        input.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), true, input)) {
+            builder.forEach(writer::addAlignment);
+        }
+
+        final File serialDir = Files.createTempDirectory(TMP_DIR_NAME).toFile();
+        final File parallelDir = Files.createTempDirectory(TMP_DIR_NAME).toFile();
+        for (final String[] dirAndThreads : new String[][]{{serialDir.getPath(), "1"}, {parallelDir.getPath(), "4"}}) {
+            Assert.assertEquals(runPicardCommandLine(new String[]{
+                    "INPUT=" + input.getPath(),
+                    "SPLIT_TO_N_FILES=3",
+                    "OUTPUT=" + dirAndThreads[0],
+                    "NUM_PROCESSORS=" + dirAndThreads[1],
+                    "CREATE_MD5_FILE=true"
+            }), 0);
+        }
+
+        final ValidateSamTester validateSamTester = new ValidateSamTester();
+        validateSamTester.setIgnoreError(Collections.singletonList(SAMValidationError.Type.MISSING_TAG_NM));
+        String lastReadName = null;
+        for (int shard = 1; shard <= 3; ++shard) {
+            final String name = String.format("shard_%04d.bam", shard);
+            final File serial = new File(serialDir, name);
+            final File parallel = new File(parallelDir, name);
+            serial.deleteOnExit();
+            parallel.deleteOnExit();
+            new File(serial.getPath() + ".md5").deleteOnExit();
+            new File(parallel.getPath() + ".md5").deleteOnExit();
+            Assert.assertTrue(new File(parallel.getPath() + ".md5").exists());
+            validateSamTester.assertSamValid(parallel);
+
+            try (final SamReader serialReader = SamReaderFactory.makeDefault().open(serial);
+                 final SamReader parallelReader = SamReaderFactory.makeDefault().open(parallel)) {
+                Assert.assertEquals(parallelReader.getFileHeader(), serialReader.getFileHeader());
+                final Iterator<SAMRecord> serialIterator = serialReader.iterator();
+                boolean first = true;
+                for (final SAMRecord rec : parallelReader) {
+                    Assert.assertEquals(rec.getSAMString(), serialIterator.next().getSAMString());
+                    // a template is never split across files
+                    if (first) Assert.assertNotEquals(rec.getReadName(), lastReadName);
+                    first = false;
+                    lastReadName = rec.getReadName();
+                }
+                Assert.assertFalse(serialIterator.hasNext());
+            }
+        }
+        Assert.assertFalse(new File(parallelDir, "shard_0004.bam").exists());
+    }
+
     @Test
     public void testOutPrefixWithZeros() throws IOException {
         final File tmpDir = Files.createTempDirectory(TMP_DIR_NAME).toFile();
@@ -1,11 +1,23 @@
 package picard.sam;
 
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SAMTag;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 public class ValidateSamFileTest extends CommandLineProgramTest {
 
@@ -34,4 +46,76 @@ public class ValidateSamFileTest extends CommandLineProgramTest {
         final int validateExitStatus = runPicardCommandLine(new String[]{"I=" + new File(TEST_DATA_DIR + samFileName).getAbsolutePath()});
         Assert.assertEquals(validateExitStatus, exitStatus);
     }
+
+    /** Writes an indexed BAM with pairs within and across contigs, unmapped pairs, and optionally some broken records. */
+    private static File makeIndexedBam(final boolean withErrors) throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        final Random random = new Random(7);
+        for (int i = 0; i < 200; ++i) {
+            final int contig1 = random.nextInt(4);
+            final int contig2 = random.nextInt(5) == 0 ? random.nextInt(4) : contig1;
+            builder.addPair("pair" + i, contig1, contig2, 1 + random.nextInt(10000), 1 + random.nextInt(10000),
+                    false, false, "36M", "36M", random.nextBoolean(), random.nextBoolean(), false, false, 30);
+        }
+        for (int i = 0; i < 10; ++i) {
+            builder.addUnmappedPair("unmapped" + i);
+        }
+        final List<SAMRecord> records = new ArrayList<>(builder.getRecords());
+        if (withErrors) {
+            records.removeIf(rec -> rec.getReadName().equals("pair3") && rec.getFirstOfPairFlag());
+            for (final SAMRecord rec : records) {
+                if (rec.getReadName().equals("pair5") && rec.getFirstOfPairFlag()) rec.setMateAlignmentStart(rec.getMateAlignmentStart() + 1);
+                if (rec.getReadName().equals("pair7") && rec.getSecondOfPairFlag()) rec.setMateNegativeStrandFlag(!rec.getMateNegativeStrandFlag());
+                if (rec.getReadName().equals("pair9")) rec.setFirstOfPairFlag(true);
+                if (rec.getReadName().equals("pair9")) rec.setSecondOfPairFlag(false);
+                if (rec.getReadName().equals("pair11")) rec.setAttribute(SAMTag.RG.name(), null);
+                if (rec.getReadName().equals("unmapped2") && rec.getFirstOfPairFlag()) rec.setMateUnmappedFlag(false);
+                // Mates whose reference fields disagree are not paired up by the validator, and so are each not found.
+                if (Arrays.asList("pair13", "pair19", "pair23").contains(rec.getReadName()) && rec.getFirstOfPairFlag()) {
+                    rec.setMateReferenceIndex((rec.getMateReferenceIndex() + 1) % 4);
+                }
+                if (Arrays.asList("pair17", "pair21").contains(rec.getReadName()) && rec.getSecondOfPairFlag()) {
+                    rec.setMateReferenceIndex((rec.getMateReferenceIndex() + 1) % 4);
+                }
+            }
+        }
+
+        final File bam = File.createTempFile("ValidateSamFileTest", ".bam");
+        bam.deleteOnExit();
+        new File(bam.getAbsolutePath().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(builder.getHeader(), false, bam)) {
+            records.forEach(writer::addAlignment);
+        }
+        return bam;
+    }
+
+    @DataProvider
+    public Object[][] parallelSummaryArgs() {
+        return new Object[][] {
+                {true, new String[0]},
+                {false, new String[0]},
+                {true, new String[]{"IGNORE=MATE_NOT_FOUND", "IGNORE=MISMATCH_MATE_ALIGNMENT_START"}},
+                {true, new String[]{"IGNORE_WARNINGS=true"}},
+                {true, new String[]{"SKIP_MATE_VALIDATION=true"}}
+        };
+    }
+
+    @Test(dataProvider = "parallelSummaryArgs")
+    public void testParallelSummaryMatchesSerial(final boolean withErrors, final String[] extraArgs) throws IOException {
+        final File bam = makeIndexedBam(withErrors);
+        final List<List<String>> outputs = new ArrayList<>();
+        final List<Integer> exitStatuses = new ArrayList<>();
+        for (final int numProcessors : new int[]{1, 4}) {
+            final File output = File.createTempFile("ValidateSamFileTest", ".txt");
+            output.deleteOnExit();
+            final List<String> args = new ArrayList<>(Arrays.asList("I=" + bam.getAbsolutePath(), "O=" + output.getAbsolutePath(),
+                    "MODE=SUMMARY", "NUM_PROCESSORS=" + numProcessors));
+            args.addAll(Arrays.asList(extraArgs));
+            exitStatuses.add(runPicardCommandLine(args));
+            outputs.add(Files.readAllLines(output.toPath()));
+        }
+        Assert.assertEquals(exitStatuses.get(1), exitStatuses.get(0));
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+        Assert.assertEquals(outputs.get(0).stream().anyMatch(line -> line.startsWith("ERROR:")), withErrors);
+    }
 }
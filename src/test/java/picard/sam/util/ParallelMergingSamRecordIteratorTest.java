@@ -0,0 +1,86 @@
+package picard.sam.util;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SamFileHeaderMerger;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ParallelMergingSamRecordIteratorTest {
+
+    /** An iterator that blocks once it has returned all its records, until it is released. */
+    private static class BlockingIterator implements CloseableIterator<SAMRecord> {
+        private final Iterator<SAMRecord> records;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicBoolean blocked = new AtomicBoolean(false);
+        private final AtomicBoolean closedWhileBlocked = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        BlockingIterator(final Iterator<SAMRecord> records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (records.hasNext()) return true;
+            blocked.set(true);
+            started.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            blocked.set(false);
+            return false;
+        }
+
+        @Override
+        public SAMRecord next() {
+            return records.next();
+        }
+
+        @Override
+        public void close() {
+            closedWhileBlocked.set(blocked.get());
+            closed.set(true);
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForReadingTasks() throws Exception {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.unsorted);
+        // More records than one batch, so that the second batch is being read when the iterator is closed.
+        for (int i = 0; i < 10_001; ++i) {
+            builder.addUnmappedFragment("read" + i);
+        }
+        final SamReader reader = builder.getSamReader();
+        final BlockingIterator input = new BlockingIterator(builder.iterator());
+        final SamFileHeaderMerger headerMerger = new SamFileHeaderMerger(SAMFileHeader.SortOrder.unsorted,
+                Collections.singletonList(reader.getFileHeader()), false);
+        final ParallelMergingSamRecordIterator iterator = new ParallelMergingSamRecordIterator(headerMerger,
+                Collections.singletonMap(reader, input), false, 2);
+        Assert.assertTrue(input.started.await(1, TimeUnit.MINUTES));
+
+        final Thread closer = new Thread(iterator::close);
+        closer.start();
+        closer.join(200);
+        Assert.assertTrue(closer.isAlive());
+        Assert.assertFalse(input.closed.get());
+
+        input.release.countDown();
+        closer.join(TimeUnit.MINUTES.toMillis(1));
+        Assert.assertFalse(closer.isAlive());
+        Assert.assertTrue(input.closed.get());
+        Assert.assertFalse(input.closedWhileBlocked.get());
+    }
+}
@@ -25,6 +25,24 @@ public class ReadNameParserTests {
         }
     }
 
+    /** Tests rapidParseInt on a range of a longer string, as used when splitting read names */
+    @Test
+    public void testRapidParseIntRange() {
+        for (int i = -100; i < 100; i++) {
+            final String field = Integer.toString(i);
+            final String readName = "RUN:" + field + "A:7";
+            Assert.assertEquals(ReadNameParser.rapidParseInt(readName, 4, 4 + field.length() + 1), i);
+            Assert.assertEquals(ReadNameParser.rapidParseInt(readName, 4, 4 + field.length()), i);
+        }
+        try {
+            ReadNameParser.rapidParseInt("123:456", 3, 7);
+            Assert.fail("Should have failed to rapid-parse a range starting with a delimiter as an int.");
+        }
+        catch (NumberFormatException nfe) {
+            /* expected */
+        }
+    }
+
     /** Tests rapidParseInt for positive and negative numbers, as well as non-digit suffixes */
     @Test
     public void testRapidParseIntFails() {
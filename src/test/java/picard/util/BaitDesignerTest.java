@@ -0,0 +1,129 @@
+package picard.util;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import picard.sam.CreateSequenceDictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class BaitDesignerTest {
+    private static final int CONTIG_LENGTH = 20000;
+    private static final int NUM_CONTIGS = 5;
+
+    /** Random contigs with runs of soft-masked and N bases. */
+    private static byte[] makeContig(final Random random) {
+        final byte[] bases = new byte[CONTIG_LENGTH];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+        }
+        for (int run = 0; run < 40; run++) {
+            final int start = random.nextInt(bases.length - 200);
+            final int length = 10 + random.nextInt(150);
+            final boolean hardMasked = random.nextInt(4) == 0;
+            for (int i = start; i < start + length; i++) {
+                bases[i] = hardMasked ? (byte) 'N' : (byte) Character.toLowerCase(bases[i]);
+            }
+        }
+        return bases;
+    }
+
+    @Test
+    public void testMaskedBaseCountsMatchScan() {
+        final Random random = new Random(1);
+        final byte[] bases = makeContig(random);
+        final BaitDesigner.MaskedBaseCounts counts = new BaitDesigner.MaskedBaseCounts(bases);
+        for (int i = 0; i < 10000; i++) {
+            final int from = random.nextInt(bases.length + 1);
+            final int until = from + random.nextInt(bases.length + 1 - from);
+            Assert.assertEquals(counts.count(from, until), BaitDesigner.getMaskedBaseCount(bases, from, until));
+        }
+        Assert.assertEquals(counts.count(0, bases.length), BaitDesigner.getMaskedBaseCount(bases, 0, bases.length));
+        Assert.assertEquals(new BaitDesigner.MaskedBaseCounts(new byte[64]).count(0, 64), 64);
+    }
+
+    @DataProvider
+    public Object[][] strategies() {
+        return Arrays.stream(BaitDesigner.DesignStrategy.values()).map(s -> new Object[]{s}).toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "strategies")
+    public void testParallelDesignMatchesSerial(final BaitDesigner.DesignStrategy strategy) throws IOException {
+        final File dir = IOUtil.createTempDir("BaitDesignerTest", "");
+        try {
+            final Random random = new Random(42);
+            final File fasta = new File(dir, "reference.fasta");
+            final SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+            try (final PrintWriter writer = new PrintWriter(fasta)) {
+                for (int c = 1; c <= NUM_CONTIGS; c++) {
+                    final byte[] bases = makeContig(random);
+                    writer.println(">chr" + c);
+                    for (int i = 0; i < bases.length; i += 60) {
+                        writer.println(new String(bases, i, Math.min(60, bases.length - i)));
+                    }
+                    dictionary.addSequence(new SAMSequenceRecord("chr" + c, bases.length));
+                }
+            }
+            Assert.assertEquals(new CreateSequenceDictionary().instanceMain(new String[]{"R=" + fasta.getAbsolutePath()}), 0);
+
+            final IntervalList targets = new IntervalList(dictionary);
+            int targetNumber = 0;
+            for (int c = 1; c <= NUM_CONTIGS; c++) {
+                for (int start = 500; start < CONTIG_LENGTH - 1000; start += 300 + random.nextInt(700)) {
+                    targets.add(new Interval("chr" + c, start, start + 50 + random.nextInt(400), random.nextBoolean(), "target" + ++targetNumber));
+                }
+            }
+            final File targetsFile = new File(dir, "targets.interval_list");
+            targets.write(targetsFile);
+
+            final File serial = new File(dir, "serial");
+            final File parallel = new File(dir, "parallel");
+            for (final String[] run : new String[][]{{serial.getPath(), "1"}, {parallel.getPath(), "3"}}) {
+                Assert.assertEquals(new BaitDesigner().instanceMain(new String[]{
+                        "TARGETS=" + targetsFile.getAbsolutePath(),
+                        "DESIGN_NAME=test",
+                        "R=" + fasta.getAbsolutePath(),
+                        "DESIGN_STRATEGY=" + strategy,
+                        "DESIGN_ON_TARGET_STRAND=true",
+                        "REPEAT_TOLERANCE=30",
+                        "POOL_SIZE=1000",
+                        "O=" + run[0],
+                        "NUM_PROCESSORS=" + run[1]
+                }), 0);
+            }
+
+            final String[] files = serial.list();
+            Assert.assertNotNull(files);
+            Arrays.sort(files);
+            final String[] parallelFiles = parallel.list();
+            Assert.assertNotNull(parallelFiles);
+            Arrays.sort(parallelFiles);
+            Assert.assertEquals(parallelFiles, files);
+            Assert.assertTrue(IntervalList.fromFile(new File(serial, "test.baits.interval_list")).size() > targetNumber);
+            for (final String file : files) {
+                // The parameters file records the output directory, which necessarily differs.
+                Assert.assertEquals(readLines(new File(parallel, file)), readLines(new File(serial, file)), file);
+            }
+        } finally {
+            IOUtil.recursiveDelete(dir.toPath());
+        }
+    }
+
+    private static List<String> readLines(final File file) throws IOException {
+        return Files.readAllLines(file.toPath()).stream()
+                .filter(line -> !line.startsWith("OUTPUT_DIRECTORY="))
+                .collect(Collectors.toList());
+    }
+}
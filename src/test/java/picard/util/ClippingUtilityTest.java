@@ -33,8 +33,14 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.util.IlluminaUtil.IlluminaAdapterPair;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -377,4 +383,94 @@ public class ClippingUtilityTest {
         }
         return ret;
     }
+
+    /** Compares the adapter with the read base by base at every start, from the end of the read. */
+    private static int findIndexOfClipSequenceBaseByBase(final byte[] read, final byte[] adapterSequence, final int minMatch, final double maxErrorRate) {
+        if (read == null || read.length < minMatch) return ClippingUtility.NO_MATCH;
+        READ_LOOP:
+        for (int start = read.length - minMatch; start >= 0; --start) {
+            final int length = Math.min(read.length - start, adapterSequence.length);
+            final int mismatchesAllowed = (int) (length * maxErrorRate);
+            int mismatches = 0;
+            for (int i = 0; i < length; ++i) {
+                if (!SequenceUtil.isNoCall(adapterSequence[i]) &&
+                        !SequenceUtil.basesEqual(adapterSequence[i], read[start + i]) &&
+                        ++mismatches > mismatchesAllowed) {
+                    continue READ_LOOP;
+                }
+            }
+            return start;
+        }
+        return ClippingUtility.NO_MATCH;
+    }
+
+    @Test
+    public void testRandomReadsMatchBaseByBaseComparison() {
+        final Random random = new Random(11);
+        final String bases = "ACGTacgtN.";
+        int numMatches = 0;
+        for (int n = 0; n < 20000; ++n) {
+            final byte[] read = new byte[random.nextInt(300)];
+            for (int i = 0; i < read.length; ++i) read[i] = (byte) bases.charAt(random.nextInt(random.nextInt(10) == 0 ? bases.length() : 4));
+
+            // Most adapters are taken from the read, with some changes, so that they match somewhere.
+            final byte[] adapter = new byte[random.nextInt(70)];
+            final int offset = read.length == 0 ? 0 : random.nextInt(read.length);
+            for (int i = 0; i < adapter.length; ++i) {
+                final boolean fromRead = offset + i < read.length && random.nextInt(12) != 0;
+                adapter[i] = fromRead ? read[offset + i] : (byte) bases.charAt(random.nextInt(random.nextInt(10) == 0 ? bases.length() : 4));
+            }
+            final int minMatch = random.nextInt(20);
+            final double maxErrorRate = new double[]{0, 0.1, 0.2, 0.5, 1.5}[random.nextInt(5)];
+
+            final int expected = findIndexOfClipSequenceBaseByBase(read, adapter, minMatch, maxErrorRate);
+            Assert.assertEquals(ClippingUtility.findIndexOfClipSequence(read, adapter, minMatch, maxErrorRate), expected,
+                    new String(read) + " " + new String(adapter) + " " + minMatch + " " + maxErrorRate);
+            if (expected != ClippingUtility.NO_MATCH) ++numMatches;
+        }
+        Assert.assertTrue(numMatches > 1000);
+    }
+
+    @Test
+    public void testConcurrentAdapterMarking() throws Exception {
+        final int readLength = 100;
+        final IlluminaAdapterPair[] adapterPairs = {IlluminaAdapterPair.INDEXED, IlluminaAdapterPair.NEXTERA_V2, IlluminaAdapterPair.DUAL_INDEXED};
+        final AdapterMarker marker = new AdapterMarker(IlluminaAdapterPair.values()).setThresholdForSelectingAdaptersToKeep(200);
+        final Random random = new Random(3);
+        final List<SAMRecord> records = new ArrayList<>();
+        for (int i = 0; i < 4000; ++i) {
+            // Mostly the one adapter that should be kept
+            final IlluminaAdapterPair adapterPair = adapterPairs[random.nextInt(10) < 8 ? 0 : random.nextInt(adapterPairs.length)];
+            records.add(createSamRecordWithAdapterSequence(readLength, adapterPair, random.nextInt(readLength - 20)));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < records.size(); i += 8) marker.adapterTrimIlluminaSingleRead(records.get(i));
+                }));
+            }
+            for (final Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(marker.getAdapters().length, 1);
+        int numMarked = 0;
+        for (final SAMRecord rec : records) {
+            final Integer xt = rec.getIntegerAttribute(ReservedTagConstants.XT);
+            if (xt == null) continue;
+            ++numMarked;
+            // Every tag that was kept comes from the adapter that was kept.
+            final SAMRecord copy = new SAMRecord(null);
+            copy.setReadString(rec.getReadString());
+            Assert.assertNotNull(ClippingUtility.adapterTrimIlluminaSingleRead(copy, marker.getMinSingleEndMatchBases(),
+                    marker.getMaxSingleEndErrorRate(), marker.getAdapters()), rec.getReadString());
+            Assert.assertEquals(copy.getIntegerAttribute(ReservedTagConstants.XT), xt);
+        }
+        Assert.assertTrue(numMarked > records.size() / 2);
+    }
 }
@@ -0,0 +1,175 @@
+package picard.util;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import picard.PicardException;
+import picard.util.IntervalList.IntervalCostModel;
+import picard.util.IntervalList.IntervalListScatter;
+import picard.util.IntervalList.IntervalListScatterMode;
+import picard.util.IntervalList.IntervalListScattererByCost;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class IntervalListScattererByCostTest {
+    private static final File TEST_DATA_DIR = new File("testdata/picard/util");
+    private static final File MINI_VCF = new File("testdata/picard/vcf/mini.vcf");
+
+    private static IntervalList makeList(final int... lengths) {
+        final IntervalList list = new IntervalList(IntervalList.fromFile(new File(TEST_DATA_DIR, "scatterable.interval_list")).getHeader());
+        int start = 1;
+        for (final int length : lengths) {
+            list.add(new Interval("1", start, start + length - 1));
+            start += length + 10;
+        }
+        return list;
+    }
+
+    private static List<Integer> lengths(final IntervalList list) {
+        return list.getIntervals().stream().map(Interval::length).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLongestProcessingTimePacking() {
+        final List<IntervalList> scatter = IntervalListScatterMode.COST_BALANCED.make().scatter(makeList(100, 60, 50, 40, 30, 20), 2);
+        Assert.assertEquals(scatter.size(), 2);
+        // 100 and 60 start the lists; each later interval goes to the list with the fewest bases so far.
+        Assert.assertEquals(lengths(scatter.get(0)), Arrays.asList(100, 40, 20));
+        Assert.assertEquals(lengths(scatter.get(1)), Arrays.asList(60, 50, 30));
+    }
+
+    @Test
+    public void testEveryIntervalIsEmittedOnceInOrder() {
+        final IntervalList list = makeList(5, 17, 3, 99, 42, 42, 8, 1, 64, 23, 11, 7);
+        final List<IntervalList> scatter = new IntervalListScattererByCost().scatter(list, 5);
+        Assert.assertEquals(scatter.size(), 5);
+
+        final List<Interval> all = new ArrayList<>();
+        int previousFirstStart = 0;
+        long maxBases = 0;
+        for (final IntervalList shard : scatter) {
+            Assert.assertEquals(shard.getIntervals(), shard.sorted().getIntervals());
+            Assert.assertTrue(shard.getIntervals().get(0).getStart() > previousFirstStart);
+            previousFirstStart = shard.getIntervals().get(0).getStart();
+            maxBases = Math.max(maxBases, shard.getBaseCount());
+            all.addAll(shard.getIntervals());
+        }
+        all.sort(null);
+        Assert.assertEquals(all, list.getIntervals());
+        // The longest interval is larger than the mean, so it alone determines the best possible makespan.
+        Assert.assertEquals(maxBases, 99);
+    }
+
+    @Test
+    public void testPackingIntervalByInterval() {
+        final IntervalListScattererByCost scatterer = new IntervalListScattererByCost();
+        final IntervalList list = makeList(30, 20, 10, 40, 20, 90);
+        // The ideal weight is that of the costliest interval, 90, as it is more than the mean of 70.
+        Assert.assertEquals(scatterer.deduceIdealSplitWeight(list, 3), 90);
+
+        final List<IntervalList> scatter = new ArrayList<>();
+        new IntervalListScatter(scatterer, list, 3).iterator().forEachRemaining(scatter::add);
+        Assert.assertEquals(scatter.stream().map(IntervalListScattererByCostTest::lengths).collect(Collectors.toList()),
+                Arrays.asList(Arrays.asList(30, 20, 10), Arrays.asList(40, 20), Arrays.asList(90)));
+    }
+
+    @Test
+    public void testFewerIntervalsThanScatterCount() {
+        Assert.assertEquals(new IntervalListScattererByCost().scatter(makeList(10, 20), 5).size(), 2);
+    }
+
+    @Test
+    public void testZeroCostIntervalsAreSpreadByBases() {
+        final List<IntervalList> scatter = new IntervalListScattererByCost(interval -> 0).scatter(makeList(10, 10, 10, 10), 2);
+        Assert.assertEquals(scatter.size(), 2);
+        Assert.assertEquals(scatter.get(0).size(), 2);
+        Assert.assertEquals(scatter.get(1).size(), 2);
+    }
+
+    @Test
+    public void testCoverageTrackCost() throws IOException {
+        final File track = writeTrack("track type=bedGraph", "1\t0\t100\t2", "1\t200\t300\t1.5", "2\t0\t10\t7");
+        try (final IntervalCostModel costModel = IntervalCostModel.fromFile(track)) {
+            // 0-based positions 50 to 99 at 2, then 200 to 249 at 1.5
+            Assert.assertEquals(costModel.cost(new Interval("1", 51, 250)), 175.0, 1e-9);
+            Assert.assertEquals(costModel.cost(new Interval("1", 101, 200)), 0.0, 1e-9);
+            Assert.assertEquals(costModel.cost(new Interval("1", 1, 1)), 2.0, 1e-9);
+            Assert.assertEquals(costModel.cost(new Interval("1", 1, 1000)), 350.0, 1e-9);
+            Assert.assertEquals(costModel.cost(new Interval("2", 5, 20)), 42.0, 1e-9);
+            Assert.assertEquals(costModel.cost(new Interval("3", 1, 20)), 0.0, 1e-9);
+        }
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testOverlappingCoverageTrack() throws IOException {
+        IntervalCostModel.fromFile(writeTrack("1\t0\t100\t2", "1\t50\t150\t1"));
+    }
+
+    @Test
+    public void testVariantDensityCost() {
+        final List<Integer> starts = new ArrayList<>();
+        try (final VCFFileReader reader = new VCFFileReader(MINI_VCF, false);
+             final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+            iterator.forEachRemaining(variant -> starts.add(variant.getStart()));
+        }
+        final int first = starts.get(0);
+        final int middle = starts.get(starts.size() / 2);
+
+        try (final IntervalCostModel costModel = IntervalCostModel.fromFile(MINI_VCF)) {
+            for (final Interval interval : Arrays.asList(new Interval("1", first, first), new Interval("1", 1, middle),
+                    new Interval("1", first + 1, middle - 1), new Interval("1", middle, Integer.MAX_VALUE - 1))) {
+                final long expected = starts.stream().filter(start -> start >= interval.getStart() && start <= interval.getEnd()).count();
+                Assert.assertEquals(costModel.cost(interval), (double) expected, interval.toString());
+            }
+            Assert.assertEquals(costModel.cost(new Interval("2", 1, 1000000)), 0.0);
+        }
+    }
+
+    @Test
+    public void testBamIndexCost() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 2000; ++i) {
+            builder.addFrag("read" + i, 0, 1 + i * 50, false);
+        }
+        final File bam = File.createTempFile("IntervalListScattererByCostTest", ".bam");
+        final File bai = new File(bam.getPath().replaceAll("\\.bam$", ".bai"));
+        bam.deleteOnExit();
+        bai.deleteOnExit();
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(builder.getHeader(), true, bam)) {
+            builder.forEach(writer::addAlignment);
+        }
+
+        try (final IntervalCostModel costModel = IntervalCostModel.fromFile(bam)) {
+            final String contig = builder.getHeader().getSequence(0).getSequenceName();
+            final double small = costModel.cost(new Interval(contig, 1, 1000));
+            final double all = costModel.cost(new Interval(contig, 1, 100000));
+            Assert.assertTrue(small > 0);
+            Assert.assertTrue(all > small);
+            Assert.assertEquals(costModel.cost(new Interval(builder.getHeader().getSequence(1).getSequenceName(), 1, 100000)), 0.0);
+            Assert.assertEquals(costModel.cost(new Interval("noSuchContig", 1, 100000)), 0.0);
+        }
+    }
+
+    private static File writeTrack(final String... lines) throws IOException {
+        final File track = File.createTempFile("IntervalListScattererByCostTest", ".bedGraph");
+        track.deleteOnExit();
+        try (final PrintWriter writer = new PrintWriter(track)) {
+            Arrays.stream(lines).forEach(writer::println);
+        }
+        return track;
+    }
+}
@@ -23,17 +23,22 @@
  */
 package picard.util;
 
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
 import org.testng.Assert;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
+import picard.util.IntervalList.IntervalCostModel;
+import picard.util.IntervalList.IntervalListScatterMode;
 import picard.util.IntervalList.IntervalListScatterer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -402,4 +407,64 @@ public class IntervalListToolsTest extends CommandLineProgramTest {
 
         Assert.assertEquals(gather, original);
     }
+
+    @Test
+    public void testCostBalancedScatter() throws IOException {
+        final int scatterCount = 4;
+        final File ilOutDir = IOUtil.createTempDir("IntervalListTools", "lists");
+        dirsToDelete.add(ilOutDir);
+
+        // A hot spot with 100 times the coverage of the rest of the intervals
+        final File coverage = File.createTempFile("IntervalListTools", ".bedGraph");
+        coverage.deleteOnExit();
+        try (final PrintWriter writer = new PrintWriter(coverage)) {
+            writer.println("chr1\t0\t100\t1");
+            writer.println("chr1\t100\t1000\t100");
+            writer.println("chr1\t1000\t100000\t1");
+            writer.println("chr2\t0\t100000\t1");
+        }
+        final File report = File.createTempFile("IntervalListTools", ".scatter_cost_metrics");
+        report.deleteOnExit();
+
+        final List<String> args = new ArrayList<>();
+        args.add("INPUT=" + largeScatterable);
+        args.add("OUTPUT=" + ilOutDir);
+        args.add("BREAK_BANDS_AT_MULTIPLES_OF=100");
+        args.add("SCATTER_COUNT=" + scatterCount);
+        args.add("SUBDIVISION_MODE=" + IntervalListScatterMode.COST_BALANCED);
+        args.add("SCATTER_COST_INPUT=" + coverage);
+        args.add("SCATTER_COST_REPORT=" + report);
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        final List<IntervalListTools.ScatterCostMetrics> metrics = MetricsFile.readBeans(report);
+        Assert.assertEquals(metrics.size(), scatterCount);
+
+        final IntervalList original = IntervalList.fromFile(largeScatterable).uniqued();
+        final List<Interval> gathered = new ArrayList<>();
+        try (final IntervalCostModel costModel = IntervalCostModel.fromFile(coverage)) {
+            double maxRelativeCost = 0;
+            for (final IntervalListTools.ScatterCostMetrics metric : metrics) {
+                final IntervalList scattered = IntervalList.fromFile(new File(ilOutDir,
+                        String.format("temp_%04d_of_%d/scattered.interval_list", metric.SCATTER_INDEX, scatterCount)));
+                Assert.assertEquals(metric.INTERVALS, scattered.size());
+                Assert.assertEquals(metric.BASES, scattered.getBaseCount());
+                Assert.assertEquals(metric.COST, costModel.cost(scattered), 1e-6);
+                maxRelativeCost = Math.max(maxRelativeCost, metric.RELATIVE_COST);
+                gathered.addAll(scattered.getIntervals());
+            }
+            Assert.assertTrue(maxRelativeCost < 1.05, "Unbalanced scatter: " + maxRelativeCost);
+        }
+        final IntervalList gather = new IntervalList(original.getHeader());
+        gather.addall(gathered);
+        Assert.assertEquals(gather.uniqued(), original);
+    }
+
+    @Test
+    public void testScatterCostInputValidation() {
+        final IntervalListTools intervalListTools = new IntervalListTools();
+        intervalListTools.SCATTER_COST_INPUT = new File("fakefile");
+        Assert.assertEquals(intervalListTools.customCommandLineValidation().length, 1);
+        intervalListTools.SUBDIVISION_MODE = IntervalListScatterMode.COST_BALANCED;
+        Assert.assertNull(intervalListTools.customCommandLineValidation());
+    }
 }
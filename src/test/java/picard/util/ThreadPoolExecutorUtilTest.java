@@ -0,0 +1,54 @@
+package picard.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import picard.PicardException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+public class ThreadPoolExecutorUtilTest {
+
+    @Test
+    public void testGetNumThreads() {
+        final int available = Runtime.getRuntime().availableProcessors();
+        Assert.assertEquals(ThreadPoolExecutorUtil.getNumThreads(3), 3);
+        Assert.assertEquals(ThreadPoolExecutorUtil.getNumThreads(0), available);
+        Assert.assertEquals(ThreadPoolExecutorUtil.getNumThreads(-1), Math.max(1, available - 1));
+        Assert.assertEquals(ThreadPoolExecutorUtil.getNumThreads(-available), 1);
+    }
+
+    @Test
+    public void testDaemonPool() throws Exception {
+        final ExecutorService pool = ThreadPoolExecutorUtil.newDaemonFixedThreadPool(2, "ThreadPoolExecutorUtilTest");
+        try {
+            Assert.assertTrue(ThreadPoolExecutorUtil.getResult(pool.submit(() -> Thread.currentThread().isDaemon()), "testing"));
+            Assert.assertEquals(ThreadPoolExecutorUtil.getResult(pool.submit(() -> Thread.currentThread().getName()), "testing"),
+                    "ThreadPoolExecutorUtilTest");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testGetResultRethrowsRuntimeException() {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException());
+        ThreadPoolExecutorUtil.getResult(future, "testing");
+    }
+
+    @Test
+    public void testGetResultWrapsCheckedException() {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final IOException cause = new IOException();
+        future.completeExceptionally(cause);
+        try {
+            ThreadPoolExecutorUtil.getResult(future, "reading something");
+            Assert.fail("Expected a PicardException");
+        } catch (final PicardException e) {
+            Assert.assertEquals(e.getMessage(), "Error reading something");
+            Assert.assertSame(e.getCause(), cause);
+        }
+    }
+}
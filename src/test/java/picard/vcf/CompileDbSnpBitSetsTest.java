@@ -0,0 +1,109 @@
+package picard.vcf;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import picard.PicardException;
+import picard.cmdline.CommandLineProgramTest;
+import picard.util.DbSnpBitSetUtil;
+import picard.util.VariantType;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+public class CompileDbSnpBitSetsTest extends CommandLineProgramTest {
+    private static final File TEST_DATA_DIR = new File("testdata/picard/vcf");
+    private static final File DBSNP = new File(TEST_DATA_DIR, "mini.dbsnp.vcf");
+    // Past the last record in the dbSNP file
+    private static final int LAST_POSITION = 2_300_000;
+
+    @Override
+    public String getCommandLineProgramName() {
+        return CompileDbSnpBitSets.class.getSimpleName();
+    }
+
+    private File compile() throws IOException {
+        final File output = File.createTempFile("CompileDbSnpBitSetsTest", DbSnpBitSetUtil.BIT_SET_FILE_EXTENSION);
+        output.deleteOnExit();
+        Assert.assertEquals(runPicardCommandLine(new String[]{"DBSNP=" + DBSNP.getAbsolutePath(), "OUTPUT=" + output.getAbsolutePath()}), 0);
+        Assert.assertTrue(DbSnpBitSetUtil.isBitSetFile(output));
+        Assert.assertFalse(DbSnpBitSetUtil.isBitSetFile(DBSNP));
+        return output;
+    }
+
+    @Test
+    public void testCompiledBitSetsMatchVcf() throws IOException {
+        final File compiled = compile();
+        final SAMSequenceDictionary dictionary = SAMSequenceDictionaryExtractor.extractDictionary(DBSNP.toPath());
+
+        final DbSnpBitSetUtil.DbSnpBitSets fromVcf = DbSnpBitSetUtil.createSnpAndIndelBitSets(DBSNP, dictionary);
+        final DbSnpBitSetUtil.DbSnpBitSets fromFile = DbSnpBitSetUtil.createSnpAndIndelBitSets(compiled, dictionary);
+        final DbSnpBitSetUtil allFromVcf = new DbSnpBitSetUtil(DBSNP, dictionary);
+        final DbSnpBitSetUtil allFromFile = new DbSnpBitSetUtil(compiled, dictionary);
+        final DbSnpBitSetUtil snpsFromFile = new DbSnpBitSetUtil(compiled, null, EnumSet.of(VariantType.SNP));
+
+        int numSites = 0;
+        for (final String contig : new String[]{"1", "2"}) {
+            for (int pos = 0; pos <= LAST_POSITION; ++pos) {
+                Assert.assertEquals(fromFile.snps.isDbSnpSite(contig, pos), fromVcf.snps.isDbSnpSite(contig, pos));
+                Assert.assertEquals(fromFile.indels.isDbSnpSite(contig, pos), fromVcf.indels.isDbSnpSite(contig, pos));
+                Assert.assertEquals(allFromFile.isDbSnpSite(contig, pos), allFromVcf.isDbSnpSite(contig, pos));
+                Assert.assertEquals(snpsFromFile.isDbSnpSite(contig, pos), fromVcf.snps.isDbSnpSite(contig, pos));
+                if (allFromFile.isDbSnpSite(contig, pos)) ++numSites;
+            }
+        }
+        Assert.assertTrue(numSites > 0);
+
+        final int contigLength = dictionary.getSequence("1").getSequenceLength();
+        Assert.assertFalse(allFromFile.isDbSnpSite("1", contigLength + 1000));
+        Assert.assertFalse(allFromFile.isDbSnpSite("noSuchContig", 1));
+    }
+
+    @Test
+    public void testCollectVariantCallingMetricsWithCompiledDbSnp() throws IOException {
+        final File compiled = compile();
+        final List<CollectVariantCallingMetrics.VariantCallingSummaryMetrics> fromVcf = collectVariantCallingMetrics(DBSNP);
+        final List<CollectVariantCallingMetrics.VariantCallingSummaryMetrics> fromFile = collectVariantCallingMetrics(compiled);
+        Assert.assertFalse(fromVcf.isEmpty());
+        Assert.assertEquals(fromFile, fromVcf);
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testDifferentSequenceDictionary() throws IOException {
+        final File compiled = compile();
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Collections.singletonList(new SAMSequenceRecord("1", 1000)));
+        new DbSnpBitSetUtil(compiled, dictionary);
+    }
+
+    private static List<CollectVariantCallingMetrics.VariantCallingSummaryMetrics> collectVariantCallingMetrics(final File dbSnp) throws IOException {
+        final File output = File.createTempFile("CompileDbSnpBitSetsTest", "");
+        final File summaryFile = new File(output.getAbsolutePath() + ".variant_calling_summary_metrics");
+        output.deleteOnExit();
+        summaryFile.deleteOnExit();
+        new File(output.getAbsolutePath() + ".variant_calling_detail_metrics").deleteOnExit();
+
+        final CollectVariantCallingMetrics program = new CollectVariantCallingMetrics();
+        program.INPUT = new File(TEST_DATA_DIR, "mini.vcf");
+        program.DBSNP = dbSnp;
+        program.OUTPUT = output;
+        Assert.assertEquals(program.doWork(), 0);
+
+        return readMetrics(summaryFile);
+    }
+
+    private static <T extends MetricBase> List<T> readMetrics(final File file) throws IOException {
+        final MetricsFile<T, Comparable<?>> metricsFile = new MetricsFile<>();
+        try (final FileReader reader = new FileReader(file)) {
+            metricsFile.read(reader);
+        }
+        return metricsFile.getMetrics();
+    }
+}